@@ -33,6 +33,12 @@ import java.io.Closeable;
 
 public interface MessageBus extends Closeable {
 
+    MPSequence getColumnUpdatePubSeq();
+
+    RingQueue<ColumnUpdateTask> getColumnUpdateQueue();
+
+    MCSequence getColumnUpdateSubSeq();
+
     CairoConfiguration getConfiguration();
 
     Sequence getIndexerPubSequence();
@@ -87,6 +93,12 @@ public interface MessageBus extends Closeable {
 
     MCSequence getPageFrameReduceSubSeq(int shard);
 
+    MPSequence getTextImportPubSeq();
+
+    RingQueue<TextImportTask> getTextImportQueue();
+
+    MCSequence getTextImportSubSeq();
+
     FanOut getTableWriterEventFanOut();
 
     MPSequence getTableWriterEventPubSeq();
@@ -39,6 +39,10 @@ public class MessageBusImpl implements MessageBus {
     private final MPSequence indexerPubSeq;
     private final MCSequence indexerSubSeq;
 
+    private final RingQueue<ColumnUpdateTask> columnUpdateQueue;
+    private final MPSequence columnUpdatePubSeq;
+    private final MCSequence columnUpdateSubSeq;
+
     private final RingQueue<VectorAggregateTask> vectorAggregateQueue;
     private final MPSequence vectorAggregatePubSeq;
     private final MCSequence vectorAggregateSubSeq;
@@ -71,6 +75,10 @@ public class MessageBusImpl implements MessageBus {
     private final MPSequence tableWriterEventPubSeq;
     private final FanOut tableWriterEventSubSeq;
 
+    private final RingQueue<TextImportTask> textImportQueue;
+    private final MPSequence textImportPubSeq;
+    private final MCSequence textImportSubSeq;
+
     private final MPSequence queryCacheEventPubSeq;
     private final FanOut queryCacheEventSubSeq;
 
@@ -87,6 +95,11 @@ public class MessageBusImpl implements MessageBus {
         this.indexerSubSeq = new MCSequence(indexerQueue.getCycle());
         indexerPubSeq.then(indexerSubSeq).then(indexerPubSeq);
 
+        this.columnUpdateQueue = new RingQueue<>(ColumnUpdateTask::new, configuration.getColumnUpdateQueueCapacity());
+        this.columnUpdatePubSeq = new MPSequence(columnUpdateQueue.getCycle());
+        this.columnUpdateSubSeq = new MCSequence(columnUpdateQueue.getCycle());
+        columnUpdatePubSeq.then(columnUpdateSubSeq).then(columnUpdatePubSeq);
+
         this.vectorAggregateQueue = new RingQueue<>(VectorAggregateTask::new, configuration.getVectorAggregateQueueCapacity());
         this.vectorAggregatePubSeq = new MPSequence(vectorAggregateQueue.getCycle());
         this.vectorAggregateSubSeq = new MCSequence(vectorAggregateQueue.getCycle());
@@ -132,6 +145,11 @@ public class MessageBusImpl implements MessageBus {
         this.tableWriterEventSubSeq = new FanOut();
         this.tableWriterEventPubSeq.then(this.tableWriterEventSubSeq).then(this.tableWriterEventPubSeq);
 
+        this.textImportQueue = new RingQueue<>(TextImportTask::new, configuration.getSqlCopyQueueCapacity());
+        this.textImportPubSeq = new MPSequence(textImportQueue.getCycle());
+        this.textImportSubSeq = new MCSequence(textImportQueue.getCycle());
+        textImportPubSeq.then(textImportSubSeq).then(textImportPubSeq);
+
         this.queryCacheEventPubSeq = new MPSequence(configuration.getQueryCacheEventQueueCapacity());
         this.queryCacheEventSubSeq = new FanOut();
         this.queryCacheEventPubSeq.then(this.queryCacheEventSubSeq).then(this.queryCacheEventPubSeq);
@@ -170,6 +188,21 @@ public class MessageBusImpl implements MessageBus {
         Misc.free(pageFrameReduceQueue);
     }
 
+    @Override
+    public MPSequence getColumnUpdatePubSeq() {
+        return columnUpdatePubSeq;
+    }
+
+    @Override
+    public RingQueue<ColumnUpdateTask> getColumnUpdateQueue() {
+        return columnUpdateQueue;
+    }
+
+    @Override
+    public MCSequence getColumnUpdateSubSeq() {
+        return columnUpdateSubSeq;
+    }
+
     @Override
     public CairoConfiguration getConfiguration() {
         return configuration;
@@ -305,6 +338,21 @@ public class MessageBusImpl implements MessageBus {
         return pageFrameReduceSubSeq[shard];
     }
 
+    @Override
+    public MPSequence getTextImportPubSeq() {
+        return textImportPubSeq;
+    }
+
+    @Override
+    public RingQueue<TextImportTask> getTextImportQueue() {
+        return textImportQueue;
+    }
+
+    @Override
+    public MCSequence getTextImportSubSeq() {
+        return textImportSubSeq;
+    }
+
     @Override
     public FanOut getTableWriterEventFanOut() {
         return tableWriterEventSubSeq;
@@ -27,10 +27,12 @@ package io.questdb;
 import io.questdb.cairo.TableWriterMetrics;
 import io.questdb.cutlass.http.processors.HealthCheckMetrics;
 import io.questdb.cutlass.http.processors.JsonQueryMetrics;
+import io.questdb.cutlass.line.tcp.LineTcpMetrics;
 import io.questdb.metrics.MetricsRegistry;
 import io.questdb.metrics.MetricsRegistryImpl;
 import io.questdb.metrics.NullMetricsRegistry;
 import io.questdb.metrics.Scrapable;
+import io.questdb.std.CharSequenceHashSet;
 import io.questdb.std.MemoryTag;
 import io.questdb.std.Unsafe;
 import io.questdb.std.str.CharSink;
@@ -40,6 +42,7 @@ public class Metrics implements Scrapable {
     private final JsonQueryMetrics jsonQuery;
     private final HealthCheckMetrics healthCheck;
     private final TableWriterMetrics tableWriter;
+    private final LineTcpMetrics lineTcp;
     private final MetricsRegistry metricsRegistry;
 
     Metrics(boolean enabled, MetricsRegistry metricsRegistry) {
@@ -47,6 +50,7 @@ public class Metrics implements Scrapable {
         this.jsonQuery = new JsonQueryMetrics(metricsRegistry);
         this.healthCheck = new HealthCheckMetrics(metricsRegistry);
         this.tableWriter = new TableWriterMetrics(metricsRegistry);
+        this.lineTcp = new LineTcpMetrics(metricsRegistry);
         createMemoryGauges(metricsRegistry);
         this.metricsRegistry = metricsRegistry;
     }
@@ -70,6 +74,16 @@ public class Metrics implements Scrapable {
         return new Metrics(false, new NullMetricsRegistry());
     }
 
+    /**
+     * Adds names of all tables that have per-table metrics to the sink.
+     *
+     * @param sink set of table names
+     */
+    public void collectTableNames(CharSequenceHashSet sink) {
+        tableWriter.collectTableNames(sink);
+        lineTcp.collectTableNames(sink);
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -86,6 +100,20 @@ public class Metrics implements Scrapable {
         return tableWriter;
     }
 
+    public LineTcpMetrics lineTcp() {
+        return lineTcp;
+    }
+
+    /**
+     * Drops per-table metrics of a dropped or renamed table.
+     *
+     * @param tableName table name
+     */
+    public void removeTable(CharSequence tableName) {
+        tableWriter.removeTable(tableName);
+        lineTcp.removeTable(tableName);
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
         metricsRegistry.scrapeIntoPrometheus(sink);
@@ -61,6 +61,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     public static final String CONFIG_DIRECTORY = "conf";
     public static final String DB_DIRECTORY = "db";
     public static final String SNAPSHOT_DIRECTORY = "snapshot";
+    public static final String TMP_DIRECTORY = "tmp";
     public static final long COMMIT_INTERVAL_DEFAULT = 2000;
     private static final LowerCaseCharSequenceIntHashMap WRITE_FO_OPTS = new LowerCaseCharSequenceIntHashMap();
     private static final Map<String, String> OBSOLETE_SETTINGS = new HashMap<>();
@@ -85,14 +86,21 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final long inactiveReaderTTL;
     private final long inactiveWriterTTL;
     private final int indexValueBlockSize;
+    private final long matViewRefreshInterval;
     private final int maxSwapFileCount;
     private final int mkdirMode;
     private final int parallelIndexThreshold;
     private final int readerPoolMaxSegments;
     private final long spinLockTimeoutUs;
     private final boolean httpSqlCacheEnabled;
+    private final boolean httpSqlCacheNormalizeLiterals;
     private final int httpSqlCacheBlockCount;
     private final int httpSqlCacheRowCount;
+    private final int httpAsyncQueryWorkerCount;
+    private final long httpAsyncQueryResultTtl;
+    private final int httpAsyncQueryResultLimit;
+    private final int httpSubscriptionLimit;
+    private final long httpSubscriptionHeartbeatInterval;
     private final int rndFunctionMemoryPageSize;
     private final int rndFunctionMemoryMaxPages;
     private final int sqlCharacterStoreCapacity;
@@ -130,6 +138,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int lineUdpMsgBufferSize;
     private final int lineUdpMsgCount;
     private final int lineUdpReceiveBufferSize;
+    private final int lineUdpSocketCount;
     private final int lineUdpCommitMode;
     private final int[] sharedWorkerAffinity;
     private final int sharedWorkerCount;
@@ -147,6 +156,9 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final boolean lineUdpUnicast;
     private final boolean lineUdpOwnThread;
     private final int sqlCopyBufferSize;
+    private final long sqlCopyParallelMinSize;
+    private final int sqlCopyQueueCapacity;
+    private final String sqlCopyWorkRoot;
     private final long writerDataAppendPageSize;
     private final long writerMiscAppendPageSize;
     private final int sqlAnalyticColumnPoolCapacity;
@@ -161,6 +173,8 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int sqlBindVariablePoolSize;
     private final int sqlPageFrameMinRows;
     private final int sqlPageFrameMaxRows;
+    private final long sqlResultCacheSize;
+    private final long sqlResultCacheEntryMaxSize;
     private final int sqlJitMode;
     private final int sqlJitIRMemoryPageSize;
     private final int sqlJitIRMemoryMaxPages;
@@ -211,6 +225,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int rerunMaxProcessingQueueSize;
     private final BuildInformation buildInformation;
     private final int columnIndexerQueueCapacity;
+    private final int columnUpdateQueueCapacity;
     private final int vectorAggregateQueueCapacity;
     private final int o3CallbackQueueCapacity;
     private final int o3PartitionQueueCapacity;
@@ -495,7 +510,7 @@ public class PropServerConfiguration implements ServerConfiguration {
                 this.sendBufferSize = getIntSize(properties, env, PropertyKey.HTTP_SEND_BUFFER_SIZE, 2 * 1024 * 1024);
                 this.indexFileName = getString(properties, env, PropertyKey.HTTP_STATIC_INDEX_FILE_NAME, "index.html");
                 this.httpFrozenClock = getBoolean(properties, env, PropertyKey.HTTP_FROZEN_CLOCK, false);
-                this.httpAllowDeflateBeforeSend = getBoolean(properties, env, PropertyKey.HTTP_ALLOW_DEFLATE_BEFORE_SEND, false);
+                this.httpAllowDeflateBeforeSend = getBoolean(properties, env, PropertyKey.HTTP_ALLOW_DEFLATE_BEFORE_SEND, true);
                 this.httpServerKeepAlive = getBoolean(properties, env, PropertyKey.HTTP_SERVER_KEEP_ALIVE, true);
                 this.httpVersion = getString(properties, env, PropertyKey.HTTP_VERSION, "HTTP/1.1");
                 if (!httpVersion.endsWith(" ")) {
@@ -649,13 +664,20 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.inactiveReaderTTL = getLong(properties, env, PropertyKey.CAIRO_INACTIVE_READER_TTL, 120_000);
             this.inactiveWriterTTL = getLong(properties, env, PropertyKey.CAIRO_INACTIVE_WRITER_TTL, 600_000);
             this.indexValueBlockSize = Numbers.ceilPow2(getIntSize(properties, env, PropertyKey.CAIRO_INDEX_VALUE_BLOCK_SIZE, 256));
+            this.matViewRefreshInterval = getLong(properties, env, PropertyKey.CAIRO_MAT_VIEW_REFRESH_INTERVAL, 1000);
             this.maxSwapFileCount = getInt(properties, env, PropertyKey.CAIRO_MAX_SWAP_FILE_COUNT, 30);
             this.parallelIndexThreshold = getInt(properties, env, PropertyKey.CAIRO_PARALLEL_INDEX_THRESHOLD, 100000);
             this.readerPoolMaxSegments = getInt(properties, env, PropertyKey.CAIRO_READER_POOL_MAX_SEGMENTS, 5);
             this.spinLockTimeoutUs = getLong(properties, env, PropertyKey.CAIRO_SPIN_LOCK_TIMEOUT, 1_000_000);
             this.httpSqlCacheEnabled = getBoolean(properties, env, PropertyKey.HTTP_QUERY_CACHE_ENABLED, true);
+            this.httpSqlCacheNormalizeLiterals = getBoolean(properties, env, PropertyKey.HTTP_QUERY_CACHE_NORMALIZE_LITERALS, false);
             this.httpSqlCacheBlockCount = getInt(properties, env, PropertyKey.HTTP_QUERY_CACHE_BLOCK_COUNT, 4);
             this.httpSqlCacheRowCount = getInt(properties, env, PropertyKey.HTTP_QUERY_CACHE_ROW_COUNT, 16);
+            this.httpAsyncQueryWorkerCount = getInt(properties, env, PropertyKey.HTTP_ASYNC_QUERY_WORKER_COUNT, 2);
+            this.httpAsyncQueryResultTtl = getLong(properties, env, PropertyKey.HTTP_ASYNC_QUERY_RESULT_TTL, 300_000);
+            this.httpAsyncQueryResultLimit = getInt(properties, env, PropertyKey.HTTP_ASYNC_QUERY_RESULT_LIMIT, 64);
+            this.httpSubscriptionLimit = getInt(properties, env, PropertyKey.HTTP_SUBSCRIPTION_LIMIT, 64);
+            this.httpSubscriptionHeartbeatInterval = getLong(properties, env, PropertyKey.HTTP_SUBSCRIPTION_HEARTBEAT_INTERVAL, 10_000);
             this.sqlCharacterStoreCapacity = getInt(properties, env, PropertyKey.CAIRO_CHARACTER_STORE_CAPACITY, 1024);
             this.sqlCharacterStoreSequencePoolCapacity = getInt(properties, env, PropertyKey.CAIRO_CHARACTER_STORE_SEQUENCE_POOL_CAPACITY, 64);
             this.sqlColumnPoolCapacity = getInt(properties, env, PropertyKey.CAIRO_COLUMN_POOL_CAPACITY, 4096);
@@ -723,6 +745,8 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlDistinctTimestampLoadFactor = getDouble(properties, env, PropertyKey.CAIRO_SQL_DISTINCT_TIMESTAMP_LOAD_FACTOR, 0.5);
             this.sqlPageFrameMinRows = getInt(properties, env, PropertyKey.CAIRO_SQL_PAGE_FRAME_MIN_ROWS, 1_000);
             this.sqlPageFrameMaxRows = getInt(properties, env, PropertyKey.CAIRO_SQL_PAGE_FRAME_MAX_ROWS, 1_000_000);
+            this.sqlResultCacheSize = getLongSize(properties, env, PropertyKey.CAIRO_SQL_RESULT_CACHE_SIZE, 0);
+            this.sqlResultCacheEntryMaxSize = getLongSize(properties, env, PropertyKey.CAIRO_SQL_RESULT_CACHE_ENTRY_MAX_SIZE, 4 * Numbers.SIZE_1MB);
 
             this.sqlJitMode = getSqlJitMode(properties, env);
             this.sqlJitIRMemoryPageSize = getIntSize(properties, env, PropertyKey.CAIRO_SQL_JIT_IR_MEMORY_PAGE_SIZE, 8 * 1024);
@@ -756,11 +780,15 @@ public class PropServerConfiguration implements ServerConfiguration {
             }
 
             this.inputRoot = getString(properties, env, PropertyKey.CAIRO_SQL_COPY_ROOT, null);
+            this.sqlCopyWorkRoot = getString(properties, env, PropertyKey.CAIRO_SQL_COPY_WORK_ROOT, rootSubdir(this.root, TMP_DIRECTORY));
+            this.sqlCopyParallelMinSize = getLongSize(properties, env, PropertyKey.CAIRO_SQL_COPY_PARALLEL_MIN_SIZE, 64 * 1024 * 1024);
+            this.sqlCopyQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_SQL_COPY_QUEUE_CAPACITY, 32));
             this.backupRoot = getString(properties, env, PropertyKey.CAIRO_SQL_BACKUP_ROOT, null);
             this.backupDirTimestampFormat = getTimestampFormat(properties, env);
             this.backupTempDirName = getString(properties, env, PropertyKey.CAIRO_SQL_BACKUP_DIR_TMP_NAME, "tmp");
             this.backupMkdirMode = getInt(properties, env, PropertyKey.CAIRO_SQL_BACKUP_MKDIR_MODE, 509);
             this.columnIndexerQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_COLUMN_INDEXER_QUEUE_CAPACITY, 64));
+            this.columnUpdateQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_COLUMN_UPDATE_QUEUE_CAPACITY, 64));
             this.vectorAggregateQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_VECTOR_AGGREGATE_QUEUE_CAPACITY, 128));
             this.o3CallbackQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_O3_CALLBACK_QUEUE_CAPACITY, 128));
             this.o3PartitionQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_O3_PARTITION_QUEUE_CAPACITY, 128));
@@ -798,6 +826,7 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.lineUdpMsgBufferSize = getIntSize(properties, env, PropertyKey.LINE_UDP_MSG_BUFFER_SIZE, 2048);
             this.lineUdpMsgCount = getInt(properties, env, PropertyKey.LINE_UDP_MSG_COUNT, 10_000);
             this.lineUdpReceiveBufferSize = getIntSize(properties, env, PropertyKey.LINE_UDP_RECEIVE_BUFFER_SIZE, 8 * 1024 * 1024);
+            this.lineUdpSocketCount = getInt(properties, env, PropertyKey.LINE_UDP_SOCKET_COUNT, 1);
             this.lineUdpEnabled = getBoolean(properties, env, PropertyKey.LINE_UDP_ENABLED, true);
             this.lineUdpOwnThreadAffinity = getInt(properties, env, PropertyKey.LINE_UDP_OWN_THREAD_AFFINITY, -1);
             this.lineUdpOwnThread = getBoolean(properties, env, PropertyKey.LINE_UDP_OWN_THREAD, false);
@@ -1700,6 +1729,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return httpSqlCacheEnabled;
         }
 
+        @Override
+        public boolean isQueryCacheLiteralNormalizationEnabled() {
+            return httpSqlCacheNormalizeLiterals;
+        }
+
         @Override
         public int getQueryCacheBlockCount() {
             return httpSqlCacheBlockCount;
@@ -1710,6 +1744,31 @@ public class PropServerConfiguration implements ServerConfiguration {
             return httpSqlCacheRowCount;
         }
 
+        @Override
+        public int getAsyncQueryWorkerCount() {
+            return httpAsyncQueryWorkerCount;
+        }
+
+        @Override
+        public long getAsyncQueryResultTtl() {
+            return httpAsyncQueryResultTtl;
+        }
+
+        @Override
+        public int getAsyncQueryResultLimit() {
+            return httpAsyncQueryResultLimit;
+        }
+
+        @Override
+        public int getSubscriptionLimit() {
+            return httpSubscriptionLimit;
+        }
+
+        @Override
+        public long getSubscriptionHeartbeatInterval() {
+            return httpSubscriptionHeartbeatInterval;
+        }
+
         @Override
         public WaitProcessorConfiguration getWaitProcessorConfiguration() {
             return httpWaitProcessorConfiguration;
@@ -1818,6 +1877,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return columnIndexerQueueCapacity;
         }
 
+        @Override
+        public int getColumnUpdateQueueCapacity() {
+            return columnUpdateQueueCapacity;
+        }
+
         @Override
         public long getCommitLag() {
             return commitLag;
@@ -1978,6 +2042,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return latestByQueueCapacity;
         }
 
+        @Override
+        public long getMatViewRefreshInterval() {
+            return matViewRefreshInterval;
+        }
+
         @Override
         public int getMaxSwapFileCount() {
             return maxSwapFileCount;
@@ -2163,6 +2232,21 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlCopyBufferSize;
         }
 
+        @Override
+        public long getSqlCopyParallelMinSize() {
+            return sqlCopyParallelMinSize;
+        }
+
+        @Override
+        public int getSqlCopyQueueCapacity() {
+            return sqlCopyQueueCapacity;
+        }
+
+        @Override
+        public CharSequence getSqlCopyWorkRoot() {
+            return sqlCopyWorkRoot;
+        }
+
         @Override
         public int getSqlDistinctTimestampKeyCapacity() {
             return sqlDistinctTimestampKeyCapacity;
@@ -2303,6 +2387,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlPageFrameMaxRows;
         }
 
+        @Override
+        public long getSqlResultCacheEntryMaxSize() {
+            return sqlResultCacheEntryMaxSize;
+        }
+
+        @Override
+        public long getSqlResultCacheSize() {
+            return sqlResultCacheSize;
+        }
+
         @Override
         public int getSqlSortKeyMaxPages() {
             return sqlSortKeyMaxPages;
@@ -2479,6 +2573,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return lineUdpReceiveBufferSize;
         }
 
+        @Override
+        public int getSocketCount() {
+            return lineUdpSocketCount;
+        }
+
         @Override
         public CairoSecurityContext getCairoSecurityContext() {
             return AllowAllCairoSecurityContext.INSTANCE;
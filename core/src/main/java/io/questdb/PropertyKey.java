@@ -52,6 +52,7 @@ public enum PropertyKey {
     CAIRO_INACTIVE_READER_TTL("cairo.inactive.reader.ttl"),
     CAIRO_INACTIVE_WRITER_TTL("cairo.inactive.writer.ttl"),
     CAIRO_INDEX_VALUE_BLOCK_SIZE("cairo.index.value.block.size"),
+    CAIRO_MAT_VIEW_REFRESH_INTERVAL("cairo.mat.view.refresh.interval"),
     CAIRO_MAX_SWAP_FILE_COUNT("cairo.max.swap.file.count"),
     CAIRO_PARALLEL_INDEX_THRESHOLD("cairo.parallel.index.threshold"),
     CAIRO_READER_POOL_MAX_SEGMENTS("cairo.reader.pool.max.segments"),
@@ -118,6 +119,8 @@ public enum PropertyKey {
     CAIRO_SQL_DISTINCT_TIMESTAMP_LOAD_FACTOR("cairo.sql.distinct.timestamp.load.factor"),
     CAIRO_SQL_PAGE_FRAME_MIN_ROWS("cairo.sql.page.frame.min.rows"),
     CAIRO_SQL_PAGE_FRAME_MAX_ROWS("cairo.sql.page.frame.max.rows"),
+    CAIRO_SQL_RESULT_CACHE_SIZE("cairo.sql.result.cache.size"),
+    CAIRO_SQL_RESULT_CACHE_ENTRY_MAX_SIZE("cairo.sql.result.cache.entry.max.size"),
     CAIRO_SQL_JIT_IR_MEMORY_PAGE_SIZE("cairo.sql.jit.ir.memory.page.size"),
     CAIRO_SQL_JIT_IR_MEMORY_MAX_PAGES("cairo.sql.jit.ir.memory.max.pages"),
     CAIRO_SQL_JIT_BIND_VARS_MEMORY_PAGE_SIZE("cairo.sql.jit.bind.vars.memory.page.size"),
@@ -127,10 +130,14 @@ public enum PropertyKey {
     CAIRO_SQL_JIT_DEBUG_ENABLED("cairo.sql.jit.debug.enabled"),
     CAIRO_WRITER_FO_OPTS("cairo.writer.fo_opts"),
     CAIRO_SQL_COPY_ROOT("cairo.sql.copy.root"),
+    CAIRO_SQL_COPY_WORK_ROOT("cairo.sql.copy.work.root"),
+    CAIRO_SQL_COPY_PARALLEL_MIN_SIZE("cairo.sql.copy.parallel.min.size"),
+    CAIRO_SQL_COPY_QUEUE_CAPACITY("cairo.sql.copy.queue.capacity"),
     CAIRO_SQL_BACKUP_ROOT("cairo.sql.backup.root"),
     CAIRO_SQL_BACKUP_DIR_TMP_NAME("cairo.sql.backup.dir.tmp.name"),
     CAIRO_SQL_BACKUP_MKDIR_MODE("cairo.sql.backup.mkdir.mode"),
     CAIRO_COLUMN_INDEXER_QUEUE_CAPACITY("cairo.column.indexer.queue.capacity"),
+    CAIRO_COLUMN_UPDATE_QUEUE_CAPACITY("cairo.column.update.queue.capacity"),
     CAIRO_VECTOR_AGGREGATE_QUEUE_CAPACITY("cairo.vector.aggregate.queue.capacity"),
     CAIRO_O3_CALLBACK_QUEUE_CAPACITY("cairo.o3.callback.queue.capacity"),
     CAIRO_O3_PARTITION_QUEUE_CAPACITY("cairo.o3.partition.queue.capacity"),
@@ -236,6 +243,12 @@ public enum PropertyKey {
     HTTP_QUERY_CACHE_ENABLED("http.query.cache.enabled"),
     HTTP_QUERY_CACHE_BLOCK_COUNT("http.query.cache.block.count"),
     HTTP_QUERY_CACHE_ROW_COUNT("http.query.cache.row.count"),
+    HTTP_QUERY_CACHE_NORMALIZE_LITERALS("http.query.cache.normalize.literals"),
+    HTTP_ASYNC_QUERY_WORKER_COUNT("http.async.query.worker.count"),
+    HTTP_ASYNC_QUERY_RESULT_TTL("http.async.query.result.ttl"),
+    HTTP_ASYNC_QUERY_RESULT_LIMIT("http.async.query.result.limit"),
+    HTTP_SUBSCRIPTION_LIMIT("http.subscription.limit"),
+    HTTP_SUBSCRIPTION_HEARTBEAT_INTERVAL("http.subscription.heartbeat.interval"),
     LINE_UDP_BIND_TO("line.udp.bind.to"),
     LINE_UDP_HALT_ON_ERROR("line.udp.haltOnError"),
     LINE_UDP_JOIN("line.udp.join"),
@@ -243,6 +256,7 @@ public enum PropertyKey {
     LINE_UDP_MSG_BUFFER_SIZE("line.udp.msg.buffer.size"),
     LINE_UDP_MSG_COUNT("line.udp.msg.count"),
     LINE_UDP_RECEIVE_BUFFER_SIZE("line.udp.receive.buffer.size"),
+    LINE_UDP_SOCKET_COUNT("line.udp.socket.count"),
     LINE_UDP_ENABLED("line.udp.enabled"),
     LINE_UDP_OWN_THREAD_AFFINITY("line.udp.own.thread.affinity"),
     LINE_UDP_OWN_THREAD("line.udp.own.thread"),
@@ -34,6 +34,7 @@ import io.questdb.cutlass.pgwire.PGWireServer;
 import io.questdb.griffin.DatabaseSnapshotAgent;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.FunctionFactoryCache;
+import io.questdb.griffin.MatViewRefreshJob;
 import io.questdb.jit.JitUtil;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
@@ -199,6 +200,12 @@ public class ServerMain {
         final DatabaseSnapshotAgent snapshotAgent = new DatabaseSnapshotAgent(cairoEngine);
         instancesToClean.add(snapshotAgent);
 
+        if (configuration.getCairoConfiguration().getMatViewRefreshInterval() > 0) {
+            final MatViewRefreshJob matViewRefreshJob = new MatViewRefreshJob(cairoEngine, functionFactoryCache);
+            workerPool.assign(matViewRefreshJob);
+            instancesToClean.add(matViewRefreshJob);
+        }
+
         if (!configuration.getCairoConfiguration().getTelemetryConfiguration().getDisableCompletely()) {
             final TelemetryJob telemetryJob = new TelemetryJob(cairoEngine, functionFactoryCache);
             instancesToClean.add(telemetryJob);
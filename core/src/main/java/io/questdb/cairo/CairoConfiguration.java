@@ -71,6 +71,8 @@ public interface CairoConfiguration {
 
     int getColumnIndexerQueueCapacity();
 
+    int getColumnUpdateQueueCapacity();
+
     /**
      * Default commit lag in microseconds for new tables. This value
      * can be overridden with 'create table' statement.
@@ -154,6 +156,12 @@ public interface CairoConfiguration {
 
     int getLatestByQueueCapacity();
 
+    /**
+     * Interval in milliseconds at which materialized views are refreshed from their base
+     * tables in the background, zero disables background refresh.
+     */
+    long getMatViewRefreshInterval();
+
     int getMaxSwapFileCount();
 
     int getMaxSymbolNotEqualsCount();
@@ -249,6 +257,19 @@ public interface CairoConfiguration {
 
     int getSqlCopyBufferSize();
 
+    /**
+     * Files smaller than this size are imported by COPY on a single thread.
+     */
+    long getSqlCopyParallelMinSize();
+
+    int getSqlCopyQueueCapacity();
+
+    /**
+     * Directory for temporary files of parallel COPY. Partitions are moved from there
+     * to the table directory, which is why it has to be on the same file system as the root.
+     */
+    CharSequence getSqlCopyWorkRoot();
+
     int getSqlDistinctTimestampKeyCapacity();
 
     double getSqlDistinctTimestampLoadFactor();
@@ -310,6 +331,16 @@ public interface CairoConfiguration {
 
     int getSqlPageFrameMaxRows();
 
+    /**
+     * Results larger than this number of bytes are not cached.
+     */
+    long getSqlResultCacheEntryMaxSize();
+
+    /**
+     * Memory budget in bytes of the server-wide cache of query results, zero disables the cache.
+     */
+    long getSqlResultCacheSize();
+
     int getSqlSortKeyMaxPages();
 
     long getSqlSortKeyPageSize();
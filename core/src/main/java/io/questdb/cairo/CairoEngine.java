@@ -35,7 +35,9 @@ import io.questdb.cairo.pool.WriterSource;
 import io.questdb.cairo.sql.ReaderOutOfDateException;
 import io.questdb.cairo.vm.api.MemoryMARW;
 import io.questdb.griffin.DatabaseSnapshotAgent;
+import io.questdb.griffin.MatViewRegistry;
 import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.cache.ResultCache;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.*;
@@ -60,6 +62,8 @@ public class CairoEngine implements Closeable, WriterSource {
     private final CairoConfiguration configuration;
     private final Metrics metrics;
     private final EngineMaintenanceJob engineMaintenanceJob;
+    private final ResultCache resultCache;
+    private final MatViewRegistry matViewRegistry = new MatViewRegistry();
     private final MessageBus messageBus;
     private final RingQueue<TelemetryTask> telemetryQueue;
     private final MPSequence telemetryPubSeq;
@@ -82,6 +86,7 @@ public class CairoEngine implements Closeable, WriterSource {
         this.writerPool = new WriterPool(configuration, messageBus, metrics);
         this.readerPool = new ReaderPool(configuration, messageBus);
         this.engineMaintenanceJob = new EngineMaintenanceJob(configuration);
+        this.resultCache = new ResultCache(configuration);
         if (configuration.getTelemetryConfiguration().getEnabled()) {
             this.telemetryQueue = new RingQueue<>(TelemetryTask::new, configuration.getTelemetryConfiguration().getQueueCapacity());
             this.telemetryPubSeq = new MPSequence(telemetryQueue.getCycle());
@@ -109,10 +114,12 @@ public class CairoEngine implements Closeable, WriterSource {
             close();
             throw e;
         }
+        matViewRegistry.scan(configuration);
     }
 
     @TestOnly
     public boolean clear() {
+        resultCache.clear();
         boolean b1 = readerPool.releaseAll();
         boolean b2 = writerPool.releaseAll();
         return b1 & b2;
@@ -122,6 +129,7 @@ public class CairoEngine implements Closeable, WriterSource {
     public void close() {
         Misc.free(writerPool);
         Misc.free(readerPool);
+        Misc.free(resultCache);
         freeTableId();
         Misc.free(messageBus);
     }
@@ -212,6 +220,14 @@ public class CairoEngine implements Closeable, WriterSource {
         return engineMaintenanceJob;
     }
 
+    public MatViewRegistry getMatViewRegistry() {
+        return matViewRegistry;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
     public MessageBus getMessageBus() {
         return messageBus;
     }
@@ -404,6 +420,8 @@ public class CairoEngine implements Closeable, WriterSource {
                     LOG.error().$("remove failed [tableName='").utf8(tableName).$("', error=").$(errno).$(']').$();
                     throw CairoException.instance(errno).put("Table remove failed");
                 }
+                metrics.removeTable(tableName);
+                matViewRegistry.remove(tableName);
                 return;
             } finally {
                 unlock(securityContext, tableName, null, false);
@@ -430,6 +448,8 @@ public class CairoEngine implements Closeable, WriterSource {
         if (null == lockedReason) {
             try {
                 rename0(path, tableName, otherPath, newName);
+                metrics.removeTable(tableName);
+                matViewRegistry.rename(tableName, newName);
             } finally {
                 unlock(securityContext, tableName, null, false);
             }
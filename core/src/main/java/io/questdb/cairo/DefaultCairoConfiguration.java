@@ -43,6 +43,7 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
     private final CharSequence root;
     private final CharSequence confRoot;
     private final CharSequence snapshotRoot;
+    private final CharSequence sqlCopyWorkRoot;
 
     private final TextConfiguration textConfiguration;
     private final DefaultTelemetryConfiguration telemetryConfiguration = new DefaultTelemetryConfiguration();
@@ -58,6 +59,7 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         this.confRoot = PropServerConfiguration.rootSubdir(root, PropServerConfiguration.CONFIG_DIRECTORY);
         this.textConfiguration = new DefaultTextConfiguration(Chars.toString(confRoot));
         this.snapshotRoot = PropServerConfiguration.rootSubdir(root, PropServerConfiguration.SNAPSHOT_DIRECTORY);
+        this.sqlCopyWorkRoot = PropServerConfiguration.rootSubdir(root, PropServerConfiguration.TMP_DIRECTORY);
         Rnd rnd = new Rnd(NanosecondClockImpl.INSTANCE.getTicks(), MicrosecondClockImpl.INSTANCE.getTicks());
         this.databaseIdLo = rnd.nextLong();
         this.databaseIdHi = rnd.nextLong();
@@ -123,6 +125,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getColumnUpdateQueueCapacity() {
+        return 64;
+    }
+
     @Override
     public long getCommitLag() {
         return 0;
@@ -283,6 +290,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 32;
     }
 
+    @Override
+    public long getMatViewRefreshInterval() {
+        return 1000;
+    }
+
     @Override
     public int getMaxSwapFileCount() {
         return 30;
@@ -475,6 +487,21 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024 * 1024;
     }
 
+    @Override
+    public long getSqlCopyParallelMinSize() {
+        return 64 * 1024 * 1024;
+    }
+
+    @Override
+    public int getSqlCopyQueueCapacity() {
+        return 32;
+    }
+
+    @Override
+    public CharSequence getSqlCopyWorkRoot() {
+        return sqlCopyWorkRoot;
+    }
+
     @Override
     public int getSqlDistinctTimestampKeyCapacity() {
         return 256;
@@ -615,6 +642,16 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1_000_000;
     }
 
+    @Override
+    public long getSqlResultCacheEntryMaxSize() {
+        return 4 * Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public long getSqlResultCacheSize() {
+        return 0;
+    }
+
     @Override
     public int getSqlSortKeyMaxPages() {
         return 128;
@@ -2375,7 +2375,7 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
         );
     }
 
-    private static void setNull(int columnType, long addr, long count) {
+    static void setNull(int columnType, long addr, long count) {
         switch (ColumnType.tagOf(columnType)) {
             case ColumnType.BOOLEAN:
             case ColumnType.BYTE:
@@ -475,6 +475,8 @@ public class O3PartitionJob extends AbstractQueueConsumerJob<O3PartitionTask> {
                     } else {
                         openColumnMode = OPEN_MID_PARTITION_FOR_MERGE;
                     }
+                    // the partition is copied in full: existing rows plus O3 rows of this partition
+                    tableWriter.o3AddMergedRows(srcDataMax + srcOooHi - srcOooLo + 1);
                 }
             } catch (Throwable e) {
                 LOG.error().$("process existing partition error [table=").$(tableWriter.getTableName())
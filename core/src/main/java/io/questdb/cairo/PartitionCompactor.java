@@ -0,0 +1,916 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.cairo.vm.api.MemoryMAR;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Rewrites partition into a new directory leaving out the rows removed by DELETE.
+ * Column files keep their name txn, column tops shrink by the number of removed rows
+ * that were above the top and symbol indexes are rebuilt from the rewritten data.
+ * <p>
+ * Partitions of tables with dedup keys are rewritten here too, when O3 rows replace
+ * committed rows. Such merge leaves out the replaced rows and materializes column tops.
+ */
+class PartitionCompactor implements Closeable {
+    private static final Log LOG = LogFactory.getLog(PartitionCompactor.class);
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final int mkDirMode;
+    private final int commitMode;
+    private final MemoryMR indexMem = Vm.getMRInstance();
+    private final MemoryMAR ddlMem = Vm.getMARInstance();
+    private final SymbolColumnIndexer indexer = new SymbolColumnIndexer();
+    private final LongList columnTops = new LongList();
+    // (fd, address, size) of source column data, fd is -1 when data is allocated
+    private final LongList sourceMappings = new LongList();
+    private final LongList keyAddresses = new LongList();
+    private long srcFixAddr;
+    private long srcVarAddr;
+    private long rowIdsLo;
+    private long rowIdsHi;
+    private long minTimestamp;
+    private long maxTimestamp;
+
+    PartitionCompactor(CairoConfiguration configuration) {
+        this.configuration = configuration;
+        this.ff = configuration.getFilesFacade();
+        this.mkDirMode = configuration.getMkDirMode();
+        this.commitMode = configuration.getCommitMode();
+    }
+
+    @Override
+    public void close() {
+        releaseSources();
+        Misc.free(indexMem);
+        Misc.free(ddlMem);
+        Misc.free(indexer);
+    }
+
+    /**
+     * Copies partition from srcPath to dstPath skipping removed rows.
+     *
+     * @param writer             table writer, source of metadata and column versions
+     * @param partitionTimestamp partition timestamp
+     * @param partitionSize      row count of the source partition
+     * @param rowIdsLo           address of the first removed row id, row ids are sorted, unique and belong to this partition
+     * @param rowIdsHi           address past the last removed row id
+     * @param srcPath            path to the source partition directory
+     * @param dstPath            path to the new partition directory, it is created by this method
+     * @return number of rows in the new partition
+     */
+    long compact(
+            TableWriter writer,
+            long partitionTimestamp,
+            long partitionSize,
+            long rowIdsLo,
+            long rowIdsHi,
+            Path srcPath,
+            Path dstPath
+    ) {
+        this.rowIdsLo = rowIdsLo;
+        this.rowIdsHi = rowIdsHi;
+        final long keptRowCount = partitionSize - ((rowIdsHi - rowIdsLo) >> 3);
+        assert keptRowCount > 0;
+
+        final TableWriterMetadata metadata = writer.getMetadata();
+        final int srcLen = srcPath.length();
+        final int dstLen = dstPath.length();
+        if (ff.mkdirs(dstPath.slash$(), mkDirMode) != 0) {
+            throw CairoException.instance(ff.errno()).put("could not create directory [path=").put(dstPath).put(']');
+        }
+        dstPath.trimTo(dstLen);
+        columnTops.setAll(metadata.getColumnCount(), -1);
+        try {
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                final int columnType = metadata.getColumnType(i);
+                if (columnType < 0) {
+                    continue;
+                }
+                final long columnTop = writer.getColumnTop(partitionTimestamp, i, -1);
+                if (columnTop < 0) {
+                    // column does not exist in this partition
+                    continue;
+                }
+
+                final CharSequence columnName = metadata.getColumnName(i);
+                final long columnNameTxn = writer.getColumnNameTxn(partitionTimestamp, i);
+                final long newColumnTop = columnTop - countRowsBelow(columnTop);
+                columnTops.setQuick(i, newColumnTop);
+
+                if (ColumnType.isVariableLength(columnType)) {
+                    compactVarColumn(srcPath, dstPath, columnName, columnNameTxn, columnTop, partitionSize, keptRowCount - newColumnTop);
+                } else {
+                    compactFixedColumn(
+                            srcPath,
+                            dstPath,
+                            columnName,
+                            columnNameTxn,
+                            ColumnType.pow2SizeOf(columnType),
+                            columnTop,
+                            partitionSize,
+                            keptRowCount - newColumnTop,
+                            i == metadata.getTimestampIndex()
+                    );
+                }
+                srcPath.trimTo(srcLen);
+                dstPath.trimTo(dstLen);
+
+                if (metadata.isColumnIndexed(i)) {
+                    indexColumn(dstPath, columnName, columnNameTxn, metadata.getIndexValueBlockCapacity(i), newColumnTop, keptRowCount);
+                }
+            }
+        } finally {
+            srcPath.trimTo(srcLen);
+            dstPath.trimTo(dstLen);
+        }
+        LOG.info().$("compacted [path=").$(dstPath).$(", removed=").$(partitionSize - keptRowCount).$(", kept=").$(keptRowCount).I$();
+        return keptRowCount;
+    }
+
+    /**
+     * @return column top in the compacted partition or -1 when column does not exist in the partition
+     */
+    long getColumnTop(int columnIndex) {
+        return columnTops.getQuick(columnIndex);
+    }
+
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * Finds committed rows of the partition, which are replaced by O3 rows. Committed row is
+     * replaced when O3 row has the same timestamp and the same values of dedup key columns.
+     *
+     * @param writer               table writer, source of metadata and column versions
+     * @param dedupKeyColumns      dedup key columns other than the designated timestamp
+     * @param partitionTimestamp   partition timestamp
+     * @param srcDataMax           committed row count of the partition
+     * @param srcDataTops          column tops of the partition by column index
+     * @param sortedTimestampsAddr sorted O3 timestamp index, O3 rows are unique by timestamp and dedup keys
+     * @param srcOooLo             first O3 row of the partition
+     * @param srcOooHi             last O3 row of the partition, inclusive
+     * @param o3Columns            O3 column memory in the order of sorted timestamp index
+     * @param srcPath              path to the partition directory
+     * @param replacedRows         receives row numbers of the replaced rows in ascending order
+     */
+    void findReplacedRows(
+            TableWriter writer,
+            IntList dedupKeyColumns,
+            long partitionTimestamp,
+            long srcDataMax,
+            LongList srcDataTops,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi,
+            ObjList<MemoryCARW> o3Columns,
+            Path srcPath,
+            LongList replacedRows
+    ) {
+        replacedRows.clear();
+        final TableWriterMetadata metadata = writer.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        try {
+            final long timestampAddr = mapFixedSource(
+                    srcPath,
+                    metadata.getColumnName(timestampIndex),
+                    writer.getColumnNameTxn(partitionTimestamp, timestampIndex),
+                    ColumnType.TIMESTAMP,
+                    0,
+                    srcDataMax
+            );
+            keyAddresses.clear();
+            for (int k = 0, n = dedupKeyColumns.size(); k < n; k++) {
+                final int columnIndex = dedupKeyColumns.getQuick(k);
+                keyAddresses.add(
+                        mapFixedSource(
+                                srcPath,
+                                metadata.getColumnName(columnIndex),
+                                writer.getColumnNameTxn(partitionTimestamp, columnIndex),
+                                metadata.getColumnType(columnIndex),
+                                srcDataTops.getQuick(columnIndex),
+                                srcDataMax
+                        )
+                );
+            }
+
+            for (long r = srcOooLo; r <= srcOooHi; r++) {
+                final long timestamp = Unsafe.getUnsafe().getLong(sortedTimestampsAddr + r * TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES);
+                long row = Vect.binarySearch64Bit(timestampAddr, timestamp, 0, srcDataMax - 1, BinarySearch.SCAN_UP);
+                if (row < 0) {
+                    continue;
+                }
+                for (; row < srcDataMax && Unsafe.getUnsafe().getLong(timestampAddr + (row << 3)) == timestamp; row++) {
+                    if (keysEqual(metadata, dedupKeyColumns, o3Columns, r, row)) {
+                        replacedRows.add(row);
+                    }
+                }
+            }
+        } finally {
+            releaseSources();
+        }
+        // O3 rows with the same timestamp can match committed rows in any order
+        replacedRows.sort();
+    }
+
+    /**
+     * Merges committed rows, except the replaced ones, and O3 rows into new partition directory.
+     * Committed rows go before O3 rows with the same timestamp. Columns are written in full,
+     * the new partition has no column tops.
+     *
+     * @param writer               table writer, source of metadata and column versions
+     * @param partitionTimestamp   partition timestamp
+     * @param srcDataMax           committed row count of the partition
+     * @param srcDataTops          column tops of the partition by column index
+     * @param replacedRows         row numbers of the committed rows to leave out, in ascending order
+     * @param sortedTimestampsAddr sorted O3 timestamp index
+     * @param srcOooLo             first O3 row of the partition
+     * @param srcOooHi             last O3 row of the partition, inclusive
+     * @param o3Columns            O3 column memory in the order of sorted timestamp index
+     * @param srcPath              path to the source partition directory
+     * @param dstPath              path to the new partition directory, it is created by this method
+     * @return number of rows in the new partition
+     */
+    long merge(
+            TableWriter writer,
+            long partitionTimestamp,
+            long srcDataMax,
+            LongList srcDataTops,
+            LongList replacedRows,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi,
+            ObjList<MemoryCARW> o3Columns,
+            Path srcPath,
+            Path dstPath
+    ) {
+        final TableWriterMetadata metadata = writer.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        final long mergedRowCount = srcDataMax - replacedRows.size() + srcOooHi - srcOooLo + 1;
+        final long mergeIndexSize = mergedRowCount * TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES;
+        final int dstLen = dstPath.length();
+        if (ff.mkdirs(dstPath.slash$(), mkDirMode) != 0) {
+            throw CairoException.instance(ff.errno()).put("could not create directory [path=").put(dstPath).put(']');
+        }
+        dstPath.trimTo(dstLen);
+        final long mergeIndexAddr = Unsafe.malloc(mergeIndexSize, MemoryTag.NATIVE_O3);
+        try {
+            final long timestampAddr = mapFixedSource(
+                    srcPath,
+                    metadata.getColumnName(timestampIndex),
+                    writer.getColumnNameTxn(partitionTimestamp, timestampIndex),
+                    ColumnType.TIMESTAMP,
+                    0,
+                    srcDataMax
+            );
+            createMergeIndex(timestampAddr, srcDataMax, replacedRows, sortedTimestampsAddr, srcOooLo, srcOooHi, mergeIndexAddr);
+            releaseSources();
+            minTimestamp = Unsafe.getUnsafe().getLong(mergeIndexAddr);
+            maxTimestamp = Unsafe.getUnsafe().getLong(mergeIndexAddr + mergeIndexSize - TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES);
+
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                final int columnType = metadata.getColumnType(i);
+                if (columnType < 0) {
+                    continue;
+                }
+                final CharSequence columnName = metadata.getColumnName(i);
+                final long columnNameTxn = writer.getColumnNameTxn(partitionTimestamp, i);
+                final long columnTop = srcDataTops.getQuick(i);
+                final int primaryIndex = TableWriter.getPrimaryColumnIndex(i);
+                if (ColumnType.isVariableLength(columnType)) {
+                    mapVarSource(srcPath, columnName, columnNameTxn, columnType, columnTop, srcDataMax);
+                    mergeVarColumn(
+                            dstPath,
+                            columnName,
+                            columnNameTxn,
+                            ColumnType.isString(columnType),
+                            o3Columns.getQuick(primaryIndex + 1).addressOf(0),
+                            o3Columns.getQuick(primaryIndex).addressOf(0),
+                            mergeIndexAddr,
+                            mergedRowCount
+                    );
+                } else {
+                    mergeFixedColumn(
+                            dstPath,
+                            columnName,
+                            columnNameTxn,
+                            ColumnType.pow2SizeOf(columnType),
+                            i == timestampIndex ? 0 : mapFixedSource(srcPath, columnName, columnNameTxn, columnType, columnTop, srcDataMax),
+                            o3Columns.getQuick(primaryIndex).addressOf(0),
+                            mergeIndexAddr,
+                            mergedRowCount,
+                            i == timestampIndex
+                    );
+                }
+                releaseSources();
+
+                if (metadata.isColumnIndexed(i)) {
+                    indexColumn(dstPath, columnName, columnNameTxn, metadata.getIndexValueBlockCapacity(i), 0, mergedRowCount);
+                }
+            }
+        } finally {
+            releaseSources();
+            Unsafe.free(mergeIndexAddr, mergeIndexSize, MemoryTag.NATIVE_O3);
+            dstPath.trimTo(dstLen);
+        }
+        LOG.info().$("merged [path=").$(dstPath).$(", replaced=").$(replacedRows.size()).$(", rows=").$(mergedRowCount).I$();
+        return mergedRowCount;
+    }
+
+    /**
+     * Orders key values consistently with {@link #keyValueEquals(int, long, long)}, all null symbols are equal.
+     */
+    static int keyValueCompare(int columnType, long addr1, long addr2) {
+        switch (ColumnType.pow2SizeOf(columnType)) {
+            case 0:
+                return Byte.compare(Unsafe.getUnsafe().getByte(addr1), Unsafe.getUnsafe().getByte(addr2));
+            case 1:
+                return Short.compare(Unsafe.getUnsafe().getShort(addr1), Unsafe.getUnsafe().getShort(addr2));
+            case 2:
+                int v1 = Unsafe.getUnsafe().getInt(addr1);
+                int v2 = Unsafe.getUnsafe().getInt(addr2);
+                if (ColumnType.isSymbol(columnType)) {
+                    v1 = Math.max(v1, -1);
+                    v2 = Math.max(v2, -1);
+                }
+                return Integer.compare(v1, v2);
+            case 3:
+                return Long.compare(Unsafe.getUnsafe().getLong(addr1), Unsafe.getUnsafe().getLong(addr2));
+            default:
+                for (int i = 0; i < 32; i += Long.BYTES) {
+                    final int cmp = Long.compare(Unsafe.getUnsafe().getLong(addr1 + i), Unsafe.getUnsafe().getLong(addr2 + i));
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                }
+                return 0;
+        }
+    }
+
+    /**
+     * Compares values of fixed size dedup key column. Negative symbol keys are all null.
+     */
+    static boolean keyValueEquals(int columnType, long addr1, long addr2) {
+        switch (ColumnType.pow2SizeOf(columnType)) {
+            case 0:
+                return Unsafe.getUnsafe().getByte(addr1) == Unsafe.getUnsafe().getByte(addr2);
+            case 1:
+                return Unsafe.getUnsafe().getShort(addr1) == Unsafe.getUnsafe().getShort(addr2);
+            case 2:
+                final int v1 = Unsafe.getUnsafe().getInt(addr1);
+                final int v2 = Unsafe.getUnsafe().getInt(addr2);
+                return v1 == v2 || (ColumnType.isSymbol(columnType) && v1 < 0 && v2 < 0);
+            case 3:
+                return Unsafe.getUnsafe().getLong(addr1) == Unsafe.getUnsafe().getLong(addr2);
+            default:
+                return Unsafe.getUnsafe().getLong(addr1) == Unsafe.getUnsafe().getLong(addr2)
+                        && Unsafe.getUnsafe().getLong(addr1 + 8) == Unsafe.getUnsafe().getLong(addr2 + 8)
+                        && Unsafe.getUnsafe().getLong(addr1 + 16) == Unsafe.getUnsafe().getLong(addr2 + 16)
+                        && Unsafe.getUnsafe().getLong(addr1 + 24) == Unsafe.getUnsafe().getLong(addr2 + 24);
+        }
+    }
+
+    private static void unmap(FilesFacade ff, long addr, long size) {
+        if (addr != 0) {
+            ff.munmap(addr, size, MemoryTag.MMAP_TABLE_WRITER);
+        }
+    }
+
+    private static void createMergeIndex(
+            long timestampAddr,
+            long srcDataMax,
+            LongList replacedRows,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi,
+            long mergeIndexAddr
+    ) {
+        final int replacedCount = replacedRows.size();
+        int replacedIndex = 0;
+        long dataRow = 0;
+        long o3Row = srcOooLo;
+        long dst = mergeIndexAddr;
+        while (true) {
+            while (replacedIndex < replacedCount && replacedRows.getQuick(replacedIndex) == dataRow) {
+                replacedIndex++;
+                dataRow++;
+            }
+
+            final boolean takeData;
+            if (dataRow < srcDataMax) {
+                takeData = o3Row > srcOooHi || Unsafe.getUnsafe().getLong(timestampAddr + (dataRow << 3))
+                        <= Unsafe.getUnsafe().getLong(sortedTimestampsAddr + o3Row * TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES);
+            } else if (o3Row <= srcOooHi) {
+                takeData = false;
+            } else {
+                break;
+            }
+
+            if (takeData) {
+                Unsafe.getUnsafe().putLong(dst, Unsafe.getUnsafe().getLong(timestampAddr + (dataRow << 3)));
+                Unsafe.getUnsafe().putLong(dst + Long.BYTES, dataRow | Long.MIN_VALUE);
+                dataRow++;
+            } else {
+                Unsafe.getUnsafe().putLong(dst, Unsafe.getUnsafe().getLong(sortedTimestampsAddr + o3Row * TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES));
+                Unsafe.getUnsafe().putLong(dst + Long.BYTES, o3Row);
+                o3Row++;
+            }
+            dst += TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES;
+        }
+    }
+
+    private long allocateSource(long size) {
+        final long addr = Unsafe.malloc(size, MemoryTag.NATIVE_O3);
+        sourceMappings.add(-1L, addr);
+        sourceMappings.add(size);
+        return addr;
+    }
+
+    private boolean keysEqual(TableWriterMetadata metadata, IntList dedupKeyColumns, ObjList<MemoryCARW> o3Columns, long o3Row, long dataRow) {
+        for (int k = 0, n = dedupKeyColumns.size(); k < n; k++) {
+            final int columnIndex = dedupKeyColumns.getQuick(k);
+            final int columnType = metadata.getColumnType(columnIndex);
+            final int shl = ColumnType.pow2SizeOf(columnType);
+            if (!keyValueEquals(
+                    columnType,
+                    o3Columns.getQuick(TableWriter.getPrimaryColumnIndex(columnIndex)).addressOf(o3Row << shl),
+                    keyAddresses.getQuick(k) + (dataRow << shl)
+            )) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps fixed size column of the source partition. Rows above column top are materialized as nulls.
+     *
+     * @return address of rowCount values
+     */
+    private long mapFixedSource(Path srcPath, CharSequence columnName, long columnNameTxn, int columnType, long columnTop, long rowCount) {
+        if (rowCount == 0) {
+            return 0;
+        }
+        final int shl = ColumnType.pow2SizeOf(columnType);
+        final int srcLen = srcPath.length();
+        final long top = Math.min(columnTop, rowCount);
+        if (top == 0) {
+            TableUtils.dFile(srcPath, columnName, columnNameTxn);
+            return mapSource(srcPath, srcLen, rowCount << shl);
+        }
+        final long addr = allocateSource(rowCount << shl);
+        O3OpenColumnJob.setNull(columnType, addr, top);
+        if (rowCount > top) {
+            final long size = (rowCount - top) << shl;
+            TableUtils.dFile(srcPath, columnName, columnNameTxn);
+            Vect.memcpy(addr + (top << shl), mapSource(srcPath, srcLen, size), size);
+        }
+        return addr;
+    }
+
+    private long mapSource(Path path, int plen, long size) {
+        long fd = -1;
+        try {
+            fd = TableUtils.openRO(ff, path, LOG);
+            final long addr = TableUtils.mapRO(ff, fd, size, MemoryTag.MMAP_TABLE_WRITER);
+            sourceMappings.add(fd, addr);
+            sourceMappings.add(size);
+            return addr;
+        } catch (Throwable e) {
+            if (fd != -1) {
+                ff.close(fd);
+            }
+            throw e;
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Maps variable size column of the source partition into srcFixAddr and srcVarAddr. Rows above
+     * column top are materialized as nulls.
+     */
+    private void mapVarSource(Path srcPath, CharSequence columnName, long columnNameTxn, int columnType, long columnTop, long rowCount) {
+        srcFixAddr = 0;
+        srcVarAddr = 0;
+        if (rowCount == 0) {
+            return;
+        }
+        final int srcLen = srcPath.length();
+        final long top = Math.min(columnTop, rowCount);
+        final long srcRowCount = rowCount - top;
+        long fixAddr = 0;
+        long varAddr = 0;
+        long varSize = 0;
+        if (srcRowCount > 0) {
+            TableUtils.iFile(srcPath, columnName, columnNameTxn);
+            fixAddr = mapSource(srcPath, srcLen, (srcRowCount + 1) << 3);
+            varSize = Unsafe.getUnsafe().getLong(fixAddr + (srcRowCount << 3));
+            if (varSize > 0) {
+                TableUtils.dFile(srcPath, columnName, columnNameTxn);
+                varAddr = mapSource(srcPath, srcLen, varSize);
+            }
+        }
+        if (top == 0) {
+            srcFixAddr = fixAddr;
+            srcVarAddr = varAddr;
+            return;
+        }
+
+        // null string is int length of -1, null binary is long length of -1
+        final long nullSize = ColumnType.isString(columnType) ? Integer.BYTES : Long.BYTES;
+        final long topSize = top * nullSize;
+        srcFixAddr = allocateSource((rowCount + 1) << 3);
+        srcVarAddr = allocateSource(topSize + varSize);
+        Vect.memset(srcVarAddr, topSize, -1);
+        for (long r = 0; r < top; r++) {
+            Unsafe.getUnsafe().putLong(srcFixAddr + (r << 3), r * nullSize);
+        }
+        if (srcRowCount > 0) {
+            Vect.memcpy(srcVarAddr + topSize, varAddr, varSize);
+            for (long r = 0; r <= srcRowCount; r++) {
+                Unsafe.getUnsafe().putLong(srcFixAddr + ((top + r) << 3), Unsafe.getUnsafe().getLong(fixAddr + (r << 3)) + topSize);
+            }
+        } else {
+            Unsafe.getUnsafe().putLong(srcFixAddr + (rowCount << 3), topSize);
+        }
+    }
+
+    private void mergeFixedColumn(
+            Path dstPath,
+            CharSequence columnName,
+            long columnNameTxn,
+            int shl,
+            long srcDataAddr,
+            long srcOooAddr,
+            long mergeIndexAddr,
+            long mergedRowCount,
+            boolean designatedTimestamp
+    ) {
+        final long dstSize = mergedRowCount << shl;
+        final int dstLen = dstPath.length();
+        long dstFd = -1;
+        long dstAddr = 0;
+        try {
+            dstFd = TableUtils.openRW(ff, TableUtils.dFile(dstPath, columnName, columnNameTxn), LOG, configuration.getWriterFileOpenOpts());
+            dstAddr = TableUtils.mapRW(ff, dstFd, dstSize, MemoryTag.MMAP_TABLE_WRITER);
+            if (designatedTimestamp) {
+                Vect.oooCopyIndex(mergeIndexAddr, mergedRowCount, dstAddr);
+            } else {
+                switch (shl) {
+                    case 0:
+                        Vect.mergeShuffle8Bit(srcDataAddr, srcOooAddr, dstAddr, mergeIndexAddr, mergedRowCount);
+                        break;
+                    case 1:
+                        Vect.mergeShuffle16Bit(srcDataAddr, srcOooAddr, dstAddr, mergeIndexAddr, mergedRowCount);
+                        break;
+                    case 2:
+                        Vect.mergeShuffle32Bit(srcDataAddr, srcOooAddr, dstAddr, mergeIndexAddr, mergedRowCount);
+                        break;
+                    case 3:
+                        Vect.mergeShuffle64Bit(srcDataAddr, srcOooAddr, dstAddr, mergeIndexAddr, mergedRowCount);
+                        break;
+                    default:
+                        Vect.mergeShuffle256Bit(srcDataAddr, srcOooAddr, dstAddr, mergeIndexAddr, mergedRowCount);
+                        break;
+                }
+            }
+            if (commitMode != CommitMode.NOSYNC) {
+                ff.msync(dstAddr, dstSize, commitMode == CommitMode.ASYNC);
+            }
+        } finally {
+            dstPath.trimTo(dstLen);
+            unmap(ff, dstAddr, dstSize);
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+        }
+    }
+
+    private void mergeVarColumn(
+            Path dstPath,
+            CharSequence columnName,
+            long columnNameTxn,
+            boolean string,
+            long srcOooFixAddr,
+            long srcOooVarAddr,
+            long mergeIndexAddr,
+            long mergedRowCount
+    ) {
+        // exact size of merged values, replaced values are left out
+        long dstVarSize = 0;
+        for (long l = 0; l < mergedRowCount; l++) {
+            final long row = Unsafe.getUnsafe().getLong(mergeIndexAddr + l * TableWriter.TIMESTAMP_MERGE_ENTRY_BYTES + Long.BYTES);
+            final long valueAddr = row < 0
+                    ? srcVarAddr + Unsafe.getUnsafe().getLong(srcFixAddr + ((row & Long.MAX_VALUE) << 3))
+                    : srcOooVarAddr + Unsafe.getUnsafe().getLong(srcOooFixAddr + (row << 3));
+            if (string) {
+                dstVarSize += Integer.BYTES + Math.max(Unsafe.getUnsafe().getInt(valueAddr), 0) * 2L;
+            } else {
+                dstVarSize += Long.BYTES + Math.max(Unsafe.getUnsafe().getLong(valueAddr), 0);
+            }
+        }
+
+        final long dstFixSize = (mergedRowCount + 1) << 3;
+        final int dstLen = dstPath.length();
+        long dstFixFd = -1;
+        long dstVarFd = -1;
+        long dstFixAddr = 0;
+        long dstVarAddr = 0;
+        try {
+            dstFixFd = TableUtils.openRW(ff, TableUtils.iFile(dstPath, columnName, columnNameTxn), LOG, configuration.getWriterFileOpenOpts());
+            dstVarFd = TableUtils.openRW(ff, TableUtils.dFile(dstPath.trimTo(dstLen), columnName, columnNameTxn), LOG, configuration.getWriterFileOpenOpts());
+            dstFixAddr = TableUtils.mapRW(ff, dstFixFd, dstFixSize, MemoryTag.MMAP_TABLE_WRITER);
+            dstVarAddr = TableUtils.mapRW(ff, dstVarFd, dstVarSize, MemoryTag.MMAP_TABLE_WRITER);
+            if (string) {
+                Vect.oooMergeCopyStrColumn(mergeIndexAddr, mergedRowCount, srcFixAddr, srcVarAddr, srcOooFixAddr, srcOooVarAddr, dstFixAddr, dstVarAddr, 0);
+            } else {
+                Vect.oooMergeCopyBinColumn(mergeIndexAddr, mergedRowCount, srcFixAddr, srcVarAddr, srcOooFixAddr, srcOooVarAddr, dstFixAddr, dstVarAddr, 0);
+            }
+            Unsafe.getUnsafe().putLong(dstFixAddr + (mergedRowCount << 3), dstVarSize);
+
+            if (commitMode != CommitMode.NOSYNC) {
+                final boolean async = commitMode == CommitMode.ASYNC;
+                ff.msync(dstFixAddr, dstFixSize, async);
+                ff.msync(dstVarAddr, dstVarSize, async);
+            }
+        } finally {
+            dstPath.trimTo(dstLen);
+            unmap(ff, dstFixAddr, dstFixSize);
+            unmap(ff, dstVarAddr, dstVarSize);
+            if (dstFixFd != -1) {
+                ff.close(dstFixFd);
+            }
+            if (dstVarFd != -1) {
+                ff.close(dstVarFd);
+            }
+        }
+    }
+
+    private void releaseSources() {
+        for (int i = 0, n = sourceMappings.size(); i < n; i += 3) {
+            final long fd = sourceMappings.getQuick(i);
+            if (fd == -1) {
+                Unsafe.free(sourceMappings.getQuick(i + 1), sourceMappings.getQuick(i + 2), MemoryTag.NATIVE_O3);
+            } else {
+                unmap(ff, sourceMappings.getQuick(i + 1), sourceMappings.getQuick(i + 2));
+                ff.close(fd);
+            }
+        }
+        sourceMappings.clear();
+    }
+
+    private void compactFixedColumn(
+            Path srcPath,
+            Path dstPath,
+            CharSequence columnName,
+            long columnNameTxn,
+            int shl,
+            long columnTop,
+            long partitionSize,
+            long dstRowCount,
+            boolean designatedTimestamp
+    ) {
+        final long srcSize = (partitionSize - columnTop) << shl;
+        final long dstSize = dstRowCount << shl;
+        final int srcLen = srcPath.length();
+        final int dstLen = dstPath.length();
+        long srcFd = -1;
+        long dstFd = -1;
+        long srcAddr = 0;
+        long dstAddr = 0;
+        try {
+            dstFd = TableUtils.openRW(ff, TableUtils.dFile(dstPath, columnName, columnNameTxn), LOG, configuration.getWriterFileOpenOpts());
+            if (dstSize == 0) {
+                return;
+            }
+            srcFd = TableUtils.openRO(ff, TableUtils.dFile(srcPath, columnName, columnNameTxn), LOG);
+            srcAddr = TableUtils.mapRO(ff, srcFd, srcSize, MemoryTag.MMAP_TABLE_WRITER);
+            dstAddr = TableUtils.mapRW(ff, dstFd, dstSize, MemoryTag.MMAP_TABLE_WRITER);
+
+            long dst = dstAddr;
+            long lo = columnTop;
+            for (long p = firstRowIdAtOrAbove(columnTop); p < rowIdsHi; p += Long.BYTES) {
+                final long rowId = Rows.toLocalRowID(Unsafe.getUnsafe().getLong(p));
+                final long len = (rowId - lo) << shl;
+                Vect.memcpy(dst, srcAddr + ((lo - columnTop) << shl), len);
+                dst += len;
+                lo = rowId + 1;
+            }
+            Vect.memcpy(dst, srcAddr + ((lo - columnTop) << shl), (partitionSize - lo) << shl);
+            assert dst + ((partitionSize - lo) << shl) == dstAddr + dstSize;
+
+            if (designatedTimestamp) {
+                minTimestamp = Unsafe.getUnsafe().getLong(dstAddr);
+                maxTimestamp = Unsafe.getUnsafe().getLong(dstAddr + dstSize - Long.BYTES);
+            }
+            if (commitMode != CommitMode.NOSYNC) {
+                ff.msync(dstAddr, dstSize, commitMode == CommitMode.ASYNC);
+            }
+        } finally {
+            srcPath.trimTo(srcLen);
+            dstPath.trimTo(dstLen);
+            unmap(ff, srcAddr, srcSize);
+            unmap(ff, dstAddr, dstSize);
+            if (srcFd != -1) {
+                ff.close(srcFd);
+            }
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+        }
+    }
+
+    private void compactVarColumn(
+            Path srcPath,
+            Path dstPath,
+            CharSequence columnName,
+            long columnNameTxn,
+            long columnTop,
+            long partitionSize,
+            long dstRowCount
+    ) {
+        final long srcRowCount = partitionSize - columnTop;
+        final long srcIndexSize = (srcRowCount + 1) << 3;
+        final long dstIndexSize = (dstRowCount + 1) << 3;
+        final int srcLen = srcPath.length();
+        final int dstLen = dstPath.length();
+        long srcIndexFd = -1;
+        long srcDataFd = -1;
+        long dstIndexFd = -1;
+        long dstDataFd = -1;
+        long srcIndexAddr = 0;
+        long srcDataAddr = 0;
+        long dstIndexAddr = 0;
+        long dstDataAddr = 0;
+        long srcDataSize = 0;
+        long dstDataSize = 0;
+        try {
+            dstIndexFd = TableUtils.openRW(ff, TableUtils.iFile(dstPath, columnName, columnNameTxn), LOG, configuration.getWriterFileOpenOpts());
+            dstDataFd = TableUtils.openRW(ff, TableUtils.dFile(dstPath.trimTo(dstLen), columnName, columnNameTxn), LOG, configuration.getWriterFileOpenOpts());
+            dstIndexAddr = TableUtils.mapRW(ff, dstIndexFd, dstIndexSize, MemoryTag.MMAP_TABLE_WRITER);
+            if (dstRowCount > 0) {
+                srcIndexFd = TableUtils.openRO(ff, TableUtils.iFile(srcPath, columnName, columnNameTxn), LOG);
+                srcDataFd = TableUtils.openRO(ff, TableUtils.dFile(srcPath.trimTo(srcLen), columnName, columnNameTxn), LOG);
+                srcIndexAddr = TableUtils.mapRO(ff, srcIndexFd, srcIndexSize, MemoryTag.MMAP_TABLE_WRITER);
+                srcDataSize = Unsafe.getUnsafe().getLong(srcIndexAddr + (srcRowCount << 3));
+                if (srcDataSize > 0) {
+                    srcDataAddr = TableUtils.mapRO(ff, srcDataFd, srcDataSize, MemoryTag.MMAP_TABLE_WRITER);
+                    // kept values cannot take more space than all values did
+                    dstDataAddr = TableUtils.mapRW(ff, dstDataFd, srcDataSize, MemoryTag.MMAP_TABLE_WRITER);
+                }
+
+                long dstIndex = dstIndexAddr;
+                long lo = columnTop;
+                for (long p = firstRowIdAtOrAbove(columnTop); p < rowIdsHi; p += Long.BYTES) {
+                    final long rowId = Rows.toLocalRowID(Unsafe.getUnsafe().getLong(p));
+                    dstIndex = copyVarRange(srcIndexAddr, srcDataAddr, dstIndex, dstDataAddr, dstDataSize, lo - columnTop, rowId - columnTop);
+                    dstDataSize = Unsafe.getUnsafe().getLong(dstIndex);
+                    lo = rowId + 1;
+                }
+                dstIndex = copyVarRange(srcIndexAddr, srcDataAddr, dstIndex, dstDataAddr, dstDataSize, lo - columnTop, srcRowCount);
+                dstDataSize = Unsafe.getUnsafe().getLong(dstIndex);
+                assert dstIndex == dstIndexAddr + dstIndexSize - Long.BYTES;
+            } else {
+                Unsafe.getUnsafe().putLong(dstIndexAddr, 0);
+            }
+
+            if (commitMode != CommitMode.NOSYNC) {
+                final boolean async = commitMode == CommitMode.ASYNC;
+                ff.msync(dstIndexAddr, dstIndexSize, async);
+                if (dstDataSize > 0) {
+                    ff.msync(dstDataAddr, dstDataSize, async);
+                }
+            }
+        } finally {
+            srcPath.trimTo(srcLen);
+            dstPath.trimTo(dstLen);
+            unmap(ff, srcIndexAddr, srcIndexSize);
+            unmap(ff, srcDataAddr, srcDataSize);
+            unmap(ff, dstIndexAddr, dstIndexSize);
+            unmap(ff, dstDataAddr, srcDataSize);
+            if (srcIndexFd != -1) {
+                ff.close(srcIndexFd);
+            }
+            if (srcDataFd != -1) {
+                ff.close(srcDataFd);
+            }
+            if (dstIndexFd != -1) {
+                ff.close(dstIndexFd);
+            }
+            if (dstDataFd != -1) {
+                // trim file to the size of kept values
+                ff.truncate(dstDataFd, dstDataSize);
+                ff.close(dstDataFd);
+            }
+        }
+    }
+
+    /**
+     * Copies values in [lo, hi) column rows, data offsets are rebased onto the destination data size.
+     *
+     * @return address of the index entry after the last copied value, it holds the new destination data size
+     */
+    private static long copyVarRange(
+            long srcIndexAddr,
+            long srcDataAddr,
+            long dstIndex,
+            long dstDataAddr,
+            long dstDataSize,
+            long lo,
+            long hi
+    ) {
+        final long srcOffsetLo = Unsafe.getUnsafe().getLong(srcIndexAddr + (lo << 3));
+        final long srcOffsetHi = Unsafe.getUnsafe().getLong(srcIndexAddr + (hi << 3));
+        Vect.memcpy(dstDataAddr + dstDataSize, srcDataAddr + srcOffsetLo, srcOffsetHi - srcOffsetLo);
+        final long shift = dstDataSize - srcOffsetLo;
+        for (long r = lo; r < hi; r++) {
+            Unsafe.getUnsafe().putLong(dstIndex, Unsafe.getUnsafe().getLong(srcIndexAddr + (r << 3)) + shift);
+            dstIndex += Long.BYTES;
+        }
+        Unsafe.getUnsafe().putLong(dstIndex, srcOffsetHi + shift);
+        return dstIndex;
+    }
+
+    private long countRowsBelow(long row) {
+        return (firstRowIdAtOrAbove(row) - rowIdsLo) >> 3;
+    }
+
+    private void createIndexFiles(Path path, CharSequence columnName, long columnNameTxn, int indexValueBlockCapacity) {
+        final int plen = path.length();
+        try {
+            try {
+                ddlMem.smallFile(ff, BitmapIndexUtils.keyFileName(path, columnName, columnNameTxn), MemoryTag.MMAP_TABLE_WRITER);
+                BitmapIndexWriter.initKeyMemory(ddlMem, indexValueBlockCapacity);
+            } finally {
+                ddlMem.close();
+            }
+            if (!ff.touch(BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName, columnNameTxn))) {
+                throw CairoException.instance(ff.errno()).put("could not create index [name=").put(path).put(']');
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    private long firstRowIdAtOrAbove(long row) {
+        long p = rowIdsLo;
+        while (p < rowIdsHi && Rows.toLocalRowID(Unsafe.getUnsafe().getLong(p)) < row) {
+            p += Long.BYTES;
+        }
+        return p;
+    }
+
+    private void indexColumn(Path path, CharSequence columnName, long columnNameTxn, int indexValueBlockCapacity, long columnTop, long rowCount) {
+        createIndexFiles(path, columnName, columnNameTxn, indexValueBlockCapacity);
+        if (rowCount > columnTop) {
+            final int plen = path.length();
+            try {
+                final long columnSize = (rowCount - columnTop) << ColumnType.pow2SizeOf(ColumnType.INT);
+                indexMem.of(ff, TableUtils.dFile(path, columnName, columnNameTxn), columnSize, columnSize, MemoryTag.MMAP_TABLE_WRITER);
+                indexer.configureWriter(configuration, path.trimTo(plen), columnName, columnNameTxn, columnTop);
+                indexer.index(indexMem, columnTop, rowCount);
+            } finally {
+                indexer.clear();
+                indexMem.close();
+                path.trimTo(plen);
+            }
+        }
+    }
+}
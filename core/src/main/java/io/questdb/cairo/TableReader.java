@@ -76,6 +76,10 @@ public class TableReader implements Closeable, SymbolTableSource {
     private long txn = TableUtils.INITIAL_TXN;
     private long tempMem8b = Unsafe.malloc(8, MemoryTag.NATIVE_DEFAULT);
     private boolean txnAcquired = false;
+    // partition table and truncate versions the open partitions are reconciled with,
+    // txFile can be ahead of them when goPassive() loads it to check for purge
+    private long partitionTableVersion;
+    private long truncateVersion;
 
     public TableReader(CairoConfiguration configuration, CharSequence tableName) {
         this(configuration, tableName, null);
@@ -106,6 +110,8 @@ public class TableReader implements Closeable, SymbolTableSource {
             reloadSlow(false);
             openSymbolMaps();
             partitionCount = txFile.getPartitionCount();
+            partitionTableVersion = txFile.getPartitionTableVersion();
+            truncateVersion = txFile.getTruncateVersion();
             partitionDirFormatMethod = PartitionBy.getPartitionDirFormatMethod(partitionBy);
             partitionFloorMethod = PartitionBy.getPartitionFloorMethod(partitionBy);
 
@@ -296,6 +302,10 @@ public class TableReader implements Closeable, SymbolTableSource {
         return txFile.getTransientRowCount();
     }
 
+    public long getTxn() {
+        return txn;
+    }
+
     public long getTxnStructureVersion() {
         return txFile.getStructureVersion();
     }
@@ -458,13 +468,13 @@ public class TableReader implements Closeable, SymbolTableSource {
         if (acquireTxn()) {
             return false;
         }
-        final long prevPartitionVersion = this.txFile.getPartitionTableVersion();
-        final long prevTruncateVersion = this.txFile.getTruncateVersion();
         try {
             reloadSlow(true);
             // partition reload will apply truncate if necessary
             // applyTruncate for non-partitioned tables only
-            reconcileOpenPartitions(prevPartitionVersion, prevTruncateVersion);
+            reconcileOpenPartitions(partitionTableVersion, truncateVersion);
+            partitionTableVersion = txFile.getPartitionTableVersion();
+            truncateVersion = txFile.getTruncateVersion();
             return true;
         } catch (Throwable e) {
             releaseTxn();
@@ -510,7 +520,6 @@ public class TableReader implements Closeable, SymbolTableSource {
 
     private void checkSchedulePurgeO3Partitions() {
         long txnLocks = txnScoreboard.getActiveReaderCount(txn);
-        long partitionTableVersion = txFile.getPartitionTableVersion();
         if (txnLocks == 0 && txFile.unsafeLoadAll() && txFile.getPartitionTableVersion() > partitionTableVersion) {
             // Last lock for this txn is released and this is not latest txn number
             // Schedule a job to clean up partition versions this reader may hold
@@ -734,10 +743,6 @@ public class TableReader implements Closeable, SymbolTableSource {
         return openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_SIZE);
     }
 
-    long getTxn() {
-        return txn;
-    }
-
     TxnScoreboard getTxnScoreboard() {
         return txnScoreboard;
     }
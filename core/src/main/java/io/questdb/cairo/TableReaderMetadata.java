@@ -192,6 +192,15 @@ public class TableReaderMetadata extends BaseRecordMetadata implements Closeable
         return maxUncommittedRows;
     }
 
+    public boolean hasDedupKeys() {
+        for (int i = 0, n = metaMem.getInt(TableUtils.META_OFFSET_COUNT); i < n; i++) {
+            if (TableUtils.getColumnType(metaMem, i) > 0 && TableUtils.isDedupKey(metaMem, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int getPartitionBy() {
         return partitionBy;
     }
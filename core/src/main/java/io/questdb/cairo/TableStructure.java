@@ -39,6 +39,14 @@ public interface TableStructure {
 
     boolean isSequential(int columnIndex);
 
+    /**
+     * @return true when column is part of the table's deduplication key, the designated timestamp
+     * of a deduplicating table is always part of the key
+     */
+    default boolean isDedupKey(int columnIndex) {
+        return false;
+    }
+
     int getPartitionBy();
 
     boolean getSymbolCacheFlag(int columnIndex);
@@ -27,8 +27,12 @@ package io.questdb.cairo;
 import io.questdb.MessageBus;
 import io.questdb.MessageBusImpl;
 import io.questdb.Metrics;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
 import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.StaticSymbolTable;
 import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.sql.SymbolTableSource;
 import io.questdb.cairo.vm.MemoryFCRImpl;
 import io.questdb.cairo.vm.MemoryFMCRImpl;
 import io.questdb.cairo.vm.NullMapWriter;
@@ -43,6 +47,7 @@ import io.questdb.log.LogRecord;
 import io.questdb.mp.*;
 import io.questdb.std.*;
 import io.questdb.std.datetime.DateFormat;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
 import io.questdb.std.datetime.microtime.Timestamps;
 import io.questdb.std.str.LPSZ;
 import io.questdb.std.str.Path;
@@ -82,6 +87,7 @@ public class TableWriter implements Closeable {
     private final Path path;
     private final Path other;
     private final LongList rowValueIsNotNull = new LongList();
+    private final ObjList<IntList> pageFrameSymbolKeys = new ObjList<>();
     private final Row regularRow = new RowImpl();
     private final int rootLen;
     private final MemoryMR metaMem;
@@ -123,9 +129,18 @@ public class TableWriter implements Closeable {
     private final SOUnboundedCountDownLatch o3DoneLatch = new SOUnboundedCountDownLatch();
     private final AtomicLong o3PartitionUpdRemaining = new AtomicLong();
     private final AtomicInteger o3ErrorCount = new AtomicInteger();
+    // rows written by partition jobs into partitions that had to be copied to merge O3 data
+    private final AtomicLong o3MergedRowCount = new AtomicLong();
     private final MemoryMARW todoMem = Vm.getMARWInstance();
     private final TxWriter txWriter;
     private final LongList o3PartitionRemoveCandidates = new LongList();
+    // partition timestamp, partition name txn, kept row count, min and max timestamp of the kept rows
+    private final LongList compactedPartitions = new LongList();
+    private final LongList compactedColumnTops = new LongList();
+    // dedup key columns other than designated timestamp
+    private final IntList dedupKeyColumns = new IntList();
+    private final LongList dedupReplacedRows = new LongList();
+    private final LongList dedupColumnTops = new LongList();
     private final ObjectPool<O3MutableAtomicInteger> o3ColumnCounters = new ObjectPool<>(O3MutableAtomicInteger::new, 64);
     private final ObjectPool<O3Basket> o3BasketPool = new ObjectPool<>(O3Basket::new, 64);
     private final TxnScoreboard txnScoreboard;
@@ -152,6 +167,7 @@ public class TableWriter implements Closeable {
     private final MPSequence commandPubSeq;
     private Row row = regularRow;
     private long todoTxn;
+    private PartitionCompactor partitionCompactor;
     private MemoryMAT o3TimestampMem;
     private final O3ColumnUpdateMethod o3MoveLagRef = this::o3MoveLag0;
     private MemoryARW o3TimestampMemCpy;
@@ -173,6 +189,7 @@ public class TableWriter implements Closeable {
     private int indexCount;
     private boolean performRecovery;
     private boolean distressed = false;
+    private boolean dedup;
     private LifecycleManager lifecycleManager;
     private String designatedTimestampColumnName;
     private long o3RowCount;
@@ -309,6 +326,7 @@ public class TableWriter implements Closeable {
             this.commitInterval = calculateCommitInterval();
 
             configureColumnMemory();
+            configureDedupKeys();
             configureTimestampSetter();
             this.appendTimestampSetter = timestampSetter;
             configureAppendPosition();
@@ -342,6 +360,22 @@ public class TableWriter implements Closeable {
         return Unsafe.getUnsafe().getLong(timestampIndex + indexRow * 16);
     }
 
+    private static long getTimestampIndexRow(long timestampIndex, long indexRow) {
+        return Unsafe.getUnsafe().getLong(timestampIndex + indexRow * 16 + Long.BYTES);
+    }
+
+    private static void setTimestampIndexRow(long timestampIndex, long indexRow, long row) {
+        Unsafe.getUnsafe().putLong(timestampIndex + indexRow * 16 + Long.BYTES, row);
+    }
+
+    private static boolean o3WrittenAfter(long row1, long row2, long movedRowLo) {
+        if ((row1 < movedRowLo) == (row2 < movedRowLo)) {
+            return row1 > row2;
+        }
+        // rows moved from the last partition precede O3 rows
+        return row1 < movedRowLo;
+    }
+
     public void addColumn(CharSequence name, int type) {
         addColumn(name, type, configuration.getDefaultSymbolCapacity(), configuration.getDefaultSymbolCacheFlag(), false, 0, false);
     }
@@ -579,6 +613,45 @@ public class TableWriter implements Closeable {
         LOG.info().$("ADDED index to '").utf8(columnName).$('[').$(ColumnType.nameOf(existingType)).$("]' to ").$(path).$();
     }
 
+    /**
+     * Appends all rows of the page frame cursor, which must have the same columns as this
+     * table, in the same order and of the same types. The table must not have dropped columns
+     * and symbol tables of the cursor must be static.
+     * <p>
+     * Rows that are in timestamp order and not older than rows already in the table are copied
+     * column by column, a block of rows per partition. Remaining rows are appended one by one
+     * and end up in the O3 path.
+     *
+     * @param cursor page frame cursor positioned at the top
+     * @return number of appended rows
+     */
+    public long appendPageFrames(PageFrameCursor cursor) {
+        rowCancel();
+        for (int i = 0; i < columnCount; i++) {
+            if (ColumnType.isSymbol(metadata.getColumnType(i))) {
+                IntList keys = pageFrameSymbolKeys.getQuiet(i);
+                if (keys == null) {
+                    keys = new IntList();
+                    pageFrameSymbolKeys.extendAndSet(i, keys);
+                }
+                // source keys are translated lazily, -1 marks keys not seen yet
+                keys.setAll(((StaticSymbolTable) cursor.getSymbolTable(i)).getSymbolCount(), -1);
+            }
+        }
+
+        long rowCount = 0;
+        PageFrame frame;
+        while ((frame = cursor.next()) != null) {
+            final long frameRowCount = frame.getPartitionHi() - frame.getPartitionLo();
+            long lo = 0;
+            while (lo < frameRowCount) {
+                lo = appendPageFrameBlock(frame, cursor, lo, frameRowCount);
+            }
+            rowCount += frameRowCount;
+        }
+        return rowCount;
+    }
+
     public int attachPartition(long timestamp) {
         // Partitioned table must have a timestamp
         // SQL compiler will check that table is partitioned
@@ -719,6 +792,23 @@ public class TableWriter implements Closeable {
         return columnVersionWriter.getColumnNameTxn(partitionTimestamp, columnIndex);
     }
 
+    public long getColumnTop(long partitionTimestamp, int columnIndex, long defaultValue) {
+        // Check if there is explicit record for this partitionTimestamp / columnIndex combination
+        int recordIndex = columnVersionWriter.getRecordIndex(partitionTimestamp, columnIndex);
+        if (recordIndex > -1L) {
+            return columnVersionWriter.getColumnTopByIndex(recordIndex);
+        }
+
+        // Check if column has been already added before this partition
+        long columnTopDefaultPartition = columnVersionWriter.getColumnTopPartitionTimestamp(columnIndex);
+        if (columnTopDefaultPartition <= partitionTimestamp) {
+            return 0;
+        }
+
+        // This column does not exist in the partition
+        return defaultValue;
+    }
+
     public long getCommitInterval() {
         return commitInterval;
     }
@@ -751,6 +841,10 @@ public class TableWriter implements Closeable {
         return txWriter.getPartitionCount();
     }
 
+    public long getPartitionNameTxn(int partitionIndex) {
+        return txWriter.getPartitionNameTxn(partitionIndex);
+    }
+
     public long getPartitionTimestamp(int partitionIndex) {
         return txWriter.getPartitionTimestamp(partitionIndex);
     }
@@ -802,6 +896,10 @@ public class TableWriter implements Closeable {
         return txWriter != null && (txWriter.inTransaction() || hasO3());
     }
 
+    public boolean isDedup() {
+        return dedup;
+    }
+
     public boolean isOpen() {
         return tempMem16b != 0;
     }
@@ -825,8 +923,9 @@ public class TableWriter implements Closeable {
 
             default: // switch partition
                 bumpMasterRef();
-                if (timestamp > partitionTimestampHi || timestamp < txWriter.getMaxTimestamp()) {
-                    if (timestamp < txWriter.getMaxTimestamp()) {
+                if (timestamp > partitionTimestampHi || timestamp <= txWriter.getMaxTimestamp()) {
+                    // with dedup keys rows sharing max timestamp can replace each other, which is done by O3 commit
+                    if (timestamp < txWriter.getMaxTimestamp() || (dedup && timestamp == txWriter.getMaxTimestamp())) {
                         return newRowO3(timestamp);
                     }
 
@@ -869,6 +968,10 @@ public class TableWriter implements Closeable {
         o3ErrorCount.incrementAndGet();
     }
 
+    public void o3AddMergedRows(long rowCount) {
+        o3MergedRowCount.addAndGet(rowCount);
+    }
+
     public void processCommandAsync(WriteToQueue<TableWriterTask> writeFunc) {
         while (true) {
             long seq = commandPubSeq.next();
@@ -919,6 +1022,10 @@ public class TableWriter implements Closeable {
             throw CairoException.instance(0).put("Cannot remove timestamp from partitioned table");
         }
 
+        if (isDedupKey(metaMem, index)) {
+            throw CairoException.instance(0).put("cannot remove dedup key column [column=").put(name).put(']');
+        }
+
         commit();
 
         final CharSequence timestampColumnName = timestampIndex != -1 ? metadata.getColumnName(timestampIndex) : null;
@@ -1036,6 +1143,104 @@ public class TableWriter implements Closeable {
         }
     }
 
+    /**
+     * Removes rows from partitioned table. Partitions that lose all their rows are detached, other
+     * affected partitions are rewritten without the removed rows into a new partition version.
+     * Readers of the old versions keep consistent view of the data, old versions are purged once
+     * they are no longer read. Removing all rows truncates the table.
+     *
+     * @param rowIds row ids as produced by reader of the latest table version, in ascending order and without duplicates
+     * @return number of removed rows
+     */
+    public long removeRows(DirectLongList rowIds) {
+        checkDistressed();
+        if (!PartitionBy.isPartitioned(partitionBy)) {
+            throw CairoException.instance(0).put("cannot remove rows from non-partitioned table [table=").put(tableName).put(']');
+        }
+        commit();
+
+        final long rowCount = rowIds.size();
+        if (rowCount == 0) {
+            return 0;
+        }
+        if (rowCount == txWriter.getRowCount()) {
+            truncate();
+            return rowCount;
+        }
+
+        compactPartitions(rowIds);
+
+        final long lastPartitionTimestamp = txWriter.getLastPartitionTimestamp();
+        final long minTimestamp = txWriter.getMinTimestamp();
+        final long maxTimestamp = txWriter.getMaxTimestamp();
+        final int n = compactedPartitions.size();
+        final boolean activePartitionAffected = compactedPartitions.getQuick(n - 5) == lastPartitionTimestamp;
+        boolean partitionsRemoved = false;
+        try {
+            if (activePartitionAffected) {
+                closeActivePartition(false);
+            }
+
+            txWriter.beginPartitionSizeUpdate();
+            for (int i = 0; i < n; i += 5) {
+                final long partitionTimestamp = compactedPartitions.getQuick(i);
+                final long keptRowCount = compactedPartitions.getQuick(i + 2);
+                if (keptRowCount == 0) {
+                    txWriter.removeAttachedPartitions(partitionTimestamp);
+                    partitionsRemoved = true;
+                } else {
+                    final int index = txWriter.findAttachedPartitionIndexByLoTimestamp(partitionTimestamp);
+                    txWriter.updatePartitionSizeByIndexAndTxn(index, keptRowCount);
+                    txWriter.bumpPartitionTableVersion();
+                    final int topsLo = (i / 5) * columnCount;
+                    for (int c = 0; c < columnCount; c++) {
+                        final long columnTop = compactedColumnTops.getQuick(topsLo + c);
+                        if (columnTop > -1 && columnTop != getColumnTop(partitionTimestamp, c, -1)) {
+                            columnVersionWriter.upsertColumnTop(partitionTimestamp, c, columnTop);
+                        }
+                    }
+                }
+                o3PartitionRemoveCandidates.add(partitionTimestamp, compactedPartitions.getQuick(i + 1));
+            }
+
+            final long firstPartitionTimestamp = txWriter.getPartitionTimestamp(0);
+            long nextMinTimestamp = compactedPartitionTimestamp(firstPartitionTimestamp, 3);
+            if (nextMinTimestamp == Long.MIN_VALUE) {
+                nextMinTimestamp = firstPartitionTimestamp == getPartitionLo(minTimestamp) ? minTimestamp : readMinTimestamp(firstPartitionTimestamp);
+            }
+            final int lastIndex = txWriter.getPartitionCount() - 1;
+            final long nextLastPartitionTimestamp = txWriter.getPartitionTimestamp(lastIndex);
+            long nextMaxTimestamp = compactedPartitionTimestamp(nextLastPartitionTimestamp, 4);
+            if (nextMaxTimestamp == Long.MIN_VALUE) {
+                nextMaxTimestamp = nextLastPartitionTimestamp == lastPartitionTimestamp
+                        ? maxTimestamp
+                        : readPartitionTimestamp(nextLastPartitionTimestamp, txWriter.getPartitionSize(lastIndex) - 1);
+            }
+
+            txWriter.setMinTimestamp(nextMinTimestamp);
+            txWriter.finishPartitionSizeUpdate(nextMinTimestamp, nextMaxTimestamp);
+            if (partitionsRemoved) {
+                txWriter.bumpTruncateVersion();
+            }
+            columnVersionWriter.commit();
+            txWriter.setColumnVersion(columnVersionWriter.getVersion());
+            txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
+
+            if (activePartitionAffected) {
+                openPartition(nextMaxTimestamp);
+                setAppendPosition(txWriter.getTransientRowCount(), false);
+            }
+        } catch (Throwable e) {
+            LOG.critical().$("could not remove rows [table=").utf8(tableName).$(", e=").$(e).I$();
+            distressed = true;
+            throw e;
+        }
+
+        LOG.info().$("removed rows [table=").utf8(tableName).$(", count=").$(rowCount).$(", partitions=").$(n / 5).I$();
+        o3ProcessPartitionRemoveCandidates();
+        return rowCount;
+    }
+
     public void renameColumn(CharSequence currentName, CharSequence newName) {
 
         checkDistressed();
@@ -1554,6 +1759,151 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private long appendPageFrameBlock(PageFrame frame, SymbolTableSource symbolTableSource, long lo, long hi) {
+        final int timestampIndex = metadata.getTimestampIndex();
+        if (timestampIndex == -1) {
+            appendPageFrameColumns(frame, symbolTableSource, lo, hi);
+            txWriter.append(hi - lo);
+            return hi;
+        }
+
+        final long timestampAddress = frame.getPageAddress(timestampIndex);
+        if (timestampAddress == 0 || hasO3()) {
+            appendPageFrameRows(frame, symbolTableSource, lo, hi);
+            return hi;
+        }
+
+        final long timestampLo = Unsafe.getUnsafe().getLong(timestampAddress + (lo << 3));
+        if (timestampLo < Timestamps.O3_MIN_TS || timestampLo < txWriter.getMaxTimestamp()) {
+            // let row by row path take care of O3 and of invalid timestamps
+            appendPageFrameRows(frame, symbolTableSource, lo, hi);
+            return hi;
+        }
+
+        // the block ends where timestamps stop ascending
+        long blockHi = lo + 1;
+        long timestamp = timestampLo;
+        while (blockHi < hi) {
+            final long next = Unsafe.getUnsafe().getLong(timestampAddress + (blockHi << 3));
+            if (next < timestamp) {
+                break;
+            }
+            timestamp = next;
+            blockHi++;
+        }
+
+        if (rowActon == ROW_ACTION_OPEN_PARTITION) {
+            if (txWriter.getMaxTimestamp() == Long.MIN_VALUE) {
+                txWriter.setMinTimestamp(timestampLo);
+                openFirstPartition(timestampLo);
+            }
+            rowActon = ROW_ACTION_SWITCH_PARTITION;
+        }
+
+        if (rowActon == ROW_ACTION_SWITCH_PARTITION) {
+            if (timestampLo > partitionTimestampHi) {
+                switchPartition(timestampLo);
+            }
+            // ... or where partition ends
+            if (timestamp > partitionTimestampHi) {
+                blockHi = Vect.boundedBinarySearch64Bit(
+                        timestampAddress,
+                        partitionTimestampHi,
+                        lo,
+                        blockHi - 1,
+                        BinarySearch.SCAN_DOWN
+                ) + 1;
+            }
+        }
+
+        appendPageFrameColumns(frame, symbolTableSource, lo, blockHi);
+        txWriter.append(blockHi - lo);
+        txWriter.updateMaxTimestamp(Unsafe.getUnsafe().getLong(timestampAddress + ((blockHi - 1) << 3)));
+        return blockHi;
+    }
+
+    private void appendPageFrameColumns(PageFrame frame, SymbolTableSource symbolTableSource, long lo, long hi) {
+        final long rowCount = hi - lo;
+        for (int i = 0; i < columnCount; i++) {
+            final long pageAddress = frame.getPageAddress(i);
+            if (pageAddress == 0) {
+                // column top in the source
+                final Runnable nullSetter = nullSetters.getQuick(i);
+                for (long r = 0; r < rowCount; r++) {
+                    nullSetter.run();
+                }
+                continue;
+            }
+
+            final MemoryMA primary = getPrimaryColumn(i);
+            switch (ColumnType.tagOf(metadata.getColumnType(i))) {
+                case ColumnType.STRING:
+                case ColumnType.BINARY:
+                    final MemoryMA secondary = getSecondaryColumn(i);
+                    final long indexAddress = frame.getIndexPageAddress(i);
+                    final long dataLo = Unsafe.getUnsafe().getLong(indexAddress + (lo << 3));
+                    final long dataHi = Unsafe.getUnsafe().getLong(indexAddress + (hi << 3));
+                    final long offset = primary.getAppendOffset() - dataLo;
+                    primary.putBlockOfBytes(pageAddress + dataLo, dataHi - dataLo);
+                    for (long r = lo + 1; r <= hi; r++) {
+                        secondary.putLong(Unsafe.getUnsafe().getLong(indexAddress + (r << 3)) + offset);
+                    }
+                    break;
+                case ColumnType.SYMBOL:
+                    final SymbolTable symbolTable = symbolTableSource.getSymbolTable(i);
+                    for (long r = lo; r < hi; r++) {
+                        primary.putInt(translateSymbolKey(i, symbolTable, Unsafe.getUnsafe().getInt(pageAddress + (r << 2))));
+                    }
+                    break;
+                default:
+                    final int shl = frame.getColumnShiftBits(i);
+                    primary.putBlockOfBytes(pageAddress + (lo << shl), rowCount << shl);
+                    break;
+            }
+        }
+        // rows are complete, there is nothing for null setters to do
+        masterRef += rowCount << 1;
+    }
+
+    private void appendPageFrameRows(PageFrame frame, SymbolTableSource symbolTableSource, long lo, long hi) {
+        final int timestampIndex = metadata.getTimestampIndex();
+        final long timestampAddress = timestampIndex > -1 ? frame.getPageAddress(timestampIndex) : 0;
+        for (long r = lo; r < hi; r++) {
+            final Row row = timestampAddress != 0
+                    ? newRow(Unsafe.getUnsafe().getLong(timestampAddress + (r << 3)))
+                    : newRow(timestampIndex > -1 ? Numbers.LONG_NaN : 0L);
+            for (int i = 0; i < columnCount; i++) {
+                final long pageAddress = frame.getPageAddress(i);
+                if (i == timestampIndex || pageAddress == 0) {
+                    continue;
+                }
+
+                // row may have switched to O3 memory
+                final MemoryA primary = activeColumns.getQuick(getPrimaryColumnIndex(i));
+                switch (ColumnType.tagOf(metadata.getColumnType(i))) {
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                        final long indexAddress = frame.getIndexPageAddress(i);
+                        final long dataLo = Unsafe.getUnsafe().getLong(indexAddress + (r << 3));
+                        final long dataHi = Unsafe.getUnsafe().getLong(indexAddress + ((r + 1) << 3));
+                        primary.putBlockOfBytes(pageAddress + dataLo, dataHi - dataLo);
+                        activeColumns.getQuick(getSecondaryColumnIndex(i)).putLong(primary.getAppendOffset());
+                        break;
+                    case ColumnType.SYMBOL:
+                        final int key = Unsafe.getUnsafe().getInt(pageAddress + (r << 2));
+                        primary.putInt(translateSymbolKey(i, symbolTableSource.getSymbolTable(i), key));
+                        break;
+                    default:
+                        final int shl = frame.getColumnShiftBits(i);
+                        primary.putBlockOfBytes(pageAddress + (r << shl), 1L << shl);
+                        break;
+                }
+                setRowValueNotNull(i);
+            }
+            row.append();
+        }
+    }
+
     private void attachPartitionCheckFilesMatchFixedColumn(FilesFacade ff, Path path, int columnType, long partitionSize, String columnName, long columnNameTxn) {
         TableUtils.dFile(path, columnName, columnNameTxn);
         if (ff.exists(path.$())) {
@@ -1919,11 +2269,20 @@ public class TableWriter implements Closeable {
         }
 
         if (inTransaction()) {
-
-            if (hasO3() && o3Commit(commitLag)) {
-                // Bookmark masterRef to track how many rows is in uncommitted state
-                this.committedMasterRef = masterRef;
-                return;
+            final boolean timed = metrics.isEnabled();
+            final MicrosecondClock clock = configuration.getMicrosecondClock();
+            final long commitStartMicros = timed ? clock.getTicks() : 0;
+
+            if (hasO3()) {
+                final boolean lagOnly = o3Commit(commitLag);
+                if (timed) {
+                    metrics.tableWriter().addTableO3Commit(tableName, clock.getTicks() - commitStartMicros);
+                }
+                if (lagOnly) {
+                    // Bookmark masterRef to track how many rows is in uncommitted state
+                    this.committedMasterRef = masterRef;
+                    return;
+                }
             }
 
             if (commitMode != CommitMode.NOSYNC) {
@@ -1944,9 +2303,96 @@ public class TableWriter implements Closeable {
 
             metrics.tableWriter().incrementCommits();
             metrics.tableWriter().addCommittedRows(rowsAdded);
+            if (timed) {
+                metrics.tableWriter().addTableCommit(tableName, rowsAdded, clock.getTicks() - commitStartMicros);
+            }
         }
     }
 
+    private void compactPartitions(DirectLongList rowIds) {
+        if (partitionCompactor == null) {
+            partitionCompactor = new PartitionCompactor(configuration);
+        }
+        compactedPartitions.clear();
+        compactedColumnTops.clear();
+
+        final long txn = txWriter.getTxn();
+        final long hi = rowIds.getAddress() + rowIds.size() * Long.BYTES;
+        final int lastPartitionIndex = txWriter.getPartitionCount() - 1;
+        try {
+            long lo = rowIds.getAddress();
+            while (lo < hi) {
+                final int partitionIndex = Rows.toPartitionIndex(Unsafe.getUnsafe().getLong(lo));
+                long p = lo + Long.BYTES;
+                while (p < hi && Rows.toPartitionIndex(Unsafe.getUnsafe().getLong(p)) == partitionIndex) {
+                    p += Long.BYTES;
+                }
+
+                final long partitionSize = partitionIndex == lastPartitionIndex
+                        ? txWriter.getTransientRowCount()
+                        : txWriter.getPartitionSize(partitionIndex);
+                if (partitionIndex > lastPartitionIndex || Rows.toLocalRowID(Unsafe.getUnsafe().getLong(p - Long.BYTES)) >= partitionSize) {
+                    throw CairoException.instance(0).put("row id is out of range [table=").put(tableName)
+                            .put(", partitionIndex=").put(partitionIndex)
+                            .put(']');
+                }
+
+                final long partitionTimestamp = txWriter.getPartitionTimestamp(partitionIndex);
+                final long partitionNameTxn = txWriter.getPartitionNameTxn(partitionIndex);
+                final long keptRowCount = partitionSize - ((p - lo) >> 3);
+                compactedPartitions.add(partitionTimestamp, partitionNameTxn);
+                if (keptRowCount > 0) {
+                    setPathForPartition(path, partitionBy, partitionTimestamp, false);
+                    TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+                    setPathForPartition(other, partitionBy, partitionTimestamp, false);
+                    TableUtils.txnPartitionConditionally(other, txn);
+                    try {
+                        partitionCompactor.compact(this, partitionTimestamp, partitionSize, lo, p, path, other);
+                    } finally {
+                        path.trimTo(rootLen);
+                        other.trimTo(rootLen);
+                    }
+                    compactedPartitions.add(keptRowCount);
+                    compactedPartitions.add(partitionCompactor.getMinTimestamp(), partitionCompactor.getMaxTimestamp());
+                } else {
+                    compactedPartitions.add(0);
+                    compactedPartitions.add(Long.MIN_VALUE, Long.MIN_VALUE);
+                }
+                for (int c = 0; c < columnCount; c++) {
+                    compactedColumnTops.add(keptRowCount > 0 ? partitionCompactor.getColumnTop(c) : -1);
+                }
+                lo = p;
+            }
+        } catch (Throwable e) {
+            // table is intact, remove partition versions written so far
+            for (int i = 0, n = compactedPartitions.size(); i < n; i += 5) {
+                if (i + 2 < n && compactedPartitions.getQuick(i + 2) > 0) {
+                    try {
+                        setPathForPartition(other, partitionBy, compactedPartitions.getQuick(i), false);
+                        TableUtils.txnPartitionConditionally(other, txn);
+                        ff.rmdir(other.$());
+                    } finally {
+                        other.trimTo(rootLen);
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return min (offset 3) or max (offset 4) timestamp of rows kept in the compacted partition or
+     * Long.MIN_VALUE when the partition was not compacted
+     */
+    private long compactedPartitionTimestamp(long partitionTimestamp, int offset) {
+        for (int i = 0, n = compactedPartitions.size(); i < n; i += 5) {
+            if (compactedPartitions.getQuick(i) == partitionTimestamp) {
+                return compactedPartitions.getQuick(i + offset);
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
     private void configureAppendPosition() {
         final boolean partitioned = PartitionBy.isPartitioned(partitionBy);
         if (this.txWriter.getMaxTimestamp() > Long.MIN_VALUE || !partitioned) {
@@ -2050,6 +2496,20 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void configureDedupKeys() {
+        dedupKeyColumns.clear();
+        dedup = false;
+        final int timestampIndex = metadata.getTimestampIndex();
+        for (int i = 0; i < columnCount; i++) {
+            if (metadata.getColumnType(i) > 0 && isDedupKey(metaMem, i)) {
+                dedup = true;
+                if (i != timestampIndex) {
+                    dedupKeyColumns.add(i);
+                }
+            }
+        }
+    }
+
     private void configureTimestampSetter() {
         int index = metadata.getTimestampIndex();
         if (index == -1) {
@@ -2080,6 +2540,9 @@ public class TableWriter implements Closeable {
                     if (isSequential(metaMem, i)) {
                         flags |= META_FLAG_BIT_SEQUENTIAL;
                     }
+                    if (isDedupKey(metaMem, i)) {
+                        flags |= META_FLAG_BIT_DEDUP_KEY;
+                    }
                     ddlMem.putLong(flags);
                     ddlMem.putInt(indexValueBlockSize);
                     ddlMem.putLong(getColumnHash(metaMem, i));
@@ -2209,6 +2672,7 @@ public class TableWriter implements Closeable {
         Misc.free(columnVersionWriter);
         Misc.free(o3ColumnTopSink);
         Misc.free(commandQueue);
+        Misc.free(partitionCompactor);
         freeColumns(truncate & !distressed);
         try {
             releaseLock(!truncate | tx | performRecovery | distressed);
@@ -2308,23 +2772,6 @@ public class TableWriter implements Closeable {
         return indexers.getQuick(columnIndex).getWriter();
     }
 
-    long getColumnTop(long partitionTimestamp, int columnIndex, long defaultValue) {
-        // Check if there is explicit record for this partitionTimestamp / columnIndex combination
-        int recordIndex = columnVersionWriter.getRecordIndex(partitionTimestamp, columnIndex);
-        if (recordIndex > -1L) {
-            return columnVersionWriter.getColumnTopByIndex(recordIndex);
-        }
-
-        // Check if column has been already added before this partition
-        long columnTopDefaultPartition = columnVersionWriter.getColumnTopPartitionTimestamp(columnIndex);
-        if (columnTopDefaultPartition <= partitionTimestamp) {
-            return 0;
-        }
-
-        // This column does not exist in the partition
-        return defaultValue;
-    }
-
     long getColumnTop(int columnIndex) {
         return columnTops.getQuick(columnIndex);
     }
@@ -2383,7 +2830,7 @@ public class TableWriter implements Closeable {
         return columns.getQuick(getSecondaryColumnIndex(column));
     }
 
-    MapWriter getSymbolMapWriter(int columnIndex) {
+    public MapWriter getSymbolMapWriter(int columnIndex) {
         return symbolMapWriters.getQuick(columnIndex);
     }
 
@@ -2503,6 +2950,7 @@ public class TableWriter implements Closeable {
         o3RowCount = getO3RowCount0();
         o3PartitionRemoveCandidates.clear();
         o3ErrorCount.set(0);
+        o3MergedRowCount.set(0);
         o3ColumnCounters.clear();
         o3BasketPool.clear();
 
@@ -2514,6 +2962,7 @@ public class TableWriter implements Closeable {
         // will have to switch partition internally
         long partitionTimestampHiLimit = partitionCeilMethod.ceil(partitionTimestampHi) - 1;
         try {
+            final long movedRowLo = o3RowCount;
             o3RowCount += o3MoveUncommitted(timestampIndex);
             final long transientRowCount = txWriter.transientRowCount;
 
@@ -2535,6 +2984,11 @@ public class TableWriter implements Closeable {
                 Vect.quickSortLongIndexAscInPlace(sortedTimestampsAddr, o3RowCount);
             }
 
+            if (dedup) {
+                o3RowCount = o3DedupSortedRows(sortedTimestampsAddr, o3RowCount, movedRowLo);
+                o3TimestampMem.jumpTo(o3RowCount * TIMESTAMP_MERGE_ENTRY_BYTES);
+            }
+
             // we have three frames:
             // partition logical "lo" and "hi" - absolute bounds (partitionLo, partitionHi)
             // partition actual data "lo" and "hi" (dataLo, dataHi)
@@ -2673,8 +3127,21 @@ public class TableWriter implements Closeable {
                             srcNameTxn = -1;
                         }
 
-                        final boolean append = last && (srcDataMax == 0 || o3Timestamp >= maxTimestamp);
-                        final long partitionSize = srcDataMax + srcOooHi - srcOooLo + 1;
+                        long replacedRowCount = 0;
+                        if (dedup && srcDataMax > 0 && (!last || o3Timestamp <= maxTimestamp)) {
+                            replacedRowCount = o3DedupFindReplacedRows(
+                                    partitionTimestamp,
+                                    last,
+                                    srcDataMax,
+                                    srcNameTxn,
+                                    sortedTimestampsAddr,
+                                    srcOooLo,
+                                    srcOooHi
+                            );
+                        }
+
+                        final boolean append = replacedRowCount == 0 && last && (srcDataMax == 0 || o3Timestamp >= maxTimestamp);
+                        final long partitionSize = srcDataMax - replacedRowCount + srcOooHi - srcOooLo + 1;
 
                         LOG.debug().
                                 $("o3 partition task [table=").$(tableName)
@@ -2706,6 +3173,31 @@ public class TableWriter implements Closeable {
                             prevTransientRowCount = partitionSize;
                         }
 
+                        if (replacedRowCount > 0) {
+                            // partition is rewritten by this thread, new version has no column tops
+                            o3MergeReplacedRows(partitionTimestamp, srcDataMax, srcNameTxn, sortedTimestampsAddr, srcOooLo, srcOooHi);
+                            final long colTopSinkIndex = (long) pCount++ * (metadata.getColumnCount() + 1);
+                            o3ColumnTopSink.set(colTopSinkIndex, partitionTimestamp);
+                            for (int i = 0; i < columnCount; i++) {
+                                if (metadata.getColumnType(i) > 0) {
+                                    o3ColumnTopSink.set(colTopSinkIndex + i + 1, 0);
+                                }
+                            }
+                            synchronized (this) {
+                                o3PartitionUpdate(
+                                        o3TimestampMin,
+                                        o3TimestampMax,
+                                        partitionTimestamp,
+                                        srcOooLo,
+                                        srcOooHi,
+                                        srcOooMax,
+                                        srcDataMax - replacedRowCount,
+                                        true
+                                );
+                            }
+                            continue;
+                        }
+
                         pCount++;
                         o3PartitionUpdRemaining.incrementAndGet();
                         final O3Basket o3Basket = o3BasketPool.next();
@@ -2869,6 +3361,7 @@ public class TableWriter implements Closeable {
             if (o3LagRowCount > 0) {
                 o3ShiftLagRowsUp(timestampIndex, o3LagRowCount, srcOooMax);
             }
+            metrics.tableWriter().addTableO3MergedRows(tableName, o3MergedRowCount.get());
         } finally {
             if (denseIndexers.size() == 0) {
                 populateDenseIndexerList();
@@ -2914,6 +3407,199 @@ public class TableWriter implements Closeable {
         return false;
     }
 
+    /**
+     * Finds committed rows of the partition, which O3 rows with the same timestamp and dedup key values replace.
+     *
+     * @return number of replaced rows, their row numbers are in dedupReplacedRows
+     */
+    private long o3DedupFindReplacedRows(
+            long partitionTimestamp,
+            boolean last,
+            long srcDataMax,
+            long srcNameTxn,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi
+    ) {
+        if (partitionCompactor == null) {
+            partitionCompactor = new PartitionCompactor(configuration);
+        }
+        dedupColumnTops.clear();
+        for (int i = 0; i < columnCount; i++) {
+            dedupColumnTops.add(last ? getColumnTop(i) : getColumnTop(partitionTimestamp, i, srcDataMax));
+        }
+        // "path" is shared with O3 jobs, which may be running
+        final Path srcPath = Path.getThreadLocal(path);
+        setPathForPartition(srcPath, partitionBy, partitionTimestamp, false);
+        TableUtils.txnPartitionConditionally(srcPath, srcNameTxn);
+        partitionCompactor.findReplacedRows(
+                this,
+                dedupKeyColumns,
+                partitionTimestamp,
+                srcDataMax,
+                dedupColumnTops,
+                sortedTimestampsAddr,
+                srcOooLo,
+                srcOooHi,
+                o3Columns,
+                srcPath,
+                dedupReplacedRows
+        );
+        return dedupReplacedRows.size();
+    }
+
+    /**
+     * Removes O3 rows, which are replaced by rows with the same timestamp and dedup key values written later.
+     * Rows at or after movedRowLo have been moved from the last partition, they were written before the rest.
+     *
+     * @return number of rows left in the sorted timestamp index
+     */
+    private long o3DedupSortedRows(long sortedTimestampsAddr, long rowCount, long movedRowLo) {
+        long lo = 0;
+        long dst = 0;
+        while (lo < rowCount) {
+            final long timestamp = getTimestampIndexValue(sortedTimestampsAddr, lo);
+            long hi = lo + 1;
+            while (hi < rowCount && getTimestampIndexValue(sortedTimestampsAddr, hi) == timestamp) {
+                hi++;
+            }
+
+            long keptHi = hi;
+            if (hi - lo > 1) {
+                // order the run by key values and then by write order, the last row of every key group
+                // replaces the rest of the group
+                o3SortRun(sortedTimestampsAddr, lo, hi, movedRowLo, true);
+                keptHi = lo;
+                for (long p = lo; p < hi; p++) {
+                    final long row = getTimestampIndexRow(sortedTimestampsAddr, p);
+                    if (p == hi - 1 || !o3KeysEqual(row, getTimestampIndexRow(sortedTimestampsAddr, p + 1))) {
+                        setTimestampIndexRow(sortedTimestampsAddr, keptHi++, row);
+                    }
+                }
+                // kept rows go back to write order
+                o3SortRun(sortedTimestampsAddr, lo, keptHi, movedRowLo, false);
+            }
+
+            for (long p = lo; p < keptHi; p++) {
+                final long addr = sortedTimestampsAddr + dst * TIMESTAMP_MERGE_ENTRY_BYTES;
+                Unsafe.getUnsafe().putLong(addr, timestamp);
+                Unsafe.getUnsafe().putLong(addr + Long.BYTES, getTimestampIndexRow(sortedTimestampsAddr, p));
+                dst++;
+            }
+            lo = hi;
+        }
+
+        if (dst < rowCount) {
+            LOG.info().$("deduplicated o3 [table=").utf8(tableName).$(", replaced=").$(rowCount - dst).I$();
+        }
+        return dst;
+    }
+
+    private boolean o3KeysEqual(long row1, long row2) {
+        for (int k = 0, n = dedupKeyColumns.size(); k < n; k++) {
+            final int columnIndex = dedupKeyColumns.getQuick(k);
+            final int columnType = metadata.getColumnType(columnIndex);
+            final int shl = ColumnType.pow2SizeOf(columnType);
+            final MemoryCARW mem = o3Columns.getQuick(getPrimaryColumnIndex(columnIndex));
+            if (!PartitionCompactor.keyValueEquals(columnType, mem.addressOf(row1 << shl), mem.addressOf(row2 << shl))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int o3CompareRows(long row1, long row2, long movedRowLo, boolean byKeys) {
+        for (int k = 0, n = byKeys ? dedupKeyColumns.size() : 0; k < n; k++) {
+            final int columnIndex = dedupKeyColumns.getQuick(k);
+            final int columnType = metadata.getColumnType(columnIndex);
+            final int shl = ColumnType.pow2SizeOf(columnType);
+            final MemoryCARW mem = o3Columns.getQuick(getPrimaryColumnIndex(columnIndex));
+            final int cmp = PartitionCompactor.keyValueCompare(columnType, mem.addressOf(row1 << shl), mem.addressOf(row2 << shl));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        if (row1 == row2) {
+            return 0;
+        }
+        return o3WrittenAfter(row1, row2, movedRowLo) ? 1 : -1;
+    }
+
+    private void o3SiftDown(long sortedTimestampsAddr, long lo, long root, long count, long movedRowLo, boolean byKeys) {
+        while (true) {
+            long child = 2 * root + 1;
+            if (child >= count) {
+                return;
+            }
+            long childRow = getTimestampIndexRow(sortedTimestampsAddr, lo + child);
+            if (child + 1 < count) {
+                final long rightRow = getTimestampIndexRow(sortedTimestampsAddr, lo + child + 1);
+                if (o3CompareRows(childRow, rightRow, movedRowLo, byKeys) < 0) {
+                    child++;
+                    childRow = rightRow;
+                }
+            }
+            final long rootRow = getTimestampIndexRow(sortedTimestampsAddr, lo + root);
+            if (o3CompareRows(rootRow, childRow, movedRowLo, byKeys) >= 0) {
+                return;
+            }
+            setTimestampIndexRow(sortedTimestampsAddr, lo + root, childRow);
+            setTimestampIndexRow(sortedTimestampsAddr, lo + child, rootRow);
+            root = child;
+        }
+    }
+
+    /**
+     * Heap sorts rows of the timestamp run [lo, hi) by write order, optionally preceded by dedup key values.
+     * All rows of the run share timestamp, so only row numbers are moved.
+     */
+    private void o3SortRun(long sortedTimestampsAddr, long lo, long hi, long movedRowLo, boolean byKeys) {
+        final long count = hi - lo;
+        for (long i = count / 2 - 1; i >= 0; i--) {
+            o3SiftDown(sortedTimestampsAddr, lo, i, count, movedRowLo, byKeys);
+        }
+        for (long end = count - 1; end > 0; end--) {
+            final long row = getTimestampIndexRow(sortedTimestampsAddr, lo);
+            setTimestampIndexRow(sortedTimestampsAddr, lo, getTimestampIndexRow(sortedTimestampsAddr, lo + end));
+            setTimestampIndexRow(sortedTimestampsAddr, lo + end, row);
+            o3SiftDown(sortedTimestampsAddr, lo, 0, end, movedRowLo, byKeys);
+        }
+    }
+
+    private void o3MergeReplacedRows(
+            long partitionTimestamp,
+            long srcDataMax,
+            long srcNameTxn,
+            long sortedTimestampsAddr,
+            long srcOooLo,
+            long srcOooHi
+    ) {
+        final Path srcPath = Path.getThreadLocal(path);
+        setPathForPartition(srcPath, partitionBy, partitionTimestamp, false);
+        TableUtils.txnPartitionConditionally(srcPath, srcNameTxn);
+        final Path dstPath = Path.getThreadLocal2(path);
+        setPathForPartition(dstPath, partitionBy, partitionTimestamp, false);
+        TableUtils.txnPartitionConditionally(dstPath, getTxn());
+        try {
+            partitionCompactor.merge(
+                    this,
+                    partitionTimestamp,
+                    srcDataMax,
+                    dedupColumnTops,
+                    dedupReplacedRows,
+                    sortedTimestampsAddr,
+                    srcOooLo,
+                    srcOooHi,
+                    o3Columns,
+                    srcPath,
+                    dstPath
+            );
+        } catch (Throwable e) {
+            ff.rmdir(dstPath.$());
+            throw e;
+        }
+    }
+
     private void o3CommitPartitionAsync(
             AtomicInteger columnCounter,
             long maxTimestamp,
@@ -3753,7 +4439,8 @@ public class TableWriter implements Closeable {
         indexMem2.replacePage(srcIndxAddr, srcIndxSize);
         dataMem.jumpTo(offset);
         indexMem.jumpTo(valueCount * Long.BYTES);
-        indexMem.putLong(dataSize);
+        // offset is less than data size when deduplication left some of the values out
+        indexMem.putLong(offset);
     }
 
     private void o3TimestampSetter(long timestamp) {
@@ -3978,6 +4665,10 @@ public class TableWriter implements Closeable {
     }
 
     private long readMinTimestamp(long partitionTimestamp) {
+        return readPartitionTimestamp(partitionTimestamp, 0);
+    }
+
+    private long readPartitionTimestamp(long partitionTimestamp, long row) {
         setStateForTimestamp(other, partitionTimestamp, false);
         try {
             dFile(other, metadata.getColumnName(metadata.getTimestampIndex()), COLUMN_NAME_TXN_NONE);
@@ -3988,7 +4679,7 @@ public class TableWriter implements Closeable {
                     return TableUtils.readLongOrFail(
                             ff,
                             fd,
-                            0,
+                            row * Long.BYTES,
                             tempMem16b,
                             other
                     );
@@ -4884,6 +5575,19 @@ public class TableWriter implements Closeable {
         throw new CairoError(cause);
     }
 
+    private int translateSymbolKey(int columnIndex, SymbolTable symbolTable, int key) {
+        if (key == SymbolTable.VALUE_IS_NULL) {
+            return symbolMapWriters.getQuick(columnIndex).put(null);
+        }
+        final IntList keys = pageFrameSymbolKeys.getQuick(columnIndex);
+        int translated = keys.getQuick(key);
+        if (translated == -1) {
+            translated = symbolMapWriters.getQuick(columnIndex).put(symbolTable.valueOf(key));
+            keys.setQuick(key, translated);
+        }
+        return translated;
+    }
+
     private void updateIndexes() {
         if (indexCount == 0 || avoidIndexOnCommit) {
             avoidIndexOnCommit = false;
@@ -5072,6 +5776,10 @@ public class TableWriter implements Closeable {
         if (isSequential(metaMem, i)) {
             flags |= META_FLAG_BIT_SEQUENTIAL;
         }
+
+        if (isDedupKey(metaMem, i)) {
+            flags |= META_FLAG_BIT_DEDUP_KEY;
+        }
         ddlMem.putLong(flags);
         ddlMem.putInt(getIndexBlockCapacity(metaMem, i));
         ddlMem.putLong(getColumnHash(metaMem, i));
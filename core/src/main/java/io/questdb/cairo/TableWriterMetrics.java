@@ -25,21 +25,48 @@
 package io.questdb.cairo;
 
 import io.questdb.metrics.Counter;
+import io.questdb.metrics.CounterWithDynamicLabel;
+import io.questdb.metrics.DynamicLabelMetric;
+import io.questdb.metrics.HistogramWithDynamicLabel;
 import io.questdb.metrics.MetricsRegistry;
+import io.questdb.std.CharSequenceHashSet;
+import io.questdb.std.ObjList;
 
 public class TableWriterMetrics {
+    // upper bounds of latency histogram buckets, 100us to 10s
+    public static final long[] LATENCY_MICROS_BUCKET_BOUNDS = {100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000};
 
     // Includes all types of commits (in-order and o3)
     private final Counter commitCounter;
     private final Counter o3CommitCounter;
     private final Counter committedRowCounter;
     private final Counter rollbackCounter;
+    // per table counters, labelled with table name
+    private final CounterWithDynamicLabel tableCommitCounter;
+    private final CounterWithDynamicLabel tableCommittedRowCounter;
+    private final HistogramWithDynamicLabel tableCommitMicrosHistogram;
+    private final CounterWithDynamicLabel tableO3CommitCounter;
+    private final CounterWithDynamicLabel tableO3MergedRowCounter;
+    private final HistogramWithDynamicLabel tableO3CommitMicrosHistogram;
+    private final ObjList<DynamicLabelMetric> tableMetrics = new ObjList<>();
 
     public TableWriterMetrics(MetricsRegistry metricsRegistry) {
         this.commitCounter = metricsRegistry.newCounter("commits");
         this.o3CommitCounter = metricsRegistry.newCounter("o3_commits");
         this.committedRowCounter = metricsRegistry.newCounter("committed_rows");
         this.rollbackCounter = metricsRegistry.newCounter("rollbacks");
+        this.tableCommitCounter = metricsRegistry.newCounter("table_commits", "table");
+        this.tableCommittedRowCounter = metricsRegistry.newCounter("table_committed_rows", "table");
+        this.tableCommitMicrosHistogram = metricsRegistry.newHistogram("table_commit_micros", "table", LATENCY_MICROS_BUCKET_BOUNDS);
+        this.tableO3CommitCounter = metricsRegistry.newCounter("table_o3_commits", "table");
+        this.tableO3MergedRowCounter = metricsRegistry.newCounter("table_o3_merged_rows", "table");
+        this.tableO3CommitMicrosHistogram = metricsRegistry.newHistogram("table_o3_commit_micros", "table", LATENCY_MICROS_BUCKET_BOUNDS);
+        tableMetrics.add(tableCommitCounter);
+        tableMetrics.add(tableCommittedRowCounter);
+        tableMetrics.add(tableCommitMicrosHistogram);
+        tableMetrics.add(tableO3CommitCounter);
+        tableMetrics.add(tableO3MergedRowCounter);
+        tableMetrics.add(tableO3CommitMicrosHistogram);
     }
 
     public void incrementCommits() {
@@ -57,4 +84,55 @@ public class TableWriterMetrics {
     public void incrementRollbacks() {
         rollbackCounter.inc();
     }
+
+    public void addTableCommit(CharSequence tableName, long rows, long micros) {
+        tableCommitCounter.inc(tableName);
+        tableCommittedRowCounter.add(tableName, rows);
+        tableCommitMicrosHistogram.record(tableName, micros);
+    }
+
+    public void addTableO3Commit(CharSequence tableName, long micros) {
+        tableO3CommitCounter.inc(tableName);
+        tableO3CommitMicrosHistogram.record(tableName, micros);
+    }
+
+    public void addTableO3MergedRows(CharSequence tableName, long rows) {
+        tableO3MergedRowCounter.add(tableName, rows);
+    }
+
+    public void collectTableNames(CharSequenceHashSet sink) {
+        for (int i = 0, n = tableMetrics.size(); i < n; i++) {
+            tableMetrics.getQuick(i).collectLabelValues(sink);
+        }
+    }
+
+    public CounterWithDynamicLabel getTableCommitCounter() {
+        return tableCommitCounter;
+    }
+
+    public HistogramWithDynamicLabel getTableCommitMicrosHistogram() {
+        return tableCommitMicrosHistogram;
+    }
+
+    public CounterWithDynamicLabel getTableCommittedRowCounter() {
+        return tableCommittedRowCounter;
+    }
+
+    public CounterWithDynamicLabel getTableO3CommitCounter() {
+        return tableO3CommitCounter;
+    }
+
+    public HistogramWithDynamicLabel getTableO3CommitMicrosHistogram() {
+        return tableO3CommitMicrosHistogram;
+    }
+
+    public CounterWithDynamicLabel getTableO3MergedRowCounter() {
+        return tableO3MergedRowCounter;
+    }
+
+    public void removeTable(CharSequence tableName) {
+        for (int i = 0, n = tableMetrics.size(); i < n; i++) {
+            tableMetrics.getQuick(i).remove(tableName);
+        }
+    }
 }
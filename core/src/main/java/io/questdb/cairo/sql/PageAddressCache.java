@@ -29,6 +29,7 @@ import io.questdb.cairo.ColumnType;
 import io.questdb.std.IntList;
 import io.questdb.std.LongList;
 import io.questdb.std.Mutable;
+import io.questdb.std.Rows;
 import io.questdb.std.Transient;
 
 public class PageAddressCache implements Mutable {
@@ -44,6 +45,8 @@ public class PageAddressCache implements Mutable {
     // Index page addresses and page sizes are stored only for variable length columns.
     private LongList indexPageAddresses = new LongList();
     private LongList pageSizes = new LongList();
+    // Row id of the first row of each frame, i.e. partition index and partition row.
+    private final LongList frameRowIds = new LongList();
 
     public PageAddressCache(CairoConfiguration configuration) {
         cacheSizeThreshold = configuration.getSqlJitPageAddressCacheThreshold() / Long.BYTES;
@@ -64,6 +67,7 @@ public class PageAddressCache implements Mutable {
     @Override
     public void clear() {
         varLenColumnIndexes.clear();
+        frameRowIds.clear();
         if (pageAddresses.size() < cacheSizeThreshold) {
             pageAddresses.clear();
             indexPageAddresses.clear();
@@ -76,9 +80,10 @@ public class PageAddressCache implements Mutable {
     }
 
     public void add(int frameIndex, @Transient PageFrame frame) {
-        if (pageAddresses.size() >= columnCount * (frameIndex + 1)) {
+        if (frameRowIds.size() > frameIndex) {
             return; // The page frame is already cached
         }
+        frameRowIds.add(Rows.toRowID(frame.getPartitionIndex(), frame.getPartitionLo()));
         for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
             pageAddresses.add(frame.getPageAddress(columnIndex));
             int varLenColumnIndex = varLenColumnIndexes.getQuick(columnIndex);
@@ -89,6 +94,10 @@ public class PageAddressCache implements Mutable {
         }
     }
 
+    public long getFrameRowId(int frameIndex) {
+        return frameRowIds.getQuick(frameIndex);
+    }
+
     public long getPageAddress(int frameIndex, int columnIndex) {
         assert pageAddresses.size() >= columnCount * (frameIndex + 1);
         return pageAddresses.getQuick(columnCount * frameIndex + columnIndex);
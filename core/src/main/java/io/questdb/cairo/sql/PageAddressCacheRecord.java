@@ -178,7 +178,8 @@ public class PageAddressCacheRecord implements Record {
     @Override
     public long getUpdateRowId() {
         if (cursor != null) {
-            return cursor.getUpdateRowId(rowIndex);
+            // frames may be cached ahead of the record, so row id comes from the frame the record points to
+            return pageAddressCache.getFrameRowId(frameIndex) + rowIndex;
         }
         return -1L;
     }
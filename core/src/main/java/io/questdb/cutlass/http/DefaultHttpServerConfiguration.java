@@ -146,6 +146,11 @@ public class DefaultHttpServerConfiguration implements HttpServerConfiguration {
         return true;
     }
 
+    @Override
+    public boolean isQueryCacheLiteralNormalizationEnabled() {
+        return false;
+    }
+
     @Override
     public int getQueryCacheBlockCount() {
         return 4;
@@ -156,6 +161,31 @@ public class DefaultHttpServerConfiguration implements HttpServerConfiguration {
         return 16;
     }
 
+    @Override
+    public int getAsyncQueryWorkerCount() {
+        return 1;
+    }
+
+    @Override
+    public long getAsyncQueryResultTtl() {
+        return 300_000;
+    }
+
+    @Override
+    public int getAsyncQueryResultLimit() {
+        return 64;
+    }
+
+    @Override
+    public int getSubscriptionLimit() {
+        return 64;
+    }
+
+    @Override
+    public long getSubscriptionHeartbeatInterval() {
+        return 10_000;
+    }
+
     @Override
     public WaitProcessorConfiguration getWaitProcessorConfiguration() {
         return new WaitProcessorConfiguration() {
@@ -43,5 +43,21 @@ public interface HttpChunkedResponseSocket extends CharSink {
 
     void status(int status, CharSequence contentType);
 
+    /**
+     * Same as {@link #status(int, CharSequence)} but lets the caller opt out of gzip negotiated
+     * with the client, e.g. when the content is compressed already.
+     */
+    void status(int status, CharSequence contentType, boolean deflate);
+
     void shutdownWrite();
+
+    /**
+     * Copies bytes to response buffer as is. Copy stops when buffer is full, the caller
+     * is expected to send chunk and write the remaining bytes afterwards.
+     *
+     * @param lo address of the first byte
+     * @param hi address of the byte following the last one
+     * @return number of bytes copied
+     */
+    int writeBytes(long lo, long hi);
 }
@@ -64,6 +64,8 @@ public class HttpConnectionContext implements IOContext, Locality, Mutable, Retr
     private long fd;
     private HttpRequestProcessor resumeProcessor = null;
     private boolean pendingRetry = false;
+    // connection is handed to resume processor until it has more data to send
+    private boolean waitingForData = false;
     private IODispatcher<HttpConnectionContext> dispatcher;
     private int nCompletedRequests;
     private long totalBytesSent;
@@ -103,6 +105,7 @@ public class HttpConnectionContext implements IOContext, Locality, Mutable, Retr
             LOG.error().$("Reused context with retry pending.").$();
         }
         this.pendingRetry = false;
+        this.waitingForData = false;
         this.multipartParserState.multipartRetry = false;
         this.retryAttemptAttributes.waitStartTimestamp = 0;
         this.retryAttemptAttributes.lastRunTimestamp = 0;
@@ -119,6 +122,12 @@ public class HttpConnectionContext implements IOContext, Locality, Mutable, Retr
             if (this.fd > 0) {
                 Net.close(this.fd);
             }
+        } else if (this.waitingForData) {
+            this.waitingForData = false;
+            LOG.info().$("closed context waiting for data [fd=").$(fd).$(']').$();
+            if (this.fd > 0) {
+                Net.close(this.fd);
+            }
         }
         this.fd = -1;
         nCompletedRequests = 0;
@@ -544,9 +553,10 @@ public class HttpConnectionContext implements IOContext, Locality, Mutable, Retr
             final boolean multipartRequest = Chars.equalsNc("multipart/form-data", headerParser.getContentType());
             final boolean multipartProcessor = processor instanceof HttpMultipartContentListener;
 
-            if (allowDeflateBeforeSend && Chars.contains(headerParser.getHeader("Accept-Encoding"), "gzip")) {
-                responseSink.setDeflateBeforeSend(true);
-            }
+            // compression is negotiated for every request, keep-alive connection can mix
+            // clients that do and do not accept gzip
+            final CharSequence acceptEncoding = headerParser.getHeader("Accept-Encoding");
+            responseSink.setDeflateBeforeSend(allowDeflateBeforeSend && acceptEncoding != null && Chars.contains(acceptEncoding, "gzip"));
 
             try {
                 if (multipartRequest && !multipartProcessor) {
@@ -581,6 +591,13 @@ public class HttpConnectionContext implements IOContext, Locality, Mutable, Retr
                 pendingRetry = true;
                 scheduleRetry(processor, rescheduleContext);
                 busyRecv = false;
+            } catch (WaitForDataException e) {
+                // it is important to assign resume processor before
+                // connection is handed to the processor
+                resumeProcessor = processor;
+                waitingForData = true;
+                processor.waitForData(this);
+                busyRecv = false;
             } catch (PeerDisconnectedException e) {
                 handlePeerDisconnect(DISCONNECT_REASON_PEER_DISCONNECT_AT_RECV);
                 busyRecv = false;
@@ -607,11 +624,15 @@ public class HttpConnectionContext implements IOContext, Locality, Mutable, Retr
 
     private boolean handleClientSend() {
         if (resumeProcessor != null) {
+            waitingForData = false;
             try {
                 responseSink.resumeSend();
                 resumeProcessor.resumeSend(this);
                 clear();
                 return true;
+            } catch (WaitForDataException ignore) {
+                waitingForData = true;
+                resumeProcessor.waitForData(this);
             } catch (PeerIsSlowToReadException ignore) {
                 resumeProcessor.parkRequest(this);
                 LOG.debug().$("peer is slow reader").$();
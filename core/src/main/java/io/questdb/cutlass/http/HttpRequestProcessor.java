@@ -47,6 +47,11 @@ public interface HttpRequestProcessor {
     default void parkRequest(HttpConnectionContext context) {
     }
 
+    // invoked after processor threw WaitForDataException, the connection is not registered
+    // with dispatcher until processor registers it for write, which resumes the request
+    default void waitForData(HttpConnectionContext context) {
+    }
+
     // after this callback is invoked the server will disconnect the client
     // if processor desires to write a goodbye letter to the client
     // it must also send TCP FIN by invoking socket.shutdownWrite()
@@ -566,9 +566,18 @@ public class HttpResponseSink implements Closeable, Mutable {
 
         @Override
         public void status(int status, CharSequence contentType) {
+            status(status, contentType, true);
+        }
+
+        @Override
+        public void status(int status, CharSequence contentType, boolean deflate) {
             super.status(status, contentType);
             if (deflateBeforeSend) {
-                headerImpl.put("Content-Encoding: gzip").put(Misc.EOL);
+                if (deflate) {
+                    headerImpl.put("Content-Encoding: gzip").put(Misc.EOL);
+                } else {
+                    deflateBeforeSend = false;
+                }
             }
         }
 
@@ -576,6 +585,14 @@ public class HttpResponseSink implements Closeable, Mutable {
         public void shutdownWrite() {
             nf.shutdown(fd, Net.SHUT_WR);
         }
+
+        @Override
+        public int writeBytes(long lo, long hi) {
+            final int len = (int) Math.min(hi - lo, buffer.getWriteNAvailable());
+            Vect.memcpy(buffer._wptr, lo, len);
+            buffer.onWrite(len);
+            return len;
+        }
     }
 
     private class ChunkBuffer extends AbstractCharSink implements Closeable {
@@ -30,6 +30,7 @@ import io.questdb.WorkerPoolAwareConfiguration;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.ColumnIndexerJob;
 import io.questdb.cutlass.http.processors.*;
+import io.questdb.cutlass.text.TextImportJob;
 import io.questdb.griffin.DatabaseSnapshotAgent;
 import io.questdb.griffin.FunctionFactoryCache;
 import io.questdb.griffin.engine.groupby.vect.GroupByJob;
@@ -59,6 +60,8 @@ public class HttpServer implements Closeable {
     private final HttpContextFactory httpContextFactory;
     private final WorkerPool workerPool;
     private final WaitProcessor rescheduleContext;
+    private AsyncQueryRegistry asyncQueryRegistry;
+    private SubscriptionJob subscriptionJob;
 
     public HttpServer(HttpMinServerConfiguration configuration, MessageBus messageBus, Metrics metrics, WorkerPool pool, boolean localPool) {
         this.workerCount = pool.getWorkerCount();
@@ -82,12 +85,14 @@ public class HttpServer implements Closeable {
         this.rescheduleContext = new WaitProcessor(configuration.getWaitProcessorConfiguration());
         pool.assign(this.rescheduleContext);
 
+        // query cache is shared by all workers, one subscriber clears it once per flush event
+        final SCSequence queryCacheEventSubSeq = new SCSequence();
+        final FanOut queryCacheEventFanOut = messageBus.getQueryCacheEventFanOut();
+        queryCacheEventFanOut.and(queryCacheEventSubSeq);
+
         for (int i = 0; i < workerCount; i++) {
             final int index = i;
-
-            final SCSequence queryCacheEventSubSeq = new SCSequence();
-            final FanOut queryCacheEventFanOut = messageBus.getQueryCacheEventFanOut();
-            queryCacheEventFanOut.and(queryCacheEventSubSeq);
+            final boolean flushesQueryCache = i == 0;
 
             pool.assign(i, new Job() {
                 private final HttpRequestProcessorSelector selector = selectors.getQuick(index);
@@ -96,12 +101,14 @@ public class HttpServer implements Closeable {
 
                 @Override
                 public boolean run(int workerId) {
-                    long seq = queryCacheEventSubSeq.next();
-                    if (seq > -1) {
-                        // Queue is not empty, so flush query cache.
-                        LOG.info().$("flushing HTTP server query cache [worker=").$(workerId).$(']').$();
-                        QueryCache.getInstance().clear();
-                        queryCacheEventSubSeq.done(seq);
+                    if (flushesQueryCache) {
+                        long seq = queryCacheEventSubSeq.next();
+                        if (seq > -1) {
+                            // Queue is not empty, so flush query cache.
+                            LOG.info().$("flushing HTTP server query cache [worker=").$(workerId).$(']').$();
+                            QueryCache.getInstance().clear();
+                            queryCacheEventSubSeq.done(seq);
+                        }
                     }
 
                     boolean useful = dispatcher.processIOQueue(processor);
@@ -116,9 +123,10 @@ public class HttpServer implements Closeable {
             pool.assign(i, () -> {
                 Misc.free(selectors.getQuick(index));
                 httpContextFactory.closeContextPool();
-                Misc.free(QueryCache.getInstance());
-                messageBus.getQueryCacheEventFanOut().remove(queryCacheEventSubSeq);
-                queryCacheEventSubSeq.clear();
+                if (flushesQueryCache) {
+                    messageBus.getQueryCacheEventFanOut().remove(queryCacheEventSubSeq);
+                    queryCacheEventSubSeq.clear();
+                }
             });
         }
     }
@@ -202,6 +210,7 @@ public class HttpServer implements Closeable {
         workerPool.assign(new ColumnIndexerJob(cairoEngine.getMessageBus()));
         workerPool.assign(new GroupByJob(cairoEngine.getMessageBus()));
         workerPool.assign(new LatestByAllIndexedJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new TextImportJob(cairoEngine.getMessageBus()));
     }
 
     @Nullable
@@ -296,6 +305,10 @@ public class HttpServer implements Closeable {
         Misc.free(httpContextFactory);
         Misc.free(dispatcher);
         Misc.free(rescheduleContext);
+        asyncQueryRegistry = Misc.free(asyncQueryRegistry);
+        subscriptionJob = Misc.free(subscriptionJob);
+        // closing connections returns their factories to the shared cache, it goes last
+        Misc.free(QueryCache.getInstance());
     }
 
     private static HttpServer create0(
@@ -308,14 +321,40 @@ public class HttpServer implements Closeable {
             Metrics metrics
     ) {
         final HttpServer s = new HttpServer(configuration, cairoEngine.getMessageBus(), metrics, workerPool, localPool);
-        QueryCache.configure(configuration);
+        QueryCache.configure(configuration, workerPool.getWorkerCount());
+        if (configuration.getAsyncQueryWorkerCount() > 0) {
+            s.asyncQueryRegistry = new AsyncQueryRegistry(configuration, cairoEngine, functionFactoryCache, snapshotAgent, metrics);
+        }
+        final AsyncQueryRegistry asyncQueryRegistry = s.asyncQueryRegistry;
+        if (configuration.getSubscriptionLimit() > 0) {
+            s.subscriptionJob = new SubscriptionJob(configuration, cairoEngine.getConfiguration().getMillisecondClock());
+            workerPool.assign(s.subscriptionJob);
+        }
+        final SubscriptionJob subscriptionJob = s.subscriptionJob;
         HttpRequestProcessorBuilder jsonQueryProcessorBuilder = () -> new JsonQueryProcessor(
                 configuration.getJsonQueryProcessorConfiguration(),
                 cairoEngine,
                 workerPool.getWorkerCount(),
                 functionFactoryCache,
-                snapshotAgent);
+                snapshotAgent,
+                asyncQueryRegistry);
         addDefaultEndpoints(s, configuration, cairoEngine, workerPool, jsonQueryProcessorBuilder, functionFactoryCache, snapshotAgent);
+        s.bind(new HttpRequestProcessorFactory() {
+            @Override
+            public HttpRequestProcessor newInstance() {
+                return new SubscriptionProcessor(
+                        configuration.getJsonQueryProcessorConfiguration(),
+                        cairoEngine,
+                        functionFactoryCache,
+                        subscriptionJob
+                );
+            }
+
+            @Override
+            public String getUrl() {
+                return "/subscribe";
+            }
+        });
         return s;
     }
 
@@ -37,10 +37,22 @@ public interface HttpServerConfiguration extends WorkerPoolAwareConfiguration, H
 
     boolean isQueryCacheEnabled();
 
+    boolean isQueryCacheLiteralNormalizationEnabled();
+
     int getQueryCacheBlockCount();
 
     int getQueryCacheRowCount();
 
+    int getAsyncQueryWorkerCount();
+
+    long getAsyncQueryResultTtl();
+
+    int getAsyncQueryResultLimit();
+
+    int getSubscriptionLimit();
+
+    long getSubscriptionHeartbeatInterval();
+
     WaitProcessorConfiguration getWaitProcessorConfiguration();
 
     StaticContentProcessorConfiguration getStaticContentProcessorConfiguration();
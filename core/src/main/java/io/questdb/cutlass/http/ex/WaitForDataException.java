@@ -0,0 +1,41 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.ex;
+
+import io.questdb.cutlass.http.HttpException;
+
+/**
+ * Thrown by processor that has nothing more to send for the time being, e.g. subscription
+ * that streamed all rows committed so far. The connection is handed to the processor,
+ * see {@link io.questdb.cutlass.http.HttpRequestProcessor#waitForData}.
+ */
+public class WaitForDataException extends HttpException {
+    public static final WaitForDataException INSTANCE;
+
+    static {
+        INSTANCE = new WaitForDataException();
+        INSTANCE.put("waiting for data");
+    }
+}
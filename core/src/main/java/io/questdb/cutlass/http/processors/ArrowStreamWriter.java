@@ -0,0 +1,972 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.std.*;
+import io.questdb.std.str.AbstractCharSink;
+import io.questdb.std.str.CharSink;
+
+/**
+ * Serializes query result in Apache Arrow IPC streaming format. The stream consists of schema message,
+ * dictionary batch for each symbol column backed by a table, record batches and end-of-stream marker.
+ * <p>
+ * Queries that support page frames are exported frame by frame, fixed-size column values are sent
+ * straight from frame memory and only validity bitmaps are computed. Results of other queries are copied
+ * from records into batches of up to batchSize rows.
+ * <p>
+ * Every message is exposed as a list of memory segments, which are valid until the next call to {@link #nextMessage()}.
+ */
+public class ArrowStreamWriter implements SegmentStream {
+    private static final short METADATA_VERSION_V5 = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_DICTIONARY_BATCH = 2;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final byte TYPE_NULL = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_FLOATING_POINT = 3;
+    private static final byte TYPE_BINARY = 4;
+    private static final byte TYPE_UTF8 = 5;
+    private static final byte TYPE_BOOL = 6;
+    private static final byte TYPE_DATE = 8;
+    private static final byte TYPE_TIMESTAMP = 10;
+    private static final short PRECISION_SINGLE = 1;
+    private static final short PRECISION_DOUBLE = 2;
+    private static final short DATE_UNIT_MILLISECOND = 1;
+    private static final short TIME_UNIT_MICROSECOND = 2;
+    private static final int STATE_SCHEMA = 0;
+    private static final int STATE_DICTIONARY = 1;
+    private static final int STATE_RECORD_BATCH = 2;
+    private static final int STATE_END_OF_STREAM = 3;
+    private static final int STATE_DONE = 4;
+    private static final long MEMORY_PAGE_SIZE = 64 * 1024;
+
+    private final int batchSize;
+    private final MemoryCARW metaMem = Vm.getCARWInstance(MEMORY_PAGE_SIZE, Integer.MAX_VALUE, MemoryTag.NATIVE_HTTP_CONN);
+    private final ObjList<MemoryCARW> validityMem = new ObjList<>();
+    private final ObjList<MemoryCARW> valuesMem = new ObjList<>();
+    private final ObjList<MemoryCARW> dataMem = new ObjList<>();
+    private final ObjList<StaticSymbolTable> symbolTables = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final LongList nullCounts = new LongList();
+    private final LongList fieldNodes = new LongList();
+    private final LongList bodyBuffers = new LongList();
+    private final LongList segments = new LongList();
+    private final MemorySink sink = new MemorySink();
+    private long zeroes;
+    private RecordMetadata metadata;
+    private RecordCursor cursor;
+    private Record record;
+    private PageFrameCursor pageFrameCursor;
+    private int columnCount;
+    private int state = STATE_DONE;
+    private int dictionaryColumn;
+    private long skip;
+    private long stop;
+    private long rowCount;
+    private long frameRowLo;
+    private long frameRowHi;
+    private PageFrame frame;
+
+    public ArrowStreamWriter(int batchSize) {
+        this.batchSize = batchSize;
+        this.zeroes = Unsafe.calloc(Long.BYTES, MemoryTag.NATIVE_HTTP_CONN);
+    }
+
+    @Override
+    public void clear() {
+        metadata = null;
+        cursor = null;
+        record = null;
+        pageFrameCursor = null;
+        frame = null;
+        state = STATE_DONE;
+        symbolTables.clear();
+        segments.clear();
+        metaMem.truncate();
+        for (int i = 0, n = validityMem.size(); i < n; i++) {
+            validityMem.getQuick(i).truncate();
+            valuesMem.getQuick(i).truncate();
+            dataMem.getQuick(i).truncate();
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.free(metaMem);
+        Misc.freeObjList(validityMem);
+        Misc.freeObjList(valuesMem);
+        Misc.freeObjList(dataMem);
+        if (zeroes != 0) {
+            Unsafe.free(zeroes, Long.BYTES, MemoryTag.NATIVE_HTTP_CONN);
+            zeroes = 0;
+        }
+    }
+
+    @Override
+    public long getSegmentAddress(int index) {
+        return segments.getQuick(index * 2);
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return segments.size() / 2;
+    }
+
+    @Override
+    public long getSegmentSize(int index) {
+        return segments.getQuick(index * 2 + 1);
+    }
+
+    /**
+     * Prepares stream to export records of the cursor.
+     *
+     * @param metadata metadata of the cursor
+     * @param cursor   record cursor, it remains owned by the caller
+     * @param skip     number of leading records to skip
+     * @param stop     number of the record to stop export at
+     */
+    public void of(RecordMetadata metadata, RecordCursor cursor, long skip, long stop) {
+        of0(metadata, cursor, skip, stop);
+        this.cursor = cursor;
+        this.record = cursor.getRecord();
+    }
+
+    /**
+     * Prepares stream to export page frames of the cursor. All columns must be of fixed size
+     * types, see {@link #isPageFrameExportSupported(RecordMetadata)}.
+     *
+     * @param metadata        metadata of the cursor
+     * @param pageFrameCursor page frame cursor, it remains owned by the caller
+     * @param skip            number of leading records to skip
+     * @param stop            number of the record to stop export at
+     */
+    public void of(RecordMetadata metadata, PageFrameCursor pageFrameCursor, long skip, long stop) {
+        of0(metadata, pageFrameCursor, skip, stop);
+        this.pageFrameCursor = pageFrameCursor;
+        this.frameRowLo = 0;
+        this.frameRowHi = 0;
+    }
+
+    public static boolean isPageFrameExportSupported(RecordMetadata metadata) {
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            switch (ColumnType.tagOf(metadata.getColumnType(i))) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    break;
+                case ColumnType.SYMBOL:
+                    if (!metadata.isSymbolTableStatic(i)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prepares segments of the next message.
+     *
+     * @return false when end-of-stream marker has already been produced
+     */
+    @Override
+    public boolean nextMessage() {
+        segments.clear();
+        // states that have nothing to send move on to the next state within the same call
+        while (true) {
+            switch (state) {
+                case STATE_SCHEMA:
+                    putSchemaMessage();
+                    state = STATE_DICTIONARY;
+                    return true;
+                case STATE_DICTIONARY:
+                    for (; dictionaryColumn < columnCount; dictionaryColumn++) {
+                        if (symbolTables.getQuick(dictionaryColumn) != null) {
+                            putDictionaryBatchMessage(dictionaryColumn++);
+                            return true;
+                        }
+                    }
+                    state = STATE_RECORD_BATCH;
+                    break;
+                case STATE_RECORD_BATCH:
+                    if (pageFrameCursor != null ? nextFrameBatch() : nextCursorBatch()) {
+                        return true;
+                    }
+                    state = STATE_END_OF_STREAM;
+                    break;
+                case STATE_END_OF_STREAM:
+                    metaMem.jumpTo(0);
+                    metaMem.putInt(-1);
+                    metaMem.putInt(0);
+                    segments.add(metaMem.getAddress(), metaMem.getAppendOffset());
+                    state = STATE_DONE;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static MemoryCARW newMemory() {
+        return Vm.getCARWInstance(MEMORY_PAGE_SIZE, Integer.MAX_VALUE, MemoryTag.NATIVE_HTTP_CONN);
+    }
+
+    private static void setBit(MemoryCARW mem, long row, boolean bit) {
+        if ((row & 7) == 0) {
+            mem.putByte((byte) 0);
+        }
+        if (bit) {
+            final long p = mem.getAddress() + (row >>> 3);
+            Unsafe.getUnsafe().putByte(p, (byte) (Unsafe.getUnsafe().getByte(p) | (1 << (row & 7))));
+        }
+    }
+
+    private static byte typeOf(int columnType) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+                return TYPE_BOOL;
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+                return TYPE_INT;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return TYPE_FLOATING_POINT;
+            case ColumnType.DATE:
+                return TYPE_DATE;
+            case ColumnType.TIMESTAMP:
+                return TYPE_TIMESTAMP;
+            case ColumnType.BINARY:
+                return TYPE_BINARY;
+            case ColumnType.NULL:
+                return TYPE_NULL;
+            default:
+                // strings, symbols and types that do not have Arrow counterpart are exported as text
+                return TYPE_UTF8;
+        }
+    }
+
+    private void appendRecord(long row) {
+        for (int i = 0; i < columnCount; i++) {
+            final MemoryCARW values = valuesMem.getQuick(i);
+            switch (columnTypes.getQuick(i)) {
+                case ColumnType.BOOLEAN:
+                    setBit(values, row, record.getBool(i));
+                    break;
+                case ColumnType.BYTE:
+                    values.putByte(record.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    values.putShort(record.getShort(i));
+                    break;
+                case ColumnType.INT:
+                    final int intValue = record.getInt(i);
+                    values.putInt(intValue);
+                    setValid(i, row, intValue != Numbers.INT_NaN);
+                    break;
+                case ColumnType.LONG:
+                    putLongValue(i, row, values, record.getLong(i));
+                    break;
+                case ColumnType.DATE:
+                    putLongValue(i, row, values, record.getDate(i));
+                    break;
+                case ColumnType.TIMESTAMP:
+                    putLongValue(i, row, values, record.getTimestamp(i));
+                    break;
+                case ColumnType.FLOAT:
+                    final float floatValue = record.getFloat(i);
+                    values.putFloat(floatValue);
+                    setValid(i, row, floatValue == floatValue);
+                    break;
+                case ColumnType.DOUBLE:
+                    final double doubleValue = record.getDouble(i);
+                    values.putDouble(doubleValue);
+                    setValid(i, row, doubleValue == doubleValue);
+                    break;
+                case ColumnType.SYMBOL:
+                    if (symbolTables.getQuick(i) != null) {
+                        final int key = record.getInt(i);
+                        final boolean valid = key != SymbolTable.VALUE_IS_NULL;
+                        values.putInt(valid ? key : 0);
+                        setValid(i, row, valid);
+                    } else {
+                        putStrValue(i, row, values, record.getSym(i));
+                    }
+                    break;
+                case ColumnType.STRING:
+                    putStrValue(i, row, values, record.getStr(i));
+                    break;
+                case ColumnType.CHAR:
+                    final char c = record.getChar(i);
+                    if (c > 0) {
+                        sink.of(dataMem.getQuick(i)).putUtf8(c);
+                    }
+                    putVarOffset(i, row, values, c > 0);
+                    break;
+                case ColumnType.LONG256:
+                    final MemoryCARW data = dataMem.getQuick(i);
+                    final long lo = data.getAppendOffset();
+                    record.getLong256(i, sink.of(data));
+                    putVarOffset(i, row, values, data.getAppendOffset() > lo);
+                    break;
+                case ColumnType.GEOBYTE:
+                    putGeoHashValue(i, row, values, record.getGeoByte(i));
+                    break;
+                case ColumnType.GEOSHORT:
+                    putGeoHashValue(i, row, values, record.getGeoShort(i));
+                    break;
+                case ColumnType.GEOINT:
+                    putGeoHashValue(i, row, values, record.getGeoInt(i));
+                    break;
+                case ColumnType.GEOLONG:
+                    putGeoHashValue(i, row, values, record.getGeoLong(i));
+                    break;
+                case ColumnType.BINARY:
+                    final BinarySequence bin = record.getBin(i);
+                    if (bin != null) {
+                        final long len = bin.length();
+                        bin.copyTo(dataMem.getQuick(i).appendAddressFor(len), 0, len);
+                    }
+                    putVarOffset(i, row, values, bin != null);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private boolean nextCursorBatch() {
+        fieldNodes.clear();
+        bodyBuffers.clear();
+        for (int i = 0; i < columnCount; i++) {
+            validityMem.getQuick(i).jumpTo(0);
+            valuesMem.getQuick(i).jumpTo(0);
+            dataMem.getQuick(i).jumpTo(0);
+            nullCounts.setQuick(i, 0);
+            if (isVarSize(i)) {
+                valuesMem.getQuick(i).putInt(0);
+            }
+        }
+
+        long rows = 0;
+        while (rows < batchSize && rowCount < stop && cursor.hasNext()) {
+            if (++rowCount > skip) {
+                appendRecord(rows++);
+            }
+        }
+
+        if (rows == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < columnCount; i++) {
+            final int columnType = columnTypes.getQuick(i);
+            if (columnType == ColumnType.NULL) {
+                fieldNodes.add(rows, rows);
+                continue;
+            }
+            final long nullCount = nullCounts.getQuick(i);
+            fieldNodes.add(rows, nullCount);
+            addValidityBuffer(i, nullCount);
+            final MemoryCARW values = valuesMem.getQuick(i);
+            bodyBuffers.add(values.getAddress(), values.getAppendOffset());
+            if (isVarSize(i)) {
+                final MemoryCARW data = dataMem.getQuick(i);
+                bodyBuffers.add(data.getAddress(), data.getAppendOffset());
+            }
+        }
+        putRecordBatchMessage(rows);
+        return true;
+    }
+
+    private boolean nextFrameBatch() {
+        while (frameRowLo >= frameRowHi) {
+            if (rowCount >= stop || (frame = pageFrameCursor.next()) == null) {
+                return false;
+            }
+            final long frameRows = frame.getPartitionHi() - frame.getPartitionLo();
+            frameRowLo = Math.max(0, skip - rowCount);
+            frameRowHi = Math.min(frameRows, stop - rowCount);
+            rowCount += frameRows;
+        }
+
+        final long lo = frameRowLo;
+        final long hi = Math.min(frameRowHi, lo + batchSize);
+        final long rows = hi - lo;
+        frameRowLo = hi;
+
+        fieldNodes.clear();
+        bodyBuffers.clear();
+        for (int i = 0; i < columnCount; i++) {
+            final int columnType = columnTypes.getQuick(i);
+            final int shift = frame.getColumnShiftBits(i);
+            final long size = rows << shift;
+            final MemoryCARW values = valuesMem.getQuick(i);
+            values.jumpTo(0);
+            long address = frame.getPageAddress(i);
+            final boolean columnTop = address == 0;
+            if (columnTop) {
+                // the column did not exist when these rows were written
+                address = values.appendAddressFor(size);
+                Vect.memset(address, size, 0);
+            } else {
+                address += lo << shift;
+            }
+
+            long nullCount = 0;
+            switch (columnType) {
+                case ColumnType.BOOLEAN:
+                    // Arrow booleans are bit-packed
+                    final MemoryCARW bits = dataMem.getQuick(i);
+                    bits.jumpTo(0);
+                    for (long r = 0; r < rows; r++) {
+                        setBit(bits, r, Unsafe.getUnsafe().getByte(address + r) != 0);
+                    }
+                    fieldNodes.add(rows, 0);
+                    bodyBuffers.add(0L, 0L);
+                    bodyBuffers.add(bits.getAddress(), bits.getAppendOffset());
+                    continue;
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                    break;
+                default:
+                    nullCount = columnTop ? computeNullValidity(i, rows) : computeValidity(i, columnType, address, rows);
+                    break;
+            }
+            fieldNodes.add(rows, nullCount);
+            addValidityBuffer(i, nullCount);
+            bodyBuffers.add(address, size);
+        }
+        putRecordBatchMessage(rows);
+        return true;
+    }
+
+    private void addValidityBuffer(int columnIndex, long nullCount) {
+        if (nullCount > 0) {
+            final MemoryCARW validity = validityMem.getQuick(columnIndex);
+            bodyBuffers.add(validity.getAddress(), validity.getAppendOffset());
+        } else {
+            // all values are valid, bitmap can be omitted
+            bodyBuffers.add(0L, 0L);
+        }
+    }
+
+    private long computeNullValidity(int columnIndex, long rows) {
+        final MemoryCARW validity = validityMem.getQuick(columnIndex);
+        validity.jumpTo(0);
+        final long size = (rows + 7) >>> 3;
+        Vect.memset(validity.appendAddressFor(size), size, 0);
+        return rows;
+    }
+
+    private long computeValidity(int columnIndex, int columnType, long address, long rows) {
+        final MemoryCARW validity = validityMem.getQuick(columnIndex);
+        validity.jumpTo(0);
+        long nullCount = 0;
+        for (long r = 0; r < rows; r += 8) {
+            int bits = 0;
+            for (int k = 0, n = (int) Math.min(8, rows - r); k < n; k++) {
+                final long row = r + k;
+                final boolean valid;
+                switch (columnType) {
+                    case ColumnType.INT:
+                    case ColumnType.SYMBOL:
+                        valid = Unsafe.getUnsafe().getInt(address + (row << 2)) != Numbers.INT_NaN;
+                        break;
+                    case ColumnType.FLOAT:
+                        final float f = Unsafe.getUnsafe().getFloat(address + (row << 2));
+                        valid = f == f;
+                        break;
+                    case ColumnType.DOUBLE:
+                        final double d = Unsafe.getUnsafe().getDouble(address + (row << 3));
+                        valid = d == d;
+                        break;
+                    default:
+                        valid = Unsafe.getUnsafe().getLong(address + (row << 3)) != Numbers.LONG_NaN;
+                        break;
+                }
+                if (valid) {
+                    bits |= 1 << k;
+                } else {
+                    nullCount++;
+                }
+            }
+            validity.putByte((byte) bits);
+        }
+        return nullCount;
+    }
+
+    private long fbAlign(int alignment) {
+        while ((metaMem.getAppendOffset() & (alignment - 1)) != 0) {
+            metaMem.putByte((byte) 0);
+        }
+        return metaMem.getAppendOffset();
+    }
+
+    private void fbEndTable(long vtable, long table) {
+        metaMem.putShort(vtable + Short.BYTES, (short) (metaMem.getAppendOffset() - table));
+    }
+
+    private void fbField(long vtable, long table, int id, int alignment) {
+        final long offset = fbAlign(alignment);
+        metaMem.putShort(vtable + 2 * Short.BYTES + (long) id * Short.BYTES, (short) (offset - table));
+    }
+
+    private void fbFieldByte(long vtable, long table, int id, byte value) {
+        fbField(vtable, table, id, Byte.BYTES);
+        metaMem.putByte(value);
+    }
+
+    private void fbFieldInt(long vtable, long table, int id, int value) {
+        fbField(vtable, table, id, Integer.BYTES);
+        metaMem.putInt(value);
+    }
+
+    private void fbFieldLong(long vtable, long table, int id, long value) {
+        fbField(vtable, table, id, Long.BYTES);
+        metaMem.putLong(value);
+    }
+
+    /**
+     * Reserves offset field, the offset must be set via {@link #fbSetOffset(long, long)} once
+     * the referenced object is written. Flatbuffer offsets are unsigned, which is why objects
+     * are written after the tables that reference them.
+     */
+    private long fbFieldOffset(long vtable, long table, int id) {
+        fbField(vtable, table, id, Integer.BYTES);
+        final long offset = metaMem.getAppendOffset();
+        metaMem.putInt(0);
+        return offset;
+    }
+
+    private void fbFieldShort(long vtable, long table, int id, short value) {
+        fbField(vtable, table, id, Short.BYTES);
+        metaMem.putShort(value);
+    }
+
+    private long fbOffsetVector(int size) {
+        final long offset = fbAlign(Integer.BYTES);
+        metaMem.putInt(size);
+        for (int i = 0; i < size; i++) {
+            metaMem.putInt(0);
+        }
+        return offset;
+    }
+
+    private void fbSetOffset(long offset, long target) {
+        metaMem.putInt(offset, (int) (target - offset));
+    }
+
+    private long fbStartTable(long vtable) {
+        final long table = fbAlign(Integer.BYTES);
+        metaMem.putInt((int) (table - vtable));
+        return table;
+    }
+
+    private long fbStartVtable(int fieldCount) {
+        final long vtable = fbAlign(Short.BYTES);
+        metaMem.putShort((short) ((fieldCount + 2) * Short.BYTES));
+        for (int i = 0; i <= fieldCount; i++) {
+            metaMem.putShort((short) 0);
+        }
+        return vtable;
+    }
+
+    private long fbString(CharSequence value) {
+        final long offset = fbAlign(Integer.BYTES);
+        metaMem.putInt(0);
+        sink.of(metaMem).encodeUtf8(value);
+        metaMem.putInt(offset, (int) (metaMem.getAppendOffset() - offset - Integer.BYTES));
+        metaMem.putByte((byte) 0);
+        return offset;
+    }
+
+    private long fbStructVector(LongList values) {
+        // vector length is followed by 8-byte aligned struct fields
+        while ((metaMem.getAppendOffset() & 7) != 4) {
+            metaMem.putByte((byte) 0);
+        }
+        final long offset = metaMem.getAppendOffset();
+        metaMem.putInt(values.size() / 2);
+        for (int i = 0, n = values.size(); i < n; i++) {
+            metaMem.putLong(values.getQuick(i));
+        }
+        return offset;
+    }
+
+    private boolean isVarSize(int columnIndex) {
+        switch (columnTypes.getQuick(columnIndex)) {
+            case ColumnType.SYMBOL:
+                return symbolTables.getQuick(columnIndex) == null;
+            case ColumnType.STRING:
+            case ColumnType.CHAR:
+            case ColumnType.LONG256:
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+            case ColumnType.GEOLONG:
+            case ColumnType.BINARY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void of0(RecordMetadata metadata, SymbolTableSource symbolTableSource, long skip, long stop) {
+        clear();
+        this.metadata = metadata;
+        this.columnCount = metadata.getColumnCount();
+        this.skip = skip;
+        this.stop = stop;
+        this.rowCount = 0;
+        this.state = STATE_SCHEMA;
+        this.dictionaryColumn = 0;
+        columnTypes.clear();
+        nullCounts.setAll(columnCount, 0);
+        while (validityMem.size() < columnCount) {
+            validityMem.add(newMemory());
+            valuesMem.add(newMemory());
+            dataMem.add(newMemory());
+        }
+        for (int i = 0; i < columnCount; i++) {
+            final int columnType = metadata.getColumnType(i);
+            final int tag = ColumnType.tagOf(columnType);
+            switch (tag) {
+                case ColumnType.GEOBYTE:
+                case ColumnType.GEOSHORT:
+                case ColumnType.GEOINT:
+                case ColumnType.GEOLONG:
+                    // geohash precision is needed to render the value
+                    columnTypes.add(tag);
+                    break;
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                case ColumnType.SYMBOL:
+                case ColumnType.STRING:
+                case ColumnType.CHAR:
+                case ColumnType.LONG256:
+                case ColumnType.BINARY:
+                    columnTypes.add(tag);
+                    break;
+                default:
+                    columnTypes.add(ColumnType.NULL);
+                    break;
+            }
+
+            StaticSymbolTable symbolTable = null;
+            if (tag == ColumnType.SYMBOL && metadata.isSymbolTableStatic(i)) {
+                final SymbolTable table = symbolTableSource.getSymbolTable(i);
+                if (table instanceof StaticSymbolTable) {
+                    symbolTable = (StaticSymbolTable) table;
+                }
+            }
+            symbolTables.extendAndSet(i, symbolTable);
+        }
+    }
+
+    private void putDictionaryBatchMessage(int columnIndex) {
+        final StaticSymbolTable symbolTable = symbolTables.getQuick(columnIndex);
+        final int symbolCount = symbolTable.getSymbolCount();
+        final MemoryCARW offsets = valuesMem.getQuick(columnIndex);
+        final MemoryCARW data = dataMem.getQuick(columnIndex);
+        offsets.jumpTo(0);
+        data.jumpTo(0);
+        offsets.putInt(0);
+        sink.of(data);
+        for (int key = 0; key < symbolCount; key++) {
+            sink.encodeUtf8(symbolTable.valueOf(key));
+            offsets.putInt((int) data.getAppendOffset());
+        }
+
+        fieldNodes.clear();
+        fieldNodes.add((long) symbolCount, 0L);
+        bodyBuffers.clear();
+        bodyBuffers.add(0L, 0L);
+        bodyBuffers.add(offsets.getAddress(), offsets.getAppendOffset());
+        bodyBuffers.add(data.getAddress(), data.getAppendOffset());
+
+        final long header = putMessageHeader(HEADER_DICTIONARY_BATCH);
+        final long vtable = fbStartVtable(2);
+        final long table = fbStartTable(vtable);
+        fbSetOffset(header, table);
+        fbFieldLong(vtable, table, 0, columnIndex);
+        final long recordBatch = fbFieldOffset(vtable, table, 1);
+        fbEndTable(vtable, table);
+        putRecordBatch(recordBatch, symbolCount);
+        putMessageSegments();
+    }
+
+    private void putGeoHashValue(int columnIndex, long row, MemoryCARW offsets, long value) {
+        final boolean valid = value != GeoHashes.NULL;
+        if (valid) {
+            final int bitFlags = GeoHashes.getBitFlags(metadata.getColumnType(columnIndex));
+            if (bitFlags < 0) {
+                GeoHashes.appendCharsUnsafe(value, -bitFlags, sink.of(dataMem.getQuick(columnIndex)));
+            } else {
+                GeoHashes.appendBinaryStringUnsafe(value, bitFlags, sink.of(dataMem.getQuick(columnIndex)));
+            }
+        }
+        putVarOffset(columnIndex, row, offsets, valid);
+    }
+
+    private void putIntType(long offset, int bitWidth) {
+        final long vtable = fbStartVtable(2);
+        final long table = fbStartTable(vtable);
+        fbSetOffset(offset, table);
+        fbFieldInt(vtable, table, 0, bitWidth);
+        fbFieldByte(vtable, table, 1, (byte) 1);
+        fbEndTable(vtable, table);
+    }
+
+    private void putLongValue(int columnIndex, long row, MemoryCARW values, long value) {
+        values.putLong(value);
+        setValid(columnIndex, row, value != Numbers.LONG_NaN);
+    }
+
+    private long putMessageHeader(byte headerType) {
+        long bodyLength = 0;
+        for (int i = 1, n = bodyBuffers.size(); i < n; i += 2) {
+            bodyLength += (bodyBuffers.getQuick(i) + 7) & ~7L;
+        }
+
+        metaMem.jumpTo(0);
+        // continuation marker and metadata size, the latter is set once metadata is complete
+        metaMem.putInt(-1);
+        metaMem.putInt(0);
+        final long root = metaMem.getAppendOffset();
+        metaMem.putInt(0);
+        final long vtable = fbStartVtable(4);
+        final long table = fbStartTable(vtable);
+        fbSetOffset(root, table);
+        fbFieldLong(vtable, table, 3, bodyLength);
+        fbFieldShort(vtable, table, 0, METADATA_VERSION_V5);
+        fbFieldByte(vtable, table, 1, headerType);
+        final long header = fbFieldOffset(vtable, table, 2);
+        fbEndTable(vtable, table);
+        return header;
+    }
+
+    private void putMessageSegments() {
+        fbAlign(8);
+        metaMem.putInt(Integer.BYTES, (int) (metaMem.getAppendOffset() - 2 * Integer.BYTES));
+        segments.add(metaMem.getAddress(), metaMem.getAppendOffset());
+        for (int i = 0, n = bodyBuffers.size(); i < n; i += 2) {
+            final long size = bodyBuffers.getQuick(i + 1);
+            if (size > 0) {
+                segments.add(bodyBuffers.getQuick(i), size);
+                final long padding = -size & 7;
+                if (padding > 0) {
+                    segments.add(zeroes, padding);
+                }
+            }
+        }
+    }
+
+    private void putRecordBatch(long offset, long rows) {
+        final long vtable = fbStartVtable(3);
+        final long table = fbStartTable(vtable);
+        fbSetOffset(offset, table);
+        fbFieldLong(vtable, table, 0, rows);
+        final long nodes = fbFieldOffset(vtable, table, 1);
+        final long buffers = fbFieldOffset(vtable, table, 2);
+        fbEndTable(vtable, table);
+        fbSetOffset(nodes, fbStructVector(fieldNodes));
+
+        // buffers are laid out in the message body one after another, each is padded to 8 bytes
+        while ((metaMem.getAppendOffset() & 7) != 4) {
+            metaMem.putByte((byte) 0);
+        }
+        fbSetOffset(buffers, metaMem.getAppendOffset());
+        metaMem.putInt(bodyBuffers.size() / 2);
+        long bodyOffset = 0;
+        for (int i = 1, n = bodyBuffers.size(); i < n; i += 2) {
+            final long size = bodyBuffers.getQuick(i);
+            metaMem.putLong(bodyOffset);
+            metaMem.putLong(size);
+            bodyOffset += (size + 7) & ~7L;
+        }
+    }
+
+    private void putRecordBatchMessage(long rows) {
+        final long header = putMessageHeader(HEADER_RECORD_BATCH);
+        putRecordBatch(header, rows);
+        putMessageSegments();
+    }
+
+    private void putSchemaMessage() {
+        bodyBuffers.clear();
+        final long header = putMessageHeader(HEADER_SCHEMA);
+        long vtable = fbStartVtable(2);
+        long table = fbStartTable(vtable);
+        fbSetOffset(header, table);
+        // little endian
+        fbFieldShort(vtable, table, 0, (short) 0);
+        final long fieldsOffset = fbFieldOffset(vtable, table, 1);
+        fbEndTable(vtable, table);
+
+        final long fields = fbOffsetVector(columnCount);
+        fbSetOffset(fieldsOffset, fields);
+        for (int i = 0; i < columnCount; i++) {
+            final int columnType = columnTypes.getQuick(i);
+            final boolean dictionary = symbolTables.getQuick(i) != null;
+            vtable = fbStartVtable(6);
+            table = fbStartTable(vtable);
+            fbSetOffset(fields + Integer.BYTES + (long) i * Integer.BYTES, table);
+            final long name = fbFieldOffset(vtable, table, 0);
+            final long type = fbFieldOffset(vtable, table, 3);
+            final long dictionaryOffset = dictionary ? fbFieldOffset(vtable, table, 4) : -1;
+            final long children = fbFieldOffset(vtable, table, 5);
+            fbFieldByte(vtable, table, 1, (byte) 1);
+            fbFieldByte(vtable, table, 2, typeOf(columnType));
+            fbEndTable(vtable, table);
+
+            fbSetOffset(name, fbString(metadata.getColumnName(i)));
+            putType(type, columnType);
+            if (dictionary) {
+                vtable = fbStartVtable(2);
+                table = fbStartTable(vtable);
+                fbSetOffset(dictionaryOffset, table);
+                // dictionary id is the column index
+                fbFieldLong(vtable, table, 0, i);
+                final long indexType = fbFieldOffset(vtable, table, 1);
+                fbEndTable(vtable, table);
+                putIntType(indexType, Integer.SIZE);
+            }
+            fbSetOffset(children, fbOffsetVector(0));
+        }
+        putMessageSegments();
+    }
+
+    private void putStrValue(int columnIndex, long row, MemoryCARW offsets, CharSequence value) {
+        if (value != null) {
+            sink.of(dataMem.getQuick(columnIndex)).encodeUtf8(value);
+        }
+        putVarOffset(columnIndex, row, offsets, value != null);
+    }
+
+    private void putType(long offset, int columnType) {
+        final long vtable;
+        final long table;
+        switch (columnType) {
+            case ColumnType.BYTE:
+                putIntType(offset, Byte.SIZE);
+                return;
+            case ColumnType.SHORT:
+                putIntType(offset, Short.SIZE);
+                return;
+            case ColumnType.INT:
+                putIntType(offset, Integer.SIZE);
+                return;
+            case ColumnType.LONG:
+                putIntType(offset, Long.SIZE);
+                return;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                vtable = fbStartVtable(1);
+                table = fbStartTable(vtable);
+                fbFieldShort(vtable, table, 0, columnType == ColumnType.FLOAT ? PRECISION_SINGLE : PRECISION_DOUBLE);
+                break;
+            case ColumnType.DATE:
+                vtable = fbStartVtable(1);
+                table = fbStartTable(vtable);
+                fbFieldShort(vtable, table, 0, DATE_UNIT_MILLISECOND);
+                break;
+            case ColumnType.TIMESTAMP:
+                vtable = fbStartVtable(2);
+                table = fbStartTable(vtable);
+                fbFieldShort(vtable, table, 0, TIME_UNIT_MICROSECOND);
+                final long timezone = fbFieldOffset(vtable, table, 1);
+                fbEndTable(vtable, table);
+                fbSetOffset(offset, table);
+                fbSetOffset(timezone, fbString("UTC"));
+                return;
+            default:
+                // Null, Bool, Utf8 and Binary types have no fields
+                vtable = fbStartVtable(0);
+                table = fbStartTable(vtable);
+                break;
+        }
+        fbEndTable(vtable, table);
+        fbSetOffset(offset, table);
+    }
+
+    private void putVarOffset(int columnIndex, long row, MemoryCARW offsets, boolean valid) {
+        offsets.putInt((int) dataMem.getQuick(columnIndex).getAppendOffset());
+        setValid(columnIndex, row, valid);
+    }
+
+    private void setValid(int columnIndex, long row, boolean valid) {
+        setBit(validityMem.getQuick(columnIndex), row, valid);
+        if (!valid) {
+            nullCounts.increment(columnIndex);
+        }
+    }
+
+    private static class MemorySink extends AbstractCharSink {
+        private MemoryCARW mem;
+
+        @Override
+        public CharSink put(CharSequence cs) {
+            for (int i = 0, n = cs.length(); i < n; i++) {
+                mem.putByte((byte) cs.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public CharSink put(char c) {
+            mem.putByte((byte) c);
+            return this;
+        }
+
+        MemorySink of(MemoryCARW mem) {
+            this.mem = mem;
+            return this;
+        }
+    }
+}
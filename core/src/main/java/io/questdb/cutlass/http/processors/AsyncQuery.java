@@ -0,0 +1,382 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.CairoSecurityContext;
+import io.questdb.cairo.RecordChain;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.BinarySequence;
+import io.questdb.std.Long256;
+import io.questdb.std.Misc;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Query submitted via /exec?async=true. The query is executed by {@link AsyncQueryJob}, which
+ * spools result rows into a {@link RecordChain}. HTTP workers then read pages of the spooled
+ * result, one connection at a time, via {@link #lease()}.
+ */
+public class AsyncQuery implements Closeable {
+    static final int STATUS_QUEUED = 0;
+    static final int STATUS_RUNNING = 1;
+    static final int STATUS_DONE = 2;
+    static final int STATUS_FAILED = 3;
+    static final int LEASE_OK = 0;
+    static final int LEASE_BUSY = 1;
+    static final int LEASE_EVICTED = 2;
+    private static final int FREE = 0;
+    private static final int LEASED = 1;
+    private static final int EVICTED = 2;
+    private final String id;
+    private final String query;
+    private final MillisecondClock clock;
+    private final CairoSecurityContext securityContext;
+    private final StringSink error = new StringSink();
+    private final AtomicInteger owner = new AtomicInteger(FREE);
+    private final ResultFactory resultFactory = new ResultFactory();
+    private volatile int status = STATUS_QUEUED;
+    private volatile long lastAccessMs;
+    private int errorPosition;
+    private RecordMetadata metadata;
+    private RecordChain chain;
+    private long rowCount;
+
+    AsyncQuery(String id, CharSequence query, CairoSecurityContext securityContext, MillisecondClock clock) {
+        this.id = id;
+        this.query = query.toString();
+        this.securityContext = securityContext;
+        this.clock = clock;
+        this.lastAccessMs = clock.getTicks();
+    }
+
+    public static String statusName(int status) {
+        switch (status) {
+            case STATUS_QUEUED:
+                return "queued";
+            case STATUS_RUNNING:
+                return "running";
+            case STATUS_DONE:
+                return "done";
+            default:
+                return "failed";
+        }
+    }
+
+    @Override
+    public void close() {
+        chain = Misc.free(chain);
+        metadata = null;
+    }
+
+    public CharSequence getError() {
+        return error;
+    }
+
+    public int getErrorPosition() {
+        return errorPosition;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return factory over the spooled result, closing it releases the lease
+     */
+    public RecordCursorFactory getResultFactory() {
+        return resultFactory;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean hasResult() {
+        return chain != null;
+    }
+
+    /**
+     * Grants exclusive read access to the spooled result. Rows are read via shared flyweights of
+     * the chain memory, which is why two connections cannot page through the same result at once.
+     *
+     * @return LEASE_OK when the caller owns the result, LEASE_BUSY when another connection reads it
+     * or LEASE_EVICTED when the result is gone
+     */
+    int lease() {
+        if (owner.compareAndSet(FREE, LEASED)) {
+            lastAccessMs = clock.getTicks();
+            return LEASE_OK;
+        }
+        return owner.get() == EVICTED ? LEASE_EVICTED : LEASE_BUSY;
+    }
+
+    void release() {
+        lastAccessMs = clock.getTicks();
+        owner.set(FREE);
+    }
+
+    /**
+     * Claims completed query for eviction when it has not been accessed within TTL.
+     * Once claimed, the query can no longer be leased.
+     */
+    boolean tryEvict(long nowMs, long ttl) {
+        return status > STATUS_RUNNING && nowMs - lastAccessMs > ttl && owner.compareAndSet(FREE, EVICTED);
+    }
+
+    void ofResult(RecordMetadata metadata, RecordChain chain, long rowCount) {
+        this.metadata = metadata;
+        this.chain = chain;
+        this.rowCount = rowCount;
+        done();
+    }
+
+    void done() {
+        lastAccessMs = clock.getTicks();
+        status = STATUS_DONE;
+    }
+
+    void fail(int position, CharSequence message) {
+        errorPosition = position;
+        error.clear();
+        error.put(message);
+        lastAccessMs = clock.getTicks();
+        status = STATUS_FAILED;
+    }
+
+    CairoSecurityContext getSecurityContext() {
+        return securityContext;
+    }
+
+    void running() {
+        status = STATUS_RUNNING;
+    }
+
+    private class ResultFactory implements RecordCursorFactory {
+        private final ResultCursor cursor = new ResultCursor();
+
+        @Override
+        public void close() {
+            release();
+        }
+
+        @Override
+        public RecordCursor getCursor(SqlExecutionContext executionContext) {
+            chain.toTop();
+            return cursor;
+        }
+
+        @Override
+        public RecordMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public boolean recordCursorSupportsRandomAccess() {
+            return false;
+        }
+    }
+
+    private class ResultCursor implements RecordCursor {
+        private final ResultRecord record = new ResultRecord();
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Record getRecord() {
+            record.of(chain.getRecord());
+            return record;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return chain.hasNext();
+        }
+
+        @Override
+        public Record getRecordB() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void toTop() {
+            chain.toTop();
+        }
+
+        @Override
+        public long size() {
+            return rowCount;
+        }
+    }
+
+    /**
+     * Symbols are spooled as strings, this record keeps SYMBOL metadata readable.
+     */
+    private static class ResultRecord implements Record {
+        private Record base;
+
+        @Override
+        public BinarySequence getBin(int col) {
+            return base.getBin(col);
+        }
+
+        @Override
+        public long getBinLen(int col) {
+            return base.getBinLen(col);
+        }
+
+        @Override
+        public boolean getBool(int col) {
+            return base.getBool(col);
+        }
+
+        @Override
+        public byte getByte(int col) {
+            return base.getByte(col);
+        }
+
+        @Override
+        public char getChar(int col) {
+            return base.getChar(col);
+        }
+
+        @Override
+        public long getDate(int col) {
+            return base.getDate(col);
+        }
+
+        @Override
+        public double getDouble(int col) {
+            return base.getDouble(col);
+        }
+
+        @Override
+        public float getFloat(int col) {
+            return base.getFloat(col);
+        }
+
+        @Override
+        public byte getGeoByte(int col) {
+            return base.getGeoByte(col);
+        }
+
+        @Override
+        public int getGeoInt(int col) {
+            return base.getGeoInt(col);
+        }
+
+        @Override
+        public long getGeoLong(int col) {
+            return base.getGeoLong(col);
+        }
+
+        @Override
+        public short getGeoShort(int col) {
+            return base.getGeoShort(col);
+        }
+
+        @Override
+        public int getInt(int col) {
+            return base.getInt(col);
+        }
+
+        @Override
+        public long getLong(int col) {
+            return base.getLong(col);
+        }
+
+        @Override
+        public void getLong256(int col, CharSink sink) {
+            base.getLong256(col, sink);
+        }
+
+        @Override
+        public Long256 getLong256A(int col) {
+            return base.getLong256A(col);
+        }
+
+        @Override
+        public Long256 getLong256B(int col) {
+            return base.getLong256B(col);
+        }
+
+        @Override
+        public short getShort(int col) {
+            return base.getShort(col);
+        }
+
+        @Override
+        public CharSequence getStr(int col) {
+            return base.getStr(col);
+        }
+
+        @Override
+        public CharSequence getStrB(int col) {
+            return base.getStrB(col);
+        }
+
+        @Override
+        public int getStrLen(int col) {
+            return base.getStrLen(col);
+        }
+
+        @Override
+        public CharSequence getSym(int col) {
+            return base.getStr(col);
+        }
+
+        @Override
+        public CharSequence getSymB(int col) {
+            return base.getStrB(col);
+        }
+
+        @Override
+        public long getTimestamp(int col) {
+            return base.getTimestamp(col);
+        }
+
+        private void of(Record base) {
+            this.base = base;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.Telemetry;
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.*;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.AbstractQueueConsumerJob;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.BytecodeAssembler;
+import io.questdb.std.Misc;
+import io.questdb.tasks.AsyncQueryTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Executes queries submitted via /exec?async=true. Each worker of the async query pool owns an
+ * instance with its own compiler and execution context. SELECT results are spooled into
+ * an off-heap {@link RecordChain}, so that the HTTP workers can page through them without
+ * holding the query cursor open.
+ */
+public class AsyncQueryJob extends AbstractQueueConsumerJob<AsyncQueryTask> implements Closeable {
+    private static final Log LOG = LogFactory.getLog(AsyncQueryJob.class);
+    private final CairoConfiguration configuration;
+    private final SqlCompiler compiler;
+    private final SqlExecutionContextImpl sqlExecutionContext;
+    private final BytecodeAssembler asm = new BytecodeAssembler();
+    private final EntityColumnFilter columnFilter = new EntityColumnFilter();
+
+    public AsyncQueryJob(
+            RingQueue<AsyncQueryTask> queue,
+            Sequence subSeq,
+            CairoEngine engine,
+            int workerCount,
+            @Nullable FunctionFactoryCache functionFactoryCache,
+            @Nullable DatabaseSnapshotAgent snapshotAgent
+    ) {
+        super(queue, subSeq);
+        this.configuration = engine.getConfiguration();
+        this.compiler = new SqlCompiler(engine, functionFactoryCache, snapshotAgent);
+        this.sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(compiler);
+    }
+
+    @Override
+    protected boolean doRun(int workerId, long cursor) {
+        final AsyncQueryTask task = queue.get(cursor);
+        final AsyncQuery query = task.getQuery();
+        task.of(null);
+        subSeq.done(cursor);
+        execute(query);
+        return true;
+    }
+
+    private void execute(AsyncQuery query) {
+        query.running();
+        LOG.info().$("exec [id=").$(query.getId()).$(", q='").utf8(query.getQuery()).$("']").$();
+        try {
+            sqlExecutionContext.with(query.getSecurityContext(), null, null, -1, null);
+            final CompiledQuery cc = compiler.compile(query.getQuery(), sqlExecutionContext);
+            sqlExecutionContext.storeTelemetry(cc.getType(), Telemetry.ORIGIN_HTTP_JSON);
+            switch (cc.getType()) {
+                case CompiledQuery.SELECT:
+                    try (RecordCursorFactory factory = cc.getRecordCursorFactory()) {
+                        spool(query, factory);
+                    }
+                    break;
+                case CompiledQuery.INSERT:
+                case CompiledQuery.ALTER:
+                    try (QueryFuture future = cc.execute(null)) {
+                        future.await();
+                    }
+                    query.done();
+                    break;
+                case CompiledQuery.COPY_REMOTE:
+                    query.fail(0, "copy from STDIN is not supported over REST");
+                    break;
+                case CompiledQuery.COPY_TO_REMOTE:
+                    Misc.free(cc.getRecordCursorFactory());
+                    query.fail(0, "copy to STDOUT is not supported over REST, use /exp instead");
+                    break;
+                case CompiledQuery.TRUNCATE:
+                case CompiledQuery.REPAIR:
+                case CompiledQuery.SET:
+                case CompiledQuery.DROP:
+                case CompiledQuery.COPY_LOCAL:
+                case CompiledQuery.CREATE_TABLE:
+                case CompiledQuery.INSERT_AS_SELECT:
+                case CompiledQuery.RENAME_TABLE:
+                case CompiledQuery.BACKUP_TABLE:
+                case CompiledQuery.BEGIN:
+                case CompiledQuery.COMMIT:
+                case CompiledQuery.ROLLBACK:
+                case CompiledQuery.CREATE_TABLE_AS_SELECT:
+                case CompiledQuery.SNAPSHOT_DB_PREPARE:
+                case CompiledQuery.SNAPSHOT_DB_COMPLETE:
+                case CompiledQuery.DELETE:
+                case CompiledQuery.REFRESH_MAT_VIEW:
+                    // these statements are executed by the compiler
+                    query.done();
+                    break;
+                default:
+                    // e.g. UPDATE, which is compiled but not executed, must not be reported as done
+                    query.fail(0, "unsupported statement type [type=" + cc.getType() + ']');
+                    break;
+            }
+        } catch (SqlException e) {
+            LOG.info().$("syntax-error [id=").$(query.getId()).$(", at=").$(e.getPosition()).$(", message=`").utf8(e.getFlyweightMessage()).$("`]").$();
+            query.fail(e.getPosition(), e.getFlyweightMessage());
+        } catch (CairoException | CairoError e) {
+            LOG.error().$("could not execute [id=").$(query.getId()).$(", message=`").$(e.getFlyweightMessage()).$("`]").$();
+            query.fail(0, e.getFlyweightMessage());
+        } catch (Throwable e) {
+            LOG.error().$("could not execute [id=").$(query.getId()).$(", ex=").$(e).$(']').$();
+            query.fail(0, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        }
+    }
+
+    private void spool(AsyncQuery query, RecordCursorFactory factory) throws SqlException {
+        final RecordMetadata metadata = factory.getMetadata();
+        columnFilter.of(metadata.getColumnCount());
+        final RecordChain chain = new RecordChain(
+                new SymbolAsStrTypes(metadata),
+                RecordSinkFactory.getInstance(asm, metadata, columnFilter, true),
+                configuration.getSqlSortValuePageSize(),
+                configuration.getSqlSortValueMaxPages()
+        );
+        try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+            final Record record = cursor.getRecord();
+            long offset = -1;
+            long rowCount = 0;
+            while (cursor.hasNext()) {
+                offset = chain.put(record, offset);
+                rowCount++;
+            }
+            query.ofResult(GenericRecordMetadata.copyOfSansTimestamp(metadata), chain, rowCount);
+        } catch (Throwable e) {
+            chain.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.Metrics;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoSecurityContext;
+import io.questdb.cutlass.http.HttpServerConfiguration;
+import io.questdb.griffin.DatabaseSnapshotAgent;
+import io.questdb.griffin.FunctionFactoryCache;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.*;
+import io.questdb.std.ConcurrentHashMap;
+import io.questdb.std.Numbers;
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.Path;
+import io.questdb.tasks.AsyncQueryTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Keeps track of queries submitted via /exec?async=true. Queries are executed by a dedicated
+ * worker pool, so that long running queries do not occupy HTTP workers. Completed results are
+ * kept until they have not been fetched for the configured TTL.
+ */
+public class AsyncQueryRegistry implements Closeable {
+    private static final Log LOG = LogFactory.getLog(AsyncQueryRegistry.class);
+    private static final long EVICTION_INTERVAL_MS = 1000;
+    private final ConcurrentHashMap<AsyncQuery> queries = new ConcurrentHashMap<>();
+    private final RingQueue<AsyncQueryTask> queue;
+    private final MPSequence pubSeq;
+    private final MCSequence subSeq;
+    private final WorkerPool workerPool;
+    private final MillisecondClock clock;
+    private final Rnd rnd;
+    private final long resultTtl;
+    private final int resultLimit;
+    private long nextEvictionMs;
+
+    public AsyncQueryRegistry(
+            HttpServerConfiguration configuration,
+            CairoEngine engine,
+            @Nullable FunctionFactoryCache functionFactoryCache,
+            @Nullable DatabaseSnapshotAgent snapshotAgent,
+            Metrics metrics
+    ) {
+        this.clock = engine.getConfiguration().getMillisecondClock();
+        this.rnd = new Rnd(engine.getConfiguration().getNanosecondClock().getTicks(), clock.getTicks());
+        this.resultTtl = configuration.getAsyncQueryResultTtl();
+        this.resultLimit = configuration.getAsyncQueryResultLimit();
+
+        // queued queries count towards the limit, so that the queue cannot overflow
+        final int capacity = Numbers.ceilPow2(Math.max(1, resultLimit));
+        this.queue = new RingQueue<>(AsyncQueryTask::new, capacity);
+        this.pubSeq = new MPSequence(capacity);
+        this.subSeq = new MCSequence(capacity);
+        pubSeq.then(subSeq).then(pubSeq);
+
+        final int workerCount = configuration.getAsyncQueryWorkerCount();
+        final int[] affinity = new int[workerCount];
+        Arrays.fill(affinity, -1);
+        this.workerPool = new WorkerPool(new WorkerPoolConfiguration() {
+            @Override
+            public int[] getWorkerAffinity() {
+                return affinity;
+            }
+
+            @Override
+            public int getWorkerCount() {
+                return workerCount;
+            }
+
+            @Override
+            public boolean haltOnError() {
+                return false;
+            }
+
+            @Override
+            public String getPoolName() {
+                return "async-query";
+            }
+        }, metrics);
+
+        for (int i = 0; i < workerCount; i++) {
+            final AsyncQueryJob job = new AsyncQueryJob(queue, subSeq, engine, workerCount, functionFactoryCache, snapshotAgent);
+            workerPool.assign(i, (Job) job);
+            workerPool.freeOnHalt(job);
+        }
+        workerPool.assign(new SynchronizedJob() {
+            @Override
+            protected boolean runSerially() {
+                final long now = clock.getTicks();
+                if (now < nextEvictionMs) {
+                    return false;
+                }
+                nextEvictionMs = now + EVICTION_INTERVAL_MS;
+                return evict(now) > 0;
+            }
+        });
+        workerPool.assignCleaner(Path.CLEANER);
+        workerPool.start(LOG);
+    }
+
+    @Override
+    public void close() {
+        workerPool.halt();
+        for (AsyncQuery query : queries.values()) {
+            query.close();
+        }
+        queries.clear();
+    }
+
+    @Nullable
+    public AsyncQuery get(CharSequence id) {
+        return queries.get(id);
+    }
+
+    /**
+     * Queues query for execution.
+     *
+     * @return submitted query or null when the number of kept queries reached the limit
+     */
+    @Nullable
+    public synchronized AsyncQuery submit(CharSequence query, CairoSecurityContext securityContext) {
+        if (queries.size() >= resultLimit && evict(clock.getTicks()) == 0) {
+            return null;
+        }
+
+        long cursor;
+        while ((cursor = pubSeq.next()) < 0) {
+            if (cursor == -1) {
+                // all slots are taken by queued queries, which cannot be evicted
+                return null;
+            }
+        }
+
+        String id;
+        do {
+            id = Long.toHexString(rnd.nextPositiveLong());
+        } while (queries.containsKey(id));
+
+        final AsyncQuery asyncQuery = new AsyncQuery(id, query, securityContext, clock);
+        queries.put(id, asyncQuery);
+        queue.get(cursor).of(asyncQuery);
+        pubSeq.done(cursor);
+        return asyncQuery;
+    }
+
+    private int evict(long now) {
+        int count = 0;
+        for (AsyncQuery query : queries.values()) {
+            if (query.tryEvict(now, resultTtl)) {
+                queries.remove(query.getId());
+                query.close();
+                count++;
+                LOG.info().$("evicted [id=").$(query.getId()).$(']').$();
+            }
+        }
+        return count;
+    }
+}
@@ -26,10 +26,12 @@ package io.questdb.cutlass.http.processors;
 
 import io.questdb.Metrics;
 import io.questdb.Telemetry;
+import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.CairoError;
 import io.questdb.cairo.CairoException;
 import io.questdb.cairo.EntryUnavailableException;
+import io.questdb.cairo.sql.BindVariableService;
 import io.questdb.cairo.sql.NetworkSqlExecutionCircuitBreaker;
 import io.questdb.cairo.sql.ReaderOutOfDateException;
 import io.questdb.cairo.sql.RecordCursorFactory;
@@ -60,12 +62,15 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
     private final SqlCompiler compiler;
     private final JsonQueryProcessorConfiguration configuration;
     private final SqlExecutionContextImpl sqlExecutionContext;
+    private final SqlLiteralNormalizer literalNormalizer;
+    private final CairoConfiguration cairoConfiguration;
     private final Path path = new Path();
     private final NanosecondClock nanosecondClock;
     private final NetworkSqlExecutionCircuitBreaker circuitBreaker;
     private final Metrics metrics;
     private final long alterStartTimeout;
     private final long alterStartFullTimeoutNs;
+    private final AsyncQueryRegistry asyncQueryRegistry;
 
     @TestOnly
     public JsonQueryProcessor(
@@ -83,7 +88,24 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
             @Nullable FunctionFactoryCache functionFactoryCache,
             @Nullable DatabaseSnapshotAgent snapshotAgent
     ) {
-        this(configuration, engine, new SqlCompiler(engine, functionFactoryCache, snapshotAgent), new SqlExecutionContextImpl(engine, workerCount));
+        this(configuration, engine, workerCount, functionFactoryCache, snapshotAgent, null);
+    }
+
+    public JsonQueryProcessor(
+            JsonQueryProcessorConfiguration configuration,
+            CairoEngine engine,
+            int workerCount,
+            @Nullable FunctionFactoryCache functionFactoryCache,
+            @Nullable DatabaseSnapshotAgent snapshotAgent,
+            @Nullable AsyncQueryRegistry asyncQueryRegistry
+    ) {
+        this(
+                configuration,
+                engine,
+                new SqlCompiler(engine, functionFactoryCache, snapshotAgent),
+                new SqlExecutionContextImpl(engine, workerCount),
+                asyncQueryRegistry
+        );
     }
 
     public JsonQueryProcessor(
@@ -91,6 +113,16 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
             CairoEngine engine,
             SqlCompiler sqlCompiler,
             SqlExecutionContextImpl sqlExecutionContext
+    ) {
+        this(configuration, engine, sqlCompiler, sqlExecutionContext, null);
+    }
+
+    public JsonQueryProcessor(
+            JsonQueryProcessorConfiguration configuration,
+            CairoEngine engine,
+            SqlCompiler sqlCompiler,
+            SqlExecutionContextImpl sqlExecutionContext,
+            @Nullable AsyncQueryRegistry asyncQueryRegistry
     ) {
         this.configuration = configuration;
         this.compiler = sqlCompiler;
@@ -114,12 +146,18 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         this.queryExecutors.extendAndSet(CompiledQuery.CREATE_TABLE_AS_SELECT, sendConfirmation);
         this.queryExecutors.extendAndSet(CompiledQuery.SNAPSHOT_DB_PREPARE, sendConfirmation);
         this.queryExecutors.extendAndSet(CompiledQuery.SNAPSHOT_DB_COMPLETE, sendConfirmation);
+        this.queryExecutors.extendAndSet(CompiledQuery.COPY_TO_REMOTE, JsonQueryProcessor::cannotCopyToRemote);
+        this.queryExecutors.extendAndSet(CompiledQuery.DELETE, sendConfirmation);
+        this.queryExecutors.extendAndSet(CompiledQuery.REFRESH_MAT_VIEW, sendConfirmation);
         this.sqlExecutionContext = sqlExecutionContext;
+        this.cairoConfiguration = engine.getConfiguration();
+        this.literalNormalizer = new SqlLiteralNormalizer(cairoConfiguration);
         this.nanosecondClock = engine.getConfiguration().getNanosecondClock();
         this.circuitBreaker = new NetworkSqlExecutionCircuitBreaker(engine.getConfiguration().getCircuitBreakerConfiguration());
         this.metrics = engine.getMetrics();
         this.alterStartTimeout = engine.getConfiguration().getWriterAsyncCommandBusyWaitTimeout();
         this.alterStartFullTimeoutNs = engine.getConfiguration().getWriterAsyncCommandMaxTimeout() * 1000;
+        this.asyncQueryRegistry = asyncQueryRegistry;
     }
 
     @Override
@@ -139,11 +177,11 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
             state.startExecutionTimer();
             // do not set random for new request to avoid copying random from previous request into next one
             // the only time we need to copy random from state is when we resume request execution
-            sqlExecutionContext.with(context.getCairoSecurityContext(), null, null, context.getFd(), circuitBreaker.of(context.getFd()));
+            sqlExecutionContext.with(context.getCairoSecurityContext(), normalizeLiterals(state), null, context.getFd(), circuitBreaker.of(context.getFd()));
             state.info().$("exec [q='").utf8(state.getQuery()).$("']").$();
         }
 
-        final RecordCursorFactory factory = QueryCache.getInstance().poll(state.getQuery());
+        final RecordCursorFactory factory = QueryCache.getInstance().poll(state.getQueryCacheKey());
         try {
             if (continueExecution != null) {
                 retryQueryExecution(state, continueExecution);
@@ -184,6 +222,136 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         }
     }
 
+    private void execute(JsonQueryProcessorState state) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        if (state.getAsyncQueryId() != null) {
+            fetchAsync(state);
+        } else if (state.isAsync()) {
+            submitAsync(state);
+        } else {
+            execute0(state);
+        }
+    }
+
+    private void submitAsync(JsonQueryProcessorState state) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        final HttpConnectionContext context = state.getHttpConnectionContext();
+        final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
+        final CharSequence keepAliveHeader = configuration.getKeepAliveHeader();
+        if (asyncQueryRegistry == null) {
+            sendException(socket, 0, "async queries are disabled", state.getQuery(), keepAliveHeader);
+        } else {
+            final AsyncQuery query = asyncQueryRegistry.submit(state.getQuery(), context.getCairoSecurityContext());
+            if (query == null) {
+                state.info().$("async query limit reached [q='").utf8(state.getQuery()).$("']").$();
+                sendException(socket, 0, "too many async queries, try again later", state.getQuery(), keepAliveHeader);
+            } else {
+                state.info().$("async submit [id=").$(query.getId()).$(", q='").utf8(state.getQuery()).$("']").$();
+                sendAsyncStatus(socket, query, keepAliveHeader);
+            }
+        }
+        readyForNextRequest(context);
+    }
+
+    private void fetchAsync(JsonQueryProcessorState state) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        final HttpConnectionContext context = state.getHttpConnectionContext();
+        final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
+        final CharSequence keepAliveHeader = configuration.getKeepAliveHeader();
+        if (asyncQueryRegistry == null) {
+            sendException(socket, 0, "async queries are disabled", state.getQuery(), keepAliveHeader);
+            readyForNextRequest(context);
+            return;
+        }
+
+        final AsyncQuery query = asyncQueryRegistry.get(state.getAsyncQueryId());
+        if (query == null) {
+            sendException(socket, 0, "unknown or expired async query id", state.getQuery(), keepAliveHeader);
+            readyForNextRequest(context);
+            return;
+        }
+
+        state.setQuery(query.getQuery());
+        switch (query.getStatus()) {
+            case AsyncQuery.STATUS_QUEUED:
+            case AsyncQuery.STATUS_RUNNING:
+                sendAsyncStatus(socket, query, keepAliveHeader);
+                readyForNextRequest(context);
+                return;
+            case AsyncQuery.STATUS_FAILED:
+                sendException(socket, query.getErrorPosition(), query.getError(), query.getQuery(), keepAliveHeader);
+                readyForNextRequest(context);
+                return;
+            default:
+                break;
+        }
+
+        if (!query.hasResult()) {
+            sendConfirmation(state, keepAliveHeader);
+            return;
+        }
+
+        switch (query.lease()) {
+            case AsyncQuery.LEASE_BUSY:
+                // another connection pages through this result, spooled rows are read via shared flyweights
+                LOG.info().$("[fd=").$(context.getFd()).$("] async query result is busy, will retry [id=").$(query.getId()).$(']').$();
+                throw RetryOperationException.INSTANCE;
+            case AsyncQuery.LEASE_EVICTED:
+                sendException(socket, 0, "unknown or expired async query id", state.getQuery(), keepAliveHeader);
+                readyForNextRequest(context);
+                return;
+            default:
+                break;
+        }
+
+        state.startExecutionTimer();
+        state.setCompilerNanos(0);
+        state.info().$("fetch [id=").$(query.getId()).$(", q='").utf8(query.getQuery()).$("']").$();
+        try {
+            // the lease is released when state frees the factory
+            if (state.of(query.getResultFactory(), false, sqlExecutionContext)) {
+                header(socket, keepAliveHeader, 200);
+                doResumeSend(state, context);
+            } else {
+                readyForNextRequest(context);
+            }
+        } catch (PeerIsSlowToReadException | PeerDisconnectedException e) {
+            throw e;
+        } catch (Throwable e) {
+            state.error().$("could not send async query result [id=").$(query.getId()).$(", ex=").$(e).$(']').$();
+            throw ServerDisconnectException.INSTANCE;
+        }
+    }
+
+    private static void sendAsyncStatus(
+            HttpChunkedResponseSocket socket,
+            AsyncQuery query,
+            CharSequence keepAliveHeader
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        header(socket, keepAliveHeader, 200);
+        socket.put('{')
+                .putQuoted("query").put(':').encodeUtf8AndQuote(query.getQuery()).put(',')
+                .putQuoted("id").put(':').putQuoted(query.getId()).put(',')
+                .putQuoted("status").put(':').putQuoted(AsyncQuery.statusName(query.getStatus()))
+                .put('}').put('\n');
+        socket.sendChunk(true);
+    }
+
+    private BindVariableService normalizeLiterals(JsonQueryProcessorState state) {
+        final BindVariableService bindVariableService = state.getBindVariableService();
+        bindVariableService.clear();
+        state.setNormalizedQueryCacheKey(null);
+        if (QueryCache.getInstance().isLiteralNormalizationEnabled()) {
+            try {
+                if (literalNormalizer.of(state.getQuery(), bindVariableService) > 0) {
+                    state.setNormalizedQueryCacheKey(literalNormalizer.getCacheKey());
+                    return bindVariableService;
+                }
+            } catch (SqlException e) {
+                state.info().$("could not normalize query [message=`").utf8(e.getFlyweightMessage()).$("`]").$();
+            }
+            bindVariableService.clear();
+        }
+        return null;
+    }
+
     private void retryQueryExecution(JsonQueryProcessorState state, QueryFuture continueExecution) throws SqlException, PeerIsSlowToReadException, PeerDisconnectedException {
         if (continueExecution.await(0) != QueryFuture.QUERY_COMPLETE) {
             if (state.getExecutionTime() < alterStartFullTimeoutNs) {
@@ -208,7 +376,8 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
                     context,
                     nanosecondClock,
                     configuration.getFloatScale(),
-                    configuration.getDoubleScale()
+                    configuration.getDoubleScale(),
+                    cairoConfiguration
             ));
         }
 
@@ -216,7 +385,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         state.setRnd(null);
 
         if (parseUrl(state, configuration.getKeepAliveHeader())) {
-            execute0(state);
+            execute(state);
         } else {
             readyForNextRequest(context);
         }
@@ -229,7 +398,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         final JsonQueryProcessorState state = LV.get(context);
         if (state != null) {
             // we are resuming request execution, we need to copy random to execution context
-            sqlExecutionContext.with(context.getCairoSecurityContext(), null, state.getRnd(), context.getFd(), circuitBreaker.of(context.getFd()));
+            sqlExecutionContext.with(context.getCairoSecurityContext(), state.getBindVariableService(), state.getRnd(), context.getFd(), circuitBreaker.of(context.getFd()));
             doResumeSend(state, context);
         }
     }
@@ -283,6 +452,15 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         throw SqlException.$(0, "copy from STDIN is not supported over REST");
     }
 
+    private static void cannotCopyToRemote(
+            JsonQueryProcessorState state,
+            CompiledQuery cc,
+            CharSequence keepAliveHeader
+    ) throws SqlException {
+        Misc.free(cc.getRecordCursorFactory());
+        throw SqlException.$(0, "copy to STDOUT is not supported over REST, use /exp instead");
+    }
+
     protected static void header(
             HttpChunkedResponseSocket socket,
             CharSequence keepAliveHeader,
@@ -353,7 +531,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
 
     private void compileQuery(JsonQueryProcessorState state) throws SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
         final long nanos = nanosecondClock.getTicks();
-        final CompiledQuery cc = compiler.compile(state.getQuery(), sqlExecutionContext);
+        final CompiledQuery cc = compile(state);
         sqlExecutionContext.storeTelemetry(cc.getType(), Telemetry.ORIGIN_HTTP_JSON);
         state.setCompilerNanos(nanosecondClock.getTicks() - nanos);
         queryExecutors.getQuick(cc.getType()).execute(
@@ -363,6 +541,22 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         );
     }
 
+    private CompiledQuery compile(JsonQueryProcessorState state) throws SqlException {
+        if (state.isQueryNormalized()) {
+            try {
+                return compiler.compile(literalNormalizer.getSql(), sqlExecutionContext);
+            } catch (SqlException e) {
+                // normalized text is not guaranteed to compile, e.g. when literal type drives
+                // function resolution; fall back to the original text with constants
+                state.info().$("normalized query did not compile, using original [q='").utf8(literalNormalizer.getSql())
+                        .$("', message=`").utf8(e.getFlyweightMessage()).$("`]").$();
+                state.setNormalizedQueryCacheKey(null);
+                state.getBindVariableService().clear();
+            }
+        }
+        return compiler.compile(state.getQuery(), sqlExecutionContext);
+    }
+
     private void executeCachedSelect(
             JsonQueryProcessorState state,
             RecordCursorFactory factory,
@@ -378,7 +572,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
             HttpConnectionContext context
     ) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
         JsonQueryProcessorState state = LV.get(context);
-        execute0(state);
+        execute(state);
     }
 
     @Override
@@ -485,7 +679,8 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         // Query text.
         final HttpRequestHeader header = state.getHttpConnectionContext().getRequestHeader();
         final DirectByteCharSequence query = header.getUrlParam("query");
-        if (query == null || query.length() == 0) {
+        // fetching async query result does not need query text
+        if ((query == null || query.length() == 0) && header.getUrlParam("id") == null) {
             state.info().$("Empty query header received. Sending empty reply.").$();
             sendException(state.getHttpConnectionContext().getChunkedResponseSocket(), 0, "No query text", query, keepAliveHeader);
             return false;
@@ -24,8 +24,10 @@
 
 package io.questdb.cutlass.http.processors;
 
+import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.sql.BindVariableService;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.RecordCursorFactory;
@@ -38,6 +40,7 @@ import io.questdb.cutlass.text.Utf8Exception;
 import io.questdb.griffin.QueryFuture;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.log.LogRecord;
@@ -48,6 +51,7 @@ import io.questdb.std.*;
 import io.questdb.std.str.CharSink;
 import io.questdb.std.str.DirectByteCharSequence;
 import io.questdb.std.str.StringSink;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
 
@@ -63,7 +67,9 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
     static final int QUERY_PREFIX = 1;
     private static final Log LOG = LogFactory.getLog(JsonQueryProcessorState.class);
     private final StringSink query = new StringSink();
+    private final StringSink queryCacheKey = new StringSink();
     private final StringSink columnsQueryParameter = new StringSink();
+    private final StringSink asyncQueryId = new StringSink();
     private final ObjList<StateResumeAction> resumeActions = new ObjList<>();
     private final IntList columnTypesAndFlags = new IntList();
     private final ObjList<String> columnNames = new ObjList<>();
@@ -73,6 +79,7 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
     private final int floatScale;
     private final int doubleScale;
     private final SCSequence eventSubSequence = new SCSequence();
+    private final BindVariableService bindVariableService;
     private QueryFuture continueExecution;
     private Rnd rnd;
     private RecordCursorFactory recordCursorFactory;
@@ -83,6 +90,7 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
     private int columnIndex;
     private boolean countRows = false;
     private boolean explain = false;
+    private boolean async = false;
     private long count;
     private long skip;
     private long stop;
@@ -98,9 +106,11 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
             HttpConnectionContext httpConnectionContext,
             NanosecondClock nanosecondClock,
             int floatScale,
-            int doubleScale
+            int doubleScale,
+            CairoConfiguration cairoConfiguration
     ) {
         this.httpConnectionContext = httpConnectionContext;
+        this.bindVariableService = new BindVariableServiceImpl(cairoConfiguration);
         resumeActions.extendAndSet(QUERY_PREFIX, this::onQueryPrefix);
         resumeActions.extendAndSet(QUERY_METADATA, this::onQueryMetadata);
         resumeActions.extendAndSet(QUERY_METADATA_SUFFIX, this::onQueryMetadataSuffix);
@@ -125,14 +135,18 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         record = null;
         if (null != recordCursorFactory) {
             if (queryCacheable) {
-                QueryCache.getInstance().push(query, recordCursorFactory);
+                QueryCache.getInstance().push(getQueryCacheKey(), recordCursorFactory);
             } else {
                 recordCursorFactory.close();
             }
             recordCursorFactory = null;
         }
         query.clear();
+        queryCacheKey.clear();
+        bindVariableService.clear();
         columnsQueryParameter.clear();
+        asyncQueryId.clear();
+        async = false;
         queryState = QUERY_PREFIX;
         columnIndex = 0;
         countRows = false;
@@ -150,12 +164,20 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
 
     public void configure(
             HttpRequestHeader request,
-            DirectByteCharSequence query,
+            @Nullable DirectByteCharSequence query,
             long skip,
             long stop
     ) throws Utf8Exception {
         this.query.clear();
-        TextUtil.utf8Decode(query.getLo(), query.getHi(), this.query);
+        if (query != null) {
+            TextUtil.utf8Decode(query.getLo(), query.getHi(), this.query);
+        }
+        this.asyncQueryId.clear();
+        final DirectByteCharSequence asyncQueryId = request.getUrlParam("id");
+        if (asyncQueryId != null) {
+            this.asyncQueryId.put(asyncQueryId);
+        }
+        this.async = Chars.equalsNc("true", request.getUrlParam("async"));
         this.skip = skip;
         this.count = 0L;
         this.stop = stop;
@@ -189,6 +211,14 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         return nanosecondClock.getTicks() - this.executeStartNanos;
     }
 
+    /**
+     * @return id of async query to fetch or null when request is not a fetch
+     */
+    @Nullable
+    public CharSequence getAsyncQueryId() {
+        return asyncQueryId.length() > 0 ? asyncQueryId : null;
+    }
+
     public HttpConnectionContext getHttpConnectionContext() {
         return httpConnectionContext;
     }
@@ -197,6 +227,37 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         return query;
     }
 
+    public void setQuery(CharSequence query) {
+        this.query.clear();
+        this.query.put(query);
+    }
+
+    /**
+     * @return key of compiled query in query cache, it is either normalized or original query text
+     */
+    public CharSequence getQueryCacheKey() {
+        return queryCacheKey.length() > 0 ? queryCacheKey : query;
+    }
+
+    public BindVariableService getBindVariableService() {
+        return bindVariableService;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public boolean isQueryNormalized() {
+        return queryCacheKey.length() > 0;
+    }
+
+    public void setNormalizedQueryCacheKey(@Nullable CharSequence cacheKey) {
+        queryCacheKey.clear();
+        if (cacheKey != null) {
+            queryCacheKey.put(cacheKey);
+        }
+    }
+
     public Rnd getRnd() {
         return rnd;
     }
@@ -254,6 +315,83 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         socket.sendChunk(true);
     }
 
+    static void putValue(
+            HttpChunkedResponseSocket socket,
+            Record record,
+            int columnIdx,
+            int columnType,
+            int geoHashFlags,
+            int doubleScale,
+            int floatScale
+    ) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                putBooleanValue(socket, record, columnIdx);
+                break;
+            case ColumnType.BYTE:
+                putByteValue(socket, record, columnIdx);
+                break;
+            case ColumnType.DOUBLE:
+                socket.put(record.getDouble(columnIdx), doubleScale);
+                break;
+            case ColumnType.FLOAT:
+                socket.put(record.getFloat(columnIdx), floatScale);
+                break;
+            case ColumnType.INT:
+                putIntValue(socket, record, columnIdx);
+                break;
+            case ColumnType.LONG:
+                putLongValue(socket, record, columnIdx);
+                break;
+            case ColumnType.DATE:
+                putDateValue(socket, record, columnIdx);
+                break;
+            case ColumnType.TIMESTAMP:
+                putTimestampValue(socket, record, columnIdx);
+                break;
+            case ColumnType.SHORT:
+                putShortValue(socket, record, columnIdx);
+                break;
+            case ColumnType.CHAR:
+                putCharValue(socket, record, columnIdx);
+                break;
+            case ColumnType.STRING:
+                putStrValue(socket, record, columnIdx);
+                break;
+            case ColumnType.SYMBOL:
+                putSymValue(socket, record, columnIdx);
+                break;
+            case ColumnType.BINARY:
+                socket.put('[').put(']');
+                break;
+            case ColumnType.LONG256:
+                putLong256Value(socket, record, columnIdx);
+                break;
+            case ColumnType.GEOBYTE:
+                putGeoHashStringByteValue(socket, record, columnIdx, geoHashFlags);
+                break;
+            case ColumnType.GEOSHORT:
+                putGeoHashStringShortValue(socket, record, columnIdx, geoHashFlags);
+                break;
+            case ColumnType.GEOINT:
+                putGeoHashStringIntValue(socket, record, columnIdx, geoHashFlags);
+                break;
+            case ColumnType.GEOLONG:
+                putGeoHashStringLongValue(socket, record, columnIdx, geoHashFlags);
+                break;
+            case ColumnType.RECORD:
+                putRecValue(socket);
+                break;
+            case ColumnType.NULL:
+                socket.put("null");
+                break;
+            default:
+                assert false : "Not supported type in output " + ColumnType.nameOf(columnType);
+                socket.put("null"); // To make JSON valid
+                break;
+        }
+    }
+
     private static void putStringOrNull(CharSink r, CharSequence str) {
         if (str == null) {
             r.put("null");
@@ -488,73 +626,15 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
             }
 
             int columnIdx = columnSkewList.size() > 0 ? columnSkewList.getQuick(columnIndex) : columnIndex;
-            int columnType = columnTypesAndFlags.getQuick(2 * columnIndex);
-            switch (ColumnType.tagOf(columnType)) {
-                case ColumnType.BOOLEAN:
-                    putBooleanValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.BYTE:
-                    putByteValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.DOUBLE:
-                    putDoubleValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.FLOAT:
-                    putFloatValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.INT:
-                    putIntValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.LONG:
-                    putLongValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.DATE:
-                    putDateValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.TIMESTAMP:
-                    putTimestampValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.SHORT:
-                    putShortValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.CHAR:
-                    putCharValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.STRING:
-                    putStrValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.SYMBOL:
-                    putSymValue(socket, record, columnIdx);
-                    break;
-                case ColumnType.BINARY:
-                    putBinValue(socket);
-                    break;
-                case ColumnType.LONG256:
-                    putLong256Value(socket, record, columnIdx);
-                    break;
-                case ColumnType.GEOBYTE:
-                    putGeoHashStringByteValue(socket, record, columnIdx, columnTypesAndFlags.getQuick(2 * columnIndex + 1));
-                    break;
-                case ColumnType.GEOSHORT:
-                    putGeoHashStringShortValue(socket, record, columnIdx, columnTypesAndFlags.getQuick(2 * columnIndex + 1));
-                    break;
-                case ColumnType.GEOINT:
-                    putGeoHashStringIntValue(socket, record, columnIdx, columnTypesAndFlags.getQuick(2 * columnIndex + 1));
-                    break;
-                case ColumnType.GEOLONG:
-                    putGeoHashStringLongValue(socket, record, columnIdx, columnTypesAndFlags.getQuick(2 * columnIndex + 1));
-                    break;
-                case ColumnType.RECORD:
-                    putRecValue(socket);
-                    break;
-                case ColumnType.NULL:
-                    socket.put("null");
-                    break;
-                default:
-                    assert false : "Not supported type in output " + ColumnType.nameOf(columnType);
-                    socket.put("null"); // To make JSON valid
-                    break;
-            }
+            putValue(
+                    socket,
+                    record,
+                    columnIdx,
+                    columnTypesAndFlags.getQuick(2 * columnIndex),
+                    columnTypesAndFlags.getQuick(2 * columnIndex + 1),
+                    doubleScale,
+                    floatScale
+            );
         }
     }
 
@@ -627,8 +707,13 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
 
     boolean of(RecordCursorFactory factory, SqlExecutionContextImpl sqlExecutionContext)
             throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
+        return of(factory, true, sqlExecutionContext);
+    }
+
+    boolean of(RecordCursorFactory factory, boolean queryCacheable, SqlExecutionContextImpl sqlExecutionContext)
+            throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
         this.recordCursorFactory = factory;
-        this.queryCacheable = true;
+        this.queryCacheable = queryCacheable;
         this.queryJitCompiled = factory.usesCompiledFilter();
         this.cursor = factory.getCursor(sqlExecutionContext);
         final RecordMetadata metadata = factory.getMetadata();
@@ -767,19 +852,6 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         return true;
     }
 
-    private void putBinValue(HttpChunkedResponseSocket socket) {
-        socket.put('[');
-        socket.put(']');
-    }
-
-    private void putDoubleValue(HttpChunkedResponseSocket socket, Record rec, int col) {
-        socket.put(rec.getDouble(col), doubleScale);
-    }
-
-    private void putFloatValue(HttpChunkedResponseSocket socket, Record rec, int col) {
-        socket.put(rec.getFloat(col), floatScale);
-    }
-
     void resume(HttpChunkedResponseSocket socket) throws PeerDisconnectedException, PeerIsSlowToReadException {
         resumeActions.getQuick(queryState).onResume(socket, columnCount);
     }
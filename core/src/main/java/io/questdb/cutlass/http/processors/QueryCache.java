@@ -28,30 +28,48 @@ import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.cutlass.http.HttpServerConfiguration;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
-import io.questdb.std.AssociativeCache;
-import io.questdb.std.ThreadLocal;
+import io.questdb.std.ConcurrentAssociativeCache;
+import io.questdb.std.Misc;
 
 import java.io.Closeable;
 
+/**
+ * Server-wide cache of compiled queries. Factory is checked out by poll() for the duration of
+ * query execution and is pushed back once results are sent, so that all workers share compiled
+ * queries rather than compiling each query once per worker.
+ */
 public final class QueryCache implements Closeable {
 
     private static final Log LOG = LogFactory.getLog(QueryCache.class);
-    private static ThreadLocal<QueryCache> TL_QUERY_CACHE;
-    private final AssociativeCache<RecordCursorFactory> cache;
+    private static volatile QueryCache INSTANCE;
+    private final ConcurrentAssociativeCache<RecordCursorFactory> cache;
+    private final boolean literalNormalizationEnabled;
 
-    public QueryCache(int blocks, int rows) {
-        this.cache = new AssociativeCache<>(blocks, rows);
+    public QueryCache(int blocks, int rows, boolean literalNormalizationEnabled) {
+        this.cache = new ConcurrentAssociativeCache<>(blocks, rows);
+        this.literalNormalizationEnabled = literalNormalizationEnabled;
     }
 
     public static void configure(HttpServerConfiguration configuration) {
+        configure(configuration, 1);
+    }
+
+    public static void configure(HttpServerConfiguration configuration, int workerCount) {
         final boolean enableQueryCache = configuration.isQueryCacheEnabled();
         final int blockCount = enableQueryCache ? configuration.getQueryCacheBlockCount() : 1;
-        final int rowCount = enableQueryCache ? configuration.getQueryCacheRowCount() : 1;
-        TL_QUERY_CACHE = new ThreadLocal<>(() -> new QueryCache(blockCount, rowCount));
+        // configured capacity is per worker
+        final int rowCount = enableQueryCache ? configuration.getQueryCacheRowCount() * workerCount : 1;
+        final QueryCache prevInstance = INSTANCE;
+        INSTANCE = new QueryCache(
+                blockCount,
+                rowCount,
+                enableQueryCache && configuration.isQueryCacheLiteralNormalizationEnabled()
+        );
+        Misc.free(prevInstance);
     }
 
     public static QueryCache getInstance() {
-        return TL_QUERY_CACHE.get();
+        return INSTANCE;
     }
 
     @Override
@@ -60,6 +78,13 @@ public final class QueryCache implements Closeable {
         LOG.info().$("closed").$();
     }
 
+    /**
+     * @return true when literals of SELECT queries are to be replaced with bind variables before cache lookup
+     */
+    public boolean isLiteralNormalizationEnabled() {
+        return literalNormalizationEnabled;
+    }
+
     public RecordCursorFactory poll(CharSequence sql) {
         final RecordCursorFactory factory = cache.poll(sql);
         log(factory == null ? "miss" : "hit", sql);
@@ -74,7 +99,7 @@ public final class QueryCache implements Closeable {
     }
 
     public void remove(CharSequence sql) {
-        cache.put(sql, null);
+        cache.remove(sql);
         log("remove", sql);
     }
 
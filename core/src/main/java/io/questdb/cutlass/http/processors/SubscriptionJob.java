@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cutlass.http.HttpServerConfiguration;
+import io.questdb.mp.*;
+import io.questdb.std.Misc;
+import io.questdb.std.Numbers;
+import io.questdb.std.ObjList;
+import io.questdb.std.Os;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.tasks.SubscriptionTask;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds connections of /subscribe streams that sent all rows committed so far. The job
+ * reloads their table readers on every run and hands a connection back to the dispatcher
+ * as soon as its table has a new commit or the stream is due a heartbeat.
+ */
+public class SubscriptionJob extends SynchronizedJob implements Closeable {
+    private final RingQueue<SubscriptionTask> queue;
+    private final MPSequence pubSeq;
+    private final SCSequence subSeq;
+    private final ObjList<SubscriptionProcessorState> parked = new ObjList<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final MillisecondClock clock;
+    private final int subscriptionLimit;
+    private final long heartbeatInterval;
+
+    public SubscriptionJob(HttpServerConfiguration configuration, MillisecondClock clock) {
+        this.clock = clock;
+        this.subscriptionLimit = configuration.getSubscriptionLimit();
+        this.heartbeatInterval = configuration.getSubscriptionHeartbeatInterval();
+
+        // subscription is parked at most once at a time, the queue cannot overflow
+        final int capacity = Numbers.ceilPow2(Math.max(1, subscriptionLimit));
+        this.queue = new RingQueue<>(SubscriptionTask::new, capacity);
+        this.pubSeq = new MPSequence(capacity);
+        this.subSeq = new SCSequence();
+        pubSeq.then(subSeq).then(pubSeq);
+    }
+
+    @Override
+    public void close() {
+        processQueue();
+        for (int i = 0, n = parked.size(); i < n; i++) {
+            Misc.free(parked.getQuick(i).getHttpConnectionContext());
+        }
+        parked.clear();
+    }
+
+    public MillisecondClock getClock() {
+        return clock;
+    }
+
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    /**
+     * Hands subscription over to the job. Subscription must not be accessed by the caller afterwards,
+     * the job registers its connection for write when there is something to send.
+     *
+     * @param state subscription that has sent all rows committed so far
+     */
+    public void park(SubscriptionProcessorState state) {
+        while (true) {
+            long cursor = pubSeq.next();
+            if (cursor > -1) {
+                queue.get(cursor).of(state);
+                pubSeq.done(cursor);
+                return;
+            }
+            Os.pause();
+        }
+    }
+
+    void release() {
+        subscriptionCount.decrementAndGet();
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            final int count = subscriptionCount.get();
+            if (count >= subscriptionLimit) {
+                return false;
+            }
+            if (subscriptionCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean processQueue() {
+        boolean any = false;
+        while (true) {
+            long cursor = subSeq.next();
+            // -2 = there was a contest for queue index and this thread has lost
+            if (cursor < -1) {
+                continue;
+            }
+
+            // -1 = queue is empty
+            if (cursor < 0) {
+                return any;
+            }
+
+            final SubscriptionTask task = queue.get(cursor);
+            parked.add(task.getState());
+            task.of(null);
+            subSeq.done(cursor);
+            any = true;
+        }
+    }
+
+    @Override
+    protected boolean runSerially() {
+        boolean useful = processQueue();
+        final long now = clock.getTicks();
+        for (int i = parked.size() - 1; i > -1; i--) {
+            final SubscriptionProcessorState state = parked.getQuick(i);
+            if (state.isReady(now)) {
+                parked.remove(i);
+                state.resume();
+                useful = true;
+            }
+        }
+        return useful;
+    }
+}
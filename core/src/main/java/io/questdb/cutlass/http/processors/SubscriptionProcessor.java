@@ -0,0 +1,238 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoError;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cutlass.http.*;
+import io.questdb.cutlass.http.ex.WaitForDataException;
+import io.questdb.cutlass.text.TextUtil;
+import io.questdb.cutlass.text.Utf8Exception;
+import io.questdb.griffin.FunctionFactoryCache;
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.network.NoSpaceLeftInResponseBufferException;
+import io.questdb.network.PeerDisconnectedException;
+import io.questdb.network.PeerIsSlowToReadException;
+import io.questdb.network.ServerDisconnectException;
+import io.questdb.std.Misc;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Streams rows committed to a table as server-sent events, e.g.
+ * <pre>
+ * GET /subscribe?table=trades&amp;filter=sym='BTC-USD'
+ * </pre>
+ * The first event lists the columns, each subsequent event is one row of the table committed
+ * after the subscription was made and matched by the optional filter. Idle streams are sent
+ * comments as heartbeats.
+ */
+public class SubscriptionProcessor implements HttpRequestProcessor, Closeable {
+    private static final LocalValue<SubscriptionProcessorState> LV = new LocalValue<>();
+    private static final Log LOG = LogFactory.getLog(SubscriptionProcessor.class);
+    private final CairoEngine engine;
+    private final JsonQueryProcessorConfiguration configuration;
+    private final SqlCompiler compiler;
+    private final SqlExecutionContextImpl sqlExecutionContext;
+    private final BindVariableServiceImpl bindVariableService;
+    private final StringSink tableName = new StringSink();
+    private final StringSink filterText = new StringSink();
+    private final Path path = new Path();
+    private final SubscriptionJob job;
+
+    public SubscriptionProcessor(
+            JsonQueryProcessorConfiguration configuration,
+            CairoEngine engine,
+            @Nullable FunctionFactoryCache functionFactoryCache,
+            @Nullable SubscriptionJob job
+    ) {
+        this.configuration = configuration;
+        this.engine = engine;
+        this.compiler = new SqlCompiler(engine, functionFactoryCache, null);
+        this.sqlExecutionContext = new SqlExecutionContextImpl(engine, 1);
+        this.bindVariableService = new BindVariableServiceImpl(engine.getConfiguration());
+        this.job = job;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(compiler);
+        Misc.free(path);
+    }
+
+    @Override
+    public void onRequestComplete(HttpConnectionContext context) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        SubscriptionProcessorState state = LV.get(context);
+        if (state == null) {
+            LV.set(context, state = new SubscriptionProcessorState(
+                    context,
+                    configuration.getFloatScale(),
+                    configuration.getDoubleScale()
+            ));
+        }
+
+        final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
+        final CharSequence keepAliveHeader = configuration.getKeepAliveHeader();
+        final HttpRequestHeader request = context.getRequestHeader();
+        tableName.clear();
+        filterText.clear();
+        try {
+            final DirectByteCharSequence table = request.getUrlParam("table");
+            if (table != null) {
+                TextUtil.utf8Decode(table.getLo(), table.getHi(), tableName);
+            }
+            final DirectByteCharSequence filter = request.getUrlParam("filter");
+            if (filter != null) {
+                TextUtil.utf8Decode(filter.getLo(), filter.getHi(), filterText);
+            }
+        } catch (Utf8Exception e) {
+            JsonQueryProcessor.sendException(socket, 0, "Bad UTF8 encoding in subscription", filterText, keepAliveHeader);
+            return;
+        }
+
+        if (job == null) {
+            JsonQueryProcessor.sendException(socket, 0, "subscriptions are disabled", filterText, keepAliveHeader);
+            return;
+        }
+        if (tableName.length() == 0) {
+            JsonQueryProcessor.sendException(socket, 0, "table name expected", filterText, keepAliveHeader);
+            return;
+        }
+        if (engine.getStatus(context.getCairoSecurityContext(), path, tableName) != TableUtils.TABLE_EXISTS) {
+            JsonQueryProcessor.sendException(socket, 0, "table does not exist", filterText, keepAliveHeader);
+            return;
+        }
+        if (!job.tryAcquire()) {
+            state.info().$("subscription limit reached [table=").$(tableName).$(']').$();
+            JsonQueryProcessor.sendException(socket, 0, "too many subscriptions, try again later", filterText, keepAliveHeader);
+            return;
+        }
+
+        try {
+            final TableReader reader;
+            try {
+                reader = engine.getReader(context.getCairoSecurityContext(), tableName);
+            } catch (Throwable e) {
+                job.release();
+                throw e;
+            }
+            // state owns the reader and the subscription slot from now on
+            state.of(job, reader);
+            if (filterText.length() > 0) {
+                sqlExecutionContext.with(context.getCairoSecurityContext(), bindVariableService, null, context.getFd(), null);
+                state.setFilter(compiler.compileFilter(filterText, reader.getMetadata(), sqlExecutionContext));
+            }
+        } catch (SqlException e) {
+            state.info().$("invalid filter [table=").$(tableName).$(", filter=`").utf8(filterText)
+                    .$("`, at=").$(e.getPosition()).$(", message=`").utf8(e.getFlyweightMessage()).$("`]").$();
+            state.clear();
+            JsonQueryProcessor.sendException(socket, e.getPosition(), e.getFlyweightMessage(), filterText, keepAliveHeader);
+            return;
+        } catch (CairoException | CairoError e) {
+            state.info().$("could not subscribe [table=").$(tableName).$(", message=`").$(e.getFlyweightMessage()).$("`]").$();
+            state.clear();
+            JsonQueryProcessor.sendException(socket, 0, e.getFlyweightMessage(), filterText, keepAliveHeader);
+            return;
+        }
+
+        state.info().$("subscribed [table=").$(tableName).$(", filter=`").utf8(filterText).$("`]").$();
+        // compression would hold rows back until deflate buffer fills up
+        socket.status(200, "text/event-stream", false);
+        socket.headers().put("Cache-Control: no-cache").put(Misc.EOL);
+        socket.sendHeader();
+        doResumeSend(state, context);
+    }
+
+    @Override
+    public void resumeSend(HttpConnectionContext context) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        final SubscriptionProcessorState state = LV.get(context);
+        if (state != null) {
+            doResumeSend(state, context);
+        }
+    }
+
+    @Override
+    public void waitForData(HttpConnectionContext context) {
+        final SubscriptionProcessorState state = LV.get(context);
+        if (state != null) {
+            state.park();
+        }
+    }
+
+    private void doResumeSend(
+            SubscriptionProcessorState state,
+            HttpConnectionContext context
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        if (state.getState() == SubscriptionProcessorState.STATE_DONE) {
+            return;
+        }
+
+        final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
+        sqlExecutionContext.with(context.getCairoSecurityContext(), bindVariableService, null, context.getFd(), null);
+        while (true) {
+            try {
+                if (state.hasError()) {
+                    state.putError(socket);
+                } else {
+                    state.resume(socket, sqlExecutionContext);
+                }
+                break;
+            } catch (NoSpaceLeftInResponseBufferException ignored) {
+                if (socket.resetToBookmark()) {
+                    socket.sendChunk(false);
+                } else {
+                    // row is larger than response buffer
+                    state.info().$("Response buffer is too small for subscription row").$();
+                    throw PeerDisconnectedException.INSTANCE;
+                }
+            } catch (SqlException | CairoException e) {
+                LOG.error().$("could not stream subscription [fd=").$(context.getFd()).$(", e=").$((Throwable) e).$(']').$();
+                throw ServerDisconnectException.INSTANCE;
+            }
+        }
+
+        if (state.getState() == SubscriptionProcessorState.STATE_DONE) {
+            // subscription ended with an error event
+            socket.done();
+            return;
+        }
+
+        // rows are sent as soon as they are committed
+        socket.sendChunk(false);
+        throw WaitForDataException.INSTANCE;
+    }
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableReaderTailRecordCursor;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cutlass.http.HttpChunkedResponseSocket;
+import io.questdb.cutlass.http.HttpConnectionContext;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.log.LogRecord;
+import io.questdb.network.IOOperation;
+import io.questdb.std.Misc;
+import io.questdb.std.Mutable;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * State of /subscribe stream. Rows are read by tailing the table, so that every wake up
+ * only reads rows appended since the last one.
+ */
+public class SubscriptionProcessorState implements Mutable, Closeable {
+    static final int STATE_COLUMNS = 0;
+    static final int STATE_ROWS = 1;
+    static final int STATE_DONE = 2;
+    private static final Log LOG = LogFactory.getLog(SubscriptionProcessorState.class);
+    private final HttpConnectionContext httpConnectionContext;
+    private final TableReaderTailRecordCursor cursor = new TableReaderTailRecordCursor();
+    private final StringSink error = new StringSink();
+    private final int floatScale;
+    private final int doubleScale;
+    private SubscriptionJob job;
+    private TableReader reader;
+    private long structureVersion;
+    private Function filter;
+    private int state = STATE_COLUMNS;
+    // row that did not fit response buffer
+    private boolean rowPending = false;
+    private long rowCount;
+    private long heartbeatDeadline;
+
+    public SubscriptionProcessorState(HttpConnectionContext httpConnectionContext, int floatScale, int doubleScale) {
+        this.httpConnectionContext = httpConnectionContext;
+        this.floatScale = floatScale;
+        this.doubleScale = doubleScale;
+    }
+
+    @Override
+    public void clear() {
+        if (job != null) {
+            info().$("unsubscribed [table=").$(reader.getTableName()).$(", rows=").$(rowCount).$(']').$();
+            job.release();
+            job = null;
+        }
+        // cursor returns reader to the pool
+        cursor.close();
+        reader = null;
+        filter = Misc.free(filter);
+        error.clear();
+        state = STATE_COLUMNS;
+        rowPending = false;
+        rowCount = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    public HttpConnectionContext getHttpConnectionContext() {
+        return httpConnectionContext;
+    }
+
+    public LogRecord info() {
+        return LOG.info().$('[').$(httpConnectionContext.getFd()).$("] ");
+    }
+
+    private static void putColumns(HttpChunkedResponseSocket socket, RecordMetadata metadata, CharSequence tableName) {
+        socket.put("event: columns\ndata: {").putQuoted("table").put(':').encodeUtf8AndQuote(tableName);
+        socket.put(',').putQuoted("columns").put(":[");
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (i > 0) {
+                socket.put(',');
+            }
+            socket.put('{')
+                    .putQuoted("name").put(':').encodeUtf8AndQuote(metadata.getColumnName(i)).put(',')
+                    .putQuoted("type").put(':').putQuoted(ColumnType.nameOf(metadata.getColumnType(i)))
+                    .put('}');
+        }
+        socket.put("]}\n\n");
+    }
+
+    private void putRow(HttpChunkedResponseSocket socket, RecordMetadata metadata, Record record) {
+        socket.bookmark();
+        socket.put("data: [");
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (i > 0) {
+                socket.put(',');
+            }
+            final int columnType = metadata.getColumnType(i);
+            JsonQueryProcessorState.putValue(
+                    socket,
+                    record,
+                    i,
+                    columnType,
+                    GeoHashes.getBitFlags(columnType),
+                    doubleScale,
+                    floatScale
+            );
+        }
+        socket.put("]\n\n");
+    }
+
+    boolean hasError() {
+        return error.length() > 0;
+    }
+
+    // called by job thread while connection is parked
+    boolean isReady(long now) {
+        try {
+            if (cursor.reload()) {
+                if (reader.getVersion() != structureVersion) {
+                    // rows would not match columns sent to subscriber
+                    error.put("table structure has changed, subscribe again");
+                }
+                return true;
+            }
+            return now >= heartbeatDeadline;
+        } catch (CairoException e) {
+            error.put(e.getFlyweightMessage());
+            return true;
+        }
+    }
+
+    void of(SubscriptionJob job, TableReader reader) {
+        this.job = job;
+        this.reader = reader;
+        this.structureVersion = reader.getVersion();
+        cursor.of(reader);
+        if (reader.size() > 0) {
+            // stream rows committed after subscription
+            cursor.toBottom();
+        }
+        heartbeatDeadline = job.getClock().getTicks() + job.getHeartbeatInterval();
+    }
+
+    void park() {
+        job.park(this);
+    }
+
+    void putError(HttpChunkedResponseSocket socket) {
+        socket.bookmark();
+        socket.put("event: error\ndata: {").putQuoted("error").put(':').encodeUtf8AndQuote(error).put("}\n\n");
+        state = STATE_DONE;
+    }
+
+    /**
+     * Writes rows appended since the last call. Throws NoSpaceLeftInResponseBufferException when
+     * response buffer is full, the row that did not fit is written again by the next call.
+     *
+     * @param socket           response socket
+     * @param executionContext context to initialise filter with
+     * @throws SqlException when filter cannot be initialised
+     */
+    void resume(HttpChunkedResponseSocket socket, SqlExecutionContext executionContext) throws SqlException {
+        final RecordMetadata metadata = reader.getMetadata();
+        if (state == STATE_COLUMNS) {
+            socket.bookmark();
+            putColumns(socket, metadata, reader.getTableName());
+            state = STATE_ROWS;
+        }
+
+        final long now = job.getClock().getTicks();
+        final Record record = cursor.getRecord();
+        final long rowCount = this.rowCount;
+        if (rowPending) {
+            putRow(socket, metadata, record);
+            rowPending = false;
+            this.rowCount++;
+        }
+
+        if (filter != null) {
+            // symbol keys of constants are looked up on init, new symbols may have been added since
+            filter.init(cursor, executionContext);
+        }
+        while (cursor.hasNext()) {
+            if (filter == null || filter.getBool(record)) {
+                rowPending = true;
+                putRow(socket, metadata, record);
+                rowPending = false;
+                this.rowCount++;
+            }
+        }
+
+        if (this.rowCount > rowCount) {
+            heartbeatDeadline = now + job.getHeartbeatInterval();
+        } else if (now >= heartbeatDeadline) {
+            // SSE comment, lets us find out that idle subscriber has disconnected
+            socket.bookmark();
+            socket.put(":\n\n");
+            heartbeatDeadline = now + job.getHeartbeatInterval();
+        }
+    }
+
+    void resume() {
+        httpConnectionContext.getDispatcher().registerChannel(httpConnectionContext, IOOperation.WRITE);
+    }
+
+    int getState() {
+        return state;
+    }
+
+    void setFilter(Function filter) {
+        this.filter = filter;
+    }
+}
@@ -27,10 +27,13 @@ package io.questdb.cutlass.http.processors;
 import io.questdb.Metrics;
 import io.questdb.Telemetry;
 import io.questdb.cairo.*;
+import io.questdb.cairo.sql.DataFrameCursorFactory;
 import io.questdb.cairo.sql.NetworkSqlExecutionCircuitBreaker;
 import io.questdb.cairo.sql.ReaderOutOfDateException;
 import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.cutlass.http.*;
+import io.questdb.cutlass.parquet.ParquetStreamWriter;
 import io.questdb.cutlass.text.TextUtil;
 import io.questdb.cutlass.text.Utf8Exception;
 import io.questdb.griffin.*;
@@ -44,6 +47,7 @@ import io.questdb.std.Chars;
 import io.questdb.std.Misc;
 import io.questdb.std.Numbers;
 import io.questdb.std.NumericException;
+import io.questdb.std.SegmentStream;
 import io.questdb.std.datetime.millitime.MillisecondClock;
 import io.questdb.std.str.CharSink;
 import io.questdb.std.str.DirectByteCharSequence;
@@ -69,6 +73,7 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
     private final int doubleScale;
     private final NetworkSqlExecutionCircuitBreaker circuitBreaker;
     private final Metrics metrics;
+    private final int exportBatchSize;
 
     @TestOnly
     public TextQueryProcessor(
@@ -94,6 +99,7 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         this.doubleScale = configuration.getDoubleScale();
         this.circuitBreaker = new NetworkSqlExecutionCircuitBreaker(engine.getConfiguration().getCircuitBreakerConfiguration());
         this.metrics = engine.getMetrics();
+        this.exportBatchSize = engine.getConfiguration().getSqlPageFrameMaxRows();
     }
 
     @Override
@@ -139,7 +145,11 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
                     boolean runQuery = true;
                     do {
                         try {
-                            state.cursor = state.recordCursorFactory.getCursor(sqlExecutionContext);
+                            if (isPageFrameExportSupported(state.recordCursorFactory, state.format)) {
+                                state.pageFrameCursor = state.recordCursorFactory.getPageFrameCursor(sqlExecutionContext, DataFrameCursorFactory.ORDER_ASC);
+                            } else {
+                                state.cursor = state.recordCursorFactory.getCursor(sqlExecutionContext);
+                            }
                             runQuery = false;
                         } catch (ReaderOutOfDateException e) {
                             info(state).$(e.getFlyweightMessage()).$();
@@ -149,6 +159,27 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
                         }
                     } while (runQuery);
                     state.metadata = state.recordCursorFactory.getMetadata();
+                    if (state.format == TextQueryProcessorState.FORMAT_ARROW) {
+                        if (state.arrowWriter == null) {
+                            state.arrowWriter = new ArrowStreamWriter(exportBatchSize);
+                        }
+                        if (state.pageFrameCursor != null) {
+                            state.arrowWriter.of(state.metadata, state.pageFrameCursor, state.skip, state.stop);
+                        } else {
+                            state.arrowWriter.of(state.metadata, state.cursor, state.skip, state.stop);
+                        }
+                        state.segmentStream = state.arrowWriter;
+                    } else if (state.format == TextQueryProcessorState.FORMAT_PARQUET) {
+                        if (state.parquetWriter == null) {
+                            state.parquetWriter = new ParquetStreamWriter(exportBatchSize);
+                        }
+                        if (state.pageFrameCursor != null) {
+                            state.parquetWriter.of(state.metadata, state.pageFrameCursor, state.skip, state.stop, state.parquetCodec);
+                        } else {
+                            state.parquetWriter.of(state.metadata, state.cursor, state.skip, state.stop, state.parquetCodec);
+                        }
+                        state.segmentStream = state.parquetWriter;
+                    }
                     header(context.getChunkedResponseSocket(), state, 200);
                     resumeSend(context);
                 } catch (CairoException e) {
@@ -195,7 +226,7 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
             HttpConnectionContext context
     ) throws PeerDisconnectedException, PeerIsSlowToReadException {
         TextQueryProcessorState state = LV.get(context);
-        if (state == null || state.cursor == null) {
+        if (state == null || (state.cursor == null && state.pageFrameCursor == null)) {
             return;
         }
 
@@ -204,6 +235,11 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         LOG.debug().$("resume [fd=").$(context.getFd()).$(']').$();
 
         final HttpChunkedResponseSocket socket = context.getChunkedResponseSocket();
+        if (state.segmentStream != null) {
+            resumeSendSegments(socket, state);
+            readyForNextRequest(context);
+            return;
+        }
         final int columnCount = state.metadata.getColumnCount();
 
         OUT:
@@ -307,6 +343,21 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         }
     }
 
+    private static boolean isPageFrameExportSupported(RecordCursorFactory factory, int format) {
+        // page frames are always in ascending order
+        if (!factory.supportPageFrameCursor() || factory.hasDescendingOrder()) {
+            return false;
+        }
+        switch (format) {
+            case TextQueryProcessorState.FORMAT_ARROW:
+                return ArrowStreamWriter.isPageFrameExportSupported(factory.getMetadata());
+            case TextQueryProcessorState.FORMAT_PARQUET:
+                return ParquetStreamWriter.isPageFrameExportSupported(factory.getMetadata());
+            default:
+                return false;
+        }
+    }
+
     private static void putStringOrNull(CharSink r, CharSequence str) {
         if (str != null) {
             r.encodeUtf8AndQuote(str);
@@ -323,11 +374,22 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
     }
 
     protected void header(HttpChunkedResponseSocket socket, TextQueryProcessorState state, int status_code) throws PeerDisconnectedException, PeerIsSlowToReadException {
-        socket.status(status_code, "text/csv; charset=utf-8");
+        final String extension;
+        if (status_code != 200 || state.format == TextQueryProcessorState.FORMAT_CSV) {
+            socket.status(status_code, "text/csv; charset=utf-8");
+            extension = ".csv\"";
+        } else if (state.format == TextQueryProcessorState.FORMAT_ARROW) {
+            socket.status(status_code, "application/vnd.apache.arrow.stream");
+            extension = ".arrow\"";
+        } else {
+            // compressed parquet pages gain nothing from gzip on top
+            socket.status(status_code, "application/vnd.apache.parquet", state.parquetCodec == ParquetStreamWriter.CODEC_UNCOMPRESSED);
+            extension = ".parquet\"";
+        }
         if (state.fileName != null && state.fileName.length() > 0) {
-            socket.headers().put("Content-Disposition: attachment; filename=\"").put(state.fileName).put(".csv\"").put(Misc.EOL);
+            socket.headers().put("Content-Disposition: attachment; filename=\"").put(state.fileName).put(extension).put(Misc.EOL);
         } else {
-            socket.headers().put("Content-Disposition: attachment; filename=\"questdb-query-").put(clock.getTicks()).put(".csv\"").put(Misc.EOL);
+            socket.headers().put("Content-Disposition: attachment; filename=\"questdb-query-").put(clock.getTicks()).put(extension).put(Misc.EOL);
         }
 
         socket.headers().setKeepAlive(configuration.getKeepAliveHeader());
@@ -416,6 +478,25 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         state.skip = skip;
         state.count = 0L;
         state.stop = stop;
+        final CharSequence format = request.getUrlParam("fmt");
+        if (format != null && !Chars.equalsIgnoreCase("csv", format)) {
+            if (Chars.equalsIgnoreCase("arrow", format)) {
+                state.format = TextQueryProcessorState.FORMAT_ARROW;
+            } else if (Chars.equalsIgnoreCase("parquet", format)) {
+                final CharSequence codec = request.getUrlParam("codec");
+                state.parquetCodec = codec != null ? ParquetStreamWriter.codecOf(codec) : ParquetStreamWriter.CODEC_SNAPPY;
+                if (state.parquetCodec == -1) {
+                    info(state).$("unsupported parquet codec [codec=").$(codec).$(']').$();
+                    sendException(socket, 0, "unsupported parquet codec, expected snappy, gzip or uncompressed", state);
+                    return false;
+                }
+                state.format = TextQueryProcessorState.FORMAT_PARQUET;
+            } else {
+                info(state).$("unsupported export format [fmt=").$(format).$(']').$();
+                sendException(socket, 0, "unsupported export format, expected csv, arrow or parquet", state);
+                return false;
+            }
+        }
         state.noMeta = Chars.equalsNc("true", request.getUrlParam("nm"));
         state.countRows = Chars.equalsNc("true", request.getUrlParam("count"));
         return true;
@@ -519,6 +600,30 @@ public class TextQueryProcessor implements HttpRequestProcessor, Closeable {
         }
     }
 
+    private void resumeSendSegments(
+            HttpChunkedResponseSocket socket,
+            TextQueryProcessorState state
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        final SegmentStream stream = state.segmentStream;
+        do {
+            // message segments are copied as they are, the chunk is sent every time response buffer fills up
+            for (int n = stream.getSegmentCount(); state.segmentIndex < n; state.segmentIndex++) {
+                final long lo = stream.getSegmentAddress(state.segmentIndex);
+                final long hi = lo + stream.getSegmentSize(state.segmentIndex);
+                while (true) {
+                    state.segmentOffset += socket.writeBytes(lo + state.segmentOffset, hi);
+                    if (lo + state.segmentOffset == hi) {
+                        break;
+                    }
+                    socket.sendChunk(false);
+                }
+                state.segmentOffset = 0;
+            }
+            state.segmentIndex = 0;
+        } while (stream.nextMessage());
+        sendDone(socket, state);
+    }
+
     private void sendConfirmation(HttpChunkedResponseSocket socket) throws PeerDisconnectedException, PeerIsSlowToReadException {
         socket.put("DDL Success\n");
         socket.sendChunk(true);
@@ -24,19 +24,25 @@
 
 package io.questdb.cutlass.http.processors;
 
+import io.questdb.cairo.sql.PageFrameCursor;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.cairo.sql.RecordMetadata;
 import io.questdb.cutlass.http.HttpConnectionContext;
+import io.questdb.cutlass.parquet.ParquetStreamWriter;
 import io.questdb.std.Misc;
 import io.questdb.std.Mutable;
 import io.questdb.std.Rnd;
+import io.questdb.std.SegmentStream;
 import io.questdb.std.str.StringSink;
 
 import java.io.Closeable;
 
 public class TextQueryProcessorState implements Mutable, Closeable {
+    static final int FORMAT_CSV = 0;
+    static final int FORMAT_ARROW = 1;
+    static final int FORMAT_PARQUET = 2;
     final StringSink query = new StringSink();
     private final HttpConnectionContext httpConnectionContext;
     boolean countRows = false;
@@ -44,6 +50,15 @@ public class TextQueryProcessorState implements Mutable, Closeable {
     RecordCursorFactory recordCursorFactory;
     RecordMetadata metadata;
     RecordCursor cursor;
+    PageFrameCursor pageFrameCursor;
+    ArrowStreamWriter arrowWriter;
+    ParquetStreamWriter parquetWriter;
+    // binary export in progress, either of the writers
+    SegmentStream segmentStream;
+    int segmentIndex;
+    long segmentOffset;
+    int format = FORMAT_CSV;
+    int parquetCodec;
     long count;
     long skip;
     long stop;
@@ -62,6 +77,13 @@ public class TextQueryProcessorState implements Mutable, Closeable {
     public void clear() {
         metadata = null;
         cursor = Misc.free(cursor);
+        pageFrameCursor = Misc.free(pageFrameCursor);
+        if (segmentStream != null) {
+            segmentStream.clear();
+            segmentStream = null;
+        }
+        segmentIndex = 0;
+        segmentOffset = 0;
         record = null;
         if (null != recordCursorFactory) {
             if (queryCacheable) {
@@ -76,11 +98,16 @@ public class TextQueryProcessorState implements Mutable, Closeable {
         queryState = JsonQueryProcessorState.QUERY_PREFIX;
         columnIndex = 0;
         countRows = false;
+        format = FORMAT_CSV;
     }
 
     @Override
     public void close() {
         cursor = Misc.free(cursor);
+        pageFrameCursor = Misc.free(pageFrameCursor);
+        segmentStream = null;
+        arrowWriter = Misc.free(arrowWriter);
+        parquetWriter = Misc.free(parquetWriter);
         recordCursorFactory = Misc.free(recordCursorFactory);
     }
 
@@ -33,6 +33,7 @@ import io.questdb.std.Chars;
 import io.questdb.std.Numbers;
 import io.questdb.std.NumericException;
 import io.questdb.std.Unsafe;
+import io.questdb.std.Vect;
 import io.questdb.std.str.DirectByteCharSequence;
 import io.questdb.std.str.FloatingDirectCharSink;
 
@@ -43,6 +44,7 @@ public class LineTcpEventBuffer {
     private final long bufLo;
     private final long bufSize;
     private final FloatingDirectCharSink tempSink = new FloatingDirectCharSink();
+    private final DirectByteCharSequence tempByteSeq = new DirectByteCharSequence();
 
     public LineTcpEventBuffer(long bufLo, long bufSize) {
         this.bufLo = bufLo;
@@ -212,11 +214,11 @@ public class LineTcpEventBuffer {
         } else {
             // Symbol value cannot be resolved at this point
             // Encode whole string value into the message
+            Unsafe.getUnsafe().putByte(address, LineTcpParser.ENTITY_TYPE_TAG);
             if (!hasNonAsciiChars) {
-                tempSink.put(columnValue);
+                return putAsciiChars(address + Byte.BYTES, value);
             }
             final int length = tempSink.length();
-            Unsafe.getUnsafe().putByte(address, LineTcpParser.ENTITY_TYPE_TAG);
             Unsafe.getUnsafe().putInt(address + Byte.BYTES, length);
             return address + length * 2L + Integer.BYTES + Byte.BYTES;
         }
@@ -257,8 +259,12 @@ public class LineTcpEventBuffer {
         return Unsafe.getUnsafe().getShort(address);
     }
 
-    public CharSequence readUtf16Chars(long address) {
-        int len = readInt(address);
+    public CharSequence readString(long address) {
+        final int len = readInt(address);
+        if (len < 0) {
+            // negative length marks single byte (ASCII) chars copied as is from the receive buffer
+            return tempByteSeq.of(address + Integer.BYTES, address + Integer.BYTES - len);
+        }
         return readUtf16Chars(address + Integer.BYTES, len);
     }
 
@@ -267,22 +273,37 @@ public class LineTcpEventBuffer {
         return tempSink;
     }
 
+    public long skipString(long address) {
+        final int len = readInt(address);
+        return address + Integer.BYTES + (len < 0 ? -len : len * 2L);
+    }
+
     private long addString(long address, DirectByteCharSequence value, boolean hasNonAsciiChars, byte entityTypeString) {
+        if (!hasNonAsciiChars) {
+            checkCapacity(address, Byte.BYTES + Integer.BYTES + value.length());
+            Unsafe.getUnsafe().putByte(address, entityTypeString);
+            return putAsciiChars(address + Byte.BYTES, value);
+        }
         int maxLen = 2 * value.length();
         checkCapacity(address, Byte.BYTES + Integer.BYTES + maxLen);
         long strPos = address + Byte.BYTES + Integer.BYTES; // skip field type and string length
         tempSink.of(strPos, strPos + maxLen);
-        if (hasNonAsciiChars) {
-            utf8ToUtf16Unchecked(value, tempSink);
-        } else {
-            tempSink.put(value);
-        }
+        utf8ToUtf16Unchecked(value, tempSink);
         final int length = tempSink.length();
         Unsafe.getUnsafe().putByte(address, entityTypeString);
         Unsafe.getUnsafe().putInt(address + Byte.BYTES, length);
         return address + length * 2L + Integer.BYTES + Byte.BYTES;
     }
 
+    private long putAsciiChars(long address, DirectByteCharSequence value) {
+        // ASCII bytes need no decoding, copy them once instead of widening to UTF-16;
+        // negative length tells the writer thread the chars are single byte
+        final int length = value.length();
+        Unsafe.getUnsafe().putInt(address, -length);
+        Vect.memcpy(address + Integer.BYTES, value.getLo(), length);
+        return address + Integer.BYTES + length;
+    }
+
     private void checkCapacity(long address, int length) {
         if (address + length > bufSize) {
             throw CairoException.instance(0).put("queue buffer overflow");
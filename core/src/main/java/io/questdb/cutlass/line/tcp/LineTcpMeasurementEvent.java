@@ -46,7 +46,10 @@ class LineTcpMeasurementEvent implements Closeable {
     private final DefaultColumnTypes defaultColumnTypes;
     private final boolean stringToCharCastAllowed;
     private final boolean symbolAsFieldSupported;
+    private final boolean metricsEnabled;
     private int writerWorkerId;
+    private long size;
+    private long publishMicros;
     private TableUpdateDetails tableUpdateDetails;
     private boolean commitOnWriterClose;
 
@@ -57,7 +60,8 @@ class LineTcpMeasurementEvent implements Closeable {
             LineProtoTimestampAdapter timestampAdapter,
             DefaultColumnTypes defaultColumnTypes,
             boolean stringToCharCastAllowed,
-            boolean symbolAsFieldSupported
+            boolean symbolAsFieldSupported,
+            boolean metricsEnabled
     ) {
         this.buffer = new LineTcpEventBuffer(bufLo, bufSize);
         this.clock = clock;
@@ -65,6 +69,7 @@ class LineTcpMeasurementEvent implements Closeable {
         this.defaultColumnTypes = defaultColumnTypes;
         this.stringToCharCastAllowed = stringToCharCastAllowed;
         this.symbolAsFieldSupported = symbolAsFieldSupported;
+        this.metricsEnabled = metricsEnabled;
     }
 
     @Override
@@ -73,6 +78,20 @@ class LineTcpMeasurementEvent implements Closeable {
         tableUpdateDetails = Misc.free(tableUpdateDetails);
     }
 
+    /**
+     * @return time in microseconds the event spent in the writer queue, only tracked when metrics are enabled
+     */
+    public long getQueueWaitMicros() {
+        return metricsEnabled ? clock.getTicks() - publishMicros : 0;
+    }
+
+    /**
+     * @return number of bytes the measurement occupies in the event buffer
+     */
+    public long getSize() {
+        return size;
+    }
+
     public TableUpdateDetails getTableUpdateDetails() {
         return tableUpdateDetails;
     }
@@ -134,12 +153,10 @@ class LineTcpMeasurementEvent implements Closeable {
                     }
                 }
 
-                CharSequence cs;
                 switch (entityType) {
                     case LineTcpParser.ENTITY_TYPE_TAG:
-                        cs = buffer.readUtf16Chars(offset);
-                        row.putSym(colIndex, cs);
-                        offset += cs.length() * 2L + Integer.BYTES;
+                        row.putSym(colIndex, buffer.readString(offset));
+                        offset = buffer.skipString(offset);
                         break;
                     case LineTcpParser.ENTITY_TYPE_CACHED_TAG:
                         row.putSymIndex(colIndex, buffer.readInt(offset));
@@ -182,18 +199,16 @@ class LineTcpMeasurementEvent implements Closeable {
                         offset += Byte.BYTES;
                         break;
                     case LineTcpParser.ENTITY_TYPE_STRING:
-                        cs = buffer.readUtf16Chars(offset);
-                        row.putStr(colIndex, cs);
-                        offset += cs.length() * 2L + Integer.BYTES;
+                        row.putStr(colIndex, buffer.readString(offset));
+                        offset = buffer.skipString(offset);
                         break;
                     case LineTcpParser.ENTITY_TYPE_CHAR:
                         row.putChar(colIndex, buffer.readChar(offset));
                         offset += Character.BYTES;
                         break;
                     case LineTcpParser.ENTITY_TYPE_LONG256:
-                        cs = buffer.readUtf16Chars(offset);
-                        row.putLong256(colIndex, cs);
-                        offset += cs.length() * 2L + Integer.BYTES;
+                        row.putLong256(colIndex, buffer.readString(offset));
+                        offset = buffer.skipString(offset);
                         break;
                     case LineTcpParser.ENTITY_TYPE_TIMESTAMP:
                         row.putTimestamp(colIndex, buffer.readLong(offset));
@@ -493,6 +508,10 @@ class LineTcpMeasurementEvent implements Closeable {
         }
         buffer.addDesignatedTimestamp(buffer.getAddress(), timestamp);
         buffer.addNumOfColumns(buffer.getAddress() + Long.BYTES, entitiesWritten);
+        size = offset - buffer.getAddress();
+        if (metricsEnabled) {
+            publishMicros = clock.getTicks();
+        }
         writerWorkerId = tableUpdateDetails.getWriterThreadId();
     }
 
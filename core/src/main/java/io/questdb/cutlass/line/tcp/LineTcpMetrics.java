@@ -0,0 +1,79 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.TableWriterMetrics;
+import io.questdb.metrics.CounterWithDynamicLabel;
+import io.questdb.metrics.HistogramWithDynamicLabel;
+import io.questdb.metrics.MetricsRegistry;
+import io.questdb.std.CharSequenceHashSet;
+
+public class LineTcpMetrics {
+
+    // per table counters, labelled with table name
+    private final CounterWithDynamicLabel tableRowCounter;
+    private final CounterWithDynamicLabel tableByteCounter;
+    private final HistogramWithDynamicLabel tableQueueWaitMicrosHistogram;
+
+    public LineTcpMetrics(MetricsRegistry metricsRegistry) {
+        this.tableRowCounter = metricsRegistry.newCounter("line_tcp_table_rows", "table");
+        this.tableByteCounter = metricsRegistry.newCounter("line_tcp_table_bytes", "table");
+        this.tableQueueWaitMicrosHistogram = metricsRegistry.newHistogram(
+                "line_tcp_table_queue_wait_micros",
+                "table",
+                TableWriterMetrics.LATENCY_MICROS_BUCKET_BOUNDS
+        );
+    }
+
+    public void addTableEvent(CharSequence tableName, long bytes, long queueWaitMicros) {
+        tableRowCounter.inc(tableName);
+        tableByteCounter.add(tableName, bytes);
+        tableQueueWaitMicrosHistogram.record(tableName, queueWaitMicros);
+    }
+
+    public void collectTableNames(CharSequenceHashSet sink) {
+        tableRowCounter.collectLabelValues(sink);
+        tableByteCounter.collectLabelValues(sink);
+        tableQueueWaitMicrosHistogram.collectLabelValues(sink);
+    }
+
+    public CounterWithDynamicLabel getTableByteCounter() {
+        return tableByteCounter;
+    }
+
+    public HistogramWithDynamicLabel getTableQueueWaitMicrosHistogram() {
+        return tableQueueWaitMicrosHistogram;
+    }
+
+    public CounterWithDynamicLabel getTableRowCounter() {
+        return tableRowCounter;
+    }
+
+    public void removeTable(CharSequence tableName) {
+        tableRowCounter.remove(tableName);
+        tableByteCounter.remove(tableName);
+        tableQueueWaitMicrosHistogram.remove(tableName);
+    }
+}
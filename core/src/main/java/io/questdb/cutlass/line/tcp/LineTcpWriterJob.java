@@ -155,6 +155,9 @@ class LineTcpWriterJob implements Job, Closeable {
                                         .$(", threadId=").$(workerId)
                                         .I$();
                             }
+                            if (metrics.isEnabled()) {
+                                metrics.lineTcp().addTableEvent(tab.getTableNameUtf16(), event.getSize(), event.getQueueWaitMicros());
+                            }
                             event.append();
                         }
                     } catch (Throwable ex) {
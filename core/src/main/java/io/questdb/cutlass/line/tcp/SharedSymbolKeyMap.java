@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.TableReaderMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.std.CharSequenceIntHashMap;
+import io.questdb.std.ObjList;
+
+/**
+ * Symbol value to key map of one table column, shared by network IO threads writing to the column.
+ * Keys are valid only for the column name txn and the table truncate version the map was created for,
+ * a truncated or re-created column gets a new map.
+ */
+class SharedSymbolKeyMap {
+    private final CharSequenceIntHashMap symbolValueToKeyMap = new CharSequenceIntHashMap(256, 0.5, SymbolTable.VALUE_NOT_FOUND);
+    private final long columnNameTxn;
+    private final long truncateVersion;
+
+    SharedSymbolKeyMap(long columnNameTxn, long truncateVersion) {
+        this.columnNameTxn = columnNameTxn;
+        this.truncateVersion = truncateVersion;
+    }
+
+    /**
+     * Finds map of the column in the list of maps indexed by column writer index, replaces the map
+     * when it is stale. Maps of dropped columns are removed. Callers synchronise access to the list.
+     */
+    static SharedSymbolKeyMap getOrCreate(
+            ObjList<SharedSymbolKeyMap> maps,
+            TableReaderMetadata metadata,
+            int colWriterIndex,
+            long columnNameTxn,
+            long truncateVersion
+    ) {
+        for (int i = 0, n = maps.size(); i < n; i++) {
+            if (maps.getQuick(i) != null && !hasWriterIndex(metadata, i)) {
+                maps.setQuick(i, null);
+            }
+        }
+        SharedSymbolKeyMap map = maps.getQuiet(colWriterIndex);
+        if (map == null || !map.isValidFor(columnNameTxn, truncateVersion)) {
+            map = new SharedSymbolKeyMap(columnNameTxn, truncateVersion);
+            maps.extendAndSet(colWriterIndex, map);
+        }
+        return map;
+    }
+
+    private static boolean hasWriterIndex(TableReaderMetadata metadata, int colWriterIndex) {
+        // reader metadata leaves dropped columns out
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (metadata.getWriterIndex(i) == colWriterIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isValidFor(long columnNameTxn, long truncateVersion) {
+        return this.columnNameTxn == columnNameTxn && this.truncateVersion == truncateVersion;
+    }
+
+    synchronized int keyOf(CharSequence value) {
+        return symbolValueToKeyMap.get(value);
+    }
+
+    synchronized void put(CharSequence value, int key) {
+        symbolValueToKeyMap.putIfAbsent(value, key);
+    }
+
+    synchronized int size() {
+        return symbolValueToKeyMap.size();
+    }
+}
@@ -39,6 +39,8 @@ class SymbolCache implements Closeable, SymbolLookup {
             0.5,
             SymbolTable.VALUE_NOT_FOUND
     );
+    // keys resolved by all network IO threads writing to the column, looked up when own map misses
+    private SharedSymbolKeyMap sharedSymbolKeyMap;
     private TxReader txReader;
     private final SymbolMapReaderImpl symbolMapReader = new SymbolMapReaderImpl();
     private final MicrosecondClock clock;
@@ -55,6 +57,7 @@ class SymbolCache implements Closeable, SymbolLookup {
     public void close() {
         symbolMapReader.close();
         symbolValueToKeyMap.clear();
+        sharedSymbolKeyMap = null;
     }
 
     @Override
@@ -64,6 +67,14 @@ class SymbolCache implements Closeable, SymbolLookup {
             return symbolValueToKeyMap.valueAt(index);
         }
 
+        if (sharedSymbolKeyMap != null) {
+            final int sharedKey = sharedSymbolKeyMap.keyOf(value);
+            if (sharedKey != SymbolTable.VALUE_NOT_FOUND) {
+                symbolValueToKeyMap.putAt(index, Chars.toString(value), sharedKey);
+                return sharedKey;
+            }
+        }
+
         final long ticks = clock.getTicks();
         int symbolValueCount;
 
@@ -78,7 +89,11 @@ class SymbolCache implements Closeable, SymbolLookup {
         final int symbolKey = symbolMapReader.keyOf(value);
 
         if (SymbolTable.VALUE_NOT_FOUND != symbolKey) {
-            symbolValueToKeyMap.putAt(index, Chars.toString(value), symbolKey);
+            final String str = Chars.toString(value);
+            symbolValueToKeyMap.putAt(index, str, symbolKey);
+            if (sharedSymbolKeyMap != null) {
+                sharedSymbolKeyMap.put(str, symbolKey);
+            }
         }
 
         return symbolKey;
@@ -94,6 +109,17 @@ class SymbolCache implements Closeable, SymbolLookup {
             int symbolIndexInTxFile,
             TxReader txReader,
             long columnNameTxn
+    ) {
+        of(configuration, path, columnName, symbolIndexInTxFile, txReader, columnNameTxn, null);
+    }
+
+    void of(CairoConfiguration configuration,
+            Path path,
+            CharSequence columnName,
+            int symbolIndexInTxFile,
+            TxReader txReader,
+            long columnNameTxn,
+            SharedSymbolKeyMap sharedSymbolKeyMap
     ) {
         this.symbolIndexInTxFile = symbolIndexInTxFile;
         final int plen = path.length();
@@ -102,6 +128,7 @@ class SymbolCache implements Closeable, SymbolLookup {
         path.trimTo(plen);
         symbolMapReader.of(configuration, path, columnName, columnNameTxn, symCount);
         symbolValueToKeyMap.clear(symCount);
+        this.sharedSymbolKeyMap = sharedSymbolKeyMap;
     }
 
     private int safeReadUncommittedSymbolCount(int symbolIndexInTxFile, boolean initialStateOk) {
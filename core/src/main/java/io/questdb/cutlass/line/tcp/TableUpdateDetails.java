@@ -51,6 +51,8 @@ public class TableUpdateDetails implements Closeable {
     private final CairoEngine engine;
     private final MillisecondClock millisecondClock;
     private final long writerTickRowsCountMod;
+    // symbol value to key maps shared by network IO threads, indexed by column writer index
+    private final ObjList<SharedSymbolKeyMap> sharedSymbolKeyMaps = new ObjList<>();
     private int writerThreadId;
     // Number of rows processed since the last reshuffle, this is an estimate because it is incremented by
     // multiple threads without synchronisation
@@ -139,6 +141,9 @@ public class TableUpdateDetails implements Closeable {
                 }
             }
             writerThreadId = Integer.MIN_VALUE;
+            synchronized (sharedSymbolKeyMaps) {
+                sharedSymbolKeyMaps.clear();
+            }
         }
     }
 
@@ -252,6 +257,12 @@ public class TableUpdateDetails implements Closeable {
         writer.tick(false);
     }
 
+    SharedSymbolKeyMap getSharedSymbolKeyMap(TableReaderMetadata metadata, int colWriterIndex, long columnNameTxn, long truncateVersion) {
+        synchronized (sharedSymbolKeyMaps) {
+            return SharedSymbolKeyMap.getOrCreate(sharedSymbolKeyMaps, metadata, colWriterIndex, columnNameTxn, truncateVersion);
+        }
+    }
+
     ThreadLocalDetails getThreadLocalDetails(int workerId) {
         lastMeasurementMillis = millisecondClock.getTicks();
         return localDetailsArray[workerId];
@@ -354,7 +365,20 @@ public class TableUpdateDetails implements Closeable {
 
                 long columnNameTxn = reader.getColumnVersionReader().getDefaultColumnNameTxn(colWriterIndex);
                 assert symIndex <= colWriterIndex;
-                symCache.of(engine.getConfiguration(), path, symbolNameTemp, symIndex, txReader, columnNameTxn);
+                symCache.of(
+                        engine.getConfiguration(),
+                        path,
+                        symbolNameTemp,
+                        symIndex,
+                        txReader,
+                        columnNameTxn,
+                        getSharedSymbolKeyMap(
+                                reader.getMetadata(),
+                                colWriterIndex,
+                                columnNameTxn,
+                                reader.getTxFile().getTruncateVersion()
+                        )
+                );
                 symbolCacheByColumnIndex.extendAndSet(colWriterIndex, symCache);
                 return symCache;
             }
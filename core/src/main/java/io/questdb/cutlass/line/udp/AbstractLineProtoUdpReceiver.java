@@ -27,19 +27,17 @@ package io.questdb.cutlass.line.udp;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
-import io.questdb.mp.SOCountDownLatch;
-import io.questdb.mp.SynchronizedJob;
-import io.questdb.mp.WorkerPool;
+import io.questdb.mp.*;
 import io.questdb.network.NetworkError;
 import io.questdb.network.NetworkFacade;
-import io.questdb.std.Misc;
-import io.questdb.std.Os;
+import io.questdb.std.*;
 
 import java.io.Closeable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob implements Closeable {
     private static final Log LOG = LogFactory.getLog(AbstractLineProtoUdpReceiver.class);
+    private static final int FORWARD_QUEUE_CAPACITY = 256;
     protected final LineUdpLexer lexer;
     protected final LineUdpParserImpl parser;
     protected final NetworkFacade nf;
@@ -47,6 +45,25 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
     private final SOCountDownLatch started = new SOCountDownLatch(1);
     private final SOCountDownLatch halted = new SOCountDownLatch(1);
     private final LineUdpReceiverConfiguration configuration;
+    // receivers of the other sockets bound with SO_REUSEPORT, each of them
+    // receives and parses on its own job, only the receiver created by the server has them
+    private final ObjList<AbstractLineProtoUdpReceiver> siblings = new ObjList<>();
+    private final boolean primary;
+    protected final int socketCount;
+    // Every table is owned by one receiver, chosen by hash of the table name, so that parsers do not
+    // compete for table writers. Lines of tables owned by other receivers are copied to the staging
+    // buffer of the owner and passed to it over its forward queue, same as the TCP receiver routes
+    // tables to writer threads. All receivers, indexed by receiver id, share the list.
+    private final ObjList<AbstractLineProtoUdpReceiver> receivers;
+    private final int receiverId;
+    private final int msgBufferSize;
+    private RingQueue<ForwardedLines> forwardQueue;
+    private MPSequence forwardPubSeq;
+    private SCSequence forwardSubSeq;
+    private long stagingBuf;
+    private long stagingBufSize;
+    private final IntList stagingSizes = new IntList();
+    private volatile boolean routingReady;
     protected long fd;
     protected int commitRate;
     protected long totalCount = 0;
@@ -56,28 +73,56 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
             LineUdpReceiverConfiguration configuration,
             CairoEngine engine,
             WorkerPool workerPool
+    ) {
+        this(configuration, engine, workerPool, null);
+    }
+
+    /**
+     * @param receivers receivers created so far, null for the receiver created by the server
+     */
+    protected AbstractLineProtoUdpReceiver(
+            LineUdpReceiverConfiguration configuration,
+            CairoEngine engine,
+            WorkerPool workerPool,
+            ObjList<AbstractLineProtoUdpReceiver> receivers
     ) {
         this.configuration = configuration;
         this.commitMode = configuration.getCommitMode();
+        this.primary = receivers == null;
+        this.receivers = primary ? new ObjList<>() : receivers;
+        this.receiverId = this.receivers.size();
+        this.receivers.add(this);
+        this.socketCount = getSocketCount(configuration);
+        this.msgBufferSize = configuration.getMsgBufferSize();
+        this.routingReady = socketCount == 1;
         nf = configuration.getNetworkFacade();
-        fd = nf.socketUdp();
-        if (fd < 0) {
-            int errno = nf.errno();
-            LOG.error().$("cannot open UDP socket [errno=").$(errno).$(']').$();
-            throw NetworkError.instance(errno, "Cannot open UDP socket");
-        }
+        fd = openSocket();
 
         try {
             // when listening for multicast packets bind address must be 0
-            bind(configuration);
+            bind(configuration, fd);
             this.commitRate = configuration.getCommitRate();
 
-            if (configuration.getReceiveBufferSize() != -1 && nf.setRcvBuf(fd, configuration.getReceiveBufferSize()) != 0) {
-                LOG.error()
-                        .$("could not set receive buffer size [fd=").$(fd)
-                        .$(", size=").$(configuration.getReceiveBufferSize())
-                        .$(", errno=").$(configuration.getNetworkFacade().errno())
-                        .I$();
+            if (socketCount > 1) {
+                // forwarded lines of a datagram are followed by line end, which the datagram may miss
+                final long slotSize = msgBufferSize + 1;
+                forwardPubSeq = new MPSequence(FORWARD_QUEUE_CAPACITY);
+                forwardSubSeq = new SCSequence();
+                forwardPubSeq.then(forwardSubSeq).then(forwardPubSeq);
+                forwardQueue = new RingQueue<>(ForwardedLines::new, slotSize, FORWARD_QUEUE_CAPACITY, MemoryTag.NATIVE_DEFAULT);
+                stagingBufSize = slotSize * socketCount;
+                stagingBuf = Unsafe.malloc(stagingBufSize, MemoryTag.NATIVE_DEFAULT);
+                stagingSizes.setAll(socketCount, 0);
+            }
+
+            if (configuration.getReceiveBufferSize() != -1) {
+                if (nf.setRcvBuf(fd, configuration.getReceiveBufferSize()) != 0) {
+                    LOG.error()
+                            .$("could not set receive buffer size [fd=").$(fd)
+                            .$(", size=").$(configuration.getReceiveBufferSize())
+                            .$(", errno=").$(configuration.getNetworkFacade().errno())
+                            .I$();
+                }
             }
 
             lexer = new LineUdpLexer(configuration.getMsgBufferSize());
@@ -94,8 +139,22 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
         }
     }
 
+    /**
+     * Multicast datagrams are delivered to every socket joined to the group, spreading them
+     * across SO_REUSEPORT sockets is only possible for unicast. Multicast is always received
+     * on a single socket.
+     *
+     * @param configuration receiver configuration
+     * @return number of sockets, and receiver jobs, to receive datagrams with
+     */
+    public static int getSocketCount(LineUdpReceiverConfiguration configuration) {
+        return configuration.isUnicast() ? Math.max(1, configuration.getSocketCount()) : 1;
+    }
+
     @Override
     public void close() {
+        Misc.freeObjList(siblings);
+        siblings.clear();
         if (fd > -1) {
             halt();
             if (nf.close(fd) != 0) {
@@ -108,7 +167,11 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
                 parser.close();
             }
             Misc.free(lexer);
-            LOG.info().$("closed [fd=").$(fd).$(']').$();
+            forwardQueue = Misc.free(forwardQueue);
+            if (stagingBuf != 0) {
+                Unsafe.free(stagingBuf, stagingBufSize, MemoryTag.NATIVE_DEFAULT);
+                stagingBuf = 0;
+            }
             fd = -1;
         }
     }
@@ -124,7 +187,8 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
         if (configuration.ownThread() && running.compareAndSet(false, true)) {
             new Thread(() -> {
                 started.countDown();
-                if (configuration.ownThreadAffinity() != -1) {
+                // siblings are not pinned, they would compete for the same core
+                if (primary && configuration.ownThreadAffinity() != -1) {
                     Os.setCurrentThreadAffinity(configuration.ownThreadAffinity());
                 }
                 logStarted(configuration);
@@ -137,7 +201,173 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
         }
     }
 
-    private void bind(LineUdpReceiverConfiguration configuration) {
+    /**
+     * Passes staged lines to their owners.
+     *
+     * @return false when forward queue of an owner is full, the lines stay staged and the caller
+     * should stop receiving until they are passed on, otherwise true
+     */
+    protected boolean flushForwardedLines() {
+        if (forwardQueue == null) {
+            return true;
+        }
+        for (int i = 0; i < socketCount; i++) {
+            final int size = stagingSizes.getQuick(i);
+            if (size > 0) {
+                final AbstractLineProtoUdpReceiver owner = receivers.getQuick(i);
+                long cursor;
+                //noinspection StatementWithEmptyBody
+                while ((cursor = owner.forwardPubSeq.next()) == -2) {
+                }
+                if (cursor < 0) {
+                    // owner is behind, try again on next run instead of waiting for it
+                    return false;
+                }
+                final ForwardedLines lines = owner.forwardQueue.get(cursor);
+                Vect.memcpy(lines.address, stagingBuf + i * (msgBufferSize + 1L), size);
+                lines.size = size;
+                owner.forwardPubSeq.done(cursor);
+                stagingSizes.setQuick(i, 0);
+            }
+        }
+        return true;
+    }
+
+    protected boolean isRoutingReady() {
+        return routingReady;
+    }
+
+    protected abstract AbstractLineProtoUdpReceiver newSibling(
+            LineUdpReceiverConfiguration configuration,
+            CairoEngine engine,
+            WorkerPool workerPool,
+            ObjList<AbstractLineProtoUdpReceiver> receivers
+    );
+
+    /**
+     * Creates receivers for the remaining sockets. Invoked by the subclass constructor
+     * once the receiver is fully initialised.
+     */
+    protected void openSiblings(CairoEngine engine, WorkerPool workerPool) {
+        if (primary) {
+            if (!configuration.isUnicast() && configuration.getSocketCount() > 1) {
+                LOG.info().$("multicast is received on single socket [socketCount=").$(configuration.getSocketCount()).I$();
+            }
+            try {
+                for (int i = 1; i < socketCount; i++) {
+                    siblings.add(newSibling(configuration, engine, workerPool, receivers));
+                }
+                // lines can be routed only once all owners exist
+                for (int i = 0, n = siblings.size(); i < n; i++) {
+                    final AbstractLineProtoUdpReceiver sibling = siblings.getQuick(i);
+                    sibling.routingReady = true;
+                    sibling.start();
+                }
+                routingReady = true;
+            } catch (Throwable e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Parses lines of a datagram. When tables are routed between receivers, only lines of tables
+     * owned by this receiver are parsed, the rest are staged and passed to their owners.
+     *
+     * @return false when staged lines could not be passed on, see {@link #flushForwardedLines()}
+     */
+    protected boolean parse(long lo, long hi) {
+        if (forwardQueue == null) {
+            lexer.parse(lo, hi);
+            lexer.parseLast();
+            return true;
+        }
+        long lineLo = lo;
+        while (lineLo < hi) {
+            long lineHi = lineLo;
+            while (lineHi < hi && Unsafe.getUnsafe().getByte(lineHi) != '\n') {
+                lineHi++;
+            }
+            final int owner = getOwner(lineLo, lineHi);
+            // line end, if there is one, goes with the line
+            final long next = lineHi < hi ? lineHi + 1 : hi;
+            if (owner == receiverId) {
+                lexer.parse(lineLo, next);
+            } else {
+                final int size = stagingSizes.getQuick(owner);
+                final long dst = stagingBuf + owner * (msgBufferSize + 1L) + size;
+                final int len = (int) (lineHi - lineLo);
+                Vect.memcpy(dst, lineLo, len);
+                Unsafe.getUnsafe().putByte(dst + len, (byte) '\n');
+                stagingSizes.setQuick(owner, size + len + 1);
+            }
+            lineLo = next;
+        }
+        lexer.parseLast();
+        return flushForwardedLines();
+    }
+
+    /**
+     * Parses lines passed on by other receivers.
+     *
+     * @return number of parsed batches of lines
+     */
+    protected int parseForwardedLines() {
+        if (forwardQueue == null) {
+            return 0;
+        }
+        int count = 0;
+        long cursor;
+        while ((cursor = forwardSubSeq.next()) > -1) {
+            final ForwardedLines lines = forwardQueue.get(cursor);
+            lexer.parse(lines.address, lines.address + lines.size);
+            lexer.parseLast();
+            forwardSubSeq.done(cursor);
+            count++;
+        }
+        return count;
+    }
+
+    // index of the receiver that owns table of the line, lines without table name are parsed by this receiver
+    private int getOwner(long lo, long hi) {
+        int h = 0;
+        long p = lo;
+        while (p < hi) {
+            byte b = Unsafe.getUnsafe().getByte(p);
+            if (b == ',' || b == ' ') {
+                break;
+            }
+            if (b == '\\' && p + 1 < hi) {
+                b = Unsafe.getUnsafe().getByte(++p);
+            }
+            // table names are case-insensitive
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            h = 31 * h + b;
+            p++;
+        }
+        return p > lo ? (h & Integer.MAX_VALUE) % socketCount : receiverId;
+    }
+
+    private long openSocket() {
+        final long fd = nf.socketUdp();
+        if (fd < 0) {
+            int errno = nf.errno();
+            LOG.error().$("cannot open UDP socket [errno=").$(errno).$(']').$();
+            throw NetworkError.instance(errno, "Cannot open UDP socket");
+        }
+        if (socketCount > 1 && nf.setReusePort(fd) != 0) {
+            int errno = nf.errno();
+            nf.close(fd);
+            LOG.error().$("cannot set SO_REUSEPORT on UDP socket [fd=").$(fd).$(", errno=").$(errno).$(']').$();
+            throw NetworkError.instance(errno, "Cannot set SO_REUSEPORT on UDP socket");
+        }
+        return fd;
+    }
+
+    private void bind(LineUdpReceiverConfiguration configuration, long fd) {
         if (nf.bindUdp(fd, configuration.isUnicast() ? configuration.getBindIPv4Address() : 0, configuration.getPort())) {
             if (!configuration.isUnicast() && !nf.join(fd, configuration.getBindIPv4Address(), configuration.getGroupIPv4Address())) {
                 throw NetworkError.instance(nf.errno())
@@ -160,6 +390,7 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
                     .$(':')
                     .$(configuration.getPort())
                     .$(" [fd=").$(fd)
+                    .$(", socketCount=").$(socketCount)
                     .$(", commitRate=").$(commitRate)
                     .$(']').$();
         } else {
@@ -175,4 +406,13 @@ public abstract class AbstractLineProtoUdpReceiver extends SynchronizedJob imple
                     .$(']').$();
         }
     }
+
+    private static class ForwardedLines {
+        private final long address;
+        private int size;
+
+        private ForwardedLines(long address, long addressSize) {
+            this.address = address;
+        }
+    }
 }
@@ -87,6 +87,11 @@ public class DefaultLineUdpReceiverConfiguration implements LineUdpReceiverConfi
         return -1;
     }
 
+    @Override
+    public int getSocketCount() {
+        return 1;
+    }
+
     @Override
     public CairoSecurityContext getCairoSecurityContext() {
         return AllowAllCairoSecurityContext.INSTANCE;
@@ -27,6 +27,7 @@ package io.questdb.cutlass.line.udp;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.mp.WorkerPool;
 import io.questdb.std.MemoryTag;
+import io.questdb.std.ObjList;
 import io.questdb.std.Unsafe;
 
 public class LineUdpReceiver extends AbstractLineProtoUdpReceiver {
@@ -38,9 +39,22 @@ public class LineUdpReceiver extends AbstractLineProtoUdpReceiver {
             CairoEngine engine,
             WorkerPool workerPool
     ) {
-        super(configuration, engine, workerPool);
+        this(configuration, engine, workerPool, null);
+    }
+
+    private LineUdpReceiver(
+            LineUdpReceiverConfiguration configuration,
+            CairoEngine engine,
+            WorkerPool workerPool,
+            ObjList<AbstractLineProtoUdpReceiver> receivers
+    ) {
+        super(configuration, engine, workerPool, receivers);
         this.buf = Unsafe.malloc(this.bufLen = configuration.getMsgBufferSize(), MemoryTag.NATIVE_DEFAULT);
-        start();
+        if (receivers == null) {
+            // siblings are started once all of them exist
+            openSiblings(engine, workerPool);
+            start();
+        }
     }
 
     @Override
@@ -52,25 +66,36 @@ public class LineUdpReceiver extends AbstractLineProtoUdpReceiver {
         }
     }
 
+    @Override
+    protected AbstractLineProtoUdpReceiver newSibling(
+            LineUdpReceiverConfiguration configuration,
+            CairoEngine engine,
+            WorkerPool workerPool,
+            ObjList<AbstractLineProtoUdpReceiver> receivers
+    ) {
+        return new LineUdpReceiver(configuration, engine, workerPool, receivers);
+    }
+
     @Override
     protected boolean runSerially() {
+        if (!isRoutingReady()) {
+            return false;
+        }
         boolean ran = false;
+        // lines staged for other receivers are passed on before more datagrams are received
+        boolean flushed = flushForwardedLines();
         int count;
-        while ((count = nf.recv(fd, buf, bufLen)) > 0) {
-            lexer.parse(buf, buf + count);
-            lexer.parseLast();
-
-            totalCount++;
+        while (flushed && (count = nf.recv(fd, buf, bufLen)) > 0) {
+            flushed = parse(buf, buf + count);
+            totalCount += 1 + parseForwardedLines();
 
             if (totalCount > commitRate) {
                 totalCount = 0;
                 parser.commitAll(commitMode);
             }
-
-            if (ran) {
-                continue;
-            }
-
+            ran = true;
+        }
+        if (parseForwardedLines() > 0) {
             ran = true;
         }
         parser.commitAll(commitMode);
@@ -48,6 +48,17 @@ public interface LineUdpReceiverConfiguration {
 
     int getReceiveBufferSize();
 
+    /**
+     * Number of unicast sockets bound to the same address and port with SO_REUSEPORT. The kernel
+     * spreads datagrams across the sockets by sender, each socket having its own receive buffer,
+     * receiver job and parser. Each table is written by one receiver, other receivers pass its lines on.
+     * Multicast receiver always uses single socket, every socket joined to the group would
+     * receive a copy of each datagram.
+     *
+     * @return number of sockets to receive datagrams on
+     */
+    int getSocketCount();
+
     CairoSecurityContext getCairoSecurityContext();
 
     boolean isEnabled();
@@ -27,20 +27,38 @@ package io.questdb.cutlass.line.udp;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.mp.WorkerPool;
 import io.questdb.network.Net;
+import io.questdb.std.ObjList;
 
 public class LinuxMMLineUdpReceiver extends AbstractLineProtoUdpReceiver {
     private final int msgCount;
     private long msgVec;
+    // received messages, which have not been parsed yet because lines of a previous
+    // message could not be passed on to another receiver
+    private int pendingMsgLo;
+    private int pendingMsgHi;
 
     public LinuxMMLineUdpReceiver(
             LineUdpReceiverConfiguration configuration,
             CairoEngine engine,
             WorkerPool workerPool
     ) {
-        super(configuration, engine, workerPool);
+        this(configuration, engine, workerPool, null);
+    }
+
+    private LinuxMMLineUdpReceiver(
+            LineUdpReceiverConfiguration configuration,
+            CairoEngine engine,
+            WorkerPool workerPool,
+            ObjList<AbstractLineProtoUdpReceiver> receivers
+    ) {
+        super(configuration, engine, workerPool, receivers);
         this.msgCount = configuration.getMsgCount();
         msgVec = nf.msgHeaders(configuration.getMsgBufferSize(), msgCount);
-        start();
+        if (receivers == null) {
+            // siblings are started once all of them exist
+            openSiblings(engine, workerPool);
+            start();
+        }
     }
 
     @Override
@@ -52,33 +70,54 @@ public class LinuxMMLineUdpReceiver extends AbstractLineProtoUdpReceiver {
         }
     }
 
+    @Override
+    protected AbstractLineProtoUdpReceiver newSibling(
+            LineUdpReceiverConfiguration configuration,
+            CairoEngine engine,
+            WorkerPool workerPool,
+            ObjList<AbstractLineProtoUdpReceiver> receivers
+    ) {
+        return new LinuxMMLineUdpReceiver(configuration, engine, workerPool, receivers);
+    }
+
     @Override
     protected boolean runSerially() {
+        if (!isRoutingReady()) {
+            return false;
+        }
         boolean ran = false;
+        // lines staged for other receivers are passed on before more datagrams are received
+        boolean flushed = flushForwardedLines() && parseMessages();
         int count;
-        while ((count = nf.recvmmsg(fd, msgVec, msgCount)) > 0) {
-            long p = msgVec;
-            for (int i = 0; i < count; i++) {
-                long buf = nf.getMMsgBuf(p);
-                lexer.parse(buf, buf + nf.getMMsgBufLen(p));
-                lexer.parseLast();
-                p += Net.MMSGHDR_SIZE;
-            }
-
-            totalCount += count;
+        while (flushed && (count = nf.recvmmsg(fd, msgVec, msgCount)) > 0) {
+            pendingMsgLo = 0;
+            pendingMsgHi = count;
+            flushed = parseMessages();
+            totalCount += count + parseForwardedLines();
 
             if (totalCount > commitRate) {
                 totalCount = 0;
                 parser.commitAll(commitMode);
             }
-
-            if (ran) {
-                continue;
-            }
-
+            ran = true;
+        }
+        if (parseForwardedLines() > 0) {
             ran = true;
         }
         parser.commitAll(commitMode);
         return ran;
     }
+
+    private boolean parseMessages() {
+        long p = msgVec + (long) pendingMsgLo * Net.MMSGHDR_SIZE;
+        while (pendingMsgLo < pendingMsgHi) {
+            long buf = nf.getMMsgBuf(p);
+            pendingMsgLo++;
+            if (!parse(buf, buf + nf.getMMsgBufLen(p))) {
+                return false;
+            }
+            p += Net.MMSGHDR_SIZE;
+        }
+        return true;
+    }
 }
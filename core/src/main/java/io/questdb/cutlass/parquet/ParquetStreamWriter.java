@@ -0,0 +1,1069 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.parquet;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.std.*;
+import io.questdb.std.str.AbstractCharSink;
+import io.questdb.std.str.CharSink;
+
+/**
+ * Serializes query result as Apache Parquet file. The file is produced front to back, so that it can be
+ * written to disk as well as streamed over the network: magic bytes, column chunks of every row group
+ * and the footer with file metadata.
+ * <p>
+ * Queries that support page frames are exported frame by frame, each frame becomes a row group and values
+ * are encoded straight from frame memory. Results of other queries are copied from records into row groups
+ * of up to rowGroupSize rows. Symbol columns backed by a table are dictionary encoded, the dictionary page
+ * holds the whole symbol table. Column chunks consist of one data page, pages are compressed with the codec
+ * chosen for the file.
+ * <p>
+ * Every message is either magic bytes, single column chunk or the footer.
+ */
+public class ParquetStreamWriter implements SegmentStream {
+    public static final int CODEC_UNCOMPRESSED = 0;
+    public static final int CODEC_SNAPPY = 1;
+    public static final int CODEC_GZIP = 2;
+    private static final int MAGIC = 'P' | 'A' << 8 | 'R' << 16 | '1' << 24;
+    private static final String CREATED_BY = "QuestDB";
+    // physical types
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_INT32 = 1;
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_BYTE_ARRAY = 6;
+    // converted types
+    private static final int CONVERTED_NONE = -1;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int CONVERTED_TIMESTAMP_MILLIS = 9;
+    private static final int CONVERTED_TIMESTAMP_MICROS = 10;
+    private static final int CONVERTED_INT_8 = 15;
+    private static final int CONVERTED_INT_16 = 16;
+    private static final int REPETITION_REQUIRED = 0;
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_PLAIN_DICTIONARY = 2;
+    private static final int ENCODING_RLE = 3;
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+    // Thrift compact protocol types
+    private static final int THRIFT_I32 = 5;
+    private static final int THRIFT_I64 = 6;
+    private static final int THRIFT_BINARY = 8;
+    private static final int THRIFT_LIST = 9;
+    private static final int THRIFT_STRUCT = 12;
+    private static final int STATE_MAGIC = 0;
+    private static final int STATE_COLUMN_CHUNK = 1;
+    private static final int STATE_DONE = 2;
+    // dictionary page offset, data page offset, uncompressed size, compressed size and null count
+    private static final int CHUNK_META_SIZE = 5;
+    private static final long MEMORY_PAGE_SIZE = 64 * 1024;
+
+    private final int rowGroupSize;
+    private final MemoryCARW metaMem = newMemory();
+    private final MemoryCARW pageMem = newMemory();
+    private final MemoryCARW compressedMem = newMemory();
+    private final MemoryCARW dictionaryMem = newMemory();
+    private final MemoryCARW compressedDictionaryMem = newMemory();
+    private final MemoryCARW stringMem = newMemory();
+    private final ObjList<MemoryCARW> validityMem = new ObjList<>();
+    private final ObjList<MemoryCARW> valuesMem = new ObjList<>();
+    private final ObjList<StaticSymbolTable> symbolTables = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final LongList nullCounts = new LongList();
+    private final LongList chunkMeta = new LongList();
+    private final LongList rowGroupRows = new LongList();
+    private final LongList segments = new LongList();
+    private final IntList thriftFieldIds = new IntList();
+    private final SnappyCompressor snappy = new SnappyCompressor();
+    private final MemorySink sink = new MemorySink();
+    private long zStream;
+    private RecordMetadata metadata;
+    private RecordCursor cursor;
+    private Record record;
+    private PageFrameCursor pageFrameCursor;
+    private PageFrame frame;
+    private int columnCount;
+    private int codec;
+    private int state = STATE_DONE;
+    private int columnIndex;
+    private int thriftFieldId;
+    private long skip;
+    private long stop;
+    private long rowCount;
+    private long frameRowLo;
+    private long frameRowHi;
+    private long rowGroupLo;
+    private long fileOffset;
+
+    public ParquetStreamWriter(int rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * @param name codec name, case-insensitive
+     * @return one of CODEC_* constants or -1 when codec name is not recognised
+     */
+    public static int codecOf(CharSequence name) {
+        if (Chars.equalsIgnoreCase(name, "snappy")) {
+            return CODEC_SNAPPY;
+        }
+        if (Chars.equalsIgnoreCase(name, "gzip")) {
+            return CODEC_GZIP;
+        }
+        if (Chars.equalsIgnoreCase(name, "uncompressed") || Chars.equalsIgnoreCase(name, "none")) {
+            return CODEC_UNCOMPRESSED;
+        }
+        return -1;
+    }
+
+    public static boolean isPageFrameExportSupported(RecordMetadata metadata) {
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            switch (ColumnType.tagOf(metadata.getColumnType(i))) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    break;
+                case ColumnType.SYMBOL:
+                    if (!metadata.isSymbolTableStatic(i)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        metadata = null;
+        cursor = null;
+        record = null;
+        pageFrameCursor = null;
+        frame = null;
+        state = STATE_DONE;
+        symbolTables.clear();
+        chunkMeta.clear();
+        rowGroupRows.clear();
+        segments.clear();
+        metaMem.truncate();
+        pageMem.truncate();
+        compressedMem.truncate();
+        dictionaryMem.truncate();
+        compressedDictionaryMem.truncate();
+        stringMem.truncate();
+        for (int i = 0, n = validityMem.size(); i < n; i++) {
+            validityMem.getQuick(i).truncate();
+            valuesMem.getQuick(i).truncate();
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.free(metaMem);
+        Misc.free(pageMem);
+        Misc.free(compressedMem);
+        Misc.free(dictionaryMem);
+        Misc.free(compressedDictionaryMem);
+        Misc.free(stringMem);
+        Misc.freeObjList(validityMem);
+        Misc.freeObjList(valuesMem);
+        if (zStream != 0) {
+            Zip.deflateEnd(zStream);
+            zStream = 0;
+        }
+    }
+
+    @Override
+    public long getSegmentAddress(int index) {
+        return segments.getQuick(index * 2);
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return segments.size() / 2;
+    }
+
+    @Override
+    public long getSegmentSize(int index) {
+        return segments.getQuick(index * 2 + 1);
+    }
+
+    /**
+     * Prepares segments of the next message.
+     *
+     * @return false when the footer has already been produced
+     */
+    @Override
+    public boolean nextMessage() {
+        segments.clear();
+        switch (state) {
+            case STATE_MAGIC:
+                metaMem.jumpTo(0);
+                metaMem.putInt(MAGIC);
+                addSegment(metaMem.getAddress(), metaMem.getAppendOffset());
+                state = STATE_COLUMN_CHUNK;
+                return true;
+            case STATE_COLUMN_CHUNK:
+                if (columnIndex < columnCount || nextRowGroup()) {
+                    putColumnChunk(columnIndex++);
+                } else {
+                    // no more row groups, footer is the last message
+                    putFooter();
+                    state = STATE_DONE;
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Prepares stream to export records of the cursor.
+     *
+     * @param metadata metadata of the cursor
+     * @param cursor   record cursor, it remains owned by the caller
+     * @param skip     number of leading records to skip
+     * @param stop     number of the record to stop export at
+     * @param codec    one of CODEC_* constants
+     */
+    public void of(RecordMetadata metadata, RecordCursor cursor, long skip, long stop, int codec) {
+        of0(metadata, cursor, skip, stop, codec);
+        this.cursor = cursor;
+        this.record = cursor.getRecord();
+    }
+
+    /**
+     * Prepares stream to export page frames of the cursor. All columns must be of fixed size
+     * types, see {@link #isPageFrameExportSupported(RecordMetadata)}.
+     *
+     * @param metadata        metadata of the cursor
+     * @param pageFrameCursor page frame cursor, it remains owned by the caller
+     * @param skip            number of leading records to skip
+     * @param stop            number of the record to stop export at
+     * @param codec           one of CODEC_* constants
+     */
+    public void of(RecordMetadata metadata, PageFrameCursor pageFrameCursor, long skip, long stop, int codec) {
+        of0(metadata, pageFrameCursor, skip, stop, codec);
+        this.pageFrameCursor = pageFrameCursor;
+        this.frameRowLo = 0;
+        this.frameRowHi = 0;
+    }
+
+    private static boolean isNull(int columnType, long address, long row) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+                return false;
+            case ColumnType.INT:
+            case ColumnType.SYMBOL:
+                return Unsafe.getUnsafe().getInt(address + (row << 2)) == Numbers.INT_NaN;
+            case ColumnType.FLOAT:
+                final float f = Unsafe.getUnsafe().getFloat(address + (row << 2));
+                return f != f;
+            case ColumnType.DOUBLE:
+                final double d = Unsafe.getUnsafe().getDouble(address + (row << 3));
+                return d != d;
+            default:
+                return Unsafe.getUnsafe().getLong(address + (row << 3)) == Numbers.LONG_NaN;
+        }
+    }
+
+    private static boolean isRequired(int columnType) {
+        // these types do not have null value
+        return columnType == ColumnType.BOOLEAN || columnType == ColumnType.BYTE || columnType == ColumnType.SHORT;
+    }
+
+    private static MemoryCARW newMemory() {
+        return Vm.getCARWInstance(MEMORY_PAGE_SIZE, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT);
+    }
+
+    private static void putVarint(MemoryCARW mem, long value) {
+        while ((value & ~0x7fL) != 0) {
+            mem.putByte((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        mem.putByte((byte) value);
+    }
+
+    private static void setBit(MemoryCARW mem, long row, boolean bit) {
+        if ((row & 7) == 0) {
+            mem.putByte((byte) 0);
+        }
+        if (bit) {
+            final long p = mem.getAddress() + (row >>> 3);
+            Unsafe.getUnsafe().putByte(p, (byte) (Unsafe.getUnsafe().getByte(p) | (1 << (row & 7))));
+        }
+    }
+
+    private void addSegment(long address, long size) {
+        segments.add(address);
+        segments.add(size);
+    }
+
+    private void appendRecord(long row) {
+        for (int i = 0; i < columnCount; i++) {
+            final MemoryCARW values = valuesMem.getQuick(i);
+            switch (columnTypes.getQuick(i)) {
+                case ColumnType.BOOLEAN:
+                    values.putBool(record.getBool(i));
+                    break;
+                case ColumnType.BYTE:
+                    values.putByte(record.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    values.putShort(record.getShort(i));
+                    break;
+                case ColumnType.INT:
+                    values.putInt(record.getInt(i));
+                    break;
+                case ColumnType.LONG:
+                    values.putLong(record.getLong(i));
+                    break;
+                case ColumnType.DATE:
+                    values.putLong(record.getDate(i));
+                    break;
+                case ColumnType.TIMESTAMP:
+                    values.putLong(record.getTimestamp(i));
+                    break;
+                case ColumnType.FLOAT:
+                    values.putFloat(record.getFloat(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    values.putDouble(record.getDouble(i));
+                    break;
+                case ColumnType.SYMBOL:
+                    if (symbolTables.getQuick(i) != null) {
+                        values.putInt(record.getInt(i));
+                    } else {
+                        putStrValue(i, row, record.getSym(i));
+                    }
+                    break;
+                case ColumnType.STRING:
+                    putStrValue(i, row, record.getStr(i));
+                    break;
+                case ColumnType.CHAR:
+                    final char c = record.getChar(i);
+                    final long charOffset = startVarValue(values);
+                    if (c > 0) {
+                        sink.putUtf8(c);
+                    }
+                    endVarValue(i, row, values, charOffset, c > 0);
+                    break;
+                case ColumnType.LONG256:
+                    final long long256Offset = startVarValue(values);
+                    record.getLong256(i, sink);
+                    endVarValue(i, row, values, long256Offset, values.getAppendOffset() > long256Offset + Integer.BYTES);
+                    break;
+                case ColumnType.GEOBYTE:
+                    putGeoHashValue(i, row, record.getGeoByte(i));
+                    break;
+                case ColumnType.GEOSHORT:
+                    putGeoHashValue(i, row, record.getGeoShort(i));
+                    break;
+                case ColumnType.GEOINT:
+                    putGeoHashValue(i, row, record.getGeoInt(i));
+                    break;
+                case ColumnType.GEOLONG:
+                    putGeoHashValue(i, row, record.getGeoLong(i));
+                    break;
+                case ColumnType.BINARY:
+                    final BinarySequence bin = record.getBin(i);
+                    final long binOffset = startVarValue(values);
+                    if (bin != null) {
+                        final long len = bin.length();
+                        bin.copyTo(values.appendAddressFor(len), 0, len);
+                    }
+                    endVarValue(i, row, values, binOffset, bin != null);
+                    break;
+                default:
+                    setValid(i, row, false);
+                    break;
+            }
+        }
+    }
+
+    private MemoryCARW compress(MemoryCARW src, MemoryCARW dst) {
+        final long len = src.getAppendOffset();
+        switch (codec) {
+            case CODEC_SNAPPY:
+                dst.jumpTo(0);
+                dst.jumpTo(snappy.compress(src.getAddress(), len, dst.appendAddressFor(SnappyCompressor.maxCompressedLength(len))));
+                return dst;
+            case CODEC_GZIP:
+                // zlib reads input in 8-byte words
+                src.putLong(0);
+                src.jumpTo(len);
+                dst.jumpTo(0);
+                Vect.memcpy(dst.appendAddressFor(Zip.gzipHeaderLen), Zip.gzipHeader, Zip.gzipHeaderLen);
+                if (zStream == 0) {
+                    zStream = Zip.deflateInit();
+                } else {
+                    Zip.deflateReset(zStream);
+                }
+                Zip.setInput(zStream, src.getAddress(), (int) len);
+                while (true) {
+                    final long offset = dst.getAppendOffset();
+                    final int available = (int) Math.max(len, MEMORY_PAGE_SIZE);
+                    final int ret = Zip.deflate(zStream, dst.appendAddressFor(available), available, true);
+                    dst.jumpTo(offset + available - Zip.availOut(zStream));
+                    if (ret == Zip.Z_STREAM_END) {
+                        break;
+                    }
+                    if (ret < 0 && ret != Zip.Z_BUF_ERROR) {
+                        throw CairoException.instance(0).put("could not deflate parquet page [ret=").put(ret).put(']');
+                    }
+                }
+                dst.putInt(Zip.crc32(0, src.getAddress(), (int) len));
+                dst.putInt((int) len);
+                return dst;
+            default:
+                return src;
+        }
+    }
+
+    private void endVarValue(int columnIndex, long row, MemoryCARW values, long lenOffset, boolean valid) {
+        if (valid) {
+            Unsafe.getUnsafe().putInt(values.getAddress() + lenOffset, (int) (values.getAppendOffset() - lenOffset - Integer.BYTES));
+        } else {
+            values.jumpTo(lenOffset);
+        }
+        setValid(columnIndex, row, valid);
+    }
+
+    private int getConvertedType(int columnIndex) {
+        switch (columnTypes.getQuick(columnIndex)) {
+            case ColumnType.BYTE:
+                return CONVERTED_INT_8;
+            case ColumnType.SHORT:
+                return CONVERTED_INT_16;
+            case ColumnType.DATE:
+                return CONVERTED_TIMESTAMP_MILLIS;
+            case ColumnType.TIMESTAMP:
+                return CONVERTED_TIMESTAMP_MICROS;
+            case ColumnType.SYMBOL:
+            case ColumnType.STRING:
+            case ColumnType.CHAR:
+            case ColumnType.LONG256:
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+            case ColumnType.GEOLONG:
+                return CONVERTED_UTF8;
+            default:
+                return CONVERTED_NONE;
+        }
+    }
+
+    private int getPhysicalType(int columnIndex) {
+        switch (columnTypes.getQuick(columnIndex)) {
+            case ColumnType.BOOLEAN:
+                return TYPE_BOOLEAN;
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+                return TYPE_INT32;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return TYPE_INT64;
+            case ColumnType.FLOAT:
+                return TYPE_FLOAT;
+            case ColumnType.DOUBLE:
+                return TYPE_DOUBLE;
+            default:
+                // strings, symbols and types that do not have Parquet counterpart are exported as text
+                return TYPE_BYTE_ARRAY;
+        }
+    }
+
+    private boolean isFixedSize(int columnIndex) {
+        switch (columnTypes.getQuick(columnIndex)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return true;
+            case ColumnType.SYMBOL:
+                return symbolTables.getQuick(columnIndex) != null;
+            default:
+                return false;
+        }
+    }
+
+    private boolean nextCursorRowGroup() {
+        for (int i = 0; i < columnCount; i++) {
+            validityMem.getQuick(i).jumpTo(0);
+            valuesMem.getQuick(i).jumpTo(0);
+            nullCounts.setQuick(i, 0);
+        }
+
+        long rows = 0;
+        while (rows < rowGroupSize && rowCount < stop && cursor.hasNext()) {
+            if (++rowCount > skip) {
+                appendRecord(rows++);
+            }
+        }
+
+        if (rows == 0) {
+            return false;
+        }
+        rowGroupLo = 0;
+        rowGroupRows.add(rows);
+        return true;
+    }
+
+    private boolean nextFrameRowGroup() {
+        while (frameRowLo >= frameRowHi) {
+            if (rowCount >= stop || (frame = pageFrameCursor.next()) == null) {
+                return false;
+            }
+            final long frameRows = frame.getPartitionHi() - frame.getPartitionLo();
+            frameRowLo = Math.max(0, skip - rowCount);
+            frameRowHi = Math.min(frameRows, stop - rowCount);
+            rowCount += frameRows;
+        }
+
+        final long hi = Math.min(frameRowHi, frameRowLo + rowGroupSize);
+        rowGroupLo = frameRowLo;
+        rowGroupRows.add(hi - frameRowLo);
+        frameRowLo = hi;
+        return true;
+    }
+
+    private boolean nextRowGroup() {
+        if (pageFrameCursor != null ? nextFrameRowGroup() : nextCursorRowGroup()) {
+            columnIndex = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private void of0(RecordMetadata metadata, SymbolTableSource symbolTableSource, long skip, long stop, int codec) {
+        clear();
+        this.metadata = metadata;
+        this.columnCount = metadata.getColumnCount();
+        this.skip = skip;
+        this.stop = stop;
+        this.codec = codec;
+        this.rowCount = 0;
+        this.state = STATE_MAGIC;
+        this.columnIndex = columnCount;
+        this.fileOffset = Integer.BYTES;
+        columnTypes.clear();
+        nullCounts.setAll(columnCount, 0);
+        while (validityMem.size() < columnCount) {
+            validityMem.add(newMemory());
+            valuesMem.add(newMemory());
+        }
+        for (int i = 0; i < columnCount; i++) {
+            final int tag = ColumnType.tagOf(metadata.getColumnType(i));
+            switch (tag) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                case ColumnType.SYMBOL:
+                case ColumnType.STRING:
+                case ColumnType.CHAR:
+                case ColumnType.LONG256:
+                case ColumnType.GEOBYTE:
+                case ColumnType.GEOSHORT:
+                case ColumnType.GEOINT:
+                case ColumnType.GEOLONG:
+                case ColumnType.BINARY:
+                    columnTypes.add(tag);
+                    break;
+                default:
+                    columnTypes.add(ColumnType.NULL);
+                    break;
+            }
+
+            StaticSymbolTable symbolTable = null;
+            if (tag == ColumnType.SYMBOL && metadata.isSymbolTableStatic(i)) {
+                final SymbolTable table = symbolTableSource.getSymbolTable(i);
+                if (table instanceof StaticSymbolTable) {
+                    symbolTable = (StaticSymbolTable) table;
+                }
+            }
+            symbolTables.extendAndSet(i, symbolTable);
+        }
+    }
+
+    private void putColumnChunk(int columnIndex) {
+        final long rows = rowGroupRows.getLast();
+        final StaticSymbolTable symbolTable = symbolTables.getQuick(columnIndex);
+        long uncompressedSize = 0;
+        long compressedSize = 0;
+        metaMem.jumpTo(0);
+
+        long dictionaryOffset = -1;
+        long dictionaryHeaderSize = 0;
+        MemoryCARW dictionary = null;
+        if (symbolTable != null) {
+            dictionaryMem.jumpTo(0);
+            final int symbolCount = symbolTable.getSymbolCount();
+            for (int key = 0; key < symbolCount; key++) {
+                final long lenOffset = startVarValue(dictionaryMem);
+                sink.encodeUtf8(symbolTable.valueOf(key));
+                Unsafe.getUnsafe().putInt(dictionaryMem.getAddress() + lenOffset, (int) (dictionaryMem.getAppendOffset() - lenOffset - Integer.BYTES));
+            }
+            dictionary = compress(dictionaryMem, compressedDictionaryMem);
+            putPageHeader(PAGE_DICTIONARY, dictionaryMem.getAppendOffset(), dictionary.getAppendOffset(), symbolCount, ENCODING_PLAIN_DICTIONARY);
+            dictionaryHeaderSize = metaMem.getAppendOffset();
+            dictionaryOffset = fileOffset;
+            uncompressedSize += dictionaryHeaderSize + dictionaryMem.getAppendOffset();
+            compressedSize += dictionaryHeaderSize + dictionary.getAppendOffset();
+        }
+
+        pageMem.jumpTo(0);
+        final long nullCount;
+        if (isFixedSize(columnIndex)) {
+            long address;
+            if (pageFrameCursor != null) {
+                address = frame.getPageAddress(columnIndex);
+                if (address != 0) {
+                    address += rowGroupLo << frame.getColumnShiftBits(columnIndex);
+                }
+            } else {
+                address = valuesMem.getQuick(columnIndex).getAddress();
+            }
+            nullCount = putFixedSizeValues(columnIndex, address, rows);
+        } else {
+            nullCount = nullCounts.getQuick(columnIndex);
+            putDefinitionLevels(validityMem.getQuick(columnIndex), rows, nullCount);
+            final MemoryCARW values = valuesMem.getQuick(columnIndex);
+            pageMem.putBlockOfBytes(values.getAddress(), values.getAppendOffset());
+        }
+        final MemoryCARW page = compress(pageMem, compressedMem);
+        final long dataHeaderLo = metaMem.getAppendOffset();
+        // values of dictionary encoded chunk are keys written by putDictionaryIndexes()
+        putPageHeader(PAGE_DATA, pageMem.getAppendOffset(), page.getAppendOffset(), rows, dictionary != null ? ENCODING_PLAIN_DICTIONARY : ENCODING_PLAIN);
+        final long dataHeaderSize = metaMem.getAppendOffset() - dataHeaderLo;
+        final long dataOffset = fileOffset + compressedSize;
+        uncompressedSize += dataHeaderSize + pageMem.getAppendOffset();
+        compressedSize += dataHeaderSize + page.getAppendOffset();
+
+        if (dictionary != null) {
+            addSegment(metaMem.getAddress(), dictionaryHeaderSize);
+            addSegment(dictionary.getAddress(), dictionary.getAppendOffset());
+        }
+        addSegment(metaMem.getAddress() + dataHeaderLo, dataHeaderSize);
+        addSegment(page.getAddress(), page.getAppendOffset());
+
+        chunkMeta.add(dictionaryOffset);
+        chunkMeta.add(dataOffset);
+        chunkMeta.add(uncompressedSize);
+        chunkMeta.add(compressedSize);
+        chunkMeta.add(nullCount);
+        fileOffset += compressedSize;
+    }
+
+    private void putDefinitionLevels(MemoryCARW validity, long rows, long nullCount) {
+        // definition levels are prefixed with their length in data pages v1
+        final long lenOffset = pageMem.getAppendOffset();
+        pageMem.putInt(0);
+        if (nullCount == 0 || nullCount == rows) {
+            // single RLE run
+            putVarint(pageMem, rows << 1);
+            pageMem.putByte((byte) (nullCount == 0 ? 1 : 0));
+        } else {
+            // validity bitmap is the same as bit-packed run of 1-bit levels
+            final long size = (rows + 7) >>> 3;
+            putVarint(pageMem, size << 1 | 1);
+            pageMem.putBlockOfBytes(validity.getAddress(), size);
+        }
+        Unsafe.getUnsafe().putInt(pageMem.getAddress() + lenOffset, (int) (pageMem.getAppendOffset() - lenOffset - Integer.BYTES));
+    }
+
+    private void putDictionaryIndexes(long address, long rows, long nullCount, int symbolCount) {
+        final int bitWidth = symbolCount > 1 ? 32 - Integer.numberOfLeadingZeros(symbolCount - 1) : 1;
+        pageMem.putByte((byte) bitWidth);
+        final long valueCount = rows - nullCount;
+        if (valueCount == 0) {
+            return;
+        }
+        // single bit-packed run, padded to groups of 8 values
+        final long groupCount = (valueCount + 7) >>> 3;
+        putVarint(pageMem, groupCount << 1 | 1);
+        long bits = 0;
+        int bitCount = 0;
+        for (long r = 0; r < rows; r++) {
+            final int key = Unsafe.getUnsafe().getInt(address + (r << 2));
+            if (key != SymbolTable.VALUE_IS_NULL) {
+                bits |= (long) key << bitCount;
+                bitCount += bitWidth;
+                while (bitCount >= Byte.SIZE) {
+                    pageMem.putByte((byte) bits);
+                    bits >>>= Byte.SIZE;
+                    bitCount -= Byte.SIZE;
+                }
+            }
+        }
+        for (long padding = (groupCount << 3) - valueCount; padding > 0; padding--) {
+            bitCount += bitWidth;
+            while (bitCount >= Byte.SIZE) {
+                pageMem.putByte((byte) bits);
+                bits >>>= Byte.SIZE;
+                bitCount -= Byte.SIZE;
+            }
+        }
+    }
+
+    private long putFixedSizeValues(int columnIndex, long address, long rows) {
+        final int columnType = columnTypes.getQuick(columnIndex);
+        final boolean columnTop = address == 0;
+        long nullCount = 0;
+        if (!isRequired(columnType)) {
+            // the column did not exist when column top rows were written
+            final MemoryCARW validity = validityMem.getQuick(columnIndex);
+            validity.jumpTo(0);
+            if (columnTop) {
+                nullCount = rows;
+            } else {
+                for (long r = 0; r < rows; r++) {
+                    final boolean valid = !isNull(columnType, address, r);
+                    setBit(validity, r, valid);
+                    if (!valid) {
+                        nullCount++;
+                    }
+                }
+            }
+            putDefinitionLevels(validity, rows, nullCount);
+        }
+
+        if (columnType == ColumnType.BOOLEAN) {
+            // plain booleans are bit-packed
+            final long size = (rows + 7) >>> 3;
+            if (columnTop) {
+                Vect.memset(pageMem.appendAddressFor(size), size, 0);
+                return 0;
+            }
+            for (long r = 0; r < rows; r += 8) {
+                int bits = 0;
+                for (int k = 0, n = (int) Math.min(8, rows - r); k < n; k++) {
+                    if (Unsafe.getUnsafe().getByte(address + r + k) != 0) {
+                        bits |= 1 << k;
+                    }
+                }
+                pageMem.putByte((byte) bits);
+            }
+            return 0;
+        }
+
+        if (columnType == ColumnType.BYTE || columnType == ColumnType.SHORT) {
+            // both are stored as INT32
+            final long size = rows << 2;
+            final long p = pageMem.appendAddressFor(size);
+            if (columnTop) {
+                Vect.memset(p, size, 0);
+            } else if (columnType == ColumnType.BYTE) {
+                for (long r = 0; r < rows; r++) {
+                    Unsafe.getUnsafe().putInt(p + (r << 2), Unsafe.getUnsafe().getByte(address + r));
+                }
+            } else {
+                for (long r = 0; r < rows; r++) {
+                    Unsafe.getUnsafe().putInt(p + (r << 2), Unsafe.getUnsafe().getShort(address + (r << 1)));
+                }
+            }
+            return 0;
+        }
+
+        if (columnType == ColumnType.SYMBOL) {
+            putDictionaryIndexes(address, columnTop ? 0 : rows, columnTop ? 0 : nullCount, symbolTables.getQuick(columnIndex).getSymbolCount());
+            return nullCount;
+        }
+
+        if (columnTop || nullCount == rows) {
+            return nullCount;
+        }
+
+        final int shift = ColumnType.pow2SizeOf(columnType);
+        if (nullCount == 0) {
+            pageMem.putBlockOfBytes(address, rows << shift);
+        } else {
+            // only defined values are stored
+            final long size = 1L << shift;
+            for (long r = 0; r < rows; r++) {
+                if (!isNull(columnType, address, r)) {
+                    pageMem.putBlockOfBytes(address + (r << shift), size);
+                }
+            }
+        }
+        return nullCount;
+    }
+
+    private void putFooter() {
+        metaMem.jumpTo(0);
+        thriftStructBegin();
+        thriftI32(1, 1);
+
+        thriftList(2, THRIFT_STRUCT, columnCount + 1);
+        thriftStructBegin();
+        thriftString(4, "schema");
+        thriftI32(5, columnCount);
+        thriftStructEnd();
+        for (int i = 0; i < columnCount; i++) {
+            thriftStructBegin();
+            thriftI32(1, getPhysicalType(i));
+            thriftI32(3, isRequired(columnTypes.getQuick(i)) ? REPETITION_REQUIRED : REPETITION_OPTIONAL);
+            thriftString(4, metadata.getColumnName(i));
+            final int convertedType = getConvertedType(i);
+            if (convertedType != CONVERTED_NONE) {
+                thriftI32(6, convertedType);
+            }
+            thriftStructEnd();
+        }
+
+        long totalRows = 0;
+        for (int g = 0, n = rowGroupRows.size(); g < n; g++) {
+            totalRows += rowGroupRows.getQuick(g);
+        }
+        thriftI64(3, totalRows);
+
+        thriftList(4, THRIFT_STRUCT, rowGroupRows.size());
+        for (int g = 0, n = rowGroupRows.size(); g < n; g++) {
+            final long rows = rowGroupRows.getQuick(g);
+            long totalByteSize = 0;
+            thriftStructBegin();
+            thriftList(1, THRIFT_STRUCT, columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                final int meta = (g * columnCount + i) * CHUNK_META_SIZE;
+                final long dictionaryOffset = chunkMeta.getQuick(meta);
+                final long dataOffset = chunkMeta.getQuick(meta + 1);
+                final long uncompressedSize = chunkMeta.getQuick(meta + 2);
+                totalByteSize += uncompressedSize;
+
+                thriftStructBegin();
+                thriftI64(2, dictionaryOffset != -1 ? dictionaryOffset : dataOffset);
+                thriftStructField(3);
+                thriftI32(1, getPhysicalType(i));
+                thriftList(2, THRIFT_I32, 2);
+                putVarint(metaMem, zigzag(dictionaryOffset != -1 ? ENCODING_PLAIN_DICTIONARY : ENCODING_PLAIN));
+                putVarint(metaMem, zigzag(ENCODING_RLE));
+                thriftList(3, THRIFT_BINARY, 1);
+                putString(metadata.getColumnName(i));
+                thriftI32(4, codec);
+                thriftI64(5, rows);
+                thriftI64(6, uncompressedSize);
+                thriftI64(7, chunkMeta.getQuick(meta + 3));
+                thriftI64(9, dataOffset);
+                if (dictionaryOffset != -1) {
+                    thriftI64(11, dictionaryOffset);
+                }
+                thriftStructField(12);
+                thriftI64(3, chunkMeta.getQuick(meta + 4));
+                thriftStructEnd();
+                thriftStructEnd();
+                thriftStructEnd();
+            }
+            thriftI64(2, totalByteSize);
+            thriftI64(3, rows);
+            thriftStructEnd();
+        }
+        thriftString(6, CREATED_BY);
+        thriftStructEnd();
+
+        final long footerSize = metaMem.getAppendOffset();
+        metaMem.putInt((int) footerSize);
+        metaMem.putInt(MAGIC);
+        addSegment(metaMem.getAddress(), metaMem.getAppendOffset());
+    }
+
+    private void putGeoHashValue(int columnIndex, long row, long value) {
+        final MemoryCARW values = valuesMem.getQuick(columnIndex);
+        final long lenOffset = startVarValue(values);
+        final boolean valid = value != GeoHashes.NULL;
+        if (valid) {
+            final int bitFlags = GeoHashes.getBitFlags(metadata.getColumnType(columnIndex));
+            if (bitFlags < 0) {
+                GeoHashes.appendCharsUnsafe(value, -bitFlags, sink);
+            } else {
+                GeoHashes.appendBinaryStringUnsafe(value, bitFlags, sink);
+            }
+        }
+        endVarValue(columnIndex, row, values, lenOffset, valid);
+    }
+
+    private void putPageHeader(int pageType, long uncompressedSize, long compressedSize, long valueCount, int encoding) {
+        thriftStructBegin();
+        thriftI32(1, pageType);
+        thriftI32(2, (int) uncompressedSize);
+        thriftI32(3, (int) compressedSize);
+        if (pageType == PAGE_DATA) {
+            thriftStructField(5);
+            thriftI32(1, (int) valueCount);
+            thriftI32(2, encoding);
+            thriftI32(3, ENCODING_RLE);
+            thriftI32(4, ENCODING_RLE);
+        } else {
+            thriftStructField(7);
+            thriftI32(1, (int) valueCount);
+            thriftI32(2, encoding);
+        }
+        thriftStructEnd();
+        thriftStructEnd();
+    }
+
+    private void putStrValue(int columnIndex, long row, CharSequence value) {
+        final MemoryCARW values = valuesMem.getQuick(columnIndex);
+        final long lenOffset = startVarValue(values);
+        if (value != null) {
+            sink.encodeUtf8(value);
+        }
+        endVarValue(columnIndex, row, values, lenOffset, value != null);
+    }
+
+    // writes Thrift binary value, which is UTF-8 bytes prefixed with their length
+    private void putString(CharSequence value) {
+        stringMem.jumpTo(0);
+        sink.of(stringMem).encodeUtf8(value);
+        putVarint(metaMem, stringMem.getAppendOffset());
+        metaMem.putBlockOfBytes(stringMem.getAddress(), stringMem.getAppendOffset());
+    }
+
+    private void setValid(int columnIndex, long row, boolean valid) {
+        setBit(validityMem.getQuick(columnIndex), row, valid);
+        if (!valid) {
+            nullCounts.increment(columnIndex);
+        }
+    }
+
+    // reserves length prefix of PLAIN encoded byte array and directs the sink to its memory
+    private long startVarValue(MemoryCARW values) {
+        final long lenOffset = values.getAppendOffset();
+        values.putInt(0);
+        sink.of(values);
+        return lenOffset;
+    }
+
+    private void thriftField(int fieldId, int type) {
+        final int delta = fieldId - thriftFieldId;
+        if (delta > 0 && delta < 16) {
+            metaMem.putByte((byte) (delta << 4 | type));
+        } else {
+            metaMem.putByte((byte) type);
+            putVarint(metaMem, zigzag(fieldId));
+        }
+        thriftFieldId = fieldId;
+    }
+
+    private void thriftI32(int fieldId, int value) {
+        thriftField(fieldId, THRIFT_I32);
+        putVarint(metaMem, zigzag(value));
+    }
+
+    private void thriftI64(int fieldId, long value) {
+        thriftField(fieldId, THRIFT_I64);
+        putVarint(metaMem, (value << 1) ^ (value >> 63));
+    }
+
+    private void thriftList(int fieldId, int elementType, int size) {
+        thriftField(fieldId, THRIFT_LIST);
+        if (size < 15) {
+            metaMem.putByte((byte) (size << 4 | elementType));
+        } else {
+            metaMem.putByte((byte) (0xf0 | elementType));
+            putVarint(metaMem, size);
+        }
+    }
+
+    private void thriftString(int fieldId, CharSequence value) {
+        thriftField(fieldId, THRIFT_BINARY);
+        putString(value);
+    }
+
+    // field ids of nested struct are relative to the struct
+    private void thriftStructBegin() {
+        thriftFieldIds.add(thriftFieldId);
+        thriftFieldId = 0;
+    }
+
+    private void thriftStructEnd() {
+        metaMem.putByte((byte) 0);
+        final int last = thriftFieldIds.size() - 1;
+        thriftFieldId = thriftFieldIds.getQuick(last);
+        thriftFieldIds.removeIndex(last);
+    }
+
+    private void thriftStructField(int fieldId) {
+        thriftField(fieldId, THRIFT_STRUCT);
+        thriftStructBegin();
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private static class MemorySink extends AbstractCharSink {
+        private MemoryCARW mem;
+
+        @Override
+        public CharSink put(CharSequence cs) {
+            for (int i = 0, n = cs.length(); i < n; i++) {
+                mem.putByte((byte) cs.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public CharSink put(char c) {
+            mem.putByte((byte) c);
+            return this;
+        }
+
+        MemorySink of(MemoryCARW mem) {
+            this.mem = mem;
+            return this;
+        }
+    }
+}
@@ -30,17 +30,18 @@ import io.questdb.cairo.pool.WriterSource;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.*;
+import io.questdb.cutlass.text.TextException;
 import io.questdb.cutlass.text.TextLoader;
 import io.questdb.cutlass.text.types.TypeManager;
 import io.questdb.griffin.*;
 import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.griffin.model.CopyModel;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.SCSequence;
 import io.questdb.network.*;
 import io.questdb.std.*;
 import io.questdb.std.datetime.DateLocale;
-import io.questdb.std.datetime.microtime.TimestampFormatUtils;
 import io.questdb.std.str.*;
 import org.jetbrains.annotations.Nullable;
 
@@ -63,6 +64,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     public static final String TAG_OK = "OK";
     public static final String TAG_COPY = "COPY";
     public static final String TAG_INSERT = "INSERT";
+    public static final String TAG_DELETE = "DELETE";
     public static final char STATUS_IN_TRANSACTION = 'T';
     public static final char STATUS_IN_ERROR = 'E';
     public static final char STATUS_IDLE = 'I';
@@ -96,6 +98,9 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private static final byte MESSAGE_TYPE_CLOSE_COMPLETE = '3';
     private static final byte MESSAGE_TYPE_NO_DATA = 'n';
     private static final byte MESSAGE_TYPE_COPY_IN_RESPONSE = 'G';
+    private static final byte MESSAGE_TYPE_COPY_OUT_RESPONSE = 'H';
+    private static final byte MESSAGE_TYPE_COPY_DATA = 'd';
+    private static final byte MESSAGE_TYPE_COPY_DONE = 'c';
     private static final byte MESSAGE_TYPE_PORTAL_SUSPENDED = 's';
 
     private static final int NO_TRANSACTION = 0;
@@ -103,8 +108,9 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private static final int COMMIT_TRANSACTION = 2;
     private static final int ERROR_TRANSACTION = 3;
     private static final int ROLLING_BACK_TRANSACTION = 4;
+    // rows of pipelined Execute messages, committed on Sync
+    private static final int IMPLICIT_TRANSACTION = 5;
 
-    private static final String WRITER_LOCK_REASON = "pgConnection";
     private static final int PROTOCOL_TAIL_COMMAND_LENGTH = 64;
     private final long recvBuffer;
     private final long sendBuffer;
@@ -143,6 +149,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     //we need it in case cursor gets invalidated and bind used non-default binary format for some column(s)
     //pg clients (like asyncpg) fail when format sent by server is not the same as requested in bind message
     private final IntList bindSelectColumnFormats;
+    private final PGTimestampFormatter timestampFormatter = new PGTimestampFormatter();
     private final BatchCallback batchCallback;
     //list of pair: column types (with format flag stored in first bit) AND additional type flag
     private IntList activeSelectColumnTypes;
@@ -158,7 +165,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private RecordCursorFactory currentFactory = null;
     // these references are held by context only for a period of processing single request
     // in PF world this request can span multiple messages, but still, only for one request
-    // the rationale is to be able to return "selectAndTypes" instance to thread-local
+    // the rationale is to be able to return "selectAndTypes" instance to server-wide
     // cache, which is "typesAndSelectCache". We typically do this after query results are
     // served to client or query errored out due to network issues
     private TypesAndSelect typesAndSelect = null;
@@ -174,12 +181,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private Rnd rnd;
     private long rowCount;
     private boolean completed = true;
+    // created on first COPY FROM STDIN
+    private PGCopyInProcessor copyIn;
+    private boolean copyInProgress = false;
+    // COPY TO STDOUT state, factory is owned by the context and is never cached
+    private RecordCursorFactory copyOutFactory;
+    private int copyOutFormat;
+    private byte copyOutDelimiter;
+    private final PGResumeProcessor resumeCopyOutRef = this::resumeCopyOut;
+    private final PGResumeProcessor resumeCopyOutCompleteRef = this::resumeCopyOutComplete;
     private boolean isEmptyQuery;
     private final PGResumeProcessor resumeCommandCompleteRef = this::resumeCommandComplete;
     private int transactionState = NO_TRANSACTION;
     private final PGResumeProcessor resumeQueryCompleteRef = this::resumeQueryComplete;
     private NamedStatementWrapper wrapper;
-    private AssociativeCache<TypesAndSelect> typesAndSelectCache;
+    private ConcurrentAssociativeCache<TypesAndSelect> typesAndSelectCache;
     private WeakAutoClosableObjectPool<TypesAndSelect> typesAndSelectPool;
     // this is a reference to types either from the context or named statement, where it is provided
     private IntList activeBindVariableTypes;
@@ -296,6 +312,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         username = null;
         typeManager.clear();
         clearWriters();
+        transactionState = NO_TRANSACTION;
         clearRecvBuffer();
         typesAndInsertCache.clear();
         namedStatementMap.clear();
@@ -307,6 +324,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         completed = true;
         clearCursorAndFactory();
         totalReceived = 0;
+        if (copyInProgress) {
+            copyIn.cancel();
+            copyInProgress = false;
+        }
     }
 
     public void clearWriters() {
@@ -326,10 +347,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             sqlExecutionContext.with(AllowAllCairoSecurityContext.INSTANCE, null, null, -1, null);
             Unsafe.free(sendBuffer, sendBufferSize, MemoryTag.NATIVE_PGW_CONN);
             Unsafe.free(recvBuffer, recvBufferSize, MemoryTag.NATIVE_PGW_CONN);
-            Misc.free(typesAndSelectCache);
             Misc.free(path);
             Misc.free(utf8Sink);
             Misc.free(circuitBreaker);
+            copyIn = Misc.free(copyIn);
         }
     }
 
@@ -359,7 +380,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
 
     public void handleClientOperation(
             @Transient SqlCompiler compiler,
-            @Transient AssociativeCache<TypesAndSelect> selectAndTypesCache,
+            @Transient ConcurrentAssociativeCache<TypesAndSelect> selectAndTypesCache,
             @Transient WeakAutoClosableObjectPool<TypesAndSelect> selectAndTypesPool,
             int operation
     ) throws PeerDisconnectedException, PeerIsSlowToReadException, PeerIsSlowToWriteException, BadProtocolException {
@@ -501,11 +522,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         bindVariableService.setTimestamp(index, getLongUnsafe(address) + Numbers.JULIAN_EPOCH_OFFSET_USEC);
     }
 
-    private static int getIntUnsafe(long address) {
+    static int getIntUnsafe(long address) {
         return Numbers.bswap(Unsafe.getUnsafe().getInt(address));
     }
 
-    private static short getShortUnsafe(long address) {
+    static short getShortUnsafe(long address) {
         return Numbers.bswap(Unsafe.getUnsafe().getShort(address));
     }
 
@@ -613,6 +634,269 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void appendCopyBinaryHeader() {
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_DATA);
+        final long offset = responseAsciiSink.skip();
+        for (int i = 0, n = PGCopyInProcessor.BINARY_SIGNATURE.length; i < n; i++) {
+            responseAsciiSink.put(PGCopyInProcessor.BINARY_SIGNATURE[i]);
+        }
+        // flags and header extension length
+        responseAsciiSink.putNetworkInt(0);
+        responseAsciiSink.putNetworkInt(0);
+        responseAsciiSink.putLen(offset);
+    }
+
+    private void appendCopyGeoHash(long value, int bitFlags) {
+        if (value == GeoHashes.NULL) {
+            appendCopyNull();
+        } else if (bitFlags < 0) {
+            GeoHashes.appendCharsUnsafe(value, -bitFlags, responseAsciiSink);
+        } else {
+            GeoHashes.appendBinaryStringUnsafe(value, bitFlags, responseAsciiSink);
+        }
+    }
+
+    private void appendCopyNull() {
+        if (copyOutFormat != CopyModel.FORMAT_CSV) {
+            responseAsciiSink.put('\\').put('N');
+        }
+    }
+
+    private void appendCopyRecord(Record record, int columnCount) throws SqlException {
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_DATA);
+        final long offset = responseAsciiSink.skip();
+        if (copyOutFormat == CopyModel.FORMAT_BINARY) {
+            appendRecordValues(record, columnCount);
+        } else {
+            for (int i = 0; i < columnCount; i++) {
+                if (i > 0) {
+                    responseAsciiSink.put(copyOutDelimiter);
+                }
+                appendCopyTextValue(record, i);
+            }
+            responseAsciiSink.put('\n');
+        }
+        responseAsciiSink.putLen(offset);
+        rowCount += 1;
+    }
+
+    private void appendCopyTextHeader(RecordMetadata metadata) {
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_DATA);
+        final long offset = responseAsciiSink.skip();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (i > 0) {
+                responseAsciiSink.put(copyOutDelimiter);
+            }
+            appendCopyTextStr(metadata.getColumnName(i));
+        }
+        responseAsciiSink.put('\n');
+        responseAsciiSink.putLen(offset);
+    }
+
+    private void appendCopyTextStr(CharSequence value) {
+        final int n = value.length();
+        int lo = 0;
+        if (copyOutFormat == CopyModel.FORMAT_CSV) {
+            // empty string is quoted to tell it apart from null
+            boolean quote = n == 0;
+            for (int i = 0; i < n && !quote; i++) {
+                final char c = value.charAt(i);
+                quote = c == '"' || c == '\n' || c == '\r' || c == copyOutDelimiter;
+            }
+            if (!quote) {
+                responseAsciiSink.encodeUtf8(value);
+                return;
+            }
+            responseAsciiSink.put('"');
+            for (int i = 0; i < n; i++) {
+                if (value.charAt(i) == '"') {
+                    // quote is written twice, once with this chunk and once with the next one
+                    responseAsciiSink.encodeUtf8(value, lo, i + 1);
+                    lo = i;
+                }
+            }
+            responseAsciiSink.encodeUtf8(value, lo, n);
+            responseAsciiSink.put('"');
+            return;
+        }
+
+        for (int i = 0; i < n; i++) {
+            final char c = value.charAt(i);
+            final char escaped;
+            switch (c) {
+                case '\\':
+                    escaped = '\\';
+                    break;
+                case '\n':
+                    escaped = 'n';
+                    break;
+                case '\r':
+                    escaped = 'r';
+                    break;
+                case '\t':
+                    escaped = 't';
+                    break;
+                default:
+                    escaped = c == copyOutDelimiter ? c : 0;
+                    break;
+            }
+            if (escaped != 0) {
+                responseAsciiSink.encodeUtf8(value, lo, i);
+                responseAsciiSink.put('\\').put(escaped);
+                lo = i + 1;
+            }
+        }
+        responseAsciiSink.encodeUtf8(value, lo, n);
+    }
+
+    private void appendCopyTextValue(Record record, int columnIndex) throws SqlException {
+        final int type = activeSelectColumnTypes.getQuick(2 * columnIndex);
+        switch (ColumnType.tagOf(type)) {
+            case ColumnType.BOOLEAN:
+                responseAsciiSink.put(record.getBool(columnIndex) ? 't' : 'f');
+                break;
+            case ColumnType.BYTE:
+                responseAsciiSink.put((int) record.getByte(columnIndex));
+                break;
+            case ColumnType.SHORT:
+                responseAsciiSink.put((int) record.getShort(columnIndex));
+                break;
+            case ColumnType.INT: {
+                final int value = record.getInt(columnIndex);
+                if (value != Numbers.INT_NaN) {
+                    responseAsciiSink.put(value);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.LONG: {
+                final long value = record.getLong(columnIndex);
+                if (value != Numbers.LONG_NaN) {
+                    responseAsciiSink.put(value);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.FLOAT: {
+                final float value = record.getFloat(columnIndex);
+                if (value == value) {
+                    responseAsciiSink.put(value, 3);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.DOUBLE: {
+                final double value = record.getDouble(columnIndex);
+                if (value == value) {
+                    responseAsciiSink.put(value);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.DATE: {
+                final long value = record.getDate(columnIndex);
+                if (value != Numbers.LONG_NaN) {
+                    PG_DATE_MILLI_TIME_Z_FORMAT.format(value, null, null, responseAsciiSink);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.TIMESTAMP: {
+                final long value = record.getTimestamp(columnIndex);
+                if (value != Numbers.LONG_NaN) {
+                    timestampFormatter.format(value, responseAsciiSink);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.CHAR: {
+                final char value = record.getChar(columnIndex);
+                if (value != 0) {
+                    appendCopyTextStr(SingleCharCharSequence.get(value));
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.STRING: {
+                final CharSequence value = record.getStr(columnIndex);
+                if (value != null) {
+                    appendCopyTextStr(value);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.SYMBOL: {
+                final CharSequence value = record.getSym(columnIndex);
+                if (value != null) {
+                    appendCopyTextStr(value);
+                } else {
+                    appendCopyNull();
+                }
+                break;
+            }
+            case ColumnType.LONG256: {
+                final Long256 value = record.getLong256A(columnIndex);
+                if (value.getLong0() == Numbers.LONG_NaN &&
+                        value.getLong1() == Numbers.LONG_NaN &&
+                        value.getLong2() == Numbers.LONG_NaN &&
+                        value.getLong3() == Numbers.LONG_NaN) {
+                    appendCopyNull();
+                } else {
+                    Numbers.appendLong256(value.getLong0(), value.getLong1(), value.getLong2(), value.getLong3(), responseAsciiSink);
+                }
+                break;
+            }
+            case ColumnType.GEOBYTE:
+                appendCopyGeoHash(record.getGeoByte(columnIndex), activeSelectColumnTypes.getQuick(2 * columnIndex + 1));
+                break;
+            case ColumnType.GEOSHORT:
+                appendCopyGeoHash(record.getGeoShort(columnIndex), activeSelectColumnTypes.getQuick(2 * columnIndex + 1));
+                break;
+            case ColumnType.GEOINT:
+                appendCopyGeoHash(record.getGeoInt(columnIndex), activeSelectColumnTypes.getQuick(2 * columnIndex + 1));
+                break;
+            case ColumnType.GEOLONG:
+                appendCopyGeoHash(record.getGeoLong(columnIndex), activeSelectColumnTypes.getQuick(2 * columnIndex + 1));
+                break;
+            case ColumnType.BINARY: {
+                final BinarySequence value = record.getBin(columnIndex);
+                if (value == null) {
+                    appendCopyNull();
+                    break;
+                }
+                final long len = value.length();
+                if (len >= maxBlobSizeOnQuery) {
+                    throw SqlException.position(0)
+                            .put("blob is too large [blobSize=").put(len)
+                            .put(", max=").put(maxBlobSizeOnQuery)
+                            .put(", columnIndex=").put(columnIndex)
+                            .put(']');
+                }
+                // bytea hex format, backslash is escaped in text format
+                if (copyOutFormat != CopyModel.FORMAT_CSV) {
+                    responseAsciiSink.put('\\');
+                }
+                responseAsciiSink.put('\\').put('x');
+                for (long i = 0; i < len; i++) {
+                    final int b = value.byteAt(i) & 0xff;
+                    responseAsciiSink.put(Numbers.hexDigits[b >> 4]).put(Numbers.hexDigits[b & 0xf]);
+                }
+                break;
+            }
+            default:
+                appendCopyNull();
+                break;
+        }
+    }
+
     private void appendDateColumn(Record record, int columnIndex) {
         final long longValue = record.getDate(columnIndex);
         if (longValue != Numbers.LONG_NaN) {
@@ -743,6 +1027,13 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private void appendRecord(Record record, int columnCount) throws SqlException {
         responseAsciiSink.put(MESSAGE_TYPE_DATA_ROW); // data
         final long offset = responseAsciiSink.skip();
+        appendRecordValues(record, columnCount);
+        responseAsciiSink.putLen(offset);
+        rowCount += 1;
+    }
+
+    // DataRow body, which is also the tuple layout of binary COPY format
+    private void appendRecordValues(Record record, int columnCount) throws SqlException {
         responseAsciiSink.putNetworkShort((short) columnCount);
         for (int i = 0; i < columnCount; i++) {
             final int type = activeSelectColumnTypes.getQuick(2 * i);
@@ -826,26 +1117,29 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     appendLong256Column(record, i);
                     break;
                 case ColumnType.GEOBYTE:
+                case BINARY_TYPE_GEOBYTE:
                     putGeoHashStringByteValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.GEOSHORT:
+                case BINARY_TYPE_GEOSHORT:
                     putGeoHashStringShortValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.GEOINT:
+                case BINARY_TYPE_GEOINT:
                     putGeoHashStringIntValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.GEOLONG:
+                case BINARY_TYPE_GEOLONG:
                     putGeoHashStringLongValue(record, i, activeSelectColumnTypes.getQuick(2 * i + 1));
                     break;
                 case ColumnType.NULL:
+                case BINARY_TYPE_NULL:
                     responseAsciiSink.setNullValue();
                     break;
                 default:
                     assert false;
             }
         }
-        responseAsciiSink.putLen(offset);
-        rowCount += 1;
     }
 
     private void appendShortColumn(Record record, int columnIndex) {
@@ -871,6 +1165,16 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void appendSingleCopyRecord(Record record, int columnCount) throws SqlException {
+        try {
+            appendCopyRecord(record, columnCount);
+        } catch (NoSpaceLeftInResponseBufferException e1) {
+            LOG.error().$("not enough space in buffer for row data [buffer=").$(sendBufferSize).I$();
+            responseAsciiSink.reset();
+            throw CairoException.instance(0).put("server configuration error: not enough space in send buffer for row data");
+        }
+    }
+
     private void appendStrColumn(Record record, int columnIndex) {
         final CharSequence strValue = record.getStr(columnIndex);
         if (strValue == null) {
@@ -900,7 +1204,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             responseAsciiSink.setNullValue();
         } else {
             a = responseAsciiSink.skip();
-            TimestampFormatUtils.PG_TIMESTAMP_FORMAT.format(longValue, null, null, responseAsciiSink);
+            timestampFormatter.format(longValue, responseAsciiSink);
             responseAsciiSink.putLenEx(a);
         }
     }
@@ -1034,6 +1338,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         currentCursor = Misc.free(currentCursor);
         // do not free factory, it will be cached
         currentFactory = null;
+        copyOutFactory = Misc.free(copyOutFactory);
         // we resumed the cursor send the typeAndSelect will be null
         // we do not want to overwrite cache entries and potentially
         // leak memory
@@ -1077,7 +1382,9 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 return false;
             }
 
-            // not cached - compile to see what it is
+            // not cached - compile to see what it is, compilation may execute
+            // the statement, which must not be blocked by writers of pipelined inserts
+            commitImplicitTransaction();
             final CompiledQuery cc = compiler.compile(queryText, sqlExecutionContext); //here
             processCompiledQuery(cc);
 
@@ -1225,6 +1532,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         try {
             switch (transactionState) {
                 case IN_TRANSACTION:
+                case IMPLICIT_TRANSACTION:
                     final InsertMethod m = typesAndInsert.getInsert().createMethod(sqlExecutionContext, this);
                     try {
                         rowCount = m.execute();
@@ -1255,6 +1563,20 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void commitImplicitTransaction() {
+        if (transactionState == IMPLICIT_TRANSACTION) {
+            transactionState = COMMIT_TRANSACTION;
+            executeTag0();
+        }
+    }
+
+    private void rollbackImplicitTransaction() {
+        if (transactionState == IMPLICIT_TRANSACTION) {
+            transactionState = ROLLING_BACK_TRANSACTION;
+            executeTag0();
+        }
+    }
+
     private void executeTag() {
         LOG.debug().$("executing [tag=").$(queryTag).$(']').$();
         if (queryTag != null && TAG_OK != queryTag) {  //do not run this for OK tag (i.e.: create table)
@@ -1265,13 +1587,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private void executeTag0() {
         switch (transactionState) {
             case COMMIT_TRANSACTION:
+                int committed = 0;
                 try {
+                    for (int n = pendingWriters.size(); committed < n; committed++) {
+                        pendingWriters.valueQuick(committed).commit();
+                    }
+                } finally {
+                    // when commit fails, the failed writer and the ones after it are
+                    // rolled back, all writers go back to the pool either way
                     for (int i = 0, n = pendingWriters.size(); i < n; i++) {
                         final TableWriter m = pendingWriters.valueQuick(i);
-                        m.commit();
+                        if (i >= committed) {
+                            rollbackQuietly(m);
+                        }
                         Misc.free(m);
                     }
-                } finally {
                     pendingWriters.clear();
                     transactionState = NO_TRANSACTION;
                 }
@@ -1293,6 +1623,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private static void rollbackQuietly(TableWriter writer) {
+        try {
+            writer.rollback();
+        } catch (Throwable e) {
+            LOG.error().$("could not rollback [table=").$(writer.getTableName()).$(", e=").$(e).$(']').$();
+        }
+    }
+
     @Nullable
     private CharSequence getPortalName(long lo, long hi) throws BadProtocolException {
         if (hi - lo > 0) {
@@ -1402,6 +1740,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 processExec(msgLo, msgLimit, compiler);
                 break;
             case 'S': // sync
+                commitImplicitTransaction();
                 processSyncActions();
                 prepareReadyForQuery();
                 prepareForNewQuery();
@@ -1414,6 +1753,8 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     processSyncActions();
                     prepareForNewQuery();
                 }
+                // pipelined rows are not left pending behind the clients that do not sync
+                commitImplicitTransaction();
                 sendAndReset();
                 break;
             case 'D': // describe
@@ -1422,9 +1763,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case 'Q':
                 processQuery(msgLo, msgLimit, compiler);
                 break;
-            case 'd':
-                System.out.println("data " + msgLen);
-                // msgLen includes 4 bytes of self
+            case 'd': // copy data
+                processCopyData(msgLo, msgLimit);
+                break;
+            case 'c': // copy done
+                processCopyDone();
+                break;
+            case 'f': // copy fail
+                processCopyFail(msgLo, msgLimit);
                 break;
             default:
                 LOG.error().$("unknown message [type=").$(type).$(']').$();
@@ -1479,6 +1825,18 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void prepareCopyOutComplete() {
+        if (copyOutFormat == CopyModel.FORMAT_BINARY) {
+            responseAsciiSink.put(MESSAGE_TYPE_COPY_DATA);
+            final long addr = responseAsciiSink.skip();
+            responseAsciiSink.putNetworkShort((short) -1);
+            responseAsciiSink.putLen(addr);
+        }
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_DONE);
+        responseAsciiSink.putIntDirect(INT_BYTES_X);
+        prepareCommandComplete(true);
+    }
+
     private void prepareDescribePortalResponse() {
         if (typesAndSelect != null) {
             try {
@@ -1728,7 +2086,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                             final short code = getShortUnsafe(lo);
                             activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(code, m.getColumnType(i)));
                             bindSelectColumnFormats.setQuick(i, code);
-                            activeSelectColumnTypes.setQuick(2 * i + 1, 0);
+                            activeSelectColumnTypes.setQuick(2 * i + 1, GeoHashes.getBitFlags(m.getColumnType(i)));
                         }
                     } else if (columnFormatCodeCount == 1) {
                         lo += Short.BYTES;
@@ -1736,7 +2094,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                         for (int i = 0; i < columnCount; i++) {
                             activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(code, m.getColumnType(i)));
                             bindSelectColumnFormats.setQuick(i, code);
-                            activeSelectColumnTypes.setQuick(2 * i + 1, 0);
+                            activeSelectColumnTypes.setQuick(2 * i + 1, GeoHashes.getBitFlags(m.getColumnType(i)));
                         }
                     } else {
                         LOG.error()
@@ -1769,6 +2127,64 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         syncActions.add(SYNC_BIND);
     }
 
+    private void processCopyData(long lo, long msgLimit) {
+        if (!copyInProgress) {
+            LOG.error().$("unexpected copy data [fd=").$(fd).I$();
+            return;
+        }
+        if (copyIn.getError() != null) {
+            // copy failed, ignore data until client sends CopyDone or CopyFail
+            return;
+        }
+        try {
+            copyIn.onData(lo, msgLimit);
+        } catch (TextException e) {
+            copyIn.setError(e.getFlyweightMessage());
+        } catch (CairoException e) {
+            copyIn.setError(e.getFlyweightMessage());
+        }
+    }
+
+    private void processCopyDone() throws PeerDisconnectedException, PeerIsSlowToReadException {
+        if (!copyInProgress) {
+            LOG.error().$("unexpected copy done [fd=").$(fd).I$();
+            return;
+        }
+        copyInProgress = false;
+        final CharSequence error = copyIn.getError();
+        if (error != null) {
+            prepareError(-1, error, 0);
+            copyIn.cancel();
+        } else {
+            try {
+                rowCount = copyIn.done();
+                queryTag = TAG_COPY;
+                prepareCommandComplete(true);
+            } catch (TextException e) {
+                prepareError(-1, e.getFlyweightMessage(), 0);
+            } catch (CairoException e) {
+                prepareError(-1, e.getFlyweightMessage(), e.getErrno());
+            }
+        }
+        sendReadyForNewQuery();
+    }
+
+    private void processCopyFail(long lo, long msgLimit) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        if (!copyInProgress) {
+            LOG.error().$("unexpected copy fail [fd=").$(fd).I$();
+            return;
+        }
+        copyInProgress = false;
+        copyIn.cancel();
+        final CharacterStoreEntry e = characterStore.newEntry();
+        e.put("COPY from stdin failed: ");
+        if (msgLimit > lo) {
+            Chars.utf8Decode(lo, msgLimit - 1, e);
+        }
+        prepareError(-1, characterStore.toImmutable(), 0);
+        sendReadyForNewQuery();
+    }
+
     private void processClose(long lo, long msgLimit) throws BadProtocolException {
         final byte type = Unsafe.getUnsafe().getByte(lo);
         switch (type) {
@@ -1837,10 +2253,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 queryTag = TAG_INSERT;
                 rowCount = cq.getInsertCount();
                 break;
+            case CompiledQuery.DELETE:
+                queryTag = TAG_DELETE;
+                rowCount = cq.getInsertCount();
+                break;
             case CompiledQuery.COPY_LOCAL:
+            case CompiledQuery.COPY_REMOTE:
                 // uncached
                 queryTag = TAG_COPY;
                 break;
+            case CompiledQuery.COPY_TO_REMOTE:
+                // uncached, the factory is freed once rows are sent
+                queryTag = TAG_COPY;
+                Misc.free(copyOutFactory);
+                copyOutFactory = cq.getRecordCursorFactory();
+                break;
             case CompiledQuery.SET:
                 queryTag = TAG_SET;
                 break;
@@ -1923,12 +2350,18 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private void processExecute(int maxRows, SqlCompiler compiler) throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
         if (typesAndSelect != null) {
             LOG.debug().$("executing query").$();
+            commitImplicitTransaction();
             setupFactoryAndCursor(compiler);
             sendCursor(maxRows, resumeCursorExecuteRef, resumeCommandCompleteRef);
         } else if (typesAndInsert != null) {
             LOG.debug().$("executing insert").$();
+            if (transactionState == NO_TRANSACTION) {
+                // pipelined inserts share writer and are committed together on Sync
+                transactionState = IMPLICIT_TRANSACTION;
+            }
             executeInsert();
         } else { //this must be a OK/SET/COMMIT/ROLLBACK or empty query
+            commitImplicitTransaction();
             executeTag();
             prepareCommandComplete(false);
         }
@@ -2074,6 +2507,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     //process one or more queries (batch/script) . "Simple Query" in PostgreSQL docs.  
     private void processQuery(long lo, long limit, @Transient SqlCompiler compiler)
             throws BadProtocolException, SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
+        commitImplicitTransaction();
         prepareForNewQuery();
         CharacterStoreEntry e = characterStore.newEntry();
 
@@ -2085,7 +2519,12 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             throw BadProtocolException.INSTANCE;
         }
 
-        sendReadyForNewQuery();
+        if (copyInProgress) {
+            // client is about to stream CopyData, query completes on CopyDone or CopyFail
+            sendAndReset();
+        } else {
+            sendReadyForNewQuery();
+        }
     }
 
     private void processSyncActions() {
@@ -2167,6 +2606,8 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
 
     private void reportError(int position, CharSequence flyweightMessage, long errno)
             throws PeerDisconnectedException, PeerIsSlowToReadException {
+        // messages up to Sync are discarded along with the receive buffer, so are the rows they inserted
+        rollbackImplicitTransaction();
         prepareError(position, flyweightMessage, errno);
         sendReadyForNewQuery();
         clearRecvBuffer();
@@ -2176,6 +2617,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         prepareCommandComplete(true);
     }
 
+    private void resumeCopyOut() throws SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
+        final Record record = currentCursor.getRecord();
+        final int columnCount = currentFactory.getMetadata().getColumnCount();
+        responseAsciiSink.bookmark();
+        appendSingleCopyRecord(record, columnCount);
+        sendCopyOut0(record, columnCount);
+        sendReadyForNewQuery();
+    }
+
+    private void resumeCopyOutComplete() throws PeerDisconnectedException, PeerIsSlowToReadException {
+        resumeProcessor = null;
+        prepareCopyOutComplete();
+        sendReadyForNewQuery();
+    }
+
     private void resumeCursorExecute() throws SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
         final Record record = currentCursor.getRecord();
         final int columnCount = currentFactory.getMetadata().getColumnCount();
@@ -2207,33 +2663,101 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         responseAsciiSink.reset();
     }
 
-    // This method is currently unused. it's used for the COPY sub-protocol, which is currently not implemented.
-    // It's left here so when we add the sub-protocol later we won't need to reimplemented it.
-    // We could keep it just in git history, but chances are nobody would recall to search for it there
-    private void sendCopyInResponse(CairoEngine engine, TextLoader textLoader) throws PeerDisconnectedException, PeerIsSlowToReadException {
-        if (
-                TableUtils.TABLE_EXISTS == engine.getStatus(
-                        sqlExecutionContext.getCairoSecurityContext(),
-                        path,
-                        textLoader.getTableName()
-                )) {
-            responseAsciiSink.put(MESSAGE_TYPE_COPY_IN_RESPONSE);
-            long addr = responseAsciiSink.skip();
-            responseAsciiSink.put((byte) 0); // TEXT (1=BINARY, which we do not support yet)
-            try (TableWriter writer = engine.getWriter(sqlExecutionContext.getCairoSecurityContext(), textLoader.getTableName(), WRITER_LOCK_REASON)) {
-                RecordMetadata metadata = writer.getMetadata();
-                responseAsciiSink.putNetworkShort((short) metadata.getColumnCount());
-                for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
-                    responseAsciiSink.putNetworkShort((short) PGOids.getTypeOid(metadata.getColumnType(i)));
+    private void sendCopyOut0(Record record, int columnCount)
+            throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
+        while (currentCursor.hasNext()) {
+            // each row is a CopyData message of its own, when row does not fit
+            // we undo it, flush the buffer and start over
+            responseAsciiSink.bookmark();
+            try {
+                try {
+                    appendCopyRecord(record, columnCount);
+                } catch (NoSpaceLeftInResponseBufferException e) {
+                    responseAsciiSink.resetToBookmark();
+                    sendAndReset();
+                    appendSingleCopyRecord(record, columnCount);
                 }
+            } catch (SqlException e) {
+                responseAsciiSink.resetToBookmark();
+                throw e;
             }
-            responseAsciiSink.putLen(addr);
-        } else {
-            final SqlException e = SqlException.$(0, "table '").put(textLoader.getTableName()).put("' does not exist");
-            prepareError(e.getPosition(), e.getFlyweightMessage(), 0);
-            prepareReadyForQuery();
         }
-        sendAndReset();
+
+        clearCursorAndFactory();
+        // binary trailer, CopyDone and CommandComplete must fit the buffer
+        if (sendBufferLimit - sendBufferPtr < PROTOCOL_TAIL_COMMAND_LENGTH) {
+            resumeProcessor = resumeCopyOutCompleteRef;
+            sendAndReset();
+        }
+        prepareCopyOutComplete();
+    }
+
+    private void startCopyIn(CompiledQuery cq) {
+        if (copyIn == null) {
+            copyIn = new PGCopyInProcessor(engine, recvBufferSize);
+        }
+        final TextLoader textLoader = cq.getTextLoader();
+        final boolean binary = cq.getCopyFormat() == CopyModel.FORMAT_BINARY;
+        final int columnCount = copyIn.of(
+                sqlExecutionContext.getCairoSecurityContext(),
+                textLoader.getTableName(),
+                textLoader.isForceHeaders(),
+                textLoader.getColumnDelimiter(),
+                cq.getCopyFormat()
+        );
+        copyInProgress = true;
+
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_IN_RESPONSE);
+        long addr = responseAsciiSink.skip();
+        final short format = binary ? (short) 1 : 0;
+        responseAsciiSink.put((byte) format);
+        responseAsciiSink.putNetworkShort((short) columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            responseAsciiSink.putNetworkShort(format);
+        }
+        responseAsciiSink.putLen(addr);
+    }
+
+    private void startCopyOut(CompiledQuery cq) throws SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
+        copyOutFormat = cq.getCopyFormat();
+        copyOutDelimiter = cq.getCopyDelimiter();
+        currentFactory = copyOutFactory;
+        currentCursor = currentFactory.getCursor(sqlExecutionContext);
+
+        final RecordMetadata metadata = currentFactory.getMetadata();
+        final int columnCount = metadata.getColumnCount();
+        final boolean binary = copyOutFormat == CopyModel.FORMAT_BINARY;
+        // column types and their formats are resolved once, rows are then written without
+        // looking up metadata; geohashes do not have binary representation and go out as text,
+        // which is also what binary format expects for varchar
+        activeSelectColumnTypes = selectColumnTypes;
+        activeSelectColumnTypes.setPos(2 * columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            final int columnType = metadata.getColumnType(i);
+            final short format = binary && !ColumnType.isGeoHash(columnType) && columnType != ColumnType.NULL ? (short) 1 : 0;
+            activeSelectColumnTypes.setQuick(2 * i, toColumnBinaryType(format, columnType));
+            activeSelectColumnTypes.setQuick(2 * i + 1, GeoHashes.getBitFlags(columnType));
+        }
+
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_OUT_RESPONSE);
+        final long addr = responseAsciiSink.skip();
+        final short format = binary ? (short) 1 : 0;
+        responseAsciiSink.put((byte) format);
+        responseAsciiSink.putNetworkShort((short) columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            responseAsciiSink.putNetworkShort(format);
+        }
+        responseAsciiSink.putLen(addr);
+
+        if (binary) {
+            appendCopyBinaryHeader();
+        } else if (cq.isCopyHeader()) {
+            appendCopyTextHeader(metadata);
+        }
+
+        rowCount = 0;
+        resumeProcessor = resumeCopyOutRef;
+        sendCopyOut0(currentCursor.getRecord(), columnCount);
     }
 
     private void sendCursor(
@@ -2411,8 +2935,13 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             } else if (typesAndInsert != null) {
                 executeInsert();
             } else if (cq.getType() == CompiledQuery.INSERT_AS_SELECT ||
-                    cq.getType() == CompiledQuery.CREATE_TABLE_AS_SELECT) {
+                    cq.getType() == CompiledQuery.CREATE_TABLE_AS_SELECT ||
+                    cq.getType() == CompiledQuery.DELETE) {
                 prepareCommandComplete(true);
+            } else if (cq.getType() == CompiledQuery.COPY_REMOTE) {
+                startCopyIn(cq);
+            } else if (cq.getType() == CompiledQuery.COPY_TO_REMOTE) {
+                startCopyOut(cq);
             } else {
                 executeTag();
                 prepareCommandComplete(false);
@@ -0,0 +1,803 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cutlass.text.Atomicity;
+import io.questdb.cutlass.text.TextException;
+import io.questdb.cutlass.text.TextLoader;
+import io.questdb.griffin.model.CopyModel;
+import io.questdb.griffin.model.IntervalUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.datetime.millitime.Dates;
+import io.questdb.std.str.DirectCharSink;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * Streams CopyData frames of "COPY table FROM STDIN" into a table. CSV format is handed over
+ * to TextLoader. PostgreSQL text and binary formats are decoded here and appended to the table
+ * writer directly. Text format has no quoting, its fields are backslash-escaped instead, which
+ * the CSV lexer cannot parse. A bad row fails the whole copy, as it does in PostgreSQL.
+ */
+public class PGCopyInProcessor implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(PGCopyInProcessor.class);
+    private static final String WRITER_LOCK_REASON = "pgCopy";
+    static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    // signature, flags field and header extension length
+    private static final int BINARY_HEADER_LEN = BINARY_SIGNATURE.length + 2 * Integer.BYTES;
+    private static final long PG_EPOCH_OFFSET_MILLIS = Numbers.JULIAN_EPOCH_OFFSET_USEC / 1000;
+    private static final int MAX_BYTE = 0xff;
+    private final CairoEngine engine;
+    private final TextLoader textLoader;
+    private final DirectCharSink utf8Sink;
+    private final Path path = new Path();
+    private final StringSink errorSink = new StringSink();
+    private final LongList fieldAddresses = new LongList();
+    private final IntList fieldLengths = new IntList();
+    private final int analysisBufferSize;
+    private CairoSecurityContext securityContext;
+    private TableWriter writer;
+    private int format;
+    private boolean headerParsed;
+    private boolean trailerParsed;
+    private boolean textAnalysed;
+    private boolean skipHeader;
+    private byte columnDelimiter;
+    private long buf;
+    private long bufCapacity;
+    private long bufSize;
+    // unescaped text format field
+    private long fieldBuf;
+    private long fieldBufCapacity;
+    private long rowCount;
+    private long lineCount;
+
+    public PGCopyInProcessor(CairoEngine engine, int analysisBufferSize) {
+        this.engine = engine;
+        this.textLoader = new TextLoader(engine);
+        this.utf8Sink = new DirectCharSink(engine.getConfiguration().getTextConfiguration().getUtf8SinkSize());
+        this.analysisBufferSize = analysisBufferSize;
+    }
+
+    /**
+     * Cancels copy in progress, rows appended so far are rolled back.
+     */
+    public void cancel() {
+        if (writer != null) {
+            writer.rollback();
+        }
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        writer = Misc.free(writer);
+        textLoader.clear();
+        securityContext = null;
+        errorSink.clear();
+        bufSize = 0;
+        rowCount = 0;
+        lineCount = 0;
+        skipHeader = false;
+        headerParsed = false;
+        trailerParsed = false;
+        textAnalysed = false;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.free(textLoader);
+        Misc.free(utf8Sink);
+        Misc.free(path);
+        if (buf != 0) {
+            Unsafe.free(buf, bufCapacity, MemoryTag.NATIVE_PGW_CONN);
+            buf = 0;
+            bufCapacity = 0;
+        }
+        if (fieldBuf != 0) {
+            Unsafe.free(fieldBuf, fieldBufCapacity, MemoryTag.NATIVE_PGW_CONN);
+            fieldBuf = 0;
+            fieldBufCapacity = 0;
+        }
+    }
+
+    /**
+     * Completes the copy and commits data.
+     *
+     * @return number of rows written
+     */
+    public long done() throws TextException {
+        try {
+            if (format == CopyModel.FORMAT_BINARY) {
+                if (bufSize > 0 || !trailerParsed) {
+                    throw CairoException.instance(0).put("unexpected end of binary copy data");
+                }
+                writer.commit();
+            } else if (format == CopyModel.FORMAT_TEXT) {
+                if (bufSize > 0 && !trailerParsed) {
+                    // last line does not have to end with a line break
+                    parseTextLine(buf, buf + bufSize);
+                }
+                writer.commit();
+            } else {
+                if (bufSize > 0) {
+                    textLoader.parse(buf, buf + bufSize, securityContext);
+                    bufSize = 0;
+                }
+                textLoader.wrapUp();
+                rowCount = textLoader.getWrittenLineCount();
+            }
+            LOG.info().$("copy complete [table=").$(getTableName()).$(", rows=").$(rowCount).I$();
+            return rowCount;
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * @return message of the error, which failed copy in progress or null
+     */
+    public CharSequence getError() {
+        return errorSink.length() > 0 ? errorSink : null;
+    }
+
+    /**
+     * Prepares copy of data into existing table.
+     *
+     * @return number of columns in the table
+     */
+    public int of(
+            CairoSecurityContext securityContext,
+            CharSequence tableName,
+            boolean forceHeaders,
+            byte columnDelimiter,
+            int format
+    ) {
+        clear();
+        if (engine.getStatus(securityContext, path, tableName) != TableUtils.TABLE_EXISTS) {
+            throw CairoException.instance(0).put("table '").put(tableName).put("' does not exist");
+        }
+        this.securityContext = securityContext;
+        this.format = format;
+        if (format == CopyModel.FORMAT_BINARY) {
+            writer = engine.getWriter(securityContext, tableName, WRITER_LOCK_REASON);
+            return writer.getMetadata().getColumnCount();
+        }
+        if (format == CopyModel.FORMAT_TEXT) {
+            writer = engine.getWriter(securityContext, tableName, WRITER_LOCK_REASON);
+            this.skipHeader = forceHeaders;
+            this.columnDelimiter = columnDelimiter > 0 ? columnDelimiter : (byte) '\t';
+            return writer.getMetadata().getColumnCount();
+        }
+
+        final int columnCount;
+        try (TableWriter writer = engine.getWriter(securityContext, tableName, WRITER_LOCK_REASON)) {
+            columnCount = writer.getMetadata().getColumnCount();
+        }
+        textLoader.setState(TextLoader.ANALYZE_STRUCTURE);
+        // PostgreSQL aborts copy on the first bad row, rows are not skipped
+        textLoader.configureDestination(tableName, false, false, Atomicity.SKIP_ALL, PartitionBy.NONE, null);
+        textLoader.setForceHeaders(forceHeaders);
+        if (columnDelimiter > 0) {
+            textLoader.configureColumnDelimiter(columnDelimiter);
+        }
+        return columnCount;
+    }
+
+    /**
+     * Consumes payload of CopyData message. Frames do not have to be aligned with rows.
+     */
+    public void onData(long lo, long hi) throws TextException {
+        if (format == CopyModel.FORMAT_BINARY) {
+            appendToBuffer(lo, hi);
+            parseBinary();
+        } else if (format == CopyModel.FORMAT_TEXT) {
+            appendToBuffer(lo, hi);
+            parseTextLines();
+        } else {
+            appendToBuffer(lo, hi);
+            parseText();
+        }
+    }
+
+    public void setError(CharSequence message) {
+        errorSink.clear();
+        errorSink.put(message);
+    }
+
+    private void appendToBuffer(long lo, long hi) {
+        final long len = hi - lo;
+        ensureCapacity(bufSize + len);
+        Vect.memcpy(buf + bufSize, lo, len);
+        bufSize += len;
+    }
+
+    private void ensureCapacity(long capacity) {
+        if (capacity > bufCapacity) {
+            final long newCapacity = Numbers.ceilPow2(capacity);
+            buf = Unsafe.realloc(buf, bufCapacity, newCapacity, MemoryTag.NATIVE_PGW_CONN);
+            bufCapacity = newCapacity;
+        }
+    }
+
+    private CharSequence getTableName() {
+        return writer != null ? writer.getTableName() : textLoader.getTableName();
+    }
+
+    private void parseBinary() {
+        long lo = buf;
+        final long hi = buf + bufSize;
+        if (!headerParsed) {
+            if (hi - lo < BINARY_HEADER_LEN) {
+                return;
+            }
+            for (int i = 0, n = BINARY_SIGNATURE.length; i < n; i++) {
+                if (Unsafe.getUnsafe().getByte(lo + i) != BINARY_SIGNATURE[i]) {
+                    throw CairoException.instance(0).put("invalid binary copy signature");
+                }
+            }
+            final int extensionLen = PGConnectionContext.getIntUnsafe(lo + BINARY_HEADER_LEN - Integer.BYTES);
+            if (extensionLen < 0) {
+                throw CairoException.instance(0).put("invalid binary copy header extension length");
+            }
+            if (hi - lo < BINARY_HEADER_LEN + extensionLen) {
+                return;
+            }
+            lo += BINARY_HEADER_LEN + extensionLen;
+            headerParsed = true;
+        }
+
+        final int columnCount = writer.getMetadata().getColumnCount();
+        while (lo + Short.BYTES <= hi) {
+            if (trailerParsed) {
+                throw CairoException.instance(0).put("unexpected data after binary copy trailer");
+            }
+            final short fieldCount = PGConnectionContext.getShortUnsafe(lo);
+            if (fieldCount == -1) {
+                trailerParsed = true;
+                lo += Short.BYTES;
+                continue;
+            }
+            if (fieldCount != columnCount) {
+                throw CairoException.instance(0).put("column count mismatch [expected=").put(columnCount).put(", actual=").put(fieldCount).put(']');
+            }
+            long p = lo + Short.BYTES;
+            fieldAddresses.clear();
+            fieldLengths.clear();
+            for (int i = 0; i < fieldCount; i++) {
+                if (p + Integer.BYTES > hi) {
+                    break;
+                }
+                final int len = PGConnectionContext.getIntUnsafe(p);
+                p += Integer.BYTES;
+                fieldAddresses.add(p);
+                fieldLengths.add(len);
+                if (len > 0) {
+                    p += len;
+                }
+            }
+            if (fieldLengths.size() < fieldCount || p > hi) {
+                // tuple is split between CopyData frames
+                break;
+            }
+            appendBinaryRow();
+            lo = p;
+        }
+
+        // move partial tuple to the start of the buffer
+        bufSize = hi - lo;
+        if (bufSize > 0 && lo > buf) {
+            Vect.memmove(buf, lo, bufSize);
+        }
+    }
+
+    private void appendBinaryRow() {
+        final RecordMetadata metadata = writer.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        final TableWriter.Row row;
+        if (timestampIndex > -1) {
+            if (fieldLengths.getQuick(timestampIndex) < 0) {
+                throw CairoException.instance(0).put("designated timestamp cannot be null [row=").put(rowCount).put(']');
+            }
+            row = writer.newRow(getBinaryTimestamp(metadata.getColumnType(timestampIndex), timestampIndex));
+        } else {
+            row = writer.newRow();
+        }
+        try {
+            for (int i = 0, n = fieldLengths.size(); i < n; i++) {
+                final int len = fieldLengths.getQuick(i);
+                if (len < 0 || i == timestampIndex) {
+                    // null values are filled in by the writer
+                    continue;
+                }
+                putBinaryValue(row, metadata.getColumnType(i), i, fieldAddresses.getQuick(i), len);
+            }
+            row.append();
+            rowCount++;
+        } catch (Throwable e) {
+            row.cancel();
+            throw e;
+        }
+    }
+
+    private long getBinaryTimestamp(int columnType, int index) {
+        final long lo = fieldAddresses.getQuick(index);
+        final int len = fieldLengths.getQuick(index);
+        final long micros = getBinaryDateTime(lo, len);
+        return ColumnType.tagOf(columnType) == ColumnType.DATE ? micros / 1000 : micros;
+    }
+
+    // timestamp or date in PG binary format as epoch micros
+    private static long getBinaryDateTime(long lo, int len) {
+        switch (len) {
+            case Long.BYTES:
+                return PGConnectionContext.getLongUnsafe(lo) + Numbers.JULIAN_EPOCH_OFFSET_USEC;
+            case Integer.BYTES:
+                // date, days since 2000-01-01
+                return (PGConnectionContext.getIntUnsafe(lo) * Dates.DAY_MILLIS + PG_EPOCH_OFFSET_MILLIS) * 1000;
+            default:
+                throw CairoException.instance(0).put("invalid timestamp value length [len=").put(len).put(']');
+        }
+    }
+
+    private static long getBinaryLong(long lo, int len) {
+        switch (len) {
+            case Byte.BYTES:
+                return Unsafe.getUnsafe().getByte(lo);
+            case Short.BYTES:
+                return PGConnectionContext.getShortUnsafe(lo);
+            case Integer.BYTES:
+                return PGConnectionContext.getIntUnsafe(lo);
+            case Long.BYTES:
+                return PGConnectionContext.getLongUnsafe(lo);
+            default:
+                throw CairoException.instance(0).put("invalid integer value length [len=").put(len).put(']');
+        }
+    }
+
+    private static double getBinaryDouble(long lo, int len) {
+        switch (len) {
+            case Integer.BYTES:
+                return Float.intBitsToFloat(PGConnectionContext.getIntUnsafe(lo));
+            case Long.BYTES:
+                return Double.longBitsToDouble(PGConnectionContext.getLongUnsafe(lo));
+            default:
+                throw CairoException.instance(0).put("invalid floating point value length [len=").put(len).put(']');
+        }
+    }
+
+    private CharSequence getBinaryStr(long lo, int len) {
+        utf8Sink.clear();
+        if (!Chars.utf8Decode(lo, lo + len, utf8Sink)) {
+            throw CairoException.instance(0).put("invalid UTF8 bytes in string value");
+        }
+        return utf8Sink;
+    }
+
+    private void putBinaryValue(TableWriter.Row row, int columnType, int index, long lo, int len) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                row.putBool(index, Unsafe.getUnsafe().getByte(lo) != 0);
+                break;
+            case ColumnType.BYTE:
+                row.putByte(index, (byte) getBinaryLong(lo, len));
+                break;
+            case ColumnType.SHORT:
+                row.putShort(index, (short) getBinaryLong(lo, len));
+                break;
+            case ColumnType.CHAR:
+                final CharSequence cs = getBinaryStr(lo, len);
+                if (cs.length() > 0) {
+                    row.putChar(index, cs.charAt(0));
+                }
+                break;
+            case ColumnType.INT:
+                row.putInt(index, (int) getBinaryLong(lo, len));
+                break;
+            case ColumnType.LONG:
+                row.putLong(index, getBinaryLong(lo, len));
+                break;
+            case ColumnType.FLOAT:
+                row.putFloat(index, (float) getBinaryDouble(lo, len));
+                break;
+            case ColumnType.DOUBLE:
+                row.putDouble(index, getBinaryDouble(lo, len));
+                break;
+            case ColumnType.DATE:
+                row.putDate(index, getBinaryDateTime(lo, len) / 1000);
+                break;
+            case ColumnType.TIMESTAMP:
+                row.putTimestamp(index, getBinaryDateTime(lo, len));
+                break;
+            case ColumnType.STRING:
+                row.putStr(index, getBinaryStr(lo, len));
+                break;
+            case ColumnType.SYMBOL:
+                row.putSym(index, getBinaryStr(lo, len));
+                break;
+            case ColumnType.BINARY:
+                row.putBin(index, lo, len);
+                break;
+            case ColumnType.LONG256:
+                row.putLong256(index, getBinaryStr(lo, len));
+                break;
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+            case ColumnType.GEOLONG:
+                row.putGeoStr(index, getBinaryStr(lo, len));
+                break;
+            default:
+                throw CairoException.instance(0).put("unsupported column type [type=").put(ColumnType.nameOf(columnType)).put(']');
+        }
+    }
+
+    private void parseText() throws TextException {
+        if (!textAnalysed && bufSize < analysisBufferSize) {
+            // structure analysis needs a reasonable sample of lines, we buffer data
+            // up until we have enough
+            return;
+        }
+        textLoader.parse(buf, buf + bufSize, securityContext);
+        textAnalysed = true;
+        bufSize = 0;
+    }
+
+    private void parseTextLines() {
+        long lo = buf;
+        final long hi = buf + bufSize;
+        for (long p = lo; p < hi && !trailerParsed; p++) {
+            final byte b = Unsafe.getUnsafe().getByte(p);
+            if (b == '\\') {
+                // escaped line break does not end the line
+                p++;
+            } else if (b == '\n') {
+                parseTextLine(lo, p);
+                lo = p + 1;
+            }
+        }
+        if (trailerParsed) {
+            // anything after end-of-data marker is ignored
+            bufSize = 0;
+            return;
+        }
+
+        // move partial line to the start of the buffer
+        bufSize = hi - lo;
+        if (bufSize > 0 && lo > buf) {
+            Vect.memmove(buf, lo, bufSize);
+        }
+    }
+
+    private void parseTextLine(long lo, long hi) {
+        lineCount++;
+        if (hi > lo && Unsafe.getUnsafe().getByte(hi - 1) == '\r') {
+            hi--;
+        }
+        if (skipHeader) {
+            skipHeader = false;
+            return;
+        }
+        if (hi - lo == 2 && Unsafe.getUnsafe().getByte(lo) == '\\' && Unsafe.getUnsafe().getByte(lo + 1) == '.') {
+            trailerParsed = true;
+            return;
+        }
+
+        fieldAddresses.clear();
+        fieldLengths.clear();
+        long fieldLo = lo;
+        for (long p = lo; p < hi; p++) {
+            final byte b = Unsafe.getUnsafe().getByte(p);
+            if (b == '\\') {
+                // escaped delimiter is part of the value
+                p++;
+            } else if (b == columnDelimiter) {
+                fieldAddresses.add(fieldLo);
+                fieldLengths.add((int) (p - fieldLo));
+                fieldLo = p + 1;
+            }
+        }
+        fieldAddresses.add(fieldLo);
+        fieldLengths.add((int) (hi - fieldLo));
+
+        final int columnCount = writer.getMetadata().getColumnCount();
+        if (fieldLengths.size() != columnCount) {
+            throw CairoException.instance(0).put("column count mismatch [expected=").put(columnCount)
+                    .put(", actual=").put(fieldLengths.size())
+                    .put(", line=").put(lineCount)
+                    .put(']');
+        }
+        appendTextRow();
+    }
+
+    private void appendTextRow() {
+        final RecordMetadata metadata = writer.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        final TableWriter.Row row;
+        if (timestampIndex > -1) {
+            if (isTextNull(timestampIndex)) {
+                throw CairoException.instance(0).put("designated timestamp cannot be null [line=").put(lineCount).put(']');
+            }
+            row = writer.newRow(getTextTimestamp(metadata, timestampIndex));
+        } else {
+            row = writer.newRow();
+        }
+        try {
+            for (int i = 0, n = fieldLengths.size(); i < n; i++) {
+                if (i == timestampIndex || isTextNull(i)) {
+                    // null values are filled in by the writer
+                    continue;
+                }
+                putTextValue(row, metadata, i);
+            }
+            row.append();
+            rowCount++;
+        } catch (Throwable e) {
+            row.cancel();
+            throw e;
+        }
+    }
+
+    private long getTextTimestamp(RecordMetadata metadata, int index) {
+        final int columnType = metadata.getColumnType(index);
+        try {
+            final long micros = IntervalUtils.parseFloorPartialDate(getTextStr(index));
+            return ColumnType.tagOf(columnType) == ColumnType.DATE ? micros / 1000 : micros;
+        } catch (NumericException e) {
+            throw invalidTextValue(metadata, index);
+        }
+    }
+
+    private CairoException invalidTextValue(RecordMetadata metadata, int index) {
+        return CairoException.instance(0).put("invalid value [line=").put(lineCount)
+                .put(", column=").put(metadata.getColumnName(index))
+                .put(", type=").put(ColumnType.nameOf(metadata.getColumnType(index)))
+                .put(']');
+    }
+
+    // text format null is unquoted \N, escaped \\N is a string
+    private boolean isTextNull(int index) {
+        final long lo = fieldAddresses.getQuick(index);
+        return fieldLengths.getQuick(index) == 2
+                && Unsafe.getUnsafe().getByte(lo) == '\\'
+                && Unsafe.getUnsafe().getByte(lo + 1) == 'N';
+    }
+
+    private CharSequence getTextStr(int index) {
+        final int len = unescapeTextField(index);
+        utf8Sink.clear();
+        if (!Chars.utf8Decode(fieldBuf, fieldBuf + len, utf8Sink)) {
+            throw CairoException.instance(0).put("invalid UTF8 bytes in string value [line=").put(lineCount).put(']');
+        }
+        return utf8Sink;
+    }
+
+    /**
+     * Copies text format field into fieldBuf replacing backslash escapes with the bytes they stand for.
+     *
+     * @return length of unescaped value
+     */
+    private int unescapeTextField(int index) {
+        final long lo = fieldAddresses.getQuick(index);
+        final long hi = lo + fieldLengths.getQuick(index);
+        if (hi - lo > fieldBufCapacity) {
+            final long newCapacity = Numbers.ceilPow2(hi - lo);
+            fieldBuf = Unsafe.realloc(fieldBuf, fieldBufCapacity, newCapacity, MemoryTag.NATIVE_PGW_CONN);
+            fieldBufCapacity = newCapacity;
+        }
+        long dst = fieldBuf;
+        for (long p = lo; p < hi; p++) {
+            int b = Unsafe.getUnsafe().getByte(p);
+            if (b == '\\' && p + 1 < hi) {
+                b = Unsafe.getUnsafe().getByte(++p);
+                switch (b) {
+                    case 'b':
+                        b = '\b';
+                        break;
+                    case 'f':
+                        b = '\f';
+                        break;
+                    case 'n':
+                        b = '\n';
+                        break;
+                    case 'r':
+                        b = '\r';
+                        break;
+                    case 't':
+                        b = '\t';
+                        break;
+                    case 'v':
+                        b = 0x0b;
+                        break;
+                    case 'x':
+                        // \xH or \xHH, x on its own stands for itself
+                        if (p + 1 < hi && isHexDigit(Unsafe.getUnsafe().getByte(p + 1))) {
+                            b = hexDigit(Unsafe.getUnsafe().getByte(++p));
+                            if (p + 1 < hi && isHexDigit(Unsafe.getUnsafe().getByte(p + 1))) {
+                                b = (b << 4) | hexDigit(Unsafe.getUnsafe().getByte(++p));
+                            }
+                        }
+                        break;
+                    case '0':
+                    case '1':
+                    case '2':
+                    case '3':
+                    case '4':
+                    case '5':
+                    case '6':
+                    case '7':
+                        // one to three octal digits
+                        b -= '0';
+                        for (int i = 0; i < 2 && p + 1 < hi && isOctalDigit(Unsafe.getUnsafe().getByte(p + 1)); i++) {
+                            b = (b << 3) | (Unsafe.getUnsafe().getByte(++p) - '0');
+                        }
+                        b &= MAX_BYTE;
+                        break;
+                    default:
+                        // backslash, delimiter and any other character stand for themselves
+                        break;
+                }
+            }
+            Unsafe.getUnsafe().putByte(dst++, (byte) b);
+        }
+        return (int) (dst - fieldBuf);
+    }
+
+    private static boolean isHexDigit(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F');
+    }
+
+    private static int hexDigit(byte b) {
+        if (b <= '9') {
+            return b - '0';
+        }
+        return (b | 0x20) - 'a' + 10;
+    }
+
+    private static boolean isOctalDigit(byte b) {
+        return b >= '0' && b <= '7';
+    }
+
+    private static boolean parseTextBool(CharSequence value) throws NumericException {
+        if (Chars.equalsLowerCaseAscii(value, "t")
+                || Chars.equalsLowerCaseAscii(value, "true")
+                || Chars.equalsLowerCaseAscii(value, "y")
+                || Chars.equalsLowerCaseAscii(value, "yes")
+                || Chars.equalsLowerCaseAscii(value, "on")
+                || Chars.equals(value, '1')) {
+            return true;
+        }
+        if (Chars.equalsLowerCaseAscii(value, "f")
+                || Chars.equalsLowerCaseAscii(value, "false")
+                || Chars.equalsLowerCaseAscii(value, "n")
+                || Chars.equalsLowerCaseAscii(value, "no")
+                || Chars.equalsLowerCaseAscii(value, "off")
+                || Chars.equals(value, '0')) {
+            return false;
+        }
+        throw NumericException.INSTANCE;
+    }
+
+    private static int parseTextInt(CharSequence value, int min, int max) throws NumericException {
+        final int v = Numbers.parseInt(value);
+        if (v < min || v > max) {
+            throw NumericException.INSTANCE;
+        }
+        return v;
+    }
+
+    private void putTextValue(TableWriter.Row row, RecordMetadata metadata, int index) {
+        final int columnType = metadata.getColumnType(index);
+        try {
+            switch (ColumnType.tagOf(columnType)) {
+                case ColumnType.BOOLEAN:
+                    row.putBool(index, parseTextBool(getTextStr(index)));
+                    break;
+                case ColumnType.BYTE:
+                    row.putByte(index, (byte) parseTextInt(getTextStr(index), Byte.MIN_VALUE, Byte.MAX_VALUE));
+                    break;
+                case ColumnType.SHORT:
+                    row.putShort(index, (short) parseTextInt(getTextStr(index), Short.MIN_VALUE, Short.MAX_VALUE));
+                    break;
+                case ColumnType.CHAR:
+                    final CharSequence cs = getTextStr(index);
+                    if (cs.length() > 0) {
+                        row.putChar(index, cs.charAt(0));
+                    }
+                    break;
+                case ColumnType.INT:
+                    row.putInt(index, Numbers.parseInt(getTextStr(index)));
+                    break;
+                case ColumnType.LONG:
+                    row.putLong(index, Numbers.parseLong(getTextStr(index)));
+                    break;
+                case ColumnType.FLOAT:
+                    row.putFloat(index, Numbers.parseFloat(getTextStr(index)));
+                    break;
+                case ColumnType.DOUBLE:
+                    row.putDouble(index, Numbers.parseDouble(getTextStr(index)));
+                    break;
+                case ColumnType.DATE:
+                    row.putDate(index, IntervalUtils.parseFloorPartialDate(getTextStr(index)) / 1000);
+                    break;
+                case ColumnType.TIMESTAMP:
+                    row.putTimestamp(index, IntervalUtils.parseFloorPartialDate(getTextStr(index)));
+                    break;
+                case ColumnType.STRING:
+                    row.putStr(index, getTextStr(index));
+                    break;
+                case ColumnType.SYMBOL:
+                    row.putSym(index, getTextStr(index));
+                    break;
+                case ColumnType.BINARY:
+                    putTextBinary(row, index);
+                    break;
+                case ColumnType.LONG256:
+                    row.putLong256(index, getTextStr(index));
+                    break;
+                case ColumnType.GEOBYTE:
+                case ColumnType.GEOSHORT:
+                case ColumnType.GEOINT:
+                case ColumnType.GEOLONG:
+                    row.putGeoStr(index, getTextStr(index));
+                    break;
+                default:
+                    throw CairoException.instance(0).put("unsupported column type [type=").put(ColumnType.nameOf(columnType)).put(']');
+            }
+        } catch (NumericException e) {
+            throw invalidTextValue(metadata, index);
+        }
+    }
+
+    // bytea is sent in hex format, \x followed by two hex digits per byte
+    private void putTextBinary(TableWriter.Row row, int index) throws NumericException {
+        final int len = unescapeTextField(index);
+        if (len > 1 && Unsafe.getUnsafe().getByte(fieldBuf) == '\\' && Unsafe.getUnsafe().getByte(fieldBuf + 1) == 'x') {
+            if ((len & 1) != 0) {
+                throw NumericException.INSTANCE;
+            }
+            // decode in place, output never overtakes input
+            long dst = fieldBuf;
+            for (long p = fieldBuf + 2, hi = fieldBuf + len; p < hi; p += 2) {
+                final byte h = Unsafe.getUnsafe().getByte(p);
+                final byte l = Unsafe.getUnsafe().getByte(p + 1);
+                if (!isHexDigit(h) || !isHexDigit(l)) {
+                    throw NumericException.INSTANCE;
+                }
+                Unsafe.getUnsafe().putByte(dst++, (byte) ((hexDigit(h) << 4) | hexDigit(l)));
+            }
+            row.putBin(index, fieldBuf, dst - fieldBuf);
+        } else {
+            row.putBin(index, fieldBuf, len);
+        }
+    }
+}
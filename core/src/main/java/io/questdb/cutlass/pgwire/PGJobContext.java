@@ -31,7 +31,7 @@ import io.questdb.griffin.SqlCompiler;
 import io.questdb.network.PeerDisconnectedException;
 import io.questdb.network.PeerIsSlowToReadException;
 import io.questdb.network.PeerIsSlowToWriteException;
-import io.questdb.std.AssociativeCache;
+import io.questdb.std.ConcurrentAssociativeCache;
 import io.questdb.std.Misc;
 import io.questdb.std.WeakAutoClosableObjectPool;
 
@@ -40,27 +40,25 @@ import java.io.Closeable;
 public class PGJobContext implements Closeable {
 
     private final SqlCompiler compiler;
-    private final AssociativeCache<TypesAndSelect> selectAndTypesCache;
+    // both cache and pool are shared by all workers of the server
+    private final ConcurrentAssociativeCache<TypesAndSelect> selectAndTypesCache;
     private final WeakAutoClosableObjectPool<TypesAndSelect> selectAndTypesPool;
 
     public PGJobContext(
-            PGWireConfiguration configuration,
             CairoEngine engine,
             FunctionFactoryCache functionFactoryCache,
-            DatabaseSnapshotAgent snapshotAgent
+            DatabaseSnapshotAgent snapshotAgent,
+            ConcurrentAssociativeCache<TypesAndSelect> selectAndTypesCache,
+            WeakAutoClosableObjectPool<TypesAndSelect> selectAndTypesPool
     ) {
         this.compiler = new SqlCompiler(engine, functionFactoryCache, snapshotAgent);
-        final boolean enableSelectCache = configuration.isSelectCacheEnabled();
-        final int blockCount = enableSelectCache ? configuration.getSelectCacheBlockCount() : 1;
-        final int rowCount = enableSelectCache ? configuration.getSelectCacheRowCount() : 1;
-        this.selectAndTypesCache = new AssociativeCache<>(blockCount, rowCount);
-        this.selectAndTypesPool = new WeakAutoClosableObjectPool<>(TypesAndSelect::new, blockCount * rowCount);
+        this.selectAndTypesCache = selectAndTypesCache;
+        this.selectAndTypesPool = selectAndTypesPool;
     }
 
     @Override
     public void close() {
         Misc.free(compiler);
-        Misc.free(selectAndTypesCache);
     }
 
     public void handleClientOperation(PGConnectionContext context, int operation)
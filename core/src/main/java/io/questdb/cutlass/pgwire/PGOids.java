@@ -90,6 +90,12 @@ public class PGOids {
     public static final int BINARY_TYPE_BOOLEAN = (1 << 31) | ColumnType.BOOLEAN;
     public static final int BINARY_TYPE_LONG256 = (1 << 31) | ColumnType.LONG256;
     public static final int BINARY_TYPE_CHAR = (1 << 31) | ColumnType.CHAR;
+    // geohashes and nulls are sent as varchar, whose binary format is the same as text
+    public static final int BINARY_TYPE_GEOBYTE = (1 << 31) | ColumnType.GEOBYTE;
+    public static final int BINARY_TYPE_GEOSHORT = (1 << 31) | ColumnType.GEOSHORT;
+    public static final int BINARY_TYPE_GEOINT = (1 << 31) | ColumnType.GEOINT;
+    public static final int BINARY_TYPE_GEOLONG = (1 << 31) | ColumnType.GEOLONG;
+    public static final int BINARY_TYPE_NULL = (1 << 31) | ColumnType.NULL;
 
     static int toColumnBinaryType(short code, int type) {
         return (((int) code) << 31) | type;
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Formats timestamps in PostgreSQL text format, "y-MM-dd HH:mm:ss.SSSUUU". Result sets tend to have
+ * timestamps of the same day next to each other, so date part is formatted once per day and
+ * time of day is appended with plain arithmetic.
+ */
+class PGTimestampFormatter {
+    // length of "HH:mm:ss.SSSUUU"
+    private static final int TIME_LEN = 15;
+    private final StringSink datePrefix = new StringSink();
+    private long dayLo = Long.MAX_VALUE;
+    private long dayHi = Long.MIN_VALUE;
+
+    void format(long micros, CharSink sink) {
+        if (micros < dayLo || micros >= dayHi) {
+            if (micros < 0) {
+                TimestampFormatUtils.PG_TIMESTAMP_FORMAT.format(micros, null, null, sink);
+                return;
+            }
+            dayLo = Timestamps.floorDD(micros);
+            dayHi = dayLo + Timestamps.DAY_MICROS;
+            datePrefix.clear();
+            TimestampFormatUtils.PG_TIMESTAMP_FORMAT.format(dayLo, null, null, datePrefix);
+            datePrefix.clear(datePrefix.length() - TIME_LEN);
+        }
+
+        long time = micros - dayLo;
+        final int hour = (int) (time / Timestamps.HOUR_MICROS);
+        time -= hour * Timestamps.HOUR_MICROS;
+        final int minute = (int) (time / Timestamps.MINUTE_MICROS);
+        time -= minute * Timestamps.MINUTE_MICROS;
+        final int second = (int) (time / Timestamps.SECOND_MICROS);
+        time -= second * Timestamps.SECOND_MICROS;
+        final int milli = (int) (time / Timestamps.MILLI_MICROS);
+
+        sink.put(datePrefix);
+        append2(sink, hour).put(':');
+        append2(sink, minute).put(':');
+        append2(sink, second).put('.');
+        append3(sink, milli);
+        append3(sink, (int) (time - milli * Timestamps.MILLI_MICROS));
+    }
+
+    private static CharSink append2(CharSink sink, int value) {
+        return sink.put((char) ('0' + value / 10)).put((char) ('0' + value % 10));
+    }
+
+    private static void append3(CharSink sink, int value) {
+        sink.put((char) ('0' + value / 100)).put((char) ('0' + value / 10 % 10)).put((char) ('0' + value % 10));
+    }
+}
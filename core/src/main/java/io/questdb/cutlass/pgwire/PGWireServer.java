@@ -34,9 +34,8 @@ import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.*;
 import io.questdb.network.*;
-import io.questdb.std.Misc;
+import io.questdb.std.*;
 import io.questdb.std.ThreadLocal;
-import io.questdb.std.WeakObjectPool;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
@@ -50,6 +49,7 @@ public class PGWireServer implements Closeable {
     private final IODispatcher<PGConnectionContext> dispatcher;
     private final PGConnectionContextFactory contextFactory;
     private final WorkerPool workerPool;
+    private final ConcurrentAssociativeCache<TypesAndSelect> selectAndTypesCache;
 
     public PGWireServer(
             PGWireConfiguration configuration,
@@ -68,12 +68,26 @@ public class PGWireServer implements Closeable {
 
         workerPool.assign(dispatcher);
 
-        for (int i = 0, n = workerPool.getWorkerCount(); i < n; i++) {
-            final PGJobContext jobContext = new PGJobContext(configuration, engine, functionFactoryCache, snapshotAgent);
+        // compiled queries are cached server-wide, so that query compiled by one worker
+        // can be executed by any other; capacity is scaled to match per-worker caches
+        final int workerCount = workerPool.getWorkerCount();
+        final boolean enableSelectCache = configuration.isSelectCacheEnabled();
+        final int blockCount = enableSelectCache ? configuration.getSelectCacheBlockCount() : 1;
+        final int rowCount = enableSelectCache ? configuration.getSelectCacheRowCount() * workerCount : 1;
+        this.selectAndTypesCache = new ConcurrentAssociativeCache<>(blockCount, rowCount);
+        final WeakAutoClosableObjectPool<TypesAndSelect> selectAndTypesPool = new ConcurrentWeakAutoClosableObjectPool<>(
+                TypesAndSelect::new,
+                blockCount * rowCount
+        );
+
+        // select cache is shared by all workers, one subscriber clears it once per flush event
+        final SCSequence queryCacheEventSubSeq = new SCSequence();
+        final FanOut queryCacheEventFanOut = engine.getMessageBus().getQueryCacheEventFanOut();
+        queryCacheEventFanOut.and(queryCacheEventSubSeq);
 
-            final SCSequence queryCacheEventSubSeq = new SCSequence();
-            final FanOut queryCacheEventFanOut = engine.getMessageBus().getQueryCacheEventFanOut();
-            queryCacheEventFanOut.and(queryCacheEventSubSeq);
+        for (int i = 0; i < workerCount; i++) {
+            final PGJobContext jobContext = new PGJobContext(engine, functionFactoryCache, snapshotAgent, selectAndTypesCache, selectAndTypesPool);
+            final boolean flushesQueryCache = i == 0;
 
             workerPool.assign(i, new Job() {
                 private final IORequestProcessor<PGConnectionContext> processor = (operation, context) -> {
@@ -96,12 +110,14 @@ public class PGWireServer implements Closeable {
 
                 @Override
                 public boolean run(int workerId) {
-                    long seq = queryCacheEventSubSeq.next();
-                    if (seq > -1) {
-                        // Queue is not empty, so flush query cache.
-                        LOG.info().$("flushing PG Wire query cache [worker=").$(workerId).$(']').$();
-                        jobContext.flushQueryCache();
-                        queryCacheEventSubSeq.done(seq);
+                    if (flushesQueryCache) {
+                        long seq = queryCacheEventSubSeq.next();
+                        if (seq > -1) {
+                            // Queue is not empty, so flush query cache.
+                            LOG.info().$("flushing PG Wire query cache [worker=").$(workerId).$(']').$();
+                            jobContext.flushQueryCache();
+                            queryCacheEventSubSeq.done(seq);
+                        }
                     }
                     return dispatcher.processIOQueue(processor);
                 }
@@ -112,8 +128,10 @@ public class PGWireServer implements Closeable {
             workerPool.assign(i, () -> {
                 Misc.free(jobContext);
                 contextFactory.closeContextPool();
-                engine.getMessageBus().getQueryCacheEventFanOut().remove(queryCacheEventSubSeq);
-                queryCacheEventSubSeq.clear();
+                if (flushesQueryCache) {
+                    engine.getMessageBus().getQueryCacheEventFanOut().remove(queryCacheEventSubSeq);
+                    queryCacheEventSubSeq.clear();
+                }
             });
         }
 
@@ -182,6 +200,8 @@ public class PGWireServer implements Closeable {
         }
         Misc.free(contextFactory);
         Misc.free(dispatcher);
+        // closing connections returns their factories to the cache, it goes last
+        Misc.free(selectAndTypesCache);
     }
 
     public static class PGConnectionContextFactory implements IOContextFactory<PGConnectionContext>, Closeable, EagerThreadSetup {
@@ -376,6 +376,26 @@ public class CairoTextWriter implements Closeable, Mutable {
         }
     }
 
+    IntList getRemapIndex() {
+        return remapIndex;
+    }
+
+    TimestampAdapter getTimestampAdapter() {
+        return timestampAdapter;
+    }
+
+    int getTimestampIndex() {
+        return timestampIndex;
+    }
+
+    ObjList<TypeAdapter> getTypes() {
+        return types;
+    }
+
+    TableWriter getWriter() {
+        return writer;
+    }
+
     private class TableStructureAdapter implements TableStructure {
         private ObjList<CharSequence> names;
         private ObjList<TypeAdapter> types;
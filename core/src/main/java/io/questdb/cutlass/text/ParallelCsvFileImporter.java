@@ -0,0 +1,990 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.text;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cutlass.text.types.TimestampAdapter;
+import io.questdb.cutlass.text.types.TypeAdapter;
+import io.questdb.cutlass.text.types.TypeManager;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.SOUnboundedCountDownLatch;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.DirectCharSink;
+import io.questdb.std.str.Path;
+import io.questdb.tasks.TextImportTask;
+
+import java.io.Closeable;
+
+/**
+ * Imports large text files into partitioned tables using workers of the shared pool.
+ * <p>
+ * The file is memory mapped and split into chunks, one per worker. Chunk boundaries are moved to
+ * line starts, which requires counting quotes in every chunk first. Workers then index lines of
+ * their chunks by partition of the line timestamp. Index of each partition is sorted by timestamp
+ * and loaded into a temporary table, partitions are loaded in parallel. Finally, symbol keys of
+ * loaded partitions are remapped to the destination table and partitions are attached to it.
+ * <p>
+ * Import runs in parallel only when destination table is partitioned, empty, has no indexed
+ * columns and the file contains designated timestamp. Otherwise {@link #process(long, long, int, CairoSecurityContext)}
+ * returns false, so that the caller can fall back to {@link TextLoader}.
+ */
+public class ParallelCsvFileImporter implements Closeable, Mutable {
+    static final int PHASE_BOUNDARY_CHECK = 0;
+    static final int PHASE_INDEXING = 1;
+    static final int PHASE_PARTITION_IMPORT = 2;
+    private static final Log LOG = LogFactory.getLog(ParallelCsvFileImporter.class);
+    // index entry is a pair of line timestamp and line offset in the file
+    private static final int INDEX_ENTRY_SIZE = 2 * Long.BYTES;
+    private static final int INDEX_BUFFER_ENTRIES = 1024;
+    private static final String INDEX_DIR = "index";
+    private final CairoEngine engine;
+    private final CairoConfiguration configuration;
+    private final TextConfiguration textConfiguration;
+    private final FilesFacade ff;
+    private final DirectCharSink utf8Sink;
+    private final TypeManager typeManager;
+    private final TextLexer textLexer;
+    private final TextDelimiterScanner textDelimiterScanner;
+    private final CairoTextWriter textWriter;
+    private final Path path = new Path();
+    private final Path otherPath = new Path();
+    private final ObjList<CharSequence> noColumnNames = new ObjList<>();
+    private final ObjList<TypeAdapter> noColumnTypes = new ObjList<>();
+    private final ObjList<TaskContext> contexts = new ObjList<>();
+    // file offsets of chunk starts, -1 when chunk does not contain line start
+    private final LongList chunkStarts = new LongList();
+    private final LongList partitionKeys = new LongList();
+    private final LongLongHashMap partitionRowCountMap = new LongLongHashMap();
+    // indexed line counts initially, imported row counts once partitions are loaded
+    private final LongList partitionRowCounts = new LongList();
+    private final IntList partitionSymbolCounts = new IntList();
+    private final IntList symbolColumnIndexes = new IntList();
+    private final IntList symbolKeyMap = new IntList();
+    private final SymbolMapReaderImpl symbolMapReader = new SymbolMapReaderImpl();
+    private final TableStructureAdapter tableStructureAdapter = new TableStructureAdapter();
+    private final SOUnboundedCountDownLatch doneLatch = new SOUnboundedCountDownLatch();
+    private final RingQueue<TextImportTask> queue;
+    private final Sequence pubSeq;
+    private final Sequence subSeq;
+    private CharSequence tableName;
+    private int atomicity;
+    private boolean forceHeader;
+    private byte columnDelimiter = -1;
+    private byte delimiter;
+    private boolean header;
+    private long fileAddress;
+    private long fileSize;
+    private int chunkCount;
+    private int columnCount;
+    private int timestampIndex;
+    private int partitionBy;
+    private PartitionBy.PartitionFloorMethod partitionFloorMethod;
+
+    public ParallelCsvFileImporter(CairoEngine engine) {
+        this.engine = engine;
+        this.configuration = engine.getConfiguration();
+        this.textConfiguration = configuration.getTextConfiguration();
+        this.ff = configuration.getFilesFacade();
+        this.utf8Sink = new DirectCharSink(textConfiguration.getUtf8SinkSize());
+        this.typeManager = new TypeManager(textConfiguration, utf8Sink);
+        this.textLexer = new TextLexer(textConfiguration, typeManager);
+        this.textDelimiterScanner = new TextDelimiterScanner(textConfiguration);
+        this.textWriter = new CairoTextWriter(engine, path, typeManager);
+        final MessageBus messageBus = engine.getMessageBus();
+        this.queue = messageBus.getTextImportQueue();
+        this.pubSeq = messageBus.getTextImportPubSeq();
+        this.subSeq = messageBus.getTextImportSubSeq();
+    }
+
+    @Override
+    public void clear() {
+        textWriter.clear();
+        textLexer.clear();
+        typeManager.clear();
+        forceHeader = false;
+        columnDelimiter = -1;
+        chunkStarts.clear();
+        partitionKeys.clear();
+        partitionRowCountMap.clear();
+        partitionRowCounts.clear();
+        partitionSymbolCounts.clear();
+        symbolColumnIndexes.clear();
+        for (int i = 0, n = contexts.size(); i < n; i++) {
+            contexts.getQuick(i).clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.freeObjList(contexts);
+        Misc.free(textWriter);
+        Misc.free(textLexer);
+        Misc.free(textDelimiterScanner);
+        Misc.free(symbolMapReader);
+        Misc.free(path);
+        Misc.free(otherPath);
+        Misc.free(utf8Sink);
+    }
+
+    public void configureColumnDelimiter(byte columnDelimiter) {
+        this.columnDelimiter = columnDelimiter;
+        assert this.columnDelimiter > 0;
+    }
+
+    public void configureDestination(CharSequence tableName, int atomicity, int partitionBy, CharSequence timestampColumnName) {
+        this.tableName = tableName;
+        this.atomicity = atomicity;
+        textWriter.of(tableName, false, false, atomicity, partitionBy, timestampColumnName);
+        textDelimiterScanner.setTableName(tableName);
+        textLexer.setTableName(tableName);
+    }
+
+    /**
+     * Imports memory mapped file into the configured table.
+     *
+     * @param fd          file descriptor of the text file
+     * @param fileSize    size of the file
+     * @param workerCount number of workers, which share the import
+     * @return false when the file cannot be imported in parallel, nothing is written to the table in this case
+     * @throws TextException when text structure cannot be determined
+     * @throws CairoException when import fails, the table is left empty in this case. With {@link Atomicity#SKIP_ALL}
+     *                        import also fails on the first line without valid timestamp
+     */
+    public boolean process(long fd, long fileSize, int workerCount, CairoSecurityContext cairoSecurityContext) throws TextException {
+        final long fileAddress = TableUtils.mapRO(ff, fd, fileSize, MemoryTag.MMAP_DEFAULT);
+        try {
+            this.fileAddress = fileAddress;
+            this.fileSize = fileSize;
+            if (!prepareTable(cairoSecurityContext)) {
+                return false;
+            }
+
+            final long timestamp = configuration.getMicrosecondClock().getTicks();
+            removeWorkDir();
+            try {
+                chunkCount = (int) Math.max(1, Math.min(workerCount, fileSize));
+                prepareContexts();
+                findChunkBoundaries();
+                indexChunks();
+                importPartitions();
+                try {
+                    attachPartitions();
+                } catch (Throwable e) {
+                    // destination table was empty before the import, truncate undoes partitions attached so far
+                    textWriter.getWriter().truncate();
+                    throw e;
+                }
+            } finally {
+                removeWorkDir();
+            }
+            LOG.info()
+                    .$("imported [table=`").utf8(tableName)
+                    .$("`, chunks=").$(chunkCount)
+                    .$(", partitions=").$(partitionKeys.size())
+                    .$(", rows=").$(textWriter.getWriter().size())
+                    .$(", time=").$((configuration.getMicrosecondClock().getTicks() - timestamp) / 1000).$("ms")
+                    .$(']').$();
+            return true;
+        } finally {
+            textWriter.clear();
+            ff.munmap(fileAddress, fileSize, MemoryTag.MMAP_DEFAULT);
+            this.fileAddress = 0;
+        }
+    }
+
+    public void setForceHeaders(boolean forceHeader) {
+        this.forceHeader = forceHeader;
+    }
+
+    private void assignPartitions() {
+        for (int i = 0; i < chunkCount; i++) {
+            final TaskContext context = contexts.getQuick(i);
+            context.partitionIndexes.clear();
+            context.assignedRowCount = 0;
+        }
+        // greedily balance partitions between tasks by row count
+        for (int i = 0, n = partitionKeys.size(); i < n; i++) {
+            TaskContext min = contexts.getQuick(0);
+            for (int j = 1; j < chunkCount; j++) {
+                final TaskContext context = contexts.getQuick(j);
+                if (context.assignedRowCount < min.assignedRowCount) {
+                    min = context;
+                }
+            }
+            min.partitionIndexes.add(i);
+            min.assignedRowCount += partitionRowCounts.getQuick(i);
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            final TaskContext context = contexts.getQuick(i);
+            context.active = context.partitionIndexes.size() > 0;
+        }
+    }
+
+    private void attachPartitions() {
+        final TableWriter writer = textWriter.getWriter();
+        final RecordMetadata metadata = writer.getMetadata();
+        final int symbolColumnCount = symbolColumnIndexes.size();
+        for (int i = 0, n = partitionKeys.size(); i < n; i++) {
+            final long rowCount = partitionRowCounts.getQuick(i);
+            if (rowCount == 0) {
+                // none of the indexed lines made it into the table
+                continue;
+            }
+            final long partitionKey = partitionKeys.getQuick(i);
+            for (int j = 0; j < symbolColumnCount; j++) {
+                final int columnIndex = symbolColumnIndexes.getQuick(j);
+                remapSymbolColumn(
+                        writer.getSymbolMapWriter(columnIndex),
+                        metadata.getColumnName(columnIndex),
+                        partitionKey,
+                        rowCount,
+                        partitionSymbolCounts.getQuick(i * symbolColumnCount + j)
+                );
+            }
+
+            setPathForLoadedPartition(path, partitionKey).$();
+            otherPath.of(configuration.getRoot()).concat(tableName);
+            TableUtils.setPathForPartition(otherPath, partitionBy, partitionKey, false);
+            otherPath.put(TableUtils.DETACHED_DIR_MARKER).$();
+            if (!ff.rename(path, otherPath)) {
+                throw CairoException.instance(ff.errno())
+                        .put("could not move partition, copy work root must be on the same file system as the database [from=")
+                        .put(path).put(", to=").put(otherPath).put(']');
+            }
+
+            final int status = writer.attachPartition(partitionKey);
+            if (status != StatusCode.OK) {
+                throw CairoException.instance(0).put("could not attach partition [table=").put(tableName)
+                        .put(", partition=").put(otherPath)
+                        .put(", status=").put(status)
+                        .put(']');
+            }
+        }
+    }
+
+    private void checkErrors() {
+        for (int i = 0; i < chunkCount; i++) {
+            final Throwable e = contexts.getQuick(i).error;
+            if (e != null) {
+                if (e instanceof CairoException) {
+                    throw (CairoException) e;
+                }
+                throw CairoException.instance(0).put("import failed [table=").put(tableName).put(", error=").put(e.getMessage()).put(']');
+            }
+        }
+    }
+
+    private void findChunkBoundaries() {
+        final long chunkSize = fileSize / chunkCount;
+        for (int i = 0; i < chunkCount; i++) {
+            final TaskContext context = contexts.getQuick(i);
+            context.lo = i * chunkSize;
+            context.hi = i == chunkCount - 1 ? fileSize : context.lo + chunkSize;
+            context.active = true;
+        }
+        runPhase(PHASE_BOUNDARY_CHECK);
+
+        // line starts in the chunk depend on whether quote is open at the chunk start
+        chunkStarts.clear();
+        chunkStarts.add(0);
+        long quoteCount = contexts.getQuick(0).quoteCount;
+        for (int i = 1; i < chunkCount; i++) {
+            final TaskContext context = contexts.getQuick(i);
+            chunkStarts.add((quoteCount & 1) == 0 ? context.evenLineStart : context.oddLineStart);
+            quoteCount += context.quoteCount;
+        }
+
+        // chunk spans from its line start to the next line start, chunks without one are empty
+        long hi = fileSize;
+        for (int i = chunkCount - 1; i > -1; i--) {
+            final TaskContext context = contexts.getQuick(i);
+            final long lo = chunkStarts.getQuick(i);
+            context.active = lo > -1 && lo < hi;
+            if (context.active) {
+                context.lo = lo;
+                context.hi = hi;
+                hi = lo;
+            }
+        }
+    }
+
+    private void importPartitions() {
+        final TableWriterMetadata metadata = textWriter.getWriter().getMetadata();
+        tableStructureAdapter.of(metadata);
+
+        final int symbolColumnCount = symbolColumnIndexes.size();
+        partitionSymbolCounts.setAll(partitionKeys.size() * symbolColumnCount, 0);
+        assignPartitions();
+        runPhase(PHASE_PARTITION_IMPORT);
+    }
+
+    private void indexChunks() {
+        runPhase(PHASE_INDEXING);
+
+        partitionKeys.clear();
+        partitionRowCountMap.clear();
+        for (int i = 0; i < chunkCount; i++) {
+            final LongList partitionCounts = contexts.getQuick(i).partitionCounts;
+            for (int j = 0, n = partitionCounts.size(); j < n; j += 2) {
+                final long key = partitionCounts.getQuick(j);
+                final long count = partitionCounts.getQuick(j + 1);
+                final int index = partitionRowCountMap.keyIndex(key);
+                if (index > -1) {
+                    partitionKeys.add(key);
+                    partitionRowCountMap.putAt(index, key, count);
+                } else {
+                    partitionRowCountMap.putAt(index, key, partitionRowCountMap.valueAt(index) + count);
+                }
+            }
+        }
+        partitionKeys.sort();
+        partitionRowCounts.clear();
+        for (int i = 0, n = partitionKeys.size(); i < n; i++) {
+            partitionRowCounts.add(partitionRowCountMap.get(partitionKeys.getQuick(i)));
+        }
+    }
+
+    private boolean isParallelImportPossible(TableWriter writer) {
+        if (textWriter.getTimestampAdapter() == null || !PartitionBy.isPartitioned(writer.getPartitionBy()) || writer.size() > 0) {
+            return false;
+        }
+        final RecordMetadata metadata = writer.getMetadata();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            // partitions are attached as they are, indexes would have to be rebuilt
+            if (metadata.getColumnType(i) < 0 || metadata.isColumnIndexed(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void prepareContexts() {
+        for (int i = contexts.size(); i < chunkCount; i++) {
+            contexts.add(new TaskContext());
+        }
+        final ObjList<TypeAdapter> types = textWriter.getTypes();
+        for (int i = 0; i < chunkCount; i++) {
+            contexts.getQuick(i).of(i, types);
+        }
+    }
+
+    private boolean prepareTable(CairoSecurityContext cairoSecurityContext) throws TextException {
+        final long hi = fileAddress + Math.min(fileSize, configuration.getSqlCopyBufferSize());
+        delimiter = columnDelimiter > 0 ? columnDelimiter : textDelimiterScanner.scan(fileAddress, hi);
+        textLexer.of(delimiter);
+        textLexer.analyseStructure(
+                fileAddress,
+                hi,
+                textConfiguration.getTextAnalysisMaxLines(),
+                forceHeader,
+                noColumnNames,
+                noColumnTypes
+        );
+        header = textLexer.isHeaderDetected();
+        textWriter.prepareTable(cairoSecurityContext, textLexer.getColumnNames(), textLexer.getColumnTypes());
+
+        final TableWriter writer = textWriter.getWriter();
+        if (!isParallelImportPossible(writer)) {
+            LOG.info().$("cannot import in parallel [table=`").utf8(tableName).$("`]").$();
+            return false;
+        }
+
+        columnCount = textLexer.getColumnTypes().size();
+        timestampIndex = textWriter.getTimestampIndex();
+        partitionBy = writer.getPartitionBy();
+        partitionFloorMethod = PartitionBy.getPartitionFloorMethod(partitionBy);
+        symbolColumnIndexes.clear();
+        final RecordMetadata metadata = writer.getMetadata();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (ColumnType.isSymbol(metadata.getColumnType(i))) {
+                symbolColumnIndexes.add(i);
+            }
+        }
+        return true;
+    }
+
+    private void remapSymbolColumn(MapWriter symbolWriter, CharSequence columnName, long partitionKey, long rowCount, int symbolCount) {
+        symbolKeyMap.clear();
+        if (symbolCount > 0) {
+            setPathForTempTable(path, partitionKey);
+            try {
+                symbolMapReader.of(configuration, path, columnName, TableUtils.COLUMN_NAME_TXN_NONE, symbolCount);
+                for (int i = 0; i < symbolCount; i++) {
+                    symbolKeyMap.add(symbolWriter.put(symbolMapReader.valueOf(i)));
+                }
+            } finally {
+                symbolMapReader.close();
+            }
+        }
+
+        setPathForLoadedPartition(path, partitionKey);
+        final long fd = TableUtils.openRW(ff, TableUtils.dFile(path, columnName, TableUtils.COLUMN_NAME_TXN_NONE), LOG, configuration.getWriterFileOpenOpts());
+        try {
+            final long size = rowCount * Integer.BYTES;
+            final long address = TableUtils.mapRW(ff, fd, size, MemoryTag.MMAP_DEFAULT);
+            try {
+                boolean hasNulls = false;
+                for (long p = address, lim = address + size; p < lim; p += Integer.BYTES) {
+                    final int key = Unsafe.getUnsafe().getInt(p);
+                    if (key == SymbolTable.VALUE_IS_NULL) {
+                        hasNulls = true;
+                    } else {
+                        Unsafe.getUnsafe().putInt(p, symbolKeyMap.getQuick(key));
+                    }
+                }
+                if (hasNulls) {
+                    symbolWriter.updateNullFlag(true);
+                }
+            } finally {
+                ff.munmap(address, size, MemoryTag.MMAP_DEFAULT);
+            }
+        } finally {
+            ff.close(fd);
+        }
+    }
+
+    private void removeWorkDir() {
+        path.of(configuration.getSqlCopyWorkRoot()).concat(tableName).slash$();
+        if (ff.exists(path) && ff.rmdir(path) != 0) {
+            LOG.error().$("could not remove import work dir [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+        }
+    }
+
+    private void runPhase(int phase) {
+        doneLatch.reset();
+        int queuedCount = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            final TaskContext context = contexts.getQuick(i);
+            if (context.active) {
+                final long seq = pubSeq.next();
+                if (seq < 0) {
+                    // queue is full, do the work ourselves
+                    context.run(phase);
+                } else {
+                    queue.get(seq).of(context, phase, doneLatch);
+                    pubSeq.done(seq);
+                    queuedCount++;
+                }
+            }
+        }
+
+        // help workers, this is what makes import work when worker pool is busy or absent
+        while (doneLatch.getCount() > -queuedCount) {
+            final long seq = subSeq.next();
+            if (seq > -1) {
+                queue.get(seq).run();
+                subSeq.done(seq);
+            }
+        }
+        doneLatch.await(queuedCount);
+        checkErrors();
+    }
+
+    // <work root>/<table>/index/<partition>, index files of chunks are named after chunk index
+    private Path setPathForIndex(Path path, long partitionKey) {
+        path.of(configuration.getSqlCopyWorkRoot()).concat(tableName).concat(INDEX_DIR);
+        TableUtils.setPathForPartition(path, partitionBy, partitionKey, false);
+        return path;
+    }
+
+    // <work root>/<table>/<partition>/<table>/<partition>
+    private Path setPathForLoadedPartition(Path path, long partitionKey) {
+        TableUtils.setPathForPartition(setPathForTempTable(path, partitionKey), partitionBy, partitionKey, false);
+        return path;
+    }
+
+    // <work root>/<table>/<partition>, root of the temporary table
+    private Path setPathForTempRoot(Path path, long partitionKey) {
+        path.of(configuration.getSqlCopyWorkRoot()).concat(tableName);
+        TableUtils.setPathForPartition(path, partitionBy, partitionKey, false);
+        return path;
+    }
+
+    // <work root>/<table>/<partition>/<table>
+    private Path setPathForTempTable(Path path, long partitionKey) {
+        return setPathForTempRoot(path, partitionKey).concat(tableName);
+    }
+
+    /**
+     * Structure of temporary tables, which are created for every partition. They mirror
+     * destination table, so that loaded partitions can be attached to it as they are.
+     */
+    private class TableStructureAdapter implements TableStructure {
+        private TableWriterMetadata metadata;
+
+        @Override
+        public int getColumnCount() {
+            return metadata.getColumnCount();
+        }
+
+        @Override
+        public CharSequence getColumnName(int columnIndex) {
+            return metadata.getColumnName(columnIndex);
+        }
+
+        @Override
+        public int getColumnType(int columnIndex) {
+            return metadata.getColumnType(columnIndex);
+        }
+
+        @Override
+        public long getColumnHash(int columnIndex) {
+            return metadata.getColumnHash(columnIndex);
+        }
+
+        @Override
+        public int getIndexBlockCapacity(int columnIndex) {
+            return metadata.getIndexValueBlockCapacity(columnIndex);
+        }
+
+        @Override
+        public boolean isIndexed(int columnIndex) {
+            return false;
+        }
+
+        @Override
+        public boolean isSequential(int columnIndex) {
+            return false;
+        }
+
+        @Override
+        public int getPartitionBy() {
+            return partitionBy;
+        }
+
+        @Override
+        public boolean getSymbolCacheFlag(int columnIndex) {
+            return false;
+        }
+
+        @Override
+        public int getSymbolCapacity(int columnIndex) {
+            return configuration.getDefaultSymbolCapacity();
+        }
+
+        @Override
+        public CharSequence getTableName() {
+            return tableName;
+        }
+
+        @Override
+        public int getTimestampIndex() {
+            return metadata.getTimestampIndex();
+        }
+
+        @Override
+        public int getMaxUncommittedRows() {
+            return metadata.getMaxUncommittedRows();
+        }
+
+        @Override
+        public long getCommitLag() {
+            return metadata.getCommitLag();
+        }
+
+        void of(TableWriterMetadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+
+    /**
+     * State of one import task. Every task owns its own lexer and type adapters, because
+     * adapters decode UTF8 via the sink of their type manager.
+     */
+    public class TaskContext implements Closeable, Mutable {
+        private final DirectCharSink utf8Sink = new DirectCharSink(textConfiguration.getUtf8SinkSize());
+        private final TypeManager typeManager = new TypeManager(textConfiguration, utf8Sink);
+        private final TextLexer lexer = new TextLexer(textConfiguration, typeManager);
+        private final ObjList<TypeAdapter> types = new ObjList<>();
+        private final DirectByteCharSequence timestampValue = new DirectByteCharSequence();
+        private final Path path = new Path();
+        private final Path otherPath = new Path();
+        private final MemoryMARW ddlMem = Vm.getMARWInstance();
+        private final LongObjHashMap<IndexChunk> indexChunks = new LongObjHashMap<>();
+        private final ObjList<IndexChunk> indexChunkList = new ObjList<>();
+        // pairs of partition key and indexed line count
+        private final LongList partitionCounts = new LongList();
+        private final IntList partitionIndexes = new IntList();
+        private final TextLexer.Listener partitionListener = this::onFields;
+        private TimestampAdapter timestampAdapter;
+        private TableWriter partitionWriter;
+        private long lineTimestamp;
+        private int chunkIndex;
+        private boolean active;
+        private long lo;
+        private long hi;
+        private long quoteCount;
+        private long evenLineStart;
+        private long oddLineStart;
+        private long assignedRowCount;
+        private long errorCount;
+        private Throwable error;
+
+        private TaskContext() {
+        }
+
+        @Override
+        public void clear() {
+            freeIndexChunks();
+            partitionWriter = Misc.free(partitionWriter);
+            types.clear();
+            typeManager.clear();
+            lexer.clear();
+            partitionCounts.clear();
+            partitionIndexes.clear();
+            timestampAdapter = null;
+            error = null;
+            errorCount = 0;
+            active = false;
+        }
+
+        @Override
+        public void close() {
+            clear();
+            Misc.free(lexer);
+            Misc.free(ddlMem);
+            Misc.free(path);
+            Misc.free(otherPath);
+            Misc.free(utf8Sink);
+        }
+
+        public void run(int phase) {
+            try {
+                switch (phase) {
+                    case PHASE_BOUNDARY_CHECK:
+                        countQuotes();
+                        break;
+                    case PHASE_INDEXING:
+                        indexLines();
+                        break;
+                    default:
+                        importPartitions();
+                        break;
+                }
+            } catch (Throwable e) {
+                LOG.error().$("import task failed [table=`").utf8(tableName).$("`, chunk=").$(chunkIndex).$(", phase=").$(phase).$(", ex=").$(e).$(']').$();
+                error = e;
+            }
+        }
+
+        private void countQuotes() {
+            long quoteCount = 0;
+            long evenLineStart = -1;
+            long oddLineStart = -1;
+            final long lim = fileAddress + hi;
+            long p = fileAddress + lo;
+            while ((p = TextUtil.findQuoteOrLineEnd(p, lim)) < lim) {
+                if (Unsafe.getUnsafe().getByte(p++) == '"') {
+                    quoteCount++;
+                } else if ((quoteCount & 1) == 0) {
+                    if (evenLineStart == -1) {
+                        evenLineStart = p - fileAddress;
+                    }
+                } else if (oddLineStart == -1) {
+                    oddLineStart = p - fileAddress;
+                }
+            }
+            this.quoteCount = quoteCount;
+            this.evenLineStart = evenLineStart;
+            this.oddLineStart = oddLineStart;
+        }
+
+        private void flushIndexChunk(IndexChunk chunk, long partitionKey) {
+            if (chunk.fd == -1) {
+                setPathForIndex(path, partitionKey);
+                // tasks of other chunks may be creating the same directory concurrently
+                if (ff.mkdirs(path.slash$(), configuration.getMkDirMode()) != 0 && !ff.exists(path)) {
+                    throw CairoException.instance(ff.errno()).put("could not create [dir=").put(path).put(']');
+                }
+                path.chop$().put(chunkIndex).$();
+                chunk.fd = ff.openAppend(path);
+                if (chunk.fd == -1) {
+                    throw CairoException.instance(ff.errno()).put("could not open [file=").put(path).put(']');
+                }
+            }
+            final long len = chunk.entries.size() * Long.BYTES;
+            if (ff.append(chunk.fd, chunk.entries.getAddress(), (int) len) != len) {
+                throw CairoException.instance(ff.errno()).put("could not write index [table=").put(tableName).put(", chunk=").put(chunkIndex).put(']');
+            }
+            chunk.entries.clear();
+        }
+
+        private void freeIndexChunks() {
+            Misc.freeObjList(indexChunkList);
+            indexChunkList.clear();
+            indexChunks.clear();
+        }
+
+        private void importPartition(int partitionIndex) {
+            final long partitionKey = partitionKeys.getQuick(partitionIndex);
+            setPathForIndex(path, partitionKey);
+            final int plen = path.length();
+
+            long size = 0;
+            for (int i = 0; i < chunkCount; i++) {
+                if (ff.exists(path.trimTo(plen).slash().put(i).$())) {
+                    size += ff.length(path);
+                }
+            }
+            if (size == 0) {
+                return;
+            }
+
+            final long index = Unsafe.malloc(size, MemoryTag.NATIVE_DEFAULT);
+            try {
+                long offset = 0;
+                for (int i = 0; i < chunkCount; i++) {
+                    if (ff.exists(path.trimTo(plen).slash().put(i).$())) {
+                        final long fd = TableUtils.openRO(ff, path, LOG);
+                        try {
+                            final long len = ff.length(fd);
+                            if (ff.read(fd, index + offset, len, 0) != len) {
+                                throw CairoException.instance(ff.errno()).put("could not read index [file=").put(path).put(']');
+                            }
+                            offset += len;
+                        } finally {
+                            ff.close(fd);
+                        }
+                    }
+                }
+
+                final long entryCount = size / INDEX_ENTRY_SIZE;
+                Vect.sortLongIndexAscInPlace(index, entryCount);
+
+                setPathForTempRoot(path, partitionKey).$();
+                TableUtils.createTable(ff, path, configuration.getMkDirMode(), ddlMem, otherPath, tableStructureAdapter, ColumnType.VERSION, tableStructureAdapter.metadata.getId());
+                partitionWriter = new TableWriter(configuration, tableName, engine.getMessageBus(), null, false, DefaultLifecycleManager.INSTANCE, path, engine.getMetrics());
+
+                lexer.of(delimiter, columnCount);
+                final long fileHi = fileAddress + fileSize;
+                for (long p = index, lim = index + size; p < lim; p += INDEX_ENTRY_SIZE) {
+                    lineTimestamp = Unsafe.getUnsafe().getLong(p);
+                    lexer.parseLine(fileAddress + Unsafe.getUnsafe().getLong(p + Long.BYTES), fileHi, partitionListener);
+                }
+                partitionWriter.commit();
+
+                partitionRowCounts.setQuick(partitionIndex, partitionWriter.size());
+                final int symbolColumnCount = symbolColumnIndexes.size();
+                for (int i = 0; i < symbolColumnCount; i++) {
+                    partitionSymbolCounts.setQuick(
+                            partitionIndex * symbolColumnCount + i,
+                            partitionWriter.getSymbolMapWriter(symbolColumnIndexes.getQuick(i)).getSymbolCount()
+                    );
+                }
+            } finally {
+                partitionWriter = Misc.free(partitionWriter);
+                Unsafe.free(index, size, MemoryTag.NATIVE_DEFAULT);
+            }
+        }
+
+        private void importPartitions() {
+            for (int i = 0, n = partitionIndexes.size(); i < n; i++) {
+                importPartition(partitionIndexes.getQuick(i));
+            }
+        }
+
+        private void indexLine(long lineLo, long tsLo, long tsHi) {
+            if (tsLo == -1) {
+                onTimestampError(lineLo);
+                return;
+            }
+            if (tsHi - tsLo > 1 && Unsafe.getUnsafe().getByte(tsLo) == '"' && Unsafe.getUnsafe().getByte(tsHi - 1) == '"') {
+                tsLo++;
+                tsHi--;
+            }
+
+            final long timestamp;
+            try {
+                timestamp = timestampAdapter.getTimestamp(timestampValue.of(tsLo, tsHi));
+            } catch (Exception e) {
+                onTimestampError(lineLo);
+                return;
+            }
+
+            final long partitionKey = partitionFloorMethod.floor(timestamp);
+            final int keyIndex = indexChunks.keyIndex(partitionKey);
+            final IndexChunk chunk;
+            if (keyIndex > -1) {
+                chunk = new IndexChunk();
+                indexChunks.putAt(keyIndex, partitionKey, chunk);
+                indexChunkList.add(chunk);
+                chunk.partitionKey = partitionKey;
+            } else {
+                chunk = indexChunks.valueAt(keyIndex);
+            }
+            chunk.entries.add(timestamp);
+            chunk.entries.add(lineLo - fileAddress);
+            chunk.count++;
+            if (chunk.entries.size() == chunk.entries.getCapacity()) {
+                flushIndexChunk(chunk, partitionKey);
+            }
+        }
+
+        private void indexLines() {
+            final long lim = fileAddress + hi;
+            final byte delimiter = ParallelCsvFileImporter.this.delimiter;
+            final int timestampIndex = ParallelCsvFileImporter.this.timestampIndex;
+            // header is always in the first chunk, which starts at the beginning of the file
+            boolean skipLine = header && lo == 0;
+            boolean inQuote = false;
+            long lineLo = fileAddress + lo;
+            long fieldLo = lineLo;
+            long tsLo = -1;
+            long tsHi = -1;
+            int fieldIndex = 0;
+            long p = lineLo;
+            while ((p = TextUtil.findStructuralByte(p, lim, delimiter)) < lim) {
+                final byte c = Unsafe.getUnsafe().getByte(p++);
+                if (inQuote) {
+                    if (c == '"') {
+                        // double quote is an escaped quote, same as in the lexer
+                        if (p < lim && Unsafe.getUnsafe().getByte(p) == '"') {
+                            p++;
+                        } else {
+                            inQuote = false;
+                        }
+                    }
+                } else if (c == '"') {
+                    // quote opens only at the start of the field
+                    inQuote = p - 1 == fieldLo;
+                } else if (c == delimiter) {
+                    if (fieldIndex++ == timestampIndex) {
+                        tsLo = fieldLo;
+                        tsHi = p - 1;
+                    }
+                    fieldLo = p;
+                } else if (c == '\n' || c == '\r') {
+                    if (p - 1 > lineLo) {
+                        if (fieldIndex == timestampIndex) {
+                            tsLo = fieldLo;
+                            tsHi = p - 1;
+                        }
+                        if (skipLine) {
+                            skipLine = false;
+                        } else {
+                            indexLine(lineLo, tsLo, tsHi);
+                        }
+                    }
+                    lineLo = fieldLo = p;
+                    tsLo = tsHi = -1;
+                    fieldIndex = 0;
+                }
+            }
+            // last line of the file may be missing line end
+            if (lim > lineLo && !skipLine) {
+                if (fieldIndex == timestampIndex) {
+                    tsLo = fieldLo;
+                    tsHi = lim;
+                }
+                indexLine(lineLo, tsLo, tsHi);
+            }
+
+            partitionCounts.clear();
+            for (int i = 0, n = indexChunkList.size(); i < n; i++) {
+                final IndexChunk chunk = indexChunkList.getQuick(i);
+                if (chunk.entries.size() > 0) {
+                    flushIndexChunk(chunk, chunk.partitionKey);
+                }
+                partitionCounts.add(chunk.partitionKey);
+                partitionCounts.add(chunk.count);
+            }
+            freeIndexChunks();
+
+            if (errorCount > 0) {
+                LOG.info().$("skipped lines without valid timestamp [table=`").utf8(tableName).$("`, chunk=").$(chunkIndex).$(", count=").$(errorCount).$(']').$();
+            }
+        }
+
+        private void of(int chunkIndex, ObjList<TypeAdapter> types) {
+            clear();
+            this.chunkIndex = chunkIndex;
+            for (int i = 0, n = types.size(); i < n; i++) {
+                this.types.add(typeManager.adapterLike(types.getQuick(i)));
+            }
+            this.timestampAdapter = (TimestampAdapter) this.types.getQuick(timestampIndex);
+            lexer.setTableName(tableName);
+        }
+
+        private void onFields(long line, ObjList<DirectByteCharSequence> values, int valuesLength) {
+            final IntList remapIndex = textWriter.getRemapIndex();
+            final TableWriter.Row w = partitionWriter.newRow(lineTimestamp);
+            for (int i = 0; i < valuesLength; i++) {
+                final DirectByteCharSequence dbcs = values.getQuick(i);
+                if (i == timestampIndex || dbcs.length() == 0) {
+                    continue;
+                }
+                try {
+                    types.getQuick(i).write(w, remapIndex.size() > 0 ? remapIndex.get(i) : i, dbcs);
+                } catch (Exception ignore) {
+                    switch (atomicity) {
+                        case Atomicity.SKIP_ALL:
+                            w.cancel();
+                            throw CairoException.instance(0).put("bad syntax [table=").put(tableName).put(", col=").put(i).put(']');
+                        case Atomicity.SKIP_ROW:
+                            w.cancel();
+                            return;
+                        default:
+                            // SKIP column
+                            break;
+                    }
+                }
+            }
+            w.append();
+        }
+
+        private void onTimestampError(long lineLo) {
+            if (atomicity == Atomicity.SKIP_ALL) {
+                throw CairoException.instance(0).put("bad timestamp [table=").put(tableName).put(", offset=").put(lineLo - fileAddress).put(']');
+            }
+            errorCount++;
+        }
+    }
+
+    private class IndexChunk implements Closeable {
+        private final DirectLongList entries = new DirectLongList(INDEX_BUFFER_ENTRIES * 2, MemoryTag.NATIVE_DEFAULT);
+        private long fd = -1;
+        private long partitionKey;
+        private long count;
+
+        @Override
+        public void close() {
+            entries.close();
+            if (fd != -1) {
+                ff.close(fd);
+                fd = -1;
+            }
+        }
+    }
+}
@@ -126,6 +126,17 @@ public class TextLexer implements Closeable, Mutable {
         this.columnDelimiter = columnDelimiter;
     }
 
+    /**
+     * Prepares lexer to parse individual lines via {@link #parseLine(long, long, Listener)}.
+     * Column count is known upfront, so that it is not derived from the first parsed line.
+     */
+    void of(byte columnDelimiter, int columnCount) {
+        of(columnDelimiter);
+        for (int i = 0; i < columnCount; i++) {
+            addField();
+        }
+    }
+
     public void parse(long lo, long hi, int lineCountLimit, Listener textLexerListener) {
         this.textLexerListener = textLexerListener;
         this.fieldHi = useLineRollBuf ? lineRollBufCur : (this.fieldLo = lo);
@@ -146,6 +157,23 @@ public class TextLexer implements Closeable, Mutable {
         }
     }
 
+    /**
+     * Parses the line, which starts at lo. Lines that follow are left unparsed.
+     *
+     * @param lo address of the line start
+     * @param hi address of the end of the text, which is not necessarily end of the line
+     */
+    void parseLine(long lo, long hi, Listener textLexerListener) {
+        // column count is already known, lexer must not add fields
+        this.lineCount = 1;
+        this.eol = true;
+        parse(lo, hi, 1, textLexerListener);
+        if (useLineRollBuf) {
+            // last line of the text is not terminated
+            parseLast();
+        }
+    }
+
     public final void restart(boolean header) {
         this.fieldLo = 0;
         this.eol = false;
@@ -314,6 +342,18 @@ public class TextLexer implements Closeable, Mutable {
 
         try {
             while (ptr < hi) {
+                if (!eol && !delayedOutQuote && !useLineRollBuf && !rollBufferUnusable) {
+                    // bytes other than delimiters, quotes and line ends only extend current field.
+                    // Scan is called once per field and fields are mostly short, so it stays in Java:
+                    // JNI transition to a native SIMD scan would cost more than the scan itself
+                    final long next = TextUtil.findStructuralByte(ptr, hi, columnDelimiter);
+                    this.fieldHi += next - ptr;
+                    ptr = next;
+                    if (ptr == hi) {
+                        break;
+                    }
+                }
+
                 final byte c = Unsafe.getUnsafe().getByte(ptr++);
 
                 if (rollBufferUnusable) {
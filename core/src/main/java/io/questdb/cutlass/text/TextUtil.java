@@ -29,6 +29,62 @@ import io.questdb.std.Unsafe;
 import io.questdb.std.str.CharSink;
 
 public class TextUtil {
+    private static final long BYTE_ONES = 0x0101010101010101L;
+    private static final long BYTE_LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long QUOTES = '"' * BYTE_ONES;
+    private static final long LFS = '\n' * BYTE_ONES;
+    private static final long CRS = '\r' * BYTE_ONES;
+
+    /**
+     * Finds the first quote or line end, see {@link #findStructuralByte(long, long, byte)}.
+     *
+     * @return address of the found byte or hi when there is none
+     */
+    public static long findQuoteOrLineEnd(long lo, long hi) {
+        long p = lo;
+        for (final long lim = hi - Long.BYTES; p <= lim; p += Long.BYTES) {
+            final long word = Unsafe.getUnsafe().getLong(p);
+            final long matches = matchBytes(word, QUOTES) | matchBytes(word, LFS) | matchBytes(word, CRS);
+            if (matches != 0) {
+                return p + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+        }
+        for (; p < hi; p++) {
+            final byte c = Unsafe.getUnsafe().getByte(p);
+            if (c == '"' || c == '\n' || c == '\r') {
+                return p;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * Finds the first column delimiter, quote or line end, these are the only bytes that
+     * change lexer state. Text is classified eight bytes at a time, which is considerably
+     * faster than byte by byte scan for fields longer than a couple of bytes.
+     *
+     * @return address of the found byte or hi when there is none
+     */
+    public static long findStructuralByte(long lo, long hi, byte delimiter) {
+        final long delimiters = (delimiter & 0xffL) * BYTE_ONES;
+        long p = lo;
+        for (final long lim = hi - Long.BYTES; p <= lim; p += Long.BYTES) {
+            final long word = Unsafe.getUnsafe().getLong(p);
+            final long matches = matchBytes(word, delimiters) | matchBytes(word, QUOTES) | matchBytes(word, LFS) | matchBytes(word, CRS);
+            if (matches != 0) {
+                // memory is little endian, the lowest set bit belongs to the first matching byte
+                return p + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+        }
+        for (; p < hi; p++) {
+            final byte c = Unsafe.getUnsafe().getByte(p);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return p;
+            }
+        }
+        return hi;
+    }
+
     public static void utf8Decode(long lo, long hi, CharSink sink) throws Utf8Exception {
         long p = lo;
         while (p < hi) {
@@ -73,4 +129,10 @@ public class TextUtil {
             }
         }
     }
+
+    // sets high bit of every byte of the word, which is equal to the corresponding byte of 'bytes'
+    private static long matchBytes(long word, long bytes) {
+        final long x = word ^ bytes;
+        return ~(((x & BYTE_LOW_BITS) + BYTE_LOW_BITS) | x | BYTE_LOW_BITS);
+    }
 }
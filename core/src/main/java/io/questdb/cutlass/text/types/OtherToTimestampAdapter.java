@@ -37,6 +37,10 @@ public class OtherToTimestampAdapter extends TimestampAdapter implements Mutable
         this.compatibleAdapter = null;
     }
 
+    public TimestampCompatibleAdapter getCompatibleAdapter() {
+        return compatibleAdapter;
+    }
+
     public long getTimestamp(DirectByteCharSequence value) throws Exception {
         return compatibleAdapter.getTimestamp(value);
     }
@@ -44,6 +44,7 @@ public class TypeManager implements Mutable {
     private final ObjectPool<DateUtf8Adapter> dateAdapterPool;
     private final ObjectPool<TimestampUtf8Adapter> timestampUtf8AdapterPool;
     private final ObjectPool<TimestampAdapter> timestampAdapterPool;
+    private final ObjectPool<OtherToTimestampAdapter> otherToTimestampAdapterPool = new ObjectPool<>(OtherToTimestampAdapter::new, 4);
     private final InputFormatConfiguration inputFormatConfiguration;
 
     public TypeManager(
@@ -83,11 +84,39 @@ public class TypeManager implements Mutable {
         this.probeCount = probes.size();
     }
 
+    /**
+     * Adapters that decode UTF8 write via the sink of the type manager they come from,
+     * so they cannot be shared between threads. This method returns adapter for the same
+     * type and format as the given one, which uses sink of this type manager instead.
+     */
+    public TypeAdapter adapterLike(TypeAdapter adapter) {
+        if (adapter instanceof StringAdapter) {
+            return stringAdapter;
+        }
+        if (adapter instanceof SymbolAdapter) {
+            return nextSymbolAdapter(adapter.isIndexed());
+        }
+        if (adapter instanceof DateUtf8Adapter) {
+            final DateUtf8Adapter dateAdapter = (DateUtf8Adapter) adapter;
+            return nextDateAdapter().of(dateAdapter.format, dateAdapter.locale);
+        }
+        if (adapter instanceof TimestampUtf8Adapter) {
+            final TimestampUtf8Adapter timestampAdapter = (TimestampUtf8Adapter) adapter;
+            return nextTimestampAdapter(true, timestampAdapter.format, timestampAdapter.locale);
+        }
+        if (adapter instanceof OtherToTimestampAdapter) {
+            final TypeAdapter compatibleAdapter = (TypeAdapter) ((OtherToTimestampAdapter) adapter).getCompatibleAdapter();
+            return otherToTimestampAdapterPool.next().of((TimestampCompatibleAdapter) adapterLike(compatibleAdapter));
+        }
+        return adapter;
+    }
+
     @Override
     public void clear() {
         dateAdapterPool.clear();
         timestampUtf8AdapterPool.clear();
         timestampAdapterPool.clear();
+        otherToTimestampAdapterPool.clear();
     }
 
     public InputFormatConfiguration getInputFormatConfiguration() {
@@ -55,6 +55,9 @@ public interface CompiledQuery {
     short CREATE_TABLE_AS_SELECT = 21;
     short SNAPSHOT_DB_PREPARE = 22;
     short SNAPSHOT_DB_COMPLETE = 23;
+    short COPY_TO_REMOTE = 24;
+    short DELETE = 25;
+    short REFRESH_MAT_VIEW = 26;
 
     RecordCursorFactory getRecordCursorFactory();
 
@@ -62,6 +65,21 @@ public interface CompiledQuery {
 
     TextLoader getTextLoader();
 
+    /**
+     * @return one of CopyModel.FORMAT_* constants, valid for COPY_REMOTE and COPY_TO_REMOTE queries
+     */
+    int getCopyFormat();
+
+    /**
+     * @return column delimiter of text formats, valid for COPY_TO_REMOTE queries
+     */
+    byte getCopyDelimiter();
+
+    /**
+     * @return true when text output should start with a header row, valid for COPY_TO_REMOTE queries
+     */
+    boolean isCopyHeader();
+
     AlterStatement getAlterStatement();
 
     short getType();
@@ -80,7 +98,7 @@ public interface CompiledQuery {
     QueryFuture execute(SCSequence eventSubSeq) throws SqlException;
 
     /**
-     * Returns number of rows inserted by this command . Used e.g. in pg wire protocol .
+     * Returns number of rows inserted or, for DELETE, removed by this command . Used e.g. in pg wire protocol .
      */
     long getInsertCount();
 }
@@ -51,6 +51,9 @@ public class CompiledQueryImpl implements CompiledQuery {
     private InsertStatement insertStatement;
     private UpdateStatement updateStatement;
     private TextLoader textLoader;
+    private int copyFormat;
+    private byte copyDelimiter;
+    private boolean copyHeader;
     private AlterStatement alterStatement;
     private short type;
     private SqlExecutionContext sqlExecutionContext;
@@ -71,6 +74,21 @@ public class CompiledQueryImpl implements CompiledQuery {
         return insertStatement;
     }
 
+    @Override
+    public int getCopyFormat() {
+        return copyFormat;
+    }
+
+    @Override
+    public byte getCopyDelimiter() {
+        return copyDelimiter;
+    }
+
+    @Override
+    public boolean isCopyHeader() {
+        return copyHeader;
+    }
+
     @Override
     public TextLoader getTextLoader() {
         return textLoader;
@@ -184,11 +202,19 @@ public class CompiledQueryImpl implements CompiledQuery {
         return of(COPY_LOCAL);
     }
 
-    CompiledQuery ofCopyRemote(TextLoader textLoader) {
+    CompiledQuery ofCopyRemote(TextLoader textLoader, int copyFormat) {
         this.textLoader = textLoader;
+        this.copyFormat = copyFormat;
         return of(COPY_REMOTE);
     }
 
+    CompiledQuery ofCopyToRemote(RecordCursorFactory factory, int copyFormat, byte copyDelimiter, boolean copyHeader) {
+        this.copyFormat = copyFormat;
+        this.copyDelimiter = copyDelimiter;
+        this.copyHeader = copyHeader;
+        return of(COPY_TO_REMOTE, factory);
+    }
+
     CompiledQuery ofCreateTable() {
         return of(CREATE_TABLE);
     }
@@ -199,6 +225,18 @@ public class CompiledQueryImpl implements CompiledQuery {
         return this;
     }
 
+    CompiledQuery ofDelete(long removedCount) {
+        of(DELETE);
+        this.insertCount = removedCount;
+        return this;
+    }
+
+    CompiledQuery ofRefreshMatView(long rowCount) {
+        of(REFRESH_MAT_VIEW);
+        this.insertCount = rowCount;
+        return this;
+    }
+
     CompiledQuery ofDrop() {
         return of(DROP);
     }
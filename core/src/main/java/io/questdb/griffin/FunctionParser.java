@@ -27,6 +27,7 @@ package io.questdb.griffin;
 import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.sql.*;
+import io.questdb.griffin.engine.cache.ResultCache;
 import io.questdb.griffin.engine.functions.AbstractUnaryTimestampFunction;
 import io.questdb.griffin.engine.functions.CursorFunction;
 import io.questdb.griffin.engine.functions.GroupByFunction;
@@ -70,7 +71,10 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor, Mutab
     private final FunctionFactoryCache functionFactoryCache;
     private final IntList undefinedVariables = new IntList();
     private final Long256Impl long256Sink = new Long256Impl();
+    // named bind variables the query depends on
+    private final ObjList<String> bindVariableNames = new ObjList<>();
     private RecordMetadata metadata;
+    private boolean nonDeterministicFunctionUsed;
     private SqlCodeGenerator sqlCodeGenerator;
     private SqlExecutionContext sqlExecutionContext;
 
@@ -139,6 +143,8 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor, Mutab
     @Override
     public void clear() {
         this.sqlExecutionContext = null;
+        bindVariableNames.clear();
+        nonDeterministicFunctionUsed = false;
     }
 
     public Function createBindVariable(SqlExecutionContext sqlExecutionContext, int position, CharSequence name) throws SqlException {
@@ -196,10 +202,21 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor, Mutab
         return null;
     }
 
+    public ObjList<String> getBindVariableNames() {
+        return bindVariableNames;
+    }
+
     public FunctionFactoryCache getFunctionFactoryCache() {
         return functionFactoryCache;
     }
 
+    /**
+     * @return true when functions parsed since {@link #clear()} may return different values for the same table data
+     */
+    public boolean isNonDeterministicFunctionUsed() {
+        return nonDeterministicFunctionUsed;
+    }
+
     /**
      * Creates function instance. When node type is {@link ExpressionNode#LITERAL} a column or parameter
      * function is returned. We will be using the supplied {@link #metadata} to resolve type of column. When node token
@@ -401,6 +418,7 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor, Mutab
             Misc.freeObjList(args);
             throw SqlException.position(position).put("bad function factory (NULL), check log");
         }
+        nonDeterministicFunctionUsed |= !ResultCache.isDeterministic(factory.getSignature());
         return function;
     }
 
@@ -772,7 +790,11 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor, Mutab
         if (function == null) {
             throw SqlException.position(position).put("undefined bind variable: ").put(name);
         }
-        return new NamedParameterLinkFunction(Chars.toString(name), function.getType());
+        final String variableName = Chars.toString(name);
+        if (bindVariableNames.indexOf(variableName) < 0) {
+            bindVariableNames.add(variableName);
+        }
+        return new NamedParameterLinkFunction(variableName, function.getType());
     }
 
     private Function functionToConstant(Function function) {
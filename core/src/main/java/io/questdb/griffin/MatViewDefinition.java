@@ -0,0 +1,315 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.PartitionBy;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.TxReader;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMA;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.griffin.engine.groupby.TimestampSampler;
+import io.questdb.griffin.engine.groupby.TimestampSamplerFactory;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.Path;
+
+/**
+ * Definition and refresh state of a materialized view. The view is a regular partitioned table,
+ * this file sits in its directory and keeps the view query together with a snapshot of the base
+ * table partitions the view was last refreshed from. Comparing the snapshot with the current
+ * base table yields the lowest timestamp that may have changed, so that refresh re-aggregates
+ * only the SAMPLE BY buckets from that timestamp on.
+ */
+public class MatViewDefinition implements Mutable {
+    public static final String MAT_VIEW_FILE_NAME = "_mv";
+    public static final long REFRESH_NONE = Long.MAX_VALUE;
+    public static final long REFRESH_FULL = Long.MIN_VALUE;
+    private static final String MAT_VIEW_TEMP_FILE_NAME = "_mv.tmp";
+    private static final int FORMAT_VERSION = 1;
+    private static final int PARTITION_TIMESTAMP = 0;
+    private static final int PARTITION_SIZE = 1;
+    private static final int PARTITION_NAME_TXN = 2;
+    private static final int LONGS_PER_PARTITION = 3;
+    // timestamp, size and name txn of base table partitions as of the last refresh
+    private final LongList partitions = new LongList();
+    private String baseTableName;
+    private String query;
+    private int baseTableNameLo;
+    private int baseTableNameHi;
+    private String sampleBy;
+    private long sampleByOffset;
+    private long baseTxn = -1;
+    private long baseTruncateVersion;
+    private long baseColumnVersion;
+    private long baseMaxTimestamp;
+    private boolean rowsRemoved;
+    private TimestampSampler sampler;
+
+    @Override
+    public void clear() {
+        partitions.clear();
+        baseTableName = null;
+        query = null;
+        sampleBy = null;
+        sampler = null;
+        baseTxn = -1;
+        rowsRemoved = false;
+    }
+
+    /**
+     * Compares base table with the snapshot of the last refresh.
+     *
+     * @return REFRESH_NONE when nothing changed, REFRESH_FULL when the view has to be rebuilt
+     * or the lowest timestamp of base table rows that may have been inserted, replaced or removed
+     */
+    public long findChangedLo(TableReader reader) {
+        final TxReader txFile = reader.getTxFile();
+        rowsRemoved = false;
+        if (baseTxn == -1
+                || txFile.getTruncateVersion() != baseTruncateVersion
+                || txFile.getColumnVersion() != baseColumnVersion) {
+            // never refreshed, truncated or updated in place
+            rowsRemoved = true;
+            return REFRESH_FULL;
+        }
+
+        if (txFile.getTxn() == baseTxn) {
+            return REFRESH_NONE;
+        }
+
+        final boolean dedup = reader.getMetadata().hasDedupKeys();
+        final int oldCount = partitions.size() / LONGS_PER_PARTITION;
+        final int count = getPartitionCount(reader);
+        long lo = REFRESH_NONE;
+        int i = 0, j = 0;
+        while (i < count && j < oldCount) {
+            final long timestamp = getPartitionTimestamp(reader, i);
+            final long oldTimestamp = partitions.getQuick(j * LONGS_PER_PARTITION + PARTITION_TIMESTAMP);
+            if (oldTimestamp < timestamp) {
+                // partition is gone
+                lo = Math.min(lo, oldTimestamp);
+                rowsRemoved = true;
+                j++;
+            } else if (timestamp < oldTimestamp) {
+                lo = Math.min(lo, timestamp);
+                i++;
+            } else {
+                final long size = getPartitionSize(reader, i);
+                final long oldSize = partitions.getQuick(j * LONGS_PER_PARTITION + PARTITION_SIZE);
+                if (getPartitionNameTxn(reader, i) != partitions.getQuick(j * LONGS_PER_PARTITION + PARTITION_NAME_TXN)) {
+                    // partition is rewritten by O3 merge, DELETE or deduplication
+                    lo = Math.min(lo, timestamp);
+                    rowsRemoved |= size <= oldSize || dedup;
+                } else if (size != oldSize) {
+                    // rows are appended in place, they cannot be older than the last row of the
+                    // partition, which is only known for the last partition
+                    lo = Math.min(lo, j == oldCount - 1 ? baseMaxTimestamp : timestamp);
+                    rowsRemoved |= size < oldSize;
+                }
+                i++;
+                j++;
+            }
+        }
+
+        if (i < count) {
+            lo = Math.min(lo, getPartitionTimestamp(reader, i));
+        }
+
+        if (j < oldCount) {
+            lo = Math.min(lo, partitions.getQuick(j * LONGS_PER_PARTITION + PARTITION_TIMESTAMP));
+            rowsRemoved = true;
+        }
+        return lo;
+    }
+
+    /**
+     * @return start of the SAMPLE BY bucket the timestamp falls into
+     */
+    public long floorBucket(long timestamp) {
+        return sampler.round(timestamp);
+    }
+
+    public String getBaseTableName() {
+        return baseTableName;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public boolean hasRemovedRows() {
+        return rowsRemoved;
+    }
+
+    /**
+     * @return start of the SAMPLE BY bucket that follows the bucket starting at the timestamp
+     */
+    public long nextBucket(long bucketLo) {
+        return sampler.nextTimestamp(bucketLo);
+    }
+
+    public void of(
+            CharSequence baseTableName,
+            CharSequence query,
+            int baseTableNameLo,
+            int baseTableNameHi,
+            CharSequence sampleBy,
+            long sampleByOffset
+    ) throws SqlException {
+        clear();
+        this.baseTableName = Chars.toString(baseTableName);
+        this.query = Chars.toString(query);
+        this.baseTableNameLo = baseTableNameLo;
+        this.baseTableNameHi = baseTableNameHi;
+        this.sampleBy = Chars.toString(sampleBy);
+        this.sampleByOffset = sampleByOffset;
+        this.sampler = TimestampSamplerFactory.getInstance(sampleBy, 0);
+        this.sampler.setStart(sampleByOffset);
+    }
+
+    public void readFrom(CairoConfiguration configuration, Path path) throws SqlException {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final int plen = path.length();
+        try (MemoryMR mem = Vm.getMRInstance()) {
+            path.concat(MAT_VIEW_FILE_NAME).$();
+            if (!ff.exists(path)) {
+                throw CairoException.instance(0).put("not a materialized view [path=").put(path).put(']');
+            }
+            mem.smallFile(ff, path, MemoryTag.MMAP_DEFAULT);
+            long offset = 0;
+            final int version = mem.getInt(offset);
+            if (version != FORMAT_VERSION) {
+                throw CairoException.instance(0).put("unsupported materialized view format [path=").put(path).put(", version=").put(version).put(']');
+            }
+            offset += Integer.BYTES;
+            final CharSequence baseTableName = Chars.toString(mem.getStr(offset));
+            offset += Vm.getStorageLength(baseTableName);
+            final CharSequence query = Chars.toString(mem.getStr(offset));
+            offset += Vm.getStorageLength(query);
+            final CharSequence sampleBy = mem.getStr(offset);
+            offset += Vm.getStorageLength(sampleBy);
+            of(baseTableName, query, mem.getInt(offset), mem.getInt(offset + 4), sampleBy, mem.getLong(offset + 8));
+            offset += 16;
+            baseTxn = mem.getLong(offset);
+            baseTruncateVersion = mem.getLong(offset + 8);
+            baseColumnVersion = mem.getLong(offset + 16);
+            baseMaxTimestamp = mem.getLong(offset + 24);
+            final int count = mem.getInt(offset + 32);
+            offset += 36;
+            for (int i = 0; i < count * LONGS_PER_PARTITION; i++) {
+                partitions.add(mem.getLong(offset));
+                offset += Long.BYTES;
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Remembers base table state, the view must not be older than the snapshot.
+     */
+    public void snapshot(TableReader reader) {
+        final TxReader txFile = reader.getTxFile();
+        baseTxn = txFile.getTxn();
+        baseTruncateVersion = txFile.getTruncateVersion();
+        baseColumnVersion = txFile.getColumnVersion();
+        baseMaxTimestamp = txFile.getMaxTimestamp();
+        partitions.clear();
+        for (int i = 0, n = getPartitionCount(reader); i < n; i++) {
+            partitions.add(getPartitionTimestamp(reader, i));
+            partitions.add(getPartitionSize(reader, i));
+            partitions.add(getPartitionNameTxn(reader, i));
+        }
+    }
+
+    /**
+     * Prints view query limited to base table rows with timestamp at or after "lo".
+     */
+    public void toRefreshQuery(CharSink sink, CharSequence timestampColumn, long lo) {
+        sink.put(query, 0, baseTableNameLo);
+        sink.put("(select * from ").put(query, baseTableNameLo, baseTableNameHi);
+        sink.put(" where ").put(timestampColumn).put(" >= '");
+        TimestampFormatUtils.appendDateTimeUSec(sink, lo);
+        sink.put("')");
+        sink.put(query, baseTableNameHi, query.length());
+    }
+
+    /**
+     * Writes the definition to a temporary file and renames it over the current one, so that
+     * a crash cannot leave half written state behind. The state may still be older than the
+     * view data, which only makes the next refresh re-aggregate more buckets.
+     */
+    public void writeTo(CairoConfiguration configuration, Path path, Path other) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final int plen = path.length();
+        try {
+            other.of(path).concat(MAT_VIEW_TEMP_FILE_NAME).$();
+            try (MemoryMA mem = Vm.getSmallMAInstance(ff, other, MemoryTag.MMAP_DEFAULT, configuration.getWriterFileOpenOpts())) {
+                mem.putInt(FORMAT_VERSION);
+                mem.putStr(baseTableName);
+                mem.putStr(query);
+                mem.putStr(sampleBy);
+                mem.putInt(baseTableNameLo);
+                mem.putInt(baseTableNameHi);
+                mem.putLong(sampleByOffset);
+                mem.putLong(baseTxn);
+                mem.putLong(baseTruncateVersion);
+                mem.putLong(baseColumnVersion);
+                mem.putLong(baseMaxTimestamp);
+                mem.putInt(partitions.size() / LONGS_PER_PARTITION);
+                for (int i = 0, n = partitions.size(); i < n; i++) {
+                    mem.putLong(partitions.getQuick(i));
+                }
+            }
+            TableUtils.renameOrFail(ff, other, path.concat(MAT_VIEW_FILE_NAME).$());
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    // non-partitioned tables are a single partition that can only be appended to
+
+    private static int getPartitionCount(TableReader reader) {
+        return PartitionBy.isPartitioned(reader.getPartitionedBy()) ? reader.getTxFile().getPartitionCount() : 1;
+    }
+
+    private static long getPartitionNameTxn(TableReader reader, int index) {
+        return PartitionBy.isPartitioned(reader.getPartitionedBy()) ? reader.getTxFile().getPartitionNameTxn(index) : -1;
+    }
+
+    private static long getPartitionSize(TableReader reader, int index) {
+        final TxReader txFile = reader.getTxFile();
+        return index == getPartitionCount(reader) - 1 ? txFile.getTransientRowCount() : txFile.getPartitionSize(index);
+    }
+
+    private static long getPartitionTimestamp(TableReader reader, int index) {
+        return PartitionBy.isPartitioned(reader.getPartitionedBy()) ? reader.getTxFile().getPartitionTimestamp(index) : Long.MIN_VALUE;
+    }
+}
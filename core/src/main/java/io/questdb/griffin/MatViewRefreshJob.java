@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.EntryUnavailableException;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.SynchronizedJob;
+import io.questdb.std.*;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.Path;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Keeps materialized views up to date with their base tables. Views are taken from the engine's
+ * registry and refreshed at configured interval, each refresh only aggregates base table rows
+ * committed since the previous one.
+ */
+public class MatViewRefreshJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(MatViewRefreshJob.class);
+    private final CairoConfiguration configuration;
+    private final MatViewRegistry registry;
+    private final MillisecondClock clock;
+    private final long refreshInterval;
+    private final SqlCompiler compiler;
+    private final SqlExecutionContextImpl executionContext;
+    private final Path path = new Path();
+    private final ObjList<String> viewNames = new ObjList<>();
+    // last error per view, repeated errors are not logged on every run
+    private final CharSequenceObjHashMap<String> errors = new CharSequenceObjHashMap<>();
+    private long nextRefreshMs;
+
+    public MatViewRefreshJob(CairoEngine engine, @Nullable FunctionFactoryCache functionFactoryCache) {
+        this.configuration = engine.getConfiguration();
+        this.registry = engine.getMatViewRegistry();
+        this.clock = configuration.getMillisecondClock();
+        this.refreshInterval = configuration.getMatViewRefreshInterval();
+        this.compiler = new SqlCompiler(engine, functionFactoryCache, null);
+        this.executionContext = new SqlExecutionContextImpl(engine, 1);
+        this.executionContext.with(AllowAllCairoSecurityContext.INSTANCE, null, null);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(compiler);
+        Misc.free(path);
+    }
+
+    @Override
+    protected boolean runSerially() {
+        final long now = clock.getTicks();
+        if (now < nextRefreshMs) {
+            return false;
+        }
+        nextRefreshMs = now + refreshInterval;
+
+        viewNames.clear();
+        registry.collectViewNames(viewNames);
+        boolean useful = false;
+        for (int i = 0, n = viewNames.size(); i < n; i++) {
+            final String viewName = viewNames.getQuick(i);
+            if (configuration.getFilesFacade().exists(path.of(configuration.getRoot()).concat(viewName).concat(MatViewDefinition.MAT_VIEW_FILE_NAME).$())) {
+                useful |= refresh(viewName);
+            } else {
+                // view directory was removed behind the engine's back
+                registry.remove(viewName);
+                errors.remove(viewName);
+            }
+        }
+        return useful;
+    }
+
+    private boolean refresh(String viewName) {
+        try {
+            final long rowCount = compiler.refreshMatView(viewName, executionContext);
+            if (errors.remove(viewName) > -1) {
+                LOG.info().$("refreshed [view=").$(viewName).$(']').$();
+            }
+            return rowCount > 0;
+        } catch (EntryUnavailableException e) {
+            // view or base table writer is busy, try again on the next run
+            return false;
+        } catch (SqlException | CairoException e) {
+            final CharSequence message = e.getFlyweightMessage();
+            final int index = errors.keyIndex(viewName);
+            if (index > -1 || !Chars.equals(errors.valueAtQuick(index), message)) {
+                LOG.error().$("could not refresh [view=").$(viewName).$(", msg=").$(message).$(']').$();
+                errors.putAt(index, viewName, Chars.toString(message));
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Names of materialized views known to the engine. Existing views are found once on startup,
+ * afterwards the registry is kept up to date by create, drop and rename.
+ */
+public class MatViewRegistry {
+    // guarded by "this"
+    private final CharSequenceHashSet viewNames = new CharSequenceHashSet();
+
+    public synchronized void add(CharSequence viewName) {
+        viewNames.add(Chars.toString(viewName));
+    }
+
+    public synchronized void collectViewNames(ObjList<String> sink) {
+        for (int i = 0, n = viewNames.size(); i < n; i++) {
+            sink.add((String) viewNames.get(i));
+        }
+    }
+
+    public synchronized boolean remove(CharSequence viewName) {
+        return viewNames.remove(viewName) > -1;
+    }
+
+    public synchronized void rename(CharSequence viewName, CharSequence newName) {
+        if (viewNames.remove(viewName) > -1) {
+            viewNames.add(Chars.toString(newName));
+        }
+    }
+
+    public void scan(CairoConfiguration configuration) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final StringSink nameSink = new StringSink();
+        try (Path path = new Path(); Path viewPath = new Path()) {
+            ff.iterateDir(path.of(configuration.getRoot()).$(), (pUtf8NameZ, type) -> {
+                if (Files.isDir(pUtf8NameZ, type, nameSink)
+                        && ff.exists(viewPath.of(configuration.getRoot()).concat(nameSink).concat(MatViewDefinition.MAT_VIEW_FILE_NAME).$())) {
+                    add(nameSink);
+                }
+            });
+        }
+    }
+}
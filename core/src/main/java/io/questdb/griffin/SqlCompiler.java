@@ -32,9 +32,15 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.*;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cutlass.parquet.ParquetStreamWriter;
 import io.questdb.cutlass.text.Atomicity;
+import io.questdb.cutlass.text.ParallelCsvFileImporter;
 import io.questdb.cutlass.text.TextException;
 import io.questdb.cutlass.text.TextLoader;
+import io.questdb.griffin.engine.cache.IncrementalSampleByRecordCursorFactory;
+import io.questdb.griffin.engine.cache.ResultCache;
+import io.questdb.griffin.engine.cache.ResultCacheRecordCursorFactory;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
 import io.questdb.griffin.engine.functions.cast.CastCharToStrFunctionFactory;
 import io.questdb.griffin.engine.functions.cast.CastStrToGeoHashFunctionFactory;
 import io.questdb.griffin.engine.functions.catalogue.*;
@@ -48,6 +54,8 @@ import io.questdb.network.PeerDisconnectedException;
 import io.questdb.network.PeerIsSlowToReadException;
 import io.questdb.std.*;
 import io.questdb.std.datetime.DateFormat;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.datetime.microtime.Timestamps;
 import io.questdb.std.str.Path;
 import io.questdb.std.str.StringSink;
 import org.jetbrains.annotations.NotNull;
@@ -103,6 +111,12 @@ public class SqlCompiler implements Closeable {
     private final FunctionParser functionParser;
     private final ExecutableMethod insertAsSelectMethod = this::insertAsSelect;
     private final TextLoader textLoader;
+    private ParallelCsvFileImporter fileImporter;
+    private final MatViewDefinition matViewDefinition = new MatViewDefinition();
+    private final StringSink matViewQuerySink = new StringSink();
+    private final ObjList<ExpressionNode> windowPredicates = new ObjList<>();
+    private final StringSink windowQuerySink = new StringSink();
+    private final GenericLexer windowLexer;
     private final FilesFacade ff;
     private final TimestampValueRecord partitionFunctionRec = new TimestampValueRecord();
 
@@ -132,6 +146,7 @@ public class SqlCompiler implements Closeable {
                 configuration.getSqlCharacterStoreCapacity(),
                 configuration.getSqlCharacterStoreSequencePoolCapacity());
         this.lexer = new GenericLexer(configuration.getSqlLexerPoolCapacity());
+        this.windowLexer = new GenericLexer(configuration.getSqlLexerPoolCapacity());
         this.functionParser = new FunctionParser(
                 configuration,
                 functionFactoryCache != null
@@ -157,6 +172,8 @@ public class SqlCompiler implements Closeable {
         final KeywordBasedExecutor alterTable = this::alterTable;
         final KeywordBasedExecutor repairTables = this::repairTables;
         final KeywordBasedExecutor dropTable = this::dropTable;
+        final KeywordBasedExecutor deleteFrom = this::deleteFrom;
+        final KeywordBasedExecutor refreshMatView = this::refreshMatView;
         final KeywordBasedExecutor sqlBackup = backupAgent::sqlBackup;
         final KeywordBasedExecutor sqlShow = this::sqlShow;
         final KeywordBasedExecutor vacuumTable = this::vacuum;
@@ -186,6 +203,10 @@ public class SqlCompiler implements Closeable {
         keywordBasedExecutors.put("RESET", compileSet);  //no-op
         keywordBasedExecutors.put("drop", dropTable);
         keywordBasedExecutors.put("DROP", dropTable);
+        keywordBasedExecutors.put("delete", deleteFrom);
+        keywordBasedExecutors.put("DELETE", deleteFrom);
+        keywordBasedExecutors.put("refresh", refreshMatView);
+        keywordBasedExecutors.put("REFRESH", refreshMatView);
         keywordBasedExecutors.put("backup", sqlBackup);
         keywordBasedExecutors.put("BACKUP", sqlBackup);
         keywordBasedExecutors.put("show", sqlShow);
@@ -196,6 +217,7 @@ public class SqlCompiler implements Closeable {
         keywordBasedExecutors.put("SNAPSHOT", snapshotDatabase);
 
         configureLexer(lexer);
+        configureLexer(windowLexer);
 
         final PostOrderTreeTraversalAlgo postOrderTreeTraversalAlgo = new PostOrderTreeTraversalAlgo();
         optimiser = new SqlOptimiser(
@@ -904,6 +926,7 @@ public class SqlCompiler implements Closeable {
         Misc.free(path);
         Misc.free(renamePath);
         Misc.free(textLoader);
+        fileImporter = Misc.free(fileImporter);
     }
 
     @NotNull
@@ -965,6 +988,39 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    /**
+     * Compiles boolean expression, written as in WHERE clause, to filter records of the given metadata.
+     * Caller owns returned function and must initialise it against the cursor it filters.
+     *
+     * @param filter           boolean expression
+     * @param metadata         metadata of filtered records
+     * @param executionContext execution context
+     * @return filter function
+     * @throws SqlException when expression cannot be parsed or is not boolean
+     */
+    public Function compileFilter(
+            @NotNull CharSequence filter,
+            @NotNull RecordMetadata metadata,
+            @NotNull SqlExecutionContext executionContext
+    ) throws SqlException {
+        clear();
+        lexer.of(filter);
+        final ExpressionNode expr = parser.expr(lexer, (QueryModel) null);
+        if (expr == null) {
+            throw SqlException.$(0, "boolean expression expected");
+        }
+        final CharSequence tok = SqlUtil.fetchNext(lexer);
+        if (tok != null) {
+            throw SqlException.unexpectedToken(lexer.lastTokenPosition(), tok);
+        }
+        final Function function = functionParser.parseFunction(expr, metadata, executionContext);
+        if (!ColumnType.isBoolean(function.getType())) {
+            Misc.free(function);
+            throw SqlException.$(expr.position, "boolean expression expected");
+        }
+        return function;
+    }
+
     public void filterPartitions(
             Function function,
             TableReader reader,
@@ -1030,6 +1086,89 @@ public class SqlCompiler implements Closeable {
         return castGroups.getQuick(ColumnType.tagOf(from)) == castGroups.getQuick(ColumnType.tagOf(to));
     }
 
+    // Plain table scans can be copied frame by frame, bypassing records. Symbol keys
+    // are translated via static symbol tables of the source.
+    private static boolean isPageFrameCopySupported(RecordCursorFactory factory) {
+        if (!factory.supportPageFrameCursor() || factory.hasDescendingOrder()) {
+            return false;
+        }
+        final RecordMetadata metadata = factory.getMetadata();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (ColumnType.isSymbol(metadata.getColumnType(i)) && !metadata.isSymbolTableStatic(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void collectPredicates(ExpressionNode filter, ObjList<ExpressionNode> sink) {
+        if (isAndKeyword(filter.token)) {
+            collectPredicates(filter.lhs, sink);
+            collectPredicates(filter.rhs, sink);
+        } else {
+            sink.add(filter);
+        }
+    }
+
+    // predicates compare designated timestamp with an expression of the clock, e.g. "ts > now() - 3600000000"
+    private static ExpressionNode getWindowLo(ExpressionNode predicate, CharSequence timestamp) {
+        if (predicate.paramCount != 2) {
+            return null;
+        }
+        final ExpressionNode bound;
+        if (Chars.equals(predicate.token, '>') || Chars.equals(predicate.token, ">=")) {
+            bound = isTimestamp(predicate.lhs, timestamp) ? predicate.rhs : null;
+        } else if (Chars.equals(predicate.token, '<') || Chars.equals(predicate.token, "<=")) {
+            bound = isTimestamp(predicate.rhs, timestamp) ? predicate.lhs : null;
+        } else {
+            bound = null;
+        }
+        return bound != null && !isDeterministic(bound) && isColumnFree(bound) ? bound : null;
+    }
+
+    private static boolean isColumnFree(ExpressionNode node) {
+        if (node == null) {
+            return true;
+        }
+        if (node.type == ExpressionNode.LITERAL) {
+            return false;
+        }
+        if (node.paramCount < 3) {
+            return isColumnFree(node.lhs) && isColumnFree(node.rhs);
+        }
+        for (int i = 0, n = node.args.size(); i < n; i++) {
+            if (!isColumnFree(node.args.getQuick(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // bind variables are treated as volatile, their values are not known to the compiler
+    private static boolean isDeterministic(ExpressionNode node) {
+        if (node == null) {
+            return true;
+        }
+        if (node.type == ExpressionNode.BIND_VARIABLE
+                || node.queryModel != null
+                || (node.type == ExpressionNode.FUNCTION && !ResultCache.isDeterministic(node.token))) {
+            return false;
+        }
+        if (node.paramCount < 3) {
+            return isDeterministic(node.lhs) && isDeterministic(node.rhs);
+        }
+        for (int i = 0, n = node.args.size(); i < n; i++) {
+            if (!isDeterministic(node.args.getQuick(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTimestamp(ExpressionNode node, CharSequence timestamp) {
+        return node.type == ExpressionNode.LITERAL && Chars.equalsIgnoreCase(node.token, timestamp);
+    }
+
     private static void expectKeyword(GenericLexer lexer, CharSequence keyword) throws SqlException {
         CharSequence tok = SqlUtil.fetchNext(lexer);
 
@@ -1759,6 +1898,67 @@ public class SqlCompiler implements Closeable {
         return compiledQuery.ofRollback();
     }
 
+    /**
+     * Compiles lower bound of the time window SAMPLE BY query aggregates over, when the window
+     * moves with the clock, e.g. "select ts, k, sum(v) from t where ts > now() - 3600000000 sample by 1m align to calendar".
+     * Query must select from a single table and the bound has to be the only part of the query,
+     * which can change while table data does not.
+     *
+     * @return null when query is not a SAMPLE BY over a sliding window
+     */
+    private Function compileSampleByWindowLo(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
+        final QueryModel tableModel = model.getNestedModel();
+        if (model.getSampleBy() == null
+                || model.getSampleByUnit() != null
+                || model.getSampleByOffset() == null
+                || model.getSampleByFill().size() > 0
+                || model.getSampleByTimezoneName() != null
+                || model.getWhereClause() != null
+                || model.getUnionModel() != null
+                || model.getJoinModels().size() > 1
+                || SqlParser.hasLimitOrOrder(model)
+                || tableModel == null
+                || tableModel.getTableName() == null
+                || tableModel.getTableName().type != ExpressionNode.LITERAL
+                || tableModel.getNestedModel() != null
+                || tableModel.getJoinModels().size() > 1
+                || tableModel.getTimestamp() == null
+                || tableModel.getWhereClause() == null
+                || SqlParser.hasLimitOrOrder(tableModel)) {
+            return null;
+        }
+
+        final ObjList<QueryColumn> columns = model.getBottomUpColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (!isDeterministic(columns.getQuick(i).getAst())) {
+                return null;
+            }
+        }
+
+        windowPredicates.clear();
+        collectPredicates(tableModel.getWhereClause(), windowPredicates);
+        ExpressionNode windowLo = null;
+        for (int i = 0, n = windowPredicates.size(); i < n; i++) {
+            final ExpressionNode predicate = windowPredicates.getQuick(i);
+            final ExpressionNode bound = getWindowLo(predicate, tableModel.getTimestamp().token);
+            if (bound != null && windowLo == null) {
+                windowLo = bound;
+            } else if (!isDeterministic(predicate)) {
+                return null;
+            }
+        }
+        if (windowLo == null) {
+            return null;
+        }
+
+        final Function function = functionParser.parseFunction(windowLo, EmptyRecordMetadata.INSTANCE, executionContext);
+        if (ColumnType.tagOf(function.getType()) != ColumnType.TIMESTAMP) {
+            function.close();
+            return null;
+        }
+        return function;
+    }
+
     private CompiledQuery compileSet(SqlExecutionContext executionContext) {
         return compiledQuery.ofSet();
     }
@@ -1773,6 +1973,7 @@ public class SqlCompiler implements Closeable {
         // instance of compiler for safekeeping
 
         // lexer would have parsed first token to determine direction of execution flow
+        final int queryLo = lexer.lastTokenPosition();
         lexer.unparseLast();
         codeGenerator.clear();
 
@@ -1780,7 +1981,7 @@ public class SqlCompiler implements Closeable {
         switch (executionModel.getModelType()) {
             case ExecutionModel.QUERY:
                 LOG.info().$("plan [q=`").$((QueryModel) executionModel).$("`, fd=").$(executionContext.getRequestFd()).$(']').$();
-                return compiledQuery.of(generate((QueryModel) executionModel, executionContext));
+                return compiledQuery.of(generateSelect((QueryModel) executionModel, queryLo, executionContext));
             case ExecutionModel.CREATE_TABLE:
                 return createTableWithRetries(executionModel, executionContext);
             case ExecutionModel.COPY:
@@ -1943,6 +2144,9 @@ public class SqlCompiler implements Closeable {
                 }
                 try {
                     long fileLen = ff.length(fd);
+                    if (copyInParallel(executionContext, model, fd, fileLen)) {
+                        return;
+                    }
                     long n = ff.read(fd, buf, len, 0);
                     if (n > 0) {
                         textLoader.setForceHeaders(model.isHeader());
@@ -1974,6 +2178,79 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    private boolean copyInParallel(SqlExecutionContext executionContext, CopyModel model, long fd, long fileLen) throws TextException {
+        // small files are faster to load serially, parallel import also needs space for temporary partitions
+        if (configuration.getSqlCopyWorkRoot() == null
+                || fileLen < configuration.getSqlCopyParallelMinSize()
+                || executionContext.getWorkerCount() < 2) {
+            return false;
+        }
+        if (fileImporter == null) {
+            fileImporter = new ParallelCsvFileImporter(engine);
+        }
+        try {
+            fileImporter.configureDestination(model.getTableName().token, Atomicity.SKIP_ROW, model.getPartitionBy(), model.getTimestampColumnName());
+            fileImporter.setForceHeaders(model.isHeader());
+            if (textLoader.getColumnDelimiter() > 0) {
+                fileImporter.configureColumnDelimiter(textLoader.getColumnDelimiter());
+            }
+            return fileImporter.process(fd, fileLen, executionContext.getWorkerCount(), executionContext.getCairoSecurityContext());
+        } finally {
+            fileImporter.clear();
+        }
+    }
+
+    private void copyToParquet(SqlExecutionContext executionContext, CopyModel model) throws SqlException {
+        final CharSequence name = GenericLexer.assertNoDots(GenericLexer.unquote(model.getFileName().token), model.getFileName().position);
+        // export buffers grow with the result, they are not kept once the file is written
+        try (
+                RecordCursorFactory factory = generate(optimiser.optimise(model.getQueryModel(), executionContext), executionContext);
+                ParquetStreamWriter parquetWriter = new ParquetStreamWriter(configuration.getSqlPageFrameMaxRows())
+        ) {
+            RecordCursor cursor = null;
+            PageFrameCursor pageFrameCursor = null;
+            try {
+                // page frames are always in ascending order
+                if (factory.supportPageFrameCursor()
+                        && !factory.hasDescendingOrder()
+                        && ParquetStreamWriter.isPageFrameExportSupported(factory.getMetadata())) {
+                    pageFrameCursor = factory.getPageFrameCursor(executionContext, DataFrameCursorFactory.ORDER_ASC);
+                    parquetWriter.of(factory.getMetadata(), pageFrameCursor, 0, Long.MAX_VALUE, model.getCompression());
+                } else {
+                    cursor = factory.getCursor(executionContext);
+                    parquetWriter.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE, model.getCompression());
+                }
+
+                path.of(configuration.getInputRoot()).concat(name).$();
+                final long fd = ff.openRW(path, configuration.getWriterFileOpenOpts());
+                if (fd == -1) {
+                    throw SqlException.$(model.getFileName().position, "could not open file [errno=").put(ff.errno()).put(", path=").put(path).put(']');
+                }
+                try {
+                    if (!ff.truncate(fd, 0)) {
+                        throw SqlException.$(model.getFileName().position, "could not truncate file [errno=").put(ff.errno()).put(", path=").put(path).put(']');
+                    }
+                    long offset = 0;
+                    while (parquetWriter.nextMessage()) {
+                        for (int i = 0, n = parquetWriter.getSegmentCount(); i < n; i++) {
+                            final long size = parquetWriter.getSegmentSize(i);
+                            if (ff.write(fd, parquetWriter.getSegmentAddress(i), size, offset) != size) {
+                                throw SqlException.$(model.getFileName().position, "could not write file [errno=").put(ff.errno()).put(", path=").put(path).put(']');
+                            }
+                            offset += size;
+                        }
+                    }
+                    LOG.info().$("exported [path=").$(path).$(", size=").$(offset).$(']').$();
+                } finally {
+                    ff.close(fd);
+                }
+            } finally {
+                Misc.free(cursor);
+                Misc.free(pageFrameCursor);
+            }
+        }
+    }
+
     //sets insertCount to number of copied rows
     private TableWriter copyTableData(CharSequence tableName, RecordCursor cursor, RecordMetadata cursorMetadata) {
         TableWriter writer = new TableWriter(configuration, tableName, messageBus, false, DefaultLifecycleManager.INSTANCE, engine.getMetrics());
@@ -1989,6 +2266,19 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    //sets insertCount to number of copied rows
+    private TableWriter copyTableData(CharSequence tableName, PageFrameCursor cursor) {
+        TableWriter writer = new TableWriter(configuration, tableName, messageBus, false, DefaultLifecycleManager.INSTANCE, engine.getMetrics());
+        try {
+            this.insertCount = writer.appendPageFrames(cursor);
+            writer.commit();
+            return writer;
+        } catch (Throwable e) {
+            writer.close();
+            throw e;
+        }
+    }
+
     /* returns number of copied rows*/
     private long copyTableData(RecordCursor cursor, RecordMetadata metadata, TableWriter writer, RecordMetadata writerMetadata, RecordToRowCopier recordToRowCopier) {
         int timestampIndex = writerMetadata.getTimestampIndex();
@@ -2045,6 +2335,8 @@ public class SqlCompiler implements Closeable {
                     if (createTableModel.getQueryModel() == null) {
                         engine.createTableUnsafe(executionContext.getCairoSecurityContext(), mem, path, createTableModel);
                         newTable = true;
+                    } else if (createTableModel.isMatView()) {
+                        writer = createMatView(createTableModel, executionContext);
                     } else {
                         writer = createTableFromCursor(createTableModel, executionContext);
                     }
@@ -2066,29 +2358,57 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    private TableWriter createMatView(CreateTableModel model, SqlExecutionContext executionContext) throws SqlException {
+        final MatViewDefinition definition = model.getMatViewDefinition();
+        // view data must not be older than the base table snapshot, hence snapshot goes first
+        try (TableReader baseReader = engine.getReader(executionContext.getCairoSecurityContext(), definition.getBaseTableName())) {
+            definition.snapshot(baseReader);
+        }
+        final TableWriter writer = createTableFromCursor(model, executionContext);
+        try {
+            definition.writeTo(configuration, path.of(configuration.getRoot()).concat(model.getName().token), renamePath);
+            engine.getMatViewRegistry().add(model.getName().token);
+            return writer;
+        } catch (CairoException e) {
+            writer.close();
+            LOG.error().$("could not write materialized view definition [view=").$(model.getName().token).$(", e=").$((Sinkable) e).$(']').$();
+            if (removeTableDirectory(model)) {
+                throw e;
+            }
+            throw SqlException.$(0, "Could not write materialized view definition. Failed to clean up. See log for more details.");
+        }
+    }
+
     private TableWriter createTableFromCursor(CreateTableModel model, SqlExecutionContext executionContext) throws SqlException {
-        try (
-                final RecordCursorFactory factory = generate(model.getQueryModel(), executionContext);
-                final RecordCursor cursor = factory.getCursor(executionContext)
-        ) {
+        try (final RecordCursorFactory factory = generate(model.getQueryModel(), executionContext)) {
             typeCast.clear();
             final RecordMetadata metadata = factory.getMetadata();
             validateTableModelAndCreateTypeCast(model, metadata, typeCast);
-            engine.createTableUnsafe(
-                    executionContext.getCairoSecurityContext(),
-                    mem,
-                    path,
-                    tableStructureAdapter.of(model, metadata, typeCast)
-            );
+            // new table has the same columns as the cursor unless some of them are cast
+            final boolean copyPageFrames = typeCast.size() == 0 && isPageFrameCopySupported(factory);
+            try (
+                    final PageFrameCursor pageFrameCursor = copyPageFrames ? factory.getPageFrameCursor(executionContext, DataFrameCursorFactory.ORDER_ASC) : null;
+                    final RecordCursor cursor = copyPageFrames ? null : factory.getCursor(executionContext)
+            ) {
+                engine.createTableUnsafe(
+                        executionContext.getCairoSecurityContext(),
+                        mem,
+                        path,
+                        tableStructureAdapter.of(model, metadata, typeCast)
+                );
 
-            try {
-                return copyTableData(model.getName().token, cursor, metadata);
-            } catch (CairoException e) {
-                LOG.error().$(e.getFlyweightMessage()).$(" [errno=").$(e.getErrno()).$(']').$();
-                if (removeTableDirectory(model)) {
-                    throw e;
+                try {
+                    if (copyPageFrames) {
+                        return copyTableData(model.getName().token, pageFrameCursor);
+                    }
+                    return copyTableData(model.getName().token, cursor, metadata);
+                } catch (CairoException e) {
+                    LOG.error().$(e.getFlyweightMessage()).$(" [errno=").$(e.getErrno()).$(']').$();
+                    if (removeTableDirectory(model)) {
+                        throw e;
+                    }
+                    throw SqlException.$(0, "Concurrent modification could not be handled. Failed to clean up. See log for more details.");
                 }
-                throw SqlException.$(0, "Concurrent modification could not be handled. Failed to clean up. See log for more details.");
             }
         }
     }
@@ -2120,6 +2440,38 @@ public class SqlCompiler implements Closeable {
         return executeWithRetries(createTableMethod, executionModel, configuration.getCreateAsSelectRetryCount(), executionContext);
     }
 
+    /**
+     * Removes rows from a partitioned table. Affected partitions are rewritten into new partition
+     * versions, so that open readers keep reading the old ones. Non-partitioned tables keep all rows
+     * in a single directory that has no versions, DELETE on them fails with an error and leaves the
+     * table intact.
+     */
+    private CompiledQuery deleteFrom(SqlExecutionContext executionContext) throws SqlException {
+        // expected syntax: DELETE FROM name [WHERE filter] [;]
+        expectKeyword(lexer, "from");
+        final int tableNamePosition = lexer.getPosition();
+        final String tableName = Chars.toString(GenericLexer.unquote(expectToken(lexer, "table name")));
+        tableExistsOrFail(tableNamePosition, tableName, executionContext);
+        executionContext.getCairoSecurityContext().checkWritePermission();
+
+        // the rest of the statement is a query of the rows to remove, e.g. "name where filter"
+        lexer.unparseLast();
+        final ExecutionModel model = parser.parse(lexer, executionContext);
+        if (model.getModelType() != ExecutionModel.QUERY) {
+            throw SqlException.$(tableNamePosition, "filter expected");
+        }
+
+        try (TableWriter writer = engine.getWriter(executionContext.getCairoSecurityContext(), tableName, "delete")) {
+            if (!PartitionBy.isPartitioned(writer.getPartitionBy())) {
+                throw SqlException.$(tableNamePosition, "DELETE is supported for partitioned tables only");
+            }
+            return compiledQuery.ofDelete(removeRows(writer, tableNamePosition, (QueryModel) model, executionContext));
+        } catch (CairoException e) {
+            LOG.info().$("could not delete [table=").$(tableName).$(", e=").$((Throwable) e).$(']').$();
+            throw SqlException.$(tableNamePosition, "could not delete from '").put(tableName).put("': ").put(e.getFlyweightMessage());
+        }
+    }
+
     private CompiledQuery dropTable(SqlExecutionContext executionContext) throws SqlException {
         // expected syntax: DROP TABLE [ IF EXISTS ] name [;]
         expectKeyword(lexer, "table");
@@ -2158,14 +2510,55 @@ public class SqlCompiler implements Closeable {
 
     @NotNull
     private CompiledQuery executeCopy(SqlExecutionContext executionContext, CopyModel executionModel) throws SqlException {
+        if (executionModel.getQueryModel() != null) {
+            return executeCopyTo(executionContext, executionModel);
+        }
         setupTextLoaderFromModel(executionModel);
         if (Chars.equalsLowerCaseAscii(executionModel.getFileName().token, "stdin")) {
-            return compiledQuery.ofCopyRemote(textLoader);
+            if (executionModel.getFormat() == CopyModel.FORMAT_AUTO) {
+                // PostgreSQL defaults to tab delimited text format
+                textLoader.configureColumnDelimiter((byte) '\t');
+                return compiledQuery.ofCopyRemote(textLoader, CopyModel.FORMAT_TEXT);
+            }
+            return compiledQuery.ofCopyRemote(textLoader, executionModel.getFormat());
+        }
+        if (executionModel.getFormat() == CopyModel.FORMAT_BINARY) {
+            throw SqlException.$(executionModel.getFileName().position, "binary format is only supported for COPY FROM STDIN");
+        }
+        if (executionModel.getFormat() == CopyModel.FORMAT_PARQUET) {
+            throw SqlException.$(executionModel.getFileName().position, "parquet format is only supported for COPY TO file");
         }
         copyTable(executionContext, executionModel);
         return compiledQuery.ofCopyLocal();
     }
 
+    private CompiledQuery executeCopyTo(SqlExecutionContext executionContext, CopyModel executionModel) throws SqlException {
+        final ExpressionNode fileName = executionModel.getFileName();
+        if (!Chars.equalsLowerCaseAscii(fileName.token, "stdout")) {
+            if (executionModel.getFormat() != CopyModel.FORMAT_AUTO && executionModel.getFormat() != CopyModel.FORMAT_PARQUET) {
+                throw SqlException.$(fileName.position, "only parquet format is supported for COPY TO file");
+            }
+            copyToParquet(executionContext, executionModel);
+            return compiledQuery.ofCopyLocal();
+        }
+        if (executionModel.getFormat() == CopyModel.FORMAT_PARQUET) {
+            throw SqlException.$(fileName.position, "parquet format is only supported for COPY TO file");
+        }
+
+        final byte delimiter;
+        if (executionModel.getDelimiter() > 0) {
+            delimiter = executionModel.getDelimiter();
+        } else if (executionModel.getFormat() == CopyModel.FORMAT_CSV) {
+            delimiter = ',';
+        } else {
+            // PostgreSQL defaults to tab delimited text format
+            delimiter = '\t';
+        }
+        final int format = executionModel.getFormat() == CopyModel.FORMAT_AUTO ? CopyModel.FORMAT_TEXT : executionModel.getFormat();
+        final RecordCursorFactory factory = generate(optimiser.optimise(executionModel.getQueryModel(), executionContext), executionContext);
+        return compiledQuery.ofCopyToRemote(factory, format, delimiter, executionModel.isHeader());
+    }
+
     private CompiledQuery executeWithRetries(
             ExecutableMethod method,
             ExecutionModel executionModel,
@@ -2215,6 +2608,110 @@ public class SqlCompiler implements Closeable {
         );
     }
 
+    /**
+     * Compiles the query once more, this time reading only base table rows between "lo" and "hi"
+     * bind variables. These are defined in the execution context of the new factory, which
+     * aggregates buckets in between the bounds on behalf of the incremental factory.
+     */
+    private RecordCursorFactory generateIncrementalSampleBy(
+            QueryModel model,
+            RecordCursorFactory factory,
+            Function windowLo,
+            int queryLo,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final long offset = Timestamps.parseOffset(GenericLexer.unquote(model.getSampleByOffset().token));
+        if (offset == Numbers.LONG_NaN) {
+            return null;
+        }
+        final QueryModel tableModel = model.getNestedModel();
+        final ExpressionNode tableName = tableModel.getTableName();
+        final CharSequence timestamp = tableModel.getTimestamp().token;
+        final CharSequence content = lexer.getContent();
+        int tableNameHi = tableName.position + tableName.token.length();
+        final char c = content.charAt(tableName.position);
+        if ((c == '\'' || c == '"') && tableName.token.charAt(0) != c) {
+            tableNameHi += 2;
+        }
+        windowQuerySink.clear();
+        windowQuerySink.put(content, queryLo, tableName.position)
+                .put("(select * from ").put(content, tableName.position, tableNameHi)
+                .put(" where ").put(timestamp).put(" >= :lo and ").put(timestamp).put(" < :hi)")
+                .put(content, tableNameHi, lexer.getPosition());
+
+        final MatViewDefinition definition = new MatViewDefinition();
+        definition.of(
+                GenericLexer.unquote(tableName.token),
+                windowQuerySink,
+                0,
+                0,
+                model.getSampleBy().token,
+                Numbers.decodeLowInt(offset) * Timestamps.MINUTE_MICROS
+        );
+
+        final BindVariableService bindVariableService = new BindVariableServiceImpl(configuration);
+        bindVariableService.setTimestamp("lo", 0);
+        bindVariableService.setTimestamp("hi", 0);
+        final SqlExecutionContextImpl windowContext = new SqlExecutionContextImpl(engine, executionContext.getWorkerCount())
+                .with(executionContext.getCairoSecurityContext(), bindVariableService, null);
+        final RecordCursorFactory windowFactory;
+        try {
+            windowLexer.of(windowQuerySink);
+            final QueryModel windowModel = optimiser.optimise((QueryModel) parser.parse(windowLexer, windowContext), windowContext);
+            codeGenerator.clear();
+            windowFactory = generate(windowModel, windowContext);
+        } catch (SqlException e) {
+            // the query is still good, it will be executed in full every time
+            LOG.info().$("could not compile sliding window query [q=`").$(windowQuerySink).$("`, e=").$(e.getFlyweightMessage()).I$();
+            return null;
+        }
+        return new IncrementalSampleByRecordCursorFactory(engine, factory, windowFactory, windowContext, windowLo, definition);
+    }
+
+    private RecordCursorFactory generateSelect(QueryModel model, int queryLo, SqlExecutionContext executionContext) throws SqlException {
+        // the bound is taken ahead of code generator, which moves timestamp predicates out of the where clause
+        Function windowLo = engine.getResultCache().isEnabled() ? compileSampleByWindowLo(model, executionContext) : null;
+        RecordCursorFactory factory = null;
+        try {
+            factory = generate(model, executionContext);
+            // results are cached for queries, which read tables only and return the same rows
+            // for as long as table data does not change
+            if (
+                    engine.getResultCache().isEnabled()
+                            && optimiser.getTableNames().size() > 0
+                            && !optimiser.isTableFunctionUsed()
+                            && ResultCacheRecordCursorFactory.isCacheable(factory)
+            ) {
+                if (!functionParser.isNonDeterministicFunctionUsed()) {
+                    return new ResultCacheRecordCursorFactory(
+                            engine,
+                            factory,
+                            Chars.toString(lexer.getContent(), queryLo, lexer.getPosition()),
+                            optimiser.getTableNames(),
+                            functionParser.getBindVariableNames()
+                    );
+                }
+                // results of queries over sliding time window are not cached, but they can be
+                // computed from the previous result and the rows appended since
+                if (windowLo != null
+                        && functionParser.getBindVariableNames().size() == 0
+                        && factory.getMetadata().getTimestampIndex() > -1) {
+                    final RecordCursorFactory incrementalFactory = generateIncrementalSampleBy(model, factory, windowLo, queryLo, executionContext);
+                    if (incrementalFactory != null) {
+                        windowLo = null;
+                        return incrementalFactory;
+                    }
+                }
+            }
+            return factory;
+        } catch (Throwable e) {
+            Misc.free(factory);
+            throw e;
+        } finally {
+            Misc.free(windowLo);
+        }
+    }
+
     private int getNextValidTokenPosition() {
         while (lexer.hasNext()) {
             CharSequence token = SqlUtil.fetchNext(lexer);
@@ -2368,6 +2865,7 @@ public class SqlCompiler implements Closeable {
             CharSequenceHashSet columnSet = model.getColumnSet();
             final int columnSetSize = columnSet.size();
             int timestampIndexFound = -1;
+            boolean copyPageFrames = false;
             if (columnSetSize > 0) {
                 // validate type cast
 
@@ -2432,10 +2930,12 @@ public class SqlCompiler implements Closeable {
                     throw SqlException.$(model.getSelectKeywordPosition(), "not enough columns selected");
                 }
 
+                boolean sameColumnTypes = true;
                 for (int i = 0; i < n; i++) {
                     int fromType = cursorMetadata.getColumnType(i);
                     int toType = writerMetadata.getColumnType(i);
                     if (isAssignableFrom(toType, fromType)) {
+                        sameColumnTypes &= fromType == toType;
                         continue;
                     }
 
@@ -2452,34 +2952,57 @@ public class SqlCompiler implements Closeable {
                     );
                 }
 
-                entityColumnFilter.of(writerMetadata.getColumnCount());
+                // page frames map onto table columns one to one, dropped columns would break that
+                copyPageFrames = sameColumnTypes
+                        && model.getBatchSize() == -1
+                        && n == cursorColumnCount
+                        && n == writer.getMetadata().getColumnCount()
+                        && isPageFrameCopySupported(factory);
 
-                copier = assembleRecordToRowCopier(asm, cursorMetadata, writerMetadata, entityColumnFilter);
+                if (copyPageFrames) {
+                    copier = null;
+                } else {
+                    entityColumnFilter.of(writerMetadata.getColumnCount());
+                    copier = assembleRecordToRowCopier(asm, cursorMetadata, writerMetadata, entityColumnFilter);
+                }
             }
 
-            try (RecordCursor cursor = factory.getCursor(executionContext)) {
-                try {
-                    if (writerTimestampIndex == -1) {
-                        insertCount = copyUnordered(cursor, writer, copier);
-                    } else {
-                        if (model.getBatchSize() != -1) {
-                            insertCount = copyOrderedBatched(
-                                    writer,
-                                    factory.getMetadata(),
-                                    cursor,
-                                    copier,
-                                    writerTimestampIndex,
-                                    model.getBatchSize(),
-                                    model.getCommitLag()
-                            );
+            if (copyPageFrames) {
+                try (PageFrameCursor cursor = factory.getPageFrameCursor(executionContext, DataFrameCursorFactory.ORDER_ASC)) {
+                    try {
+                        insertCount = writer.appendPageFrames(cursor);
+                        writer.commit();
+                    } catch (Throwable e) {
+                        // rollback data when system error occurs
+                        writer.rollback();
+                        throw e;
+                    }
+                }
+            } else {
+                try (RecordCursor cursor = factory.getCursor(executionContext)) {
+                    try {
+                        if (writerTimestampIndex == -1) {
+                            insertCount = copyUnordered(cursor, writer, copier);
                         } else {
-                            insertCount = copyOrdered(writer, factory.getMetadata(), cursor, copier, timestampIndexFound);
+                            if (model.getBatchSize() != -1) {
+                                insertCount = copyOrderedBatched(
+                                        writer,
+                                        factory.getMetadata(),
+                                        cursor,
+                                        copier,
+                                        writerTimestampIndex,
+                                        model.getBatchSize(),
+                                        model.getCommitLag()
+                                );
+                            } else {
+                                insertCount = copyOrdered(writer, factory.getMetadata(), cursor, copier, timestampIndexFound);
+                            }
                         }
+                    } catch (Throwable e) {
+                        // rollback data when system error occurs
+                        writer.rollback();
+                        throw e;
                     }
-                } catch (Throwable e) {
-                    // rollback data when system error occurs
-                    writer.rollback();
-                    throw e;
                 }
             }
         }
@@ -2506,6 +3029,55 @@ public class SqlCompiler implements Closeable {
         return model;
     }
 
+    /**
+     * Removes rows selected by the model, which must be a filter over the writer's table.
+     *
+     * @return number of removed rows
+     */
+    private long removeRows(TableWriter writer, int tableNamePosition, QueryModel model, SqlExecutionContext executionContext) throws SqlException {
+        final String tableName = writer.getTableName();
+        // row ids of a large delete take a lot of memory, the list is not kept between statements
+        try (DirectLongList deleteRowIds = new DirectLongList(configuration.getSqlLatestByRowCount(), MemoryTag.NATIVE_LONG_LIST)) {
+            try (RecordCursorFactory factory = generate(optimiser.optimise(model, executionContext), executionContext)) {
+                if (!factory.supportsUpdateRowId(tableName)) {
+                    throw SqlException.$(tableNamePosition, "Only simple DELETE statements without joins are supported");
+                }
+                try (RecordCursor cursor = factory.getCursor(executionContext)) {
+                    final Record record = cursor.getRecord();
+                    while (cursor.hasNext()) {
+                        deleteRowIds.add(record.getUpdateRowId());
+                    }
+                }
+            }
+
+            // writer expects ascending row ids without duplicates
+            deleteRowIds.sortAsUnsigned();
+            long count = 0;
+            for (long i = 0, n = deleteRowIds.size(); i < n; i++) {
+                final long rowId = deleteRowIds.get(i);
+                if (count == 0 || deleteRowIds.get(count - 1) != rowId) {
+                    deleteRowIds.set(count++, rowId);
+                }
+            }
+            deleteRowIds.setPos(count);
+
+            if (count > 0 && count == writer.size()) {
+                // removing all rows truncates the table, which cannot be done under active readers
+                if (!engine.lockReaders(tableName)) {
+                    throw SqlException.$(tableNamePosition, "there is an active query against '").put(tableName).put("'. Try again.");
+                }
+                try {
+                    writer.removeRows(deleteRowIds);
+                } finally {
+                    engine.unlockReaders(tableName);
+                }
+            } else {
+                writer.removeRows(deleteRowIds);
+            }
+            return count;
+        }
+    }
+
     private boolean removeTableDirectory(CreateTableModel model) {
         int errno;
         if ((errno = engine.removeDirectory(path, model.getName().token)) == 0) {
@@ -2518,6 +3090,110 @@ public class SqlCompiler implements Closeable {
         return false;
     }
 
+    private CompiledQuery refreshMatView(SqlExecutionContext executionContext) throws SqlException {
+        // expected syntax: REFRESH MATERIALIZED VIEW name [FULL] [;]
+        expectKeyword(lexer, "materialized");
+        expectKeyword(lexer, "view");
+        final int viewNamePosition = lexer.getPosition();
+        final String viewName = Chars.toString(GenericLexer.unquote(expectToken(lexer, "view name")));
+        tableExistsOrFail(viewNamePosition, viewName, executionContext);
+        if (!configuration.getFilesFacade().exists(path.of(configuration.getRoot()).concat(viewName).concat(MatViewDefinition.MAT_VIEW_FILE_NAME).$())) {
+            throw SqlException.$(viewNamePosition, "materialized view expected");
+        }
+
+        CharSequence tok = SqlUtil.fetchNext(lexer);
+        final boolean full = tok != null && isFullKeyword(tok);
+        if (full) {
+            tok = SqlUtil.fetchNext(lexer);
+        }
+        if (tok != null && !Chars.equals(tok, ';')) {
+            throw SqlException.$(lexer.lastTokenPosition(), "'full' expected");
+        }
+        executionContext.getCairoSecurityContext().checkWritePermission();
+
+        try {
+            return compiledQuery.ofRefreshMatView(refreshMatView0(viewName, viewNamePosition, full, executionContext));
+        } catch (CairoException e) {
+            LOG.info().$("could not refresh [view=").$(viewName).$(", e=").$((Throwable) e).$(']').$();
+            throw SqlException.$(viewNamePosition, "could not refresh '").put(viewName).put("': ").put(e.getFlyweightMessage());
+        }
+    }
+
+    // used by MatViewRefreshJob, exceptions are handled by the job
+    long refreshMatView(String viewName, SqlExecutionContext executionContext) throws SqlException {
+        return refreshMatView0(viewName, 0, false, executionContext);
+    }
+
+    /**
+     * Brings materialized view up to date with its base table. Only SAMPLE BY buckets from the
+     * lowest changed base table timestamp on are aggregated again. When base table rows can only
+     * have been added the new rows of those buckets replace existing ones by deduplication, in
+     * the same commit. Otherwise, e.g. after DELETE or when view keys cannot be deduplicated, the
+     * buckets are removed first.
+     *
+     * @return number of view rows written
+     */
+    private long refreshMatView0(String viewName, int viewNamePosition, boolean full, SqlExecutionContext executionContext) throws SqlException {
+        try (TableWriter writer = engine.getWriter(executionContext.getCairoSecurityContext(), viewName, "refresh")) {
+            final MatViewDefinition definition = matViewDefinition;
+            definition.readFrom(configuration, path.of(configuration.getRoot()).concat(viewName));
+            try (TableReader baseReader = engine.getReader(executionContext.getCairoSecurityContext(), definition.getBaseTableName())) {
+                final long changedLo = full ? MatViewDefinition.REFRESH_FULL : definition.findChangedLo(baseReader);
+                if (changedLo == MatViewDefinition.REFRESH_NONE) {
+                    return 0;
+                }
+                // refresh query will read this or later version of the base table
+                definition.snapshot(baseReader);
+
+                matViewQuerySink.clear();
+                if (changedLo == MatViewDefinition.REFRESH_FULL) {
+                    if (writer.size() > 0) {
+                        if (!engine.lockReaders(viewName)) {
+                            throw SqlException.$(viewNamePosition, "there is an active query against '").put(viewName).put("'. Try again.");
+                        }
+                        try {
+                            writer.truncate();
+                        } finally {
+                            engine.unlockReaders(viewName);
+                        }
+                    }
+                    matViewQuerySink.put(definition.getQuery());
+                } else {
+                    final long bucketLo = definition.floorBucket(changedLo);
+                    if (definition.hasRemovedRows() || !writer.isDedup()) {
+                        final TableWriterMetadata viewMetadata = writer.getMetadata();
+                        matViewQuerySink.put('\'').put(viewName).put("' where ")
+                                .put(viewMetadata.getColumnName(viewMetadata.getTimestampIndex())).put(" >= '");
+                        TimestampFormatUtils.appendDateTimeUSec(matViewQuerySink, bucketLo);
+                        matViewQuerySink.put('\'');
+                        clear();
+                        lexer.of(matViewQuerySink);
+                        removeRows(writer, viewNamePosition, (QueryModel) parser.parse(lexer, executionContext), executionContext);
+                        matViewQuerySink.clear();
+                    }
+                    final TableReaderMetadata baseMetadata = baseReader.getMetadata();
+                    definition.toRefreshQuery(matViewQuerySink, baseMetadata.getColumnName(baseMetadata.getTimestampIndex()), bucketLo);
+                }
+
+                clear();
+                lexer.of(matViewQuerySink);
+                final long rowCount;
+                try (
+                        RecordCursorFactory factory = generate((QueryModel) compileExecutionModel(executionContext), executionContext);
+                        RecordCursor cursor = factory.getCursor(executionContext)
+                ) {
+                    final RecordMetadata metadata = factory.getMetadata();
+                    final TableWriterMetadata writerMetadata = writer.getMetadata();
+                    entityColumnFilter.of(writerMetadata.getColumnCount());
+                    final RecordToRowCopier copier = assembleRecordToRowCopier(asm, metadata, writerMetadata, entityColumnFilter);
+                    rowCount = copyTableData(cursor, metadata, writer, writerMetadata, copier);
+                }
+                definition.writeTo(configuration, path.of(configuration.getRoot()).concat(viewName), renamePath);
+                return rowCount;
+            }
+        }
+    }
+
     private CompiledQuery repairTables(SqlExecutionContext executionContext) throws SqlException {
         CharSequence tok;
         tok = SqlUtil.fetchNext(lexer);
@@ -2557,7 +3233,15 @@ public class SqlCompiler implements Closeable {
         // todo: configure the following
         //   - what happens when data row errors out, max errors may be?
         //   - we should be able to skip X rows from top, dodgy headers etc.
-        textLoader.configureDestination(model.getTableName().token, false, false, Atomicity.SKIP_ROW, PartitionBy.NONE, null);
+        textLoader.configureDestination(model.getTableName().token, false, false, Atomicity.SKIP_ROW, model.getPartitionBy(), model.getTimestampColumnName());
+        textLoader.setForceHeaders(model.isHeader());
+        if (model.getDelimiter() > 0) {
+            textLoader.configureColumnDelimiter(model.getDelimiter());
+        } else if (model.getFormat() == CopyModel.FORMAT_CSV) {
+            textLoader.configureColumnDelimiter((byte) ',');
+        } else if (model.getFormat() == CopyModel.FORMAT_TEXT) {
+            textLoader.configureColumnDelimiter((byte) '\t');
+        }
     }
 
     private CompiledQuery snapshotDatabase(SqlExecutionContext executionContext) throws SqlException {
@@ -2850,6 +3534,29 @@ public class SqlCompiler implements Closeable {
         return model;
     }
 
+    private void validateMatViewKeys(CreateTableModel model, RecordMetadata metadata) throws SqlException {
+        final int timestampIndex = metadata.getTimestampIndex();
+        if (timestampIndex == -1) {
+            throw SqlException.$(model.getName().position, "materialized view query must select the designated timestamp");
+        }
+
+        // parser collects SAMPLE BY keys, view rows are unique by timestamp and keys
+        final ObjList<ExpressionNode> dedupKeys = model.getDedupKeys();
+        boolean timestampKey = false;
+        for (int i = 0, n = dedupKeys.size(); i < n; i++) {
+            final int index = metadata.getColumnIndex(dedupKeys.getQuick(i).token);
+            if (!TableUtils.isValidDedupKeyType(metadata.getColumnType(index))) {
+                // refresh will remove stale rows before inserting new ones instead
+                dedupKeys.clear();
+                return;
+            }
+            timestampKey |= index == timestampIndex;
+        }
+        if (!timestampKey) {
+            model.addDedupKey(sqlNodePool.next().of(ExpressionNode.LITERAL, metadata.getColumnName(timestampIndex), 0, 0));
+        }
+    }
+
     private void validateTableModelAndCreateTypeCast(
             CreateTableModel model,
             RecordMetadata metadata,
@@ -2885,9 +3592,24 @@ public class SqlCompiler implements Closeable {
             throw SqlException.position(timestamp.position).put("TIMESTAMP column expected [actual=").put(ColumnType.nameOf(metadata.getColumnType(timestamp.token))).put(']');
         }
 
+        if (model.isMatView()) {
+            validateMatViewKeys(model, metadata);
+        }
+
         if (PartitionBy.isPartitioned(model.getPartitionBy()) && model.getTimestampIndex() == -1 && metadata.getTimestampIndex() == -1) {
             throw SqlException.position(0).put("timestamp is not defined");
         }
+
+        final ObjList<ExpressionNode> dedupKeys = model.getDedupKeys();
+        for (int i = 0, n = dedupKeys.size(); i < n; i++) {
+            final ExpressionNode key = dedupKeys.getQuick(i);
+            final int index = metadata.getColumnIndex(key.token);
+            final int castIndex = typeCast.keyIndex(index);
+            final int type = castIndex < 0 ? typeCast.valueAt(castIndex) : metadata.getColumnType(index);
+            if (!TableUtils.isValidDedupKeyType(type)) {
+                throw SqlException.position(key.position).put("unsupported dedup key column type [type=").put(ColumnType.nameOf(type)).put(']');
+            }
+        }
     }
 
     @FunctionalInterface
@@ -2975,6 +3697,11 @@ public class SqlCompiler implements Closeable {
             return model.isSequential(columnIndex);
         }
 
+        @Override
+        public boolean isDedupKey(int columnIndex) {
+            return model.isDedupKey(columnIndex);
+        }
+
         @Override
         public int getPartitionBy() {
             return model.getPartitionBy();
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.BindVariableService;
+import io.questdb.std.Chars;
+import io.questdb.std.GenericLexer;
+import io.questdb.std.NumericException;
+import io.questdb.std.Numbers;
+import io.questdb.std.str.StringSink;
+
+import static io.questdb.griffin.SqlKeywords.*;
+
+/**
+ * Rewrites SELECT text so that literals, which are compared against in WHERE clause or used as LIMIT values,
+ * become implicit bind variables. Queries that differ only in these literals produce the same
+ * normalized text and can share compiled factory in query cache.
+ * <p>
+ * Normalization is conservative: literals are replaced only when they are followed by a token that
+ * unambiguously terminates the operand, e.g. AND, OR, closing brace or end of input. Queries that already
+ * use bind variables are left intact.
+ */
+public class SqlLiteralNormalizer {
+    private final GenericLexer lexer;
+    private final StringSink sql = new StringSink();
+    private final StringSink cacheKey = new StringSink();
+    private final StringSink value = new StringSink();
+    private long literalLong;
+    private double literalDouble;
+
+    public SqlLiteralNormalizer(CairoConfiguration configuration) {
+        this.lexer = new GenericLexer(configuration.getSqlLexerPoolCapacity());
+        SqlCompiler.configureLexer(lexer);
+    }
+
+    /**
+     * @return text to be used as query cache key, it is normalized SQL followed by types of the replaced literals
+     */
+    public CharSequence getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * @return SQL text where replaced literals are substituted with $1..$n
+     */
+    public CharSequence getSql() {
+        return sql;
+    }
+
+    /**
+     * Normalizes query text. Values of replaced literals are set on the bind variable service
+     * in the order of their appearance.
+     *
+     * @param query               SQL text
+     * @param bindVariableService receives values of replaced literals
+     * @return number of replaced literals, 0 when query text is to be used as is
+     * @throws SqlException when bind variable cannot be set
+     */
+    public int of(CharSequence query, BindVariableService bindVariableService) throws SqlException {
+        sql.clear();
+        cacheKey.clear();
+        lexer.of(query);
+
+        CharSequence tok = SqlUtil.fetchNext(lexer);
+        if (tok == null || !isSelectKeyword(tok)) {
+            return 0;
+        }
+
+        int count = 0;
+        int copied = 0;
+        boolean filter = false;
+        boolean expectLiteral = false;
+        boolean limit = false;
+        int pendingLo = -1;
+        int pendingHi = -1;
+        boolean pendingLimit = false;
+
+        while ((tok = SqlUtil.fetchNext(lexer)) != null) {
+            if (isExplicitBindVariable(tok)) {
+                sql.clear();
+                return 0;
+            }
+
+            if (pendingLo != -1) {
+                if (Chars.equals(tok, '.') && lexer.lastTokenPosition() == pendingHi && query.charAt(pendingLo) != '\'' && lexer.hasNext()) {
+                    // lexer splits decimal literals on the dot, fraction must follow it immediately
+                    final CharSequence fraction = lexer.next();
+                    final int hi = lexer.lastTokenPosition() + fraction.length();
+                    if (hi - fraction.length() == pendingHi + 1 && literalTypeOf(query, pendingLo, hi) == ColumnType.DOUBLE) {
+                        pendingHi = hi;
+                    } else {
+                        pendingLo = -1;
+                    }
+                    continue;
+                }
+
+                if (isOperandTerminator(tok)) {
+                    sql.put(query, copied, pendingLo).put('$').put(count + 1);
+                    copied = pendingHi;
+                    bind(query, pendingLo, pendingHi, count, bindVariableService);
+                    count++;
+                }
+                pendingLo = -1;
+                if (pendingLimit && Chars.equals(tok, ',')) {
+                    // "limit lo, hi"
+                    expectLiteral = true;
+                    pendingLimit = false;
+                    continue;
+                }
+            }
+
+            if (expectLiteral) {
+                expectLiteral = false;
+                if (literalTypeOf(tok, 0, tok.length()) != ColumnType.UNDEFINED) {
+                    pendingLo = lexer.lastTokenPosition();
+                    pendingHi = pendingLo + tok.length();
+                    pendingLimit = limit;
+                    limit = false;
+                    continue;
+                }
+            }
+            limit = false;
+
+            if (isSelectKeyword(tok)) {
+                filter = false;
+            } else if (isWhereKeyword(tok)) {
+                filter = true;
+            } else if (isLimitKeyword(tok)) {
+                expectLiteral = limit = true;
+            } else if (filter && isComparisonOperator(tok)) {
+                expectLiteral = true;
+            }
+        }
+
+        if (pendingLo != -1) {
+            sql.put(query, copied, pendingLo).put('$').put(count + 1);
+            copied = pendingHi;
+            bind(query, pendingLo, pendingHi, count, bindVariableService);
+            count++;
+        }
+
+        if (count > 0) {
+            sql.put(query, copied, query.length());
+            cacheKey.put(sql).put('\0');
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    cacheKey.put(',');
+                }
+                cacheKey.put(ColumnType.nameOf(bindVariableService.getFunction(i).getType()));
+            }
+        } else {
+            sql.clear();
+        }
+        return count;
+    }
+
+    private static boolean isComparisonOperator(CharSequence tok) {
+        return Chars.equals(tok, '=')
+                || Chars.equals(tok, '<')
+                || Chars.equals(tok, '>')
+                || Chars.equals(tok, "!=")
+                || Chars.equals(tok, "<>")
+                || Chars.equals(tok, "<=")
+                || Chars.equals(tok, ">=");
+    }
+
+    private static boolean isExplicitBindVariable(CharSequence tok) {
+        if (tok.length() < 2) {
+            return false;
+        }
+        final char c = tok.charAt(0);
+        return c == '$' || (c == ':' && tok.charAt(1) != ':');
+    }
+
+    private static boolean isOperandTerminator(CharSequence tok) {
+        if (tok.length() == 1) {
+            final char c = tok.charAt(0);
+            return c == ')' || c == ';' || c == ',';
+        }
+        return isAndKeyword(tok)
+                || isOrKeyword(tok)
+                || isOrderKeyword(tok)
+                || isLimitKeyword(tok)
+                || isGroupKeyword(tok)
+                || isSampleKeyword(tok)
+                || isUnionKeyword(tok)
+                || isExceptKeyword(tok)
+                || isIntersectKeyword(tok)
+                || isThenKeyword(tok)
+                || isElseKeyword(tok)
+                || isEndKeyword(tok);
+    }
+
+    private void bind(CharSequence query, int lo, int hi, int index, BindVariableService bindVariableService) throws SqlException {
+        switch (literalTypeOf(query, lo, hi)) {
+            case ColumnType.INT:
+                bindVariableService.setInt(index, (int) literalLong);
+                break;
+            case ColumnType.LONG:
+                bindVariableService.setLong(index, literalLong);
+                break;
+            case ColumnType.DOUBLE:
+                bindVariableService.setDouble(index, literalDouble);
+                break;
+            default:
+                value.clear();
+                value.put(query, lo + 1, hi - 1);
+                bindVariableService.setStr(index, value);
+                break;
+        }
+    }
+
+    // literal types mirror those FunctionParser assigns to constants
+    private int literalTypeOf(CharSequence cs, int lo, int hi) {
+        final int len = hi - lo;
+        final char c = cs.charAt(lo);
+        if (c == '\'') {
+            // 'x' is a char constant, embedded quotes are escaped and are best left to the parser
+            if (len > 3 && cs.charAt(hi - 1) == '\'' && Chars.indexOf(cs, lo + 1, hi - 1, '\'') == -1) {
+                return ColumnType.STRING;
+            }
+            return ColumnType.UNDEFINED;
+        }
+
+        if (c < '0' || c > '9') {
+            return ColumnType.UNDEFINED;
+        }
+
+        try {
+            literalLong = Numbers.parseInt(cs, lo, hi);
+            return ColumnType.INT;
+        } catch (NumericException ignore) {
+        }
+
+        try {
+            literalLong = Numbers.parseLong(cs, lo, hi);
+            return ColumnType.LONG;
+        } catch (NumericException ignore) {
+        }
+
+        try {
+            literalDouble = Numbers.parseDouble(cs.subSequence(lo, hi));
+            return ColumnType.DOUBLE;
+        } catch (NumericException ignore) {
+        }
+        return ColumnType.UNDEFINED;
+    }
+}
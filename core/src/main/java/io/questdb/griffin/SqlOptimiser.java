@@ -72,6 +72,8 @@ class SqlOptimiser {
     private final IntList tempList = new IntList();
     private final LiteralCollector literalCollector = new LiteralCollector();
     private final IntHashSet tablesSoFar = new IntHashSet();
+    // names of tables the query reads from, collected for result cache only
+    private final ObjList<String> tableNames = new ObjList<>();
     private final IntHashSet postFilterRemoved = new IntHashSet();
     private final ObjList<IntHashSet> postFilterTableRefs = new ObjList<>();
     private final LiteralCheckingVisitor literalCheckingVisitor = new LiteralCheckingVisitor();
@@ -100,6 +102,7 @@ class SqlOptimiser {
     private final LowerCaseCharSequenceObjHashMap<QueryColumn> tmpCursorAliases = new LowerCaseCharSequenceObjHashMap<>();
     private final ObjList<Function> functionsInFlight = new ObjList<>();
     private int defaultAliasCount = 0;
+    private boolean tableFunctionUsed;
     private ObjList<JoinContext> emittedJoinClauses;
 
     SqlOptimiser(
@@ -662,6 +665,8 @@ class SqlOptimiser {
         expressionNodePool.clear();
         characterStore.clear();
         tablesSoFar.clear();
+        tableNames.clear();
+        tableFunctionUsed = false;
         clausesToSteal.clear();
         tmpCursorAliases.clear();
         functionsInFlight.clear();
@@ -1440,7 +1445,11 @@ class SqlOptimiser {
         return orderByAdvice;
     }
 
-    private boolean hasAggregates(ExpressionNode node) {
+    ObjList<String> getTableNames() {
+        return tableNames;
+    }
+
+    boolean hasAggregates(ExpressionNode node) {
 
         this.sqlNodeStack.clear();
 
@@ -1473,6 +1482,10 @@ class SqlOptimiser {
         return false;
     }
 
+    boolean isTableFunctionUsed() {
+        return tableFunctionUsed;
+    }
+
     private void homogenizeCrossJoins(QueryModel parent) {
         ObjList<QueryModel> joinModels = parent.getJoinModels();
         for (int i = 0, n = joinModels.size(); i < n; i++) {
@@ -1885,6 +1898,12 @@ class SqlOptimiser {
         ) {
             model.setTableVersion(r.getVersion());
             model.setTableId(r.getMetadata().getId());
+            if (engine.getResultCache().isEnabled()) {
+                final String name = r.getTableName();
+                if (tableNames.indexOf(name) < 0) {
+                    tableNames.add(name);
+                }
+            }
             copyColumnsFromMetadata(model, r.getMetadata(), false);
             if (model.isUpdate()) {
                 copyColumnTypesFromMetadata(model, r.getMetadata());
@@ -2200,6 +2219,7 @@ class SqlOptimiser {
             throw SqlException.$(model.getTableName().position, "function must return CURSOR");
         }
         model.setTableNameFunction(function);
+        tableFunctionUsed = true;
         functionsInFlight.add(function);
         copyColumnsFromMetadata(model, function.getRecordCursorFactory().getMetadata(), true);
     }
@@ -28,8 +28,10 @@ import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.PartitionBy;
 import io.questdb.cairo.TableUtils;
+import io.questdb.cutlass.parquet.ParquetStreamWriter;
 import io.questdb.griffin.model.*;
 import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -106,6 +108,10 @@ public final class SqlParser {
         return SqlException.unexpectedToken(lexer.lastTokenPosition(), token);
     }
 
+    static boolean hasLimitOrOrder(QueryModel model) {
+        return model.getLimitLo() != null || model.getOrderBy().size() > 0 || model.getLatestBy().size() > 0;
+    }
+
     private static boolean isValidSampleByPeriodLetter(CharSequence token) {
         if (token.length() != 1) return false;
         switch (token.charAt(0)) {
@@ -423,17 +429,31 @@ public final class SqlParser {
     }
 
     private ExecutionModel parseCopy(GenericLexer lexer) throws SqlException {
-        if (configuration.getInputRoot() == null) {
-            throw SqlException.$(lexer.lastTokenPosition(), "COPY is disabled ['cairo.sql.copy.root' is not set?]");
+        final int copyPosition = lexer.lastTokenPosition();
+        CharSequence tok = tok(lexer, "table name or '('");
+        if (Chars.equals(tok, '(')) {
+            // COPY (query) TO STDOUT or file
+            final QueryModel queryModel = parseAsSubQueryAndExpectClosingBrace(lexer, null);
+            expectTok(lexer, "to");
+            return parseCopyTo(lexer, queryModel, copyPosition);
         }
+        lexer.unparseLast();
         ExpressionNode tableName = expectExpr(lexer);
-        CharSequence tok = tok(lexer, "'from' or 'to'");
+        tok = tok(lexer, "'from' or 'to'");
 
         if (isFromKeyword(tok)) {
-            final ExpressionNode fileName = expectExpr(lexer);
+            // file name is a single token, so that PostgreSQL's "FROM STDIN (FORMAT csv)" is not taken for a function call
+            final ExpressionNode fileName = nextLiteral(
+                    GenericLexer.immutableOf(tok(lexer, "file name or 'stdin'")),
+                    lexer.lastTokenPosition()
+            );
             if (fileName.token.length() < 3 && Chars.startsWith(fileName.token, '\'')) {
                 throw SqlException.$(fileName.position, "file name expected");
             }
+            // COPY FROM STDIN streams data over the wire and does not need the copy root
+            if (configuration.getInputRoot() == null && !isStdinKeyword(fileName.token)) {
+                throw SqlException.$(copyPosition, "COPY is disabled ['cairo.sql.copy.root' is not set?]");
+            }
             CopyModel model = copyModelPool.next();
             model.setTableName(tableName);
             model.setFileName(fileName);
@@ -441,43 +461,274 @@ public final class SqlParser {
             tok = optTok(lexer);
             if (tok != null && isWithKeyword(tok)) {
                 tok = tok(lexer, "copy option");
-                while (tok != null) {
-                    if (isHeaderKeyword(tok)) {
-                        model.setHeader(isTrueKeyword(tok(lexer, "'true' or 'false'")));
-                        tok = optTok(lexer);
-                    } else {
-                        throw SqlException.$(lexer.lastTokenPosition(), "unexpected option");
-                    }
-                }
+            }
+            if (tok != null) {
+                parseCopyOptions(lexer, model, tok);
             }
             return model;
         }
-        throw SqlException.$(lexer.lastTokenPosition(), "'from' expected");
+
+        if (isToKeyword(tok)) {
+            // COPY table TO is a shorthand for COPY (table) TO
+            final QueryModel queryModel = queryModelPool.next();
+            queryModel.setModelPosition(tableName.position);
+            queryModel.addBottomUpColumn(SqlUtil.nextColumn(queryColumnPool, expressionNodePool, "*", "*"));
+            queryModel.setArtificialStar(true);
+            queryModel.setSelectModelType(QueryModel.SELECT_MODEL_CHOOSE);
+            final QueryModel nestedModel = queryModelPool.next();
+            nestedModel.setModelPosition(tableName.position);
+            nestedModel.setTableName(tableName);
+            queryModel.setNestedModel(nestedModel);
+            return parseCopyTo(lexer, queryModel, copyPosition);
+        }
+        throw SqlException.$(lexer.lastTokenPosition(), "'from' or 'to' expected");
+    }
+
+    private ExecutionModel parseCopyTo(GenericLexer lexer, QueryModel queryModel, int copyPosition) throws SqlException {
+        CharSequence tok = tok(lexer, "'stdout' or file name");
+        if (!isStdoutKeyword(tok)) {
+            if (!Chars.startsWith(tok, '\'')) {
+                throw SqlException.$(lexer.lastTokenPosition(), "'stdout' or file name expected");
+            }
+            if (tok.length() < 3) {
+                throw SqlException.$(lexer.lastTokenPosition(), "file name expected");
+            }
+            if (configuration.getInputRoot() == null) {
+                throw SqlException.$(copyPosition, "COPY is disabled ['cairo.sql.copy.root' is not set?]");
+            }
+        }
+        CopyModel model = copyModelPool.next();
+        model.setQueryModel(queryModel);
+        model.setFileName(nextLiteral(GenericLexer.immutableOf(tok), lexer.lastTokenPosition()));
+
+        tok = optTok(lexer);
+        if (tok != null && isWithKeyword(tok)) {
+            tok = tok(lexer, "copy option");
+        }
+        if (tok != null) {
+            parseCopyOptions(lexer, model, tok);
+        }
+        return model;
+    }
+
+    // parses both PostgreSQL option syntaxes, "(FORMAT csv, HEADER true)" and "CSV HEADER"
+    private void parseCopyOptions(GenericLexer lexer, CopyModel model, CharSequence tok) throws SqlException {
+        final boolean braced = Chars.equals(tok, '(');
+        if (braced) {
+            tok = tok(lexer, "copy option");
+        }
+        int partitionByPosition = -1;
+        while (tok != null) {
+            if (braced && Chars.equals(tok, ')')) {
+                tok = optTok(lexer);
+                if (tok != null) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "unexpected token");
+                }
+                validateCopyPartitioning(model, partitionByPosition);
+                return;
+            }
+            if (isHeaderKeyword(tok)) {
+                tok = optTok(lexer);
+                if (tok != null && (isTrueKeyword(tok) || isFalseKeyword(tok))) {
+                    model.setHeader(isTrueKeyword(tok));
+                    tok = optTok(lexer);
+                } else {
+                    model.setHeader(true);
+                }
+                continue;
+            }
+            if (isFormatKeyword(tok)) {
+                tok = tok(lexer, "'text', 'csv', 'binary' or 'parquet'");
+                if (!parseCopyFormat(model, tok)) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "'text', 'csv', 'binary' or 'parquet' expected");
+                }
+            } else if (isCompressionKeyword(tok)) {
+                final int codec = ParquetStreamWriter.codecOf(GenericLexer.unquote(tok(lexer, "'snappy', 'gzip' or 'uncompressed'")));
+                if (codec == -1) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "'snappy', 'gzip' or 'uncompressed' expected");
+                }
+                model.setCompression(codec);
+            } else if (isDelimiterKeyword(tok)) {
+                tok = GenericLexer.unquote(tok(lexer, "delimiter character"));
+                if (tok.length() != 1 || tok.charAt(0) > 127) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "single ASCII character delimiter expected");
+                }
+                model.setDelimiter((byte) tok.charAt(0));
+            } else if (isTimestampKeyword(tok)) {
+                model.setTimestampColumnName(GenericLexer.unquote(tok(lexer, "timestamp column name")));
+            } else if (isPartitionKeyword(tok)) {
+                partitionByPosition = lexer.lastTokenPosition();
+                expectTok(lexer, "by");
+                final int partitionBy = PartitionBy.fromString(tok(lexer, "'NONE', 'HOUR', 'DAY', 'MONTH' or 'YEAR'"));
+                if (partitionBy == -1) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "'NONE', 'HOUR', 'DAY', 'MONTH' or 'YEAR' expected");
+                }
+                model.setPartitionBy(partitionBy);
+            } else if (!Chars.equals(tok, ',') && !parseCopyFormat(model, tok)) {
+                throw SqlException.$(lexer.lastTokenPosition(), "unexpected option");
+            }
+            tok = optTok(lexer);
+        }
+        if (braced) {
+            throw SqlException.$(lexer.lastTokenPosition(), "')' expected");
+        }
+        validateCopyPartitioning(model, partitionByPosition);
+    }
+
+    private static void validateCopyPartitioning(CopyModel model, int partitionByPosition) throws SqlException {
+        if (partitionByPosition > -1 && model.getPartitionBy() != PartitionBy.NONE && model.getTimestampColumnName() == null) {
+            throw SqlException.$(partitionByPosition, "partitioning is possible only with TIMESTAMP option");
+        }
+    }
+
+    private static boolean parseCopyFormat(CopyModel model, CharSequence tok) {
+        if (isTextKeyword(tok)) {
+            model.setFormat(CopyModel.FORMAT_TEXT);
+        } else if (isCsvKeyword(tok)) {
+            model.setFormat(CopyModel.FORMAT_CSV);
+        } else if (isBinaryKeyword(tok)) {
+            model.setFormat(CopyModel.FORMAT_BINARY);
+        } else if (isParquetKeyword(tok)) {
+            model.setFormat(CopyModel.FORMAT_PARQUET);
+        } else {
+            return false;
+        }
+        return true;
     }
 
     private ExecutionModel parseCreateStatement(GenericLexer lexer, SqlExecutionContext executionContext) throws SqlException {
+        final CharSequence tok = optTok(lexer);
+        if (tok != null && isMaterializedKeyword(tok)) {
+            expectTok(lexer, "view");
+            return parseCreateMatView(lexer, executionContext);
+        }
+        if (tok != null) {
+            lexer.unparseLast();
+        }
         expectTok(lexer, "table");
         return parseCreateTable(lexer, executionContext);
     }
 
-    private ExecutionModel parseCreateTable(GenericLexer lexer, SqlExecutionContext executionContext) throws SqlException {
+    /**
+     * Materialized view is a table populated by SAMPLE BY query over a single base table:
+     * <code>
+     * create materialized view name as (select ... from base [where ...] sample by ... align to calendar) [partition by ...]
+     * </code>
+     * Refresh re-runs the query over base table rows from the first changed bucket on,
+     * which is why the buckets must be aligned to calendar and cannot be filled.
+     */
+    private ExecutionModel parseCreateMatView(GenericLexer lexer, SqlExecutionContext executionContext) throws SqlException {
         final CreateTableModel model = createTableModelPool.next();
-        final CharSequence tableName;
-        CharSequence tok = tok(lexer, "table name or 'if'");
-        if (SqlKeywords.isIfKeyword(tok)) {
-            if (SqlKeywords.isNotKeyword(tok(lexer, "'not'")) && SqlKeywords.isExistsKeyword(tok(lexer, "'exists'"))) {
-                model.setIgnoreIfExists(true);
-                tableName = tok(lexer, "table name");
-            } else {
-                throw SqlException.$(lexer.lastTokenPosition(), "'if not exists' expected");
+        model.setMatView(true);
+        parseCreateTableName(lexer, model, "view name");
+        expectTok(lexer, "as");
+        expectTok(lexer, '(');
+        final int queryLo = lexer.getPosition();
+        final QueryModel queryModel = parseDml(lexer, null);
+        final int queryPosition = queryModel.getModelPosition();
+        // select clause sits on top of the model that selects from the base table
+        final QueryModel tableModel = queryModel.getNestedModel();
+        final ExpressionNode baseTable = tableModel != null ? tableModel.getTableName() : null;
+        if (baseTable == null
+                || baseTable.type != ExpressionNode.LITERAL
+                || tableModel.getNestedModel() != null
+                || tableModel.getJoinModels().size() > 1
+                || queryModel.getJoinModels().size() > 1
+                || queryModel.getUnionModel() != null) {
+            throw SqlException.$(queryPosition, "materialized view query must select from a single table");
+        }
+        if (tableModel.getSampleBy() == null || tableModel.getSampleByUnit() != null) {
+            throw SqlException.$(queryPosition, "materialized view query must use SAMPLE BY with a constant interval");
+        }
+        if (tableModel.getSampleByFill().size() > 0) {
+            throw SqlException.$(tableModel.getSampleByFill().getQuick(0).position, "FILL is not supported by materialized views");
+        }
+        if (tableModel.getSampleByTimezoneName() != null) {
+            throw SqlException.$(tableModel.getSampleByTimezoneName().position, "time zone is not supported by materialized views");
+        }
+        final ExpressionNode offset = tableModel.getSampleByOffset();
+        if (offset == null) {
+            throw SqlException.$(tableModel.getSampleBy().position, "materialized view requires ALIGN TO CALENDAR");
+        }
+        if (hasLimitOrOrder(queryModel) || hasLimitOrOrder(tableModel)) {
+            throw SqlException.$(queryPosition, "LIMIT, ORDER BY and LATEST BY are not supported by materialized views");
+        }
+        final long offsetValue = Timestamps.parseOffset(GenericLexer.unquote(offset.token));
+        if (offsetValue == Numbers.LONG_NaN) {
+            throw SqlException.$(offset.position, "invalid offset: ").put(offset.token);
+        }
+
+        // columns without aggregates are the keys of SAMPLE BY result, view deduplicates by them
+        final ObjList<QueryColumn> rawColumns = queryModel.getBottomUpColumns();
+        final int columnCount = rawColumns.size();
+        final IntList keyColumns = new IntList();
+        for (int i = 0; i < columnCount; i++) {
+            final ExpressionNode ast = rawColumns.getQuick(i).getAst();
+            if (Chars.equals(ast.token, '*')) {
+                throw SqlException.$(ast.position, "wildcard is not supported by materialized views");
+            }
+            if (!optimiser.hasAggregates(ast)) {
+                keyColumns.add(i);
+            }
+        }
+
+        final CharSequence content = lexer.getContent();
+        final int baseTableNameLo = baseTable.position - queryLo;
+        int baseTableNameHi = baseTableNameLo + baseTable.token.length();
+        final char c = content.charAt(baseTable.position);
+        if ((c == '\'' || c == '"') && baseTable.token.charAt(0) != c) {
+            baseTableNameHi += 2;
+        }
+        final CharSequence baseTableName = GenericLexer.unquote(baseTable.token);
+        final CharSequence sampleBy = tableModel.getSampleBy().token;
+
+        final QueryModel optimisedModel = optimiser.optimise(queryModel, executionContext);
+        final ObjList<QueryColumn> columns = optimisedModel.getBottomUpColumns();
+        if (columns.size() != columnCount) {
+            throw SqlException.$(queryPosition, "materialized view query must select the designated timestamp");
+        }
+        for (int i = 0; i < columnCount; i++) {
+            model.addColumn(columns.getQuick(i).getName(), -1, configuration.getDefaultSymbolCapacity(), configuration.getRandom().nextLong());
+        }
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            model.addDedupKey(nextLiteral(columns.getQuick(keyColumns.getQuick(i)).getName(), queryPosition));
+        }
+        model.setQueryModel(optimisedModel);
+        expectTok(lexer, ')');
+        model.getMatViewDefinition().of(
+                baseTableName,
+                content.subSequence(queryLo, lexer.lastTokenPosition()),
+                baseTableNameLo,
+                baseTableNameHi,
+                sampleBy,
+                Numbers.decodeLowInt(offsetValue) * Timestamps.MINUTE_MICROS
+        );
+
+        CharSequence tok = optTok(lexer);
+        ExpressionNode partitionBy = parseCreateTablePartition(lexer, tok);
+        if (partitionBy != null) {
+            if (!PartitionBy.isPartitioned(PartitionBy.fromString(partitionBy.token))) {
+                throw SqlException.$(partitionBy.position, "'DAY', 'MONTH' or 'YEAR' expected");
             }
+            tok = optTok(lexer);
         } else {
-            tableName = tok;
+            partitionBy = nextLiteral("DAY", queryPosition);
         }
+        model.setPartitionBy(partitionBy);
+        model.setMaxUncommittedRows(configuration.getMaxUncommittedRows());
+        model.setCommitLag(configuration.getCommitLag());
 
-        model.setName(nextLiteral(GenericLexer.assertNoDotsAndSlashes(GenericLexer.unquote(tableName), lexer.lastTokenPosition()), lexer.lastTokenPosition()));
+        if (tok == null || Chars.equals(tok, ';')) {
+            return model;
+        }
+        throw errUnexpected(lexer, tok);
+    }
+
+    private ExecutionModel parseCreateTable(GenericLexer lexer, SqlExecutionContext executionContext) throws SqlException {
+        final CreateTableModel model = createTableModelPool.next();
+        parseCreateTableName(lexer, model, "table name");
 
-        tok = tok(lexer, "'(' or 'as'");
+        CharSequence tok = tok(lexer, "'(' or 'as'");
 
         if (Chars.equals(tok, '(')) {
             lexer.unparseLast();
@@ -524,6 +775,10 @@ public final class SqlParser {
             }
             model.setPartitionBy(partitionBy);
             tok = optTok(lexer);
+            if (tok != null && isDedupKeyword(tok)) {
+                parseCreateTableDedupKeys(lexer, model);
+                tok = optTok(lexer);
+            }
             if (tok != null && isWithKeyword(tok)) {
                 ExpressionNode expr;
                 while ((expr = expr(lexer, (QueryModel) null)) != null) {
@@ -575,6 +830,23 @@ public final class SqlParser {
         expectTok(lexer, ')');
     }
 
+    private void parseCreateTableName(GenericLexer lexer, CreateTableModel model, String expected) throws SqlException {
+        final CharSequence tableName;
+        CharSequence tok = tok(lexer, expected + " or 'if'");
+        if (SqlKeywords.isIfKeyword(tok)) {
+            if (SqlKeywords.isNotKeyword(tok(lexer, "'not'")) && SqlKeywords.isExistsKeyword(tok(lexer, "'exists'"))) {
+                model.setIgnoreIfExists(true);
+                tableName = tok(lexer, expected);
+            } else {
+                throw SqlException.$(lexer.lastTokenPosition(), "'if not exists' expected");
+            }
+        } else {
+            tableName = tok;
+        }
+
+        model.setName(nextLiteral(GenericLexer.assertNoDotsAndSlashes(GenericLexer.unquote(tableName), lexer.lastTokenPosition()), lexer.lastTokenPosition()));
+    }
+
     private void parseCreateTableCastDef(GenericLexer lexer, CreateTableModel model) throws SqlException {
         if (model.getQueryModel() == null) {
             throw SqlException.$(lexer.lastTokenPosition(), "cast is only supported in 'create table as ...' context");
@@ -707,6 +979,39 @@ public final class SqlParser {
         }
     }
 
+    private void parseCreateTableDedupKeys(GenericLexer lexer, CreateTableModel model) throws SqlException {
+        final int dedupPosition = lexer.lastTokenPosition();
+        if (!PartitionBy.isPartitioned(model.getPartitionBy())) {
+            throw SqlException.$(dedupPosition, "deduplication is supported only on partitioned tables");
+        }
+        expectTok(lexer, "upsert");
+        expectTok(lexer, "keys");
+        expectTok(lexer, '(');
+        CharSequence tok;
+        do {
+            final ExpressionNode column = expectLiteral(lexer);
+            final int columnIndex = getCreateTableColumnIndex(model, column.token, column.position);
+            if (model.isDedupKey(column.token)) {
+                throw SqlException.$(column.position, "duplicate dedup key column");
+            }
+            // type is not known yet for "create table as select", compiler validates it
+            final int columnType = model.getColumnType(columnIndex);
+            if (columnType != -1 && !TableUtils.isValidDedupKeyType(columnType)) {
+                throw SqlException.position(column.position).put("unsupported dedup key column type [type=").put(ColumnType.nameOf(columnType)).put(']');
+            }
+            model.addDedupKey(column);
+            tok = tok(lexer, "',' or ')'");
+        } while (Chars.equals(tok, ','));
+
+        if (!Chars.equals(tok, ')')) {
+            throw errUnexpected(lexer, tok);
+        }
+
+        if (!model.isDedupKey(model.getTimestamp().token)) {
+            throw SqlException.$(dedupPosition, "dedup key must include designated timestamp");
+        }
+    }
+
     private void parseCreateTableIndexDef(GenericLexer lexer, CreateTableModel model) throws SqlException {
         expectTok(lexer, '(');
         final int columnIndex = getCreateTableColumnIndex(model, expectLiteral(lexer).token, lexer.lastTokenPosition());
@@ -1066,7 +1371,8 @@ public final class SqlParser {
                 if (isCalendarKeyword(tok)) {
                     tok = optTok(lexer);
 
-                    if (tok != null && !isSemicolon(tok)) {
+                    // closing brace ends sample by of a sub-query
+                    if (tok != null && !isSemicolon(tok) && !Chars.equals(tok, ')')) {
                         if (isTimeKeyword(tok)) {
                             expectZone(lexer);
                             model.setSampleByTimezoneName(expectExpr(lexer));
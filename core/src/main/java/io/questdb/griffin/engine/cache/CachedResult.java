@@ -0,0 +1,391 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GenericRecordMetadata;
+import io.questdb.cairo.TableColumnMetadata;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.cairo.vm.api.MemoryCR;
+import io.questdb.std.*;
+import io.questdb.std.str.CharSink;
+
+import java.io.Closeable;
+
+/**
+ * Query result in native memory. Rows are fixed size and hold offsets of strings and
+ * binaries stored in separate memory. Both memories are contiguous and results published
+ * to the cache are not modified, so that any number of threads can read them at the same time,
+ * each through its own record.
+ * Symbols are stored as strings, the result does not depend on symbol tables of the query.
+ */
+public class CachedResult implements Closeable, Mutable {
+    private final int[] columnTypes;
+    private final long[] columnOffsets;
+    private final long rowSize;
+    private final MemoryCARW fixMem;
+    private final MemoryCARW varMem;
+    private long rowCount;
+
+    public CachedResult(RecordMetadata metadata) {
+        final int columnCount = metadata.getColumnCount();
+        this.columnTypes = new int[columnCount];
+        this.columnOffsets = new long[columnCount];
+        long rowSize = 0;
+        for (int i = 0; i < columnCount; i++) {
+            final int type = metadata.getColumnType(i);
+            columnTypes[i] = type;
+            columnOffsets[i] = rowSize;
+            rowSize += isVarSize(type) ? Long.BYTES : ColumnType.sizeOf(type);
+        }
+        this.rowSize = rowSize;
+        this.fixMem = Vm.getCARWInstance(Files.PAGE_SIZE, Integer.MAX_VALUE, MemoryTag.NATIVE_RESULT_CACHE);
+        this.varMem = Vm.getCARWInstance(Files.PAGE_SIZE, Integer.MAX_VALUE, MemoryTag.NATIVE_RESULT_CACHE);
+    }
+
+    /**
+     * @return metadata of the result, symbols are plain strings without symbol tables
+     */
+    public static GenericRecordMetadata copyMetadata(RecordMetadata metadata) {
+        final GenericRecordMetadata copy = new GenericRecordMetadata();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            copy.add(new TableColumnMetadata(
+                    metadata.getColumnName(i),
+                    metadata.getColumnHash(i),
+                    metadata.getColumnType(i),
+                    false,
+                    0,
+                    false,
+                    null
+            ));
+        }
+        copy.setTimestampIndex(metadata.getTimestampIndex());
+        return copy;
+    }
+
+    /**
+     * @return true when columns of this type can be cached
+     */
+    public static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.CHAR:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+            case ColumnType.LONG256:
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+            case ColumnType.GEOLONG:
+            case ColumnType.BINARY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public void append(Record record) {
+        final long row = fixMem.appendAddressFor(rowSize);
+        for (int i = 0, n = columnTypes.length; i < n; i++) {
+            final long p = row + columnOffsets[i];
+            switch (ColumnType.tagOf(columnTypes[i])) {
+                case ColumnType.BOOLEAN:
+                    Unsafe.getUnsafe().putByte(p, (byte) (record.getBool(i) ? 1 : 0));
+                    break;
+                case ColumnType.BYTE:
+                    Unsafe.getUnsafe().putByte(p, record.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    Unsafe.getUnsafe().putShort(p, record.getShort(i));
+                    break;
+                case ColumnType.CHAR:
+                    Unsafe.getUnsafe().putChar(p, record.getChar(i));
+                    break;
+                case ColumnType.INT:
+                    Unsafe.getUnsafe().putInt(p, record.getInt(i));
+                    break;
+                case ColumnType.LONG:
+                    Unsafe.getUnsafe().putLong(p, record.getLong(i));
+                    break;
+                case ColumnType.DATE:
+                    Unsafe.getUnsafe().putLong(p, record.getDate(i));
+                    break;
+                case ColumnType.TIMESTAMP:
+                    Unsafe.getUnsafe().putLong(p, record.getTimestamp(i));
+                    break;
+                case ColumnType.FLOAT:
+                    Unsafe.getUnsafe().putFloat(p, record.getFloat(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    Unsafe.getUnsafe().putDouble(p, record.getDouble(i));
+                    break;
+                case ColumnType.STRING:
+                    Unsafe.getUnsafe().putLong(p, varMem.getAppendOffset());
+                    varMem.putStr(record.getStr(i));
+                    break;
+                case ColumnType.SYMBOL:
+                    Unsafe.getUnsafe().putLong(p, varMem.getAppendOffset());
+                    varMem.putStr(record.getSym(i));
+                    break;
+                case ColumnType.LONG256:
+                    final Long256 long256 = record.getLong256A(i);
+                    Unsafe.getUnsafe().putLong(p, long256.getLong0());
+                    Unsafe.getUnsafe().putLong(p + Long.BYTES, long256.getLong1());
+                    Unsafe.getUnsafe().putLong(p + 2 * Long.BYTES, long256.getLong2());
+                    Unsafe.getUnsafe().putLong(p + 3 * Long.BYTES, long256.getLong3());
+                    break;
+                case ColumnType.GEOBYTE:
+                    Unsafe.getUnsafe().putByte(p, record.getGeoByte(i));
+                    break;
+                case ColumnType.GEOSHORT:
+                    Unsafe.getUnsafe().putShort(p, record.getGeoShort(i));
+                    break;
+                case ColumnType.GEOINT:
+                    Unsafe.getUnsafe().putInt(p, record.getGeoInt(i));
+                    break;
+                case ColumnType.GEOLONG:
+                    Unsafe.getUnsafe().putLong(p, record.getGeoLong(i));
+                    break;
+                default:
+                    // BINARY
+                    Unsafe.getUnsafe().putLong(p, varMem.getAppendOffset());
+                    varMem.putBin(record.getBin(i));
+                    break;
+            }
+        }
+        rowCount++;
+    }
+
+    @Override
+    public void clear() {
+        fixMem.jumpTo(0);
+        varMem.jumpTo(0);
+        rowCount = 0;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(fixMem);
+        Misc.free(varMem);
+        rowCount = 0;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return bytes of native memory held by this result
+     */
+    public long getSize() {
+        return fixMem.size() + varMem.size();
+    }
+
+    private static boolean isVarSize(int columnType) {
+        return ColumnType.isVariableLength(columnType) || ColumnType.isSymbol(columnType);
+    }
+
+    public static class CachedResultRecord implements Record {
+        private final MemoryCR.CharSequenceView csviewA = new MemoryCR.CharSequenceView();
+        private final MemoryCR.CharSequenceView csviewB = new MemoryCR.CharSequenceView();
+        private final MemoryCR.ByteSequenceView bsview = new MemoryCR.ByteSequenceView();
+        private final Long256Impl long256A = new Long256Impl();
+        private final Long256Impl long256B = new Long256Impl();
+        private CachedResult result;
+        private long row;
+        private long offset;
+
+        @Override
+        public BinarySequence getBin(int col) {
+            return result.varMem.getBin(varOffset(col), bsview);
+        }
+
+        @Override
+        public long getBinLen(int col) {
+            return result.varMem.getLong(varOffset(col));
+        }
+
+        @Override
+        public boolean getBool(int col) {
+            return result.fixMem.getByte(fixOffset(col)) == 1;
+        }
+
+        @Override
+        public byte getByte(int col) {
+            return result.fixMem.getByte(fixOffset(col));
+        }
+
+        @Override
+        public char getChar(int col) {
+            return result.fixMem.getChar(fixOffset(col));
+        }
+
+        @Override
+        public long getDate(int col) {
+            return result.fixMem.getLong(fixOffset(col));
+        }
+
+        @Override
+        public double getDouble(int col) {
+            return result.fixMem.getDouble(fixOffset(col));
+        }
+
+        @Override
+        public float getFloat(int col) {
+            return result.fixMem.getFloat(fixOffset(col));
+        }
+
+        @Override
+        public byte getGeoByte(int col) {
+            return result.fixMem.getByte(fixOffset(col));
+        }
+
+        @Override
+        public int getGeoInt(int col) {
+            return result.fixMem.getInt(fixOffset(col));
+        }
+
+        @Override
+        public long getGeoLong(int col) {
+            return result.fixMem.getLong(fixOffset(col));
+        }
+
+        @Override
+        public short getGeoShort(int col) {
+            return result.fixMem.getShort(fixOffset(col));
+        }
+
+        @Override
+        public int getInt(int col) {
+            return result.fixMem.getInt(fixOffset(col));
+        }
+
+        @Override
+        public long getLong(int col) {
+            return result.fixMem.getLong(fixOffset(col));
+        }
+
+        @Override
+        public void getLong256(int col, CharSink sink) {
+            final long offset = fixOffset(col);
+            Numbers.appendLong256(
+                    result.fixMem.getLong(offset),
+                    result.fixMem.getLong(offset + Long.BYTES),
+                    result.fixMem.getLong(offset + 2 * Long.BYTES),
+                    result.fixMem.getLong(offset + 3 * Long.BYTES),
+                    sink
+            );
+        }
+
+        @Override
+        public Long256 getLong256A(int col) {
+            return getLong256(col, long256A);
+        }
+
+        @Override
+        public Long256 getLong256B(int col) {
+            return getLong256(col, long256B);
+        }
+
+        @Override
+        public long getRowId() {
+            return row;
+        }
+
+        @Override
+        public short getShort(int col) {
+            return result.fixMem.getShort(fixOffset(col));
+        }
+
+        @Override
+        public CharSequence getStr(int col) {
+            return result.varMem.getStr(varOffset(col), csviewA);
+        }
+
+        @Override
+        public CharSequence getStrB(int col) {
+            return result.varMem.getStr(varOffset(col), csviewB);
+        }
+
+        @Override
+        public int getStrLen(int col) {
+            return result.varMem.getInt(varOffset(col));
+        }
+
+        @Override
+        public CharSequence getSym(int col) {
+            return getStr(col);
+        }
+
+        @Override
+        public CharSequence getSymB(int col) {
+            return getStrB(col);
+        }
+
+        @Override
+        public long getTimestamp(int col) {
+            return result.fixMem.getLong(fixOffset(col));
+        }
+
+        void of(CachedResult result) {
+            this.result = result;
+        }
+
+        void of(long row) {
+            this.row = row;
+            this.offset = row * result.rowSize;
+        }
+
+        private long fixOffset(int col) {
+            return offset + result.columnOffsets[col];
+        }
+
+        private Long256 getLong256(int col, Long256Impl long256) {
+            final long offset = fixOffset(col);
+            long256.setAll(
+                    result.fixMem.getLong(offset),
+                    result.fixMem.getLong(offset + Long.BYTES),
+                    result.fixMem.getLong(offset + 2 * Long.BYTES),
+                    result.fixMem.getLong(offset + 3 * Long.BYTES)
+            );
+            return long256;
+        }
+
+        private long varOffset(int col) {
+            return result.fixMem.getLong(fixOffset(col));
+        }
+    }
+}
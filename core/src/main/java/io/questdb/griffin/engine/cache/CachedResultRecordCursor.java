@@ -0,0 +1,101 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+
+class CachedResultRecordCursor implements RecordCursor {
+    private final ResultCache resultCache;
+    private ResultCache.Entry entry;
+    private final CachedResult.CachedResultRecord recordA = new CachedResult.CachedResultRecord();
+    private final CachedResult.CachedResultRecord recordB = new CachedResult.CachedResultRecord();
+    private long rowCount;
+    private long row;
+
+    CachedResultRecordCursor(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public void close() {
+        if (entry != null) {
+            resultCache.release(entry);
+            entry = null;
+        }
+    }
+
+    @Override
+    public Record getRecord() {
+        return recordA;
+    }
+
+    @Override
+    public Record getRecordB() {
+        return recordB;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (row < rowCount) {
+            recordA.of(row++);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        ((CachedResult.CachedResultRecord) record).of(atRowId);
+    }
+
+    @Override
+    public long size() {
+        return rowCount;
+    }
+
+    @Override
+    public void skipTo(long rowCount) {
+        row = Math.min(rowCount, this.rowCount);
+    }
+
+    @Override
+    public void toTop() {
+        row = 0;
+    }
+
+    void of(ResultCache.Entry entry) {
+        close();
+        this.entry = entry;
+        of(entry.getResult());
+    }
+
+    void of(CachedResult result) {
+        recordA.of(result);
+        recordB.of(result);
+        this.rowCount = result.getRowCount();
+        toTop();
+    }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.GenericRecordMetadata;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.MatViewDefinition;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.std.Misc;
+import io.questdb.std.Numbers;
+import io.questdb.std.str.CharSink;
+
+/**
+ * Executes SAMPLE BY query over a time window that moves with the clock, such as
+ * <code>select ts, k, sum(v) from t where ts > now() - 3600000000 sample by 1m align to calendar</code>,
+ * incrementally. Result of the previous execution is kept in native memory together with the snapshot
+ * of base table partitions it was computed from. Next execution aggregates only the first bucket of
+ * the window, which loses rows as the window slides, and the buckets that might have received rows
+ * since the snapshot. Buckets in between are copied from the previous result. Truncate, UPDATE or rows
+ * inserted out of order at the start of the window make the whole window aggregated again.
+ * <p>
+ * Buckets are aggregated by the window factory, which is the same query reading only base table rows
+ * between "lo" and "hi" bind variables of the window execution context.
+ */
+public class IncrementalSampleByRecordCursorFactory implements RecordCursorFactory {
+    private final CairoEngine engine;
+    private final ResultCache resultCache;
+    private final RecordCursorFactory base;
+    private final RecordCursorFactory windowFactory;
+    private final SqlExecutionContextImpl windowContext;
+    private final Function windowLo;
+    private final MatViewDefinition definition;
+    private final GenericRecordMetadata metadata;
+    private final int timestampIndex;
+    private final CachedResultRecordCursor cursor;
+    private final CachedResult.CachedResultRecord record = new CachedResult.CachedResultRecord();
+    private CachedResult result;
+    private CachedResult nextResult;
+    // window start the result was computed for, NaN when there is no valid result
+    private long resultWindowLo = Numbers.LONG_NaN;
+    private long sizeLimit;
+    // result does not fit into memory limit, there is no point trying again
+    private boolean bypass;
+
+    public IncrementalSampleByRecordCursorFactory(
+            CairoEngine engine,
+            RecordCursorFactory base,
+            RecordCursorFactory windowFactory,
+            SqlExecutionContextImpl windowContext,
+            Function windowLo,
+            MatViewDefinition definition
+    ) {
+        this.engine = engine;
+        this.resultCache = engine.getResultCache();
+        this.base = base;
+        this.windowFactory = windowFactory;
+        this.windowContext = windowContext;
+        this.windowLo = windowLo;
+        this.definition = definition;
+        this.metadata = CachedResult.copyMetadata(base.getMetadata());
+        this.timestampIndex = metadata.getTimestampIndex();
+        this.cursor = new CachedResultRecordCursor(resultCache);
+        this.result = new CachedResult(metadata);
+        this.nextResult = new CachedResult(metadata);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(cursor);
+        result = Misc.free(result);
+        nextResult = Misc.free(nextResult);
+        Misc.free(windowLo);
+        Misc.free(windowFactory);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        if (bypass || !resultCache.isEnabled()) {
+            return base.getCursor(executionContext);
+        }
+
+        windowContext.with(
+                executionContext.getCairoSecurityContext(),
+                windowContext.getBindVariableService(),
+                executionContext.getRandom(),
+                executionContext.getRequestFd(),
+                executionContext.getCircuitBreaker()
+        );
+        windowLo.init(null, windowContext);
+        final long lo = windowLo.getTimestamp(null);
+        if (lo == Numbers.LONG_NaN) {
+            return base.getCursor(executionContext);
+        }
+        final long windowBucket = definition.floorBucket(lo);
+        final long changedLo;
+        try (TableReader reader = engine.getReader(executionContext.getCairoSecurityContext(), definition.getBaseTableName())) {
+            changedLo = definition.findChangedLo(reader);
+            // window factory will read this or later version of the table
+            definition.snapshot(reader);
+        }
+
+        if (resultWindowLo == lo && changedLo == MatViewDefinition.REFRESH_NONE) {
+            cursor.of(result);
+            return cursor;
+        }
+
+        sizeLimit = Math.min(
+                engine.getConfiguration().getSqlResultCacheEntryMaxSize(),
+                engine.getConfiguration().getSqlResultCacheSize()
+        );
+        final long headHi = definition.nextBucket(windowBucket);
+        final long changedBucket = changedLo == MatViewDefinition.REFRESH_NONE ? Long.MAX_VALUE : definition.floorBucket(changedLo);
+        final boolean fits;
+        nextResult.clear();
+        try {
+            if (changedLo == MatViewDefinition.REFRESH_FULL
+                    || resultWindowLo == Numbers.LONG_NaN
+                    || windowBucket < definition.floorBucket(resultWindowLo)
+                    || changedBucket <= headHi) {
+                fits = aggregate(windowBucket, Long.MAX_VALUE);
+            } else {
+                fits = aggregate(windowBucket, headHi)
+                        && copyBuckets(headHi, changedBucket)
+                        && (changedBucket == Long.MAX_VALUE || aggregate(changedBucket, Long.MAX_VALUE));
+            }
+        } catch (Throwable e) {
+            resultWindowLo = Numbers.LONG_NaN;
+            throw e;
+        }
+
+        if (!fits) {
+            bypass = true;
+            result = Misc.free(result);
+            nextResult = Misc.free(nextResult);
+            return base.getCursor(executionContext);
+        }
+
+        final CachedResult tmp = result;
+        result = nextResult;
+        nextResult = tmp;
+        resultWindowLo = lo;
+        cursor.of(result);
+        return cursor;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        base.toSink(sink);
+    }
+
+    @Override
+    public boolean usesCompiledFilter() {
+        return base.usesCompiledFilter();
+    }
+
+    private boolean aggregate(long lo, long hi) throws SqlException {
+        final BindVariableService bindVariableService = windowContext.getBindVariableService();
+        bindVariableService.setTimestamp("lo", lo);
+        bindVariableService.setTimestamp("hi", hi);
+        try (RecordCursor windowCursor = windowFactory.getCursor(windowContext)) {
+            final Record windowRecord = windowCursor.getRecord();
+            while (windowCursor.hasNext()) {
+                nextResult.append(windowRecord);
+                if (nextResult.getSize() > sizeLimit) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // rows of SAMPLE BY result are ordered by bucket timestamp
+    private boolean copyBuckets(long lo, long hi) {
+        record.of(result);
+        for (long row = 0, n = result.getRowCount(); row < n; row++) {
+            record.of(row);
+            final long timestamp = record.getTimestamp(timestampIndex);
+            if (timestamp >= hi) {
+                break;
+            }
+            if (timestamp >= lo) {
+                nextResult.append(record);
+                if (nextResult.getSize() > sizeLimit) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
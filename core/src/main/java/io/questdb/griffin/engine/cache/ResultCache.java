@@ -0,0 +1,232 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Server-wide cache of query results. Results are looked up by query text and bind variable
+ * values and are valid for as long as ids and transactions of the tables they were computed
+ * from do not change. Cache is limited by the memory its results occupy, least recently used
+ * results are evicted first. Result stays readable while it is in use by a cursor, even when
+ * it has been evicted in the meantime; its memory is released once the last cursor is closed.
+ */
+public class ResultCache implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(ResultCache.class);
+    // functions, which may return different values for the same arguments and table data
+    private static final CharSequenceHashSet volatileFunctions = new CharSequenceHashSet();
+    private final CairoConfiguration configuration;
+    private final CharSequenceObjHashMap<Entry> entries = new CharSequenceObjHashMap<>();
+    // most recently used entry is at the head
+    private Entry head;
+    private Entry tail;
+    private long size;
+    private long hitCount;
+    private long missCount;
+
+    public ResultCache(CairoConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return cached result, which must be released after use, or null when there is no result
+     * for the key or the result was computed from different versions of the tables
+     */
+    public synchronized Entry acquire(CharSequence key, LongList tableVersions) {
+        final int index = entries.keyIndex(key);
+        if (index < 0) {
+            final Entry entry = entries.valueAtQuick(index);
+            if (isCurrent(entry, tableVersions)) {
+                entry.refCount++;
+                unlink(entry);
+                linkFirst(entry);
+                hitCount++;
+                return entry;
+            }
+            // tables changed, result will not be used again
+            remove(entry);
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * @param signature function name or function factory signature, e.g. "now()"
+     * @return false when result of the function may change while table data does not
+     */
+    public static boolean isDeterministic(CharSequence signature) {
+        final int nameHi = Chars.indexOf(signature, '(');
+        return !Chars.startsWith(signature, "rnd_")
+                && volatileFunctions.excludes(signature, 0, nameHi < 0 ? signature.length() : nameHi);
+    }
+
+    @Override
+    public synchronized void clear() {
+        while (tail != null) {
+            remove(tail);
+        }
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public boolean isEnabled() {
+        return configuration.getSqlResultCacheSize() > 0;
+    }
+
+    /**
+     * Adds result to the cache and evicts least recently used results to stay within memory budget.
+     *
+     * @return cache entry of the result, which must be released after use
+     */
+    public synchronized Entry put(String key, LongList tableVersions, CachedResult result) {
+        final int index = entries.keyIndex(key);
+        if (index < 0) {
+            // concurrent query computed the same result
+            remove(entries.valueAtQuick(index));
+        }
+        final Entry entry = new Entry(key, tableVersions, result);
+        entries.put(key, entry);
+        linkFirst(entry);
+        size += entry.size;
+
+        final long sizeLimit = configuration.getSqlResultCacheSize();
+        while (size > sizeLimit && tail != entry) {
+            LOG.debug().$("evicted [key=").utf8(tail.key).$(", size=").$(tail.size).$(']').$();
+            remove(tail);
+        }
+        return entry;
+    }
+
+    public synchronized void release(Entry entry) {
+        if (--entry.refCount == 0 && entry.removed) {
+            entry.result = Misc.free(entry.result);
+        }
+    }
+
+    private static boolean isCurrent(Entry entry, LongList tableVersions) {
+        final LongList versions = entry.tableVersions;
+        if (versions.size() != tableVersions.size()) {
+            return false;
+        }
+        for (int i = 0, n = versions.size(); i < n; i++) {
+            if (versions.getQuick(i) != tableVersions.getQuick(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void linkFirst(Entry entry) {
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        head = entry;
+        if (tail == null) {
+            tail = entry;
+        }
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        entries.remove(entry.key);
+        size -= entry.size;
+        entry.removed = true;
+        if (entry.refCount == 0) {
+            entry.result = Misc.free(entry.result);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            head = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            tail = entry.prev;
+        }
+        entry.prev = entry.next = null;
+    }
+
+    public static class Entry {
+        private final String key;
+        private final LongList tableVersions;
+        private final long size;
+        private CachedResult result;
+        private Entry prev;
+        private Entry next;
+        private int refCount = 1;
+        private boolean removed;
+
+        private Entry(String key, LongList tableVersions, CachedResult result) {
+            this.key = key;
+            this.tableVersions = new LongList(tableVersions);
+            this.result = result;
+            this.size = result.getSize();
+        }
+
+        public CachedResult getResult() {
+            return result;
+        }
+    }
+
+    static {
+        volatileFunctions.add("now");
+        volatileFunctions.add("sysdate");
+        volatileFunctions.add("systimestamp");
+        volatileFunctions.add("timestamp_shuffle");
+        volatileFunctions.add("session_user");
+        volatileFunctions.add("touch");
+        volatileFunctions.add("flush_query_cache");
+        volatileFunctions.add("dump_memory_usage");
+        volatileFunctions.add("dump_thread_stacks");
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.LongList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Serves query results from {@link ResultCache} when none of the tables the query reads from
+ * have changed since the result was computed. On cache miss the whole result of the base
+ * factory is copied into native memory before the first row is returned.
+ */
+public class ResultCacheRecordCursorFactory implements RecordCursorFactory {
+    private final CairoEngine engine;
+    private final ResultCache resultCache;
+    private final RecordCursorFactory base;
+    private final GenericRecordMetadata metadata;
+    private final String query;
+    private final ObjList<String> tableNames;
+    private final ObjList<String> bindVariableNames;
+    private final LongList tableVersions = new LongList();
+    private final StringSink keySink = new StringSink();
+    private final CachedResultRecordCursor cursor;
+    // result did not fit into cache entry, there is no point trying again
+    private boolean bypass;
+
+    public ResultCacheRecordCursorFactory(
+            CairoEngine engine,
+            RecordCursorFactory base,
+            CharSequence query,
+            ObjList<String> tableNames,
+            ObjList<String> bindVariableNames
+    ) {
+        this.engine = engine;
+        this.resultCache = engine.getResultCache();
+        this.base = base;
+        this.query = query.toString();
+        this.tableNames = new ObjList<>(tableNames);
+        this.bindVariableNames = new ObjList<>(bindVariableNames);
+        // cached symbols are plain strings, there are no symbol tables to expose
+        this.metadata = CachedResult.copyMetadata(base.getMetadata());
+        this.cursor = new CachedResultRecordCursor(resultCache);
+    }
+
+    /**
+     * @return true when results of the factory can be cached
+     */
+    public static boolean isCacheable(RecordCursorFactory factory) {
+        if (factory.supportPageFrameCursor()) {
+            return false;
+        }
+        final RecordMetadata metadata = factory.getMetadata();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (!CachedResult.isSupported(metadata.getColumnType(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(cursor);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        if (bypass || !resultCache.isEnabled() || !collectTableVersions(executionContext) || !buildKey(executionContext.getBindVariableService())) {
+            return base.getCursor(executionContext);
+        }
+
+        ResultCache.Entry entry = resultCache.acquire(keySink, tableVersions);
+        if (entry == null) {
+            final long sizeLimit = Math.min(
+                    engine.getConfiguration().getSqlResultCacheEntryMaxSize(),
+                    engine.getConfiguration().getSqlResultCacheSize()
+            );
+            final RecordCursor baseCursor = base.getCursor(executionContext);
+            final CachedResult result = new CachedResult(metadata);
+            try {
+                final Record record = baseCursor.getRecord();
+                while (baseCursor.hasNext()) {
+                    result.append(record);
+                    if (result.getSize() > sizeLimit) {
+                        bypass = true;
+                        Misc.free(result);
+                        baseCursor.toTop();
+                        return baseCursor;
+                    }
+                }
+            } catch (Throwable e) {
+                Misc.free(result);
+                Misc.free(baseCursor);
+                throw e;
+            }
+            Misc.free(baseCursor);
+            entry = resultCache.put(keySink.toString(), tableVersions, result);
+        }
+        cursor.of(entry);
+        return cursor;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        // base cursor is returned as is when the result is not cached
+        return base.recordCursorSupportsRandomAccess();
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        base.toSink(sink);
+    }
+
+    @Override
+    public boolean usesCompiledFilter() {
+        return base.usesCompiledFilter();
+    }
+
+    private static boolean appendValue(CharSink sink, Function function) {
+        final int type = function.getType();
+        sink.put(type).put(':');
+        switch (ColumnType.tagOf(type)) {
+            case ColumnType.BOOLEAN:
+                sink.put(function.getBool(null));
+                break;
+            case ColumnType.BYTE:
+                sink.put(function.getByte(null));
+                break;
+            case ColumnType.SHORT:
+                sink.put(function.getShort(null));
+                break;
+            case ColumnType.CHAR:
+                sink.put(function.getChar(null));
+                break;
+            case ColumnType.INT:
+                sink.put(function.getInt(null));
+                break;
+            case ColumnType.LONG:
+                sink.put(function.getLong(null));
+                break;
+            case ColumnType.DATE:
+                sink.put(function.getDate(null));
+                break;
+            case ColumnType.TIMESTAMP:
+                sink.put(function.getTimestamp(null));
+                break;
+            case ColumnType.FLOAT:
+                sink.put(Float.floatToRawIntBits(function.getFloat(null)));
+                break;
+            case ColumnType.DOUBLE:
+                sink.put(Double.doubleToRawLongBits(function.getDouble(null)));
+                break;
+            case ColumnType.STRING:
+                final CharSequence value = function.getStr(null);
+                if (value == null) {
+                    sink.put(TableUtils.NULL_LEN);
+                } else {
+                    sink.put(value.length()).put(':').put(value);
+                }
+                break;
+            case ColumnType.LONG256:
+                function.getLong256(null, sink);
+                break;
+            case ColumnType.GEOBYTE:
+                sink.put(function.getGeoByte(null));
+                break;
+            case ColumnType.GEOSHORT:
+                sink.put(function.getGeoShort(null));
+                break;
+            case ColumnType.GEOINT:
+                sink.put(function.getGeoInt(null));
+                break;
+            case ColumnType.GEOLONG:
+                sink.put(function.getGeoLong(null));
+                break;
+            default:
+                // binary values and undefined variables are not worth caching
+                return false;
+        }
+        sink.put(',');
+        return true;
+    }
+
+    private boolean buildKey(BindVariableService bindVariableService) {
+        keySink.clear();
+        keySink.put(query).put('\0');
+        if (bindVariableService == null) {
+            return bindVariableNames.size() == 0;
+        }
+        for (int i = 0, n = bindVariableService.getIndexedVariableCount(); i < n; i++) {
+            final Function function = bindVariableService.getFunction(i);
+            if (function == null || !appendValue(keySink, function)) {
+                return false;
+            }
+        }
+        for (int i = 0, n = bindVariableNames.size(); i < n; i++) {
+            final Function function = bindVariableService.getFunction(bindVariableNames.getQuick(i));
+            if (function == null || !appendValue(keySink.put(bindVariableNames.getQuick(i)).put('='), function)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean collectTableVersions(SqlExecutionContext executionContext) {
+        tableVersions.clear();
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            try (TableReader reader = engine.getReader(executionContext.getCairoSecurityContext(), tableNames.getQuick(i))) {
+                tableVersions.add(reader.getMetadata().getId());
+                tableVersions.add(reader.getTxn());
+            } catch (CairoException e) {
+                // let the query report the problem
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.Metrics;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GenericRecordMetadata;
+import io.questdb.cairo.TableColumnMetadata;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.CharSequenceHashSet;
+
+/**
+ * Lists per-table ingestion metrics accumulated since server start: table writer commits
+ * and ILP (TCP) rows, bytes and writer queue wait time. Lists every table with at least one
+ * metric, a table that ILP sent rows to is listed before its first commit. Metrics of dropped and
+ * renamed tables are removed. Commit and queue wait times are histograms in Prometheus, this
+ * function reports their sums. The list is empty when metrics are disabled via metrics.enabled=false.
+ */
+public class TableIngestionMetricsRecordCursorFactory implements RecordCursorFactory {
+
+    private static final RecordMetadata METADATA;
+    private static final int TABLE_COLUMN = 0;
+    private static final int COMMITS_COLUMN = 1;
+    private static final int COMMITTED_ROWS_COLUMN = 2;
+    private static final int COMMIT_MICROS_COLUMN = 3;
+    private static final int O3_COMMITS_COLUMN = 4;
+    private static final int O3_MERGED_ROWS_COLUMN = 5;
+    private static final int O3_COMMIT_MICROS_COLUMN = 6;
+    private static final int LINE_TCP_ROWS_COLUMN = 7;
+    private static final int LINE_TCP_BYTES_COLUMN = 8;
+    private static final int LINE_TCP_QUEUE_WAIT_MICROS_COLUMN = 9;
+
+    private final TableIngestionMetricsRecordCursor cursor = new TableIngestionMetricsRecordCursor();
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        return cursor.of(executionContext.getCairoEngine().getMetrics());
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return METADATA;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private static class TableIngestionMetricsRecordCursor implements RecordCursor {
+        private final TableIngestionMetricsRecord record = new TableIngestionMetricsRecord();
+        private final CharSequenceHashSet tableNames = new CharSequenceHashSet();
+        private Metrics metrics;
+        private CharSequence tableName;
+        private int index;
+        private int count;
+
+        @Override
+        public void close() {
+            metrics = null;
+            tableNames.clear();
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < count) {
+                tableName = tableNames.get(index++);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Record getRecordB() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void toTop() {
+            index = 0;
+            // snapshot table names, tables that get metrics after this point are not listed
+            tableNames.clear();
+            metrics.collectTableNames(tableNames);
+            count = tableNames.size();
+        }
+
+        @Override
+        public long size() {
+            return count;
+        }
+
+        private TableIngestionMetricsRecordCursor of(Metrics metrics) {
+            this.metrics = metrics;
+            toTop();
+            return this;
+        }
+
+        private class TableIngestionMetricsRecord implements Record {
+            @Override
+            public long getLong(int col) {
+                switch (col) {
+                    case COMMITS_COLUMN:
+                        return metrics.tableWriter().getTableCommitCounter().get(tableName);
+                    case COMMITTED_ROWS_COLUMN:
+                        return metrics.tableWriter().getTableCommittedRowCounter().get(tableName);
+                    case COMMIT_MICROS_COLUMN:
+                        return metrics.tableWriter().getTableCommitMicrosHistogram().getSum(tableName);
+                    case O3_COMMITS_COLUMN:
+                        return metrics.tableWriter().getTableO3CommitCounter().get(tableName);
+                    case O3_MERGED_ROWS_COLUMN:
+                        return metrics.tableWriter().getTableO3MergedRowCounter().get(tableName);
+                    case O3_COMMIT_MICROS_COLUMN:
+                        return metrics.tableWriter().getTableO3CommitMicrosHistogram().getSum(tableName);
+                    case LINE_TCP_ROWS_COLUMN:
+                        return metrics.lineTcp().getTableRowCounter().get(tableName);
+                    case LINE_TCP_BYTES_COLUMN:
+                        return metrics.lineTcp().getTableByteCounter().get(tableName);
+                    case LINE_TCP_QUEUE_WAIT_MICROS_COLUMN:
+                        return metrics.lineTcp().getTableQueueWaitMicrosHistogram().getSum(tableName);
+                    default:
+                        throw new UnsupportedOperationException();
+                }
+            }
+
+            @Override
+            public CharSequence getStr(int col) {
+                if (col == TABLE_COLUMN) {
+                    return tableName;
+                }
+                return null;
+            }
+
+            @Override
+            public CharSequence getStrB(int col) {
+                return getStr(col);
+            }
+
+            @Override
+            public int getStrLen(int col) {
+                return getStr(col).length();
+            }
+        }
+    }
+
+    static {
+        final GenericRecordMetadata metadata = new GenericRecordMetadata();
+        metadata.add(new TableColumnMetadata("table", 1, ColumnType.STRING));
+        metadata.add(new TableColumnMetadata("commits", 2, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("committed_rows", 3, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("commit_micros", 4, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("o3_commits", 5, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("o3_merged_rows", 6, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("o3_commit_micros", 7, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("line_tcp_rows", 8, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("line_tcp_bytes", 9, ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("line_tcp_queue_wait_micros", 10, ColumnType.LONG));
+        METADATA = metadata;
+    }
+}
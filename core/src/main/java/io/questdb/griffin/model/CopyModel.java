@@ -24,6 +24,8 @@
 
 package io.questdb.griffin.model;
 
+import io.questdb.cairo.PartitionBy;
+import io.questdb.cutlass.parquet.ParquetStreamWriter;
 import io.questdb.std.Mutable;
 import io.questdb.std.ObjectFactory;
 import io.questdb.std.Sinkable;
@@ -31,12 +33,59 @@ import io.questdb.std.str.CharSink;
 
 public class CopyModel implements ExecutionModel, Mutable, Sinkable {
     public static final ObjectFactory<CopyModel> FACTORY = CopyModel::new;
+    // format is detected from data
+    public static final int FORMAT_AUTO = 0;
+    // PostgreSQL text format, tab delimited by default
+    public static final int FORMAT_TEXT = 1;
+    public static final int FORMAT_CSV = 2;
+    // PostgreSQL binary format, only supported for COPY FROM STDIN and COPY TO STDOUT
+    public static final int FORMAT_BINARY = 3;
+    // Apache Parquet, only supported for COPY TO file
+    public static final int FORMAT_PARQUET = 4;
     private ExpressionNode tableName;
     private ExpressionNode fileName;
+    // query to copy out, set for COPY TO only
+    private QueryModel queryModel;
     private boolean header;
+    private int format = FORMAT_AUTO;
+    private byte delimiter = -1;
+    private int compression = ParquetStreamWriter.CODEC_SNAPPY;
+    private CharSequence timestampColumnName;
+    private int partitionBy = PartitionBy.NONE;
 
     @Override
     public void clear() {
+        tableName = null;
+        fileName = null;
+        queryModel = null;
+        header = false;
+        format = FORMAT_AUTO;
+        delimiter = -1;
+        compression = ParquetStreamWriter.CODEC_SNAPPY;
+        timestampColumnName = null;
+        partitionBy = PartitionBy.NONE;
+    }
+
+    /**
+     * @return one of ParquetStreamWriter.CODEC_* constants, set via COMPRESSION option
+     */
+    public int getCompression() {
+        return compression;
+    }
+
+    public void setCompression(int compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return column delimiter set via DELIMITER option or -1 when delimiter is implied by the format
+     */
+    public byte getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(byte delimiter) {
+        this.delimiter = delimiter;
     }
 
     public ExpressionNode getFileName() {
@@ -52,6 +101,33 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         return ExecutionModel.COPY;
     }
 
+    public int getFormat() {
+        return format;
+    }
+
+    public void setFormat(int format) {
+        this.format = format;
+    }
+
+    /**
+     * @return partitioning of the table created by COPY FROM, set via PARTITION BY option
+     */
+    public int getPartitionBy() {
+        return partitionBy;
+    }
+
+    public void setPartitionBy(int partitionBy) {
+        this.partitionBy = partitionBy;
+    }
+
+    public QueryModel getQueryModel() {
+        return queryModel;
+    }
+
+    public void setQueryModel(QueryModel queryModel) {
+        this.queryModel = queryModel;
+    }
+
     public ExpressionNode getTableName() {
         return tableName;
     }
@@ -60,6 +136,17 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         this.tableName = tableName;
     }
 
+    /**
+     * @return name of the designated timestamp column set via TIMESTAMP option or null
+     */
+    public CharSequence getTimestampColumnName() {
+        return timestampColumnName;
+    }
+
+    public void setTimestampColumnName(CharSequence timestampColumnName) {
+        this.timestampColumnName = timestampColumnName;
+    }
+
     public boolean isHeader() {
         return header;
     }
@@ -27,6 +27,7 @@ package io.questdb.griffin.model;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.PartitionBy;
 import io.questdb.cairo.TableStructure;
+import io.questdb.griffin.MatViewDefinition;
 import io.questdb.std.*;
 import io.questdb.std.str.CharSink;
 
@@ -39,6 +40,8 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
     private final LongList columnHashes = new LongList();
     private final ObjList<CharSequence> columnNames = new ObjList<>();
     private final LowerCaseCharSequenceIntHashMap columnNameIndexMap = new LowerCaseCharSequenceIntHashMap();
+    private final ObjList<ExpressionNode> dedupKeys = new ObjList<>();
+    private final MatViewDefinition matViewDefinition = new MatViewDefinition();
     private ExpressionNode name;
     private QueryModel queryModel;
     private ExpressionNode timestamp;
@@ -46,6 +49,7 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
     private int maxUncommittedRows;
     private long commitLag;
     private boolean ignoreIfExists = false;
+    private boolean matView = false;
 
     private CreateTableModel() {
     }
@@ -63,6 +67,10 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         return false;
     }
 
+    public void addDedupKey(ExpressionNode column) {
+        dedupKeys.add(column);
+    }
+
     public boolean addColumnCastModel(ColumnCastModel model) {
         return columnCastModels.put(model.getName().token, model);
     }
@@ -95,7 +103,10 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         columnNames.clear();
         columnHashes.clear();
         columnNameIndexMap.clear();
+        dedupKeys.clear();
         ignoreIfExists = false;
+        matView = false;
+        matViewDefinition.clear();
     }
 
     public CharSequenceObjHashMap<ColumnCastModel> getColumnCastModels() {
@@ -133,6 +144,28 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         return false;
     }
 
+    @Override
+    public boolean isDedupKey(int columnIndex) {
+        return isDedupKey(getColumnName(columnIndex));
+    }
+
+    public boolean isDedupKey(CharSequence columnName) {
+        for (int i = 0, n = dedupKeys.size(); i < n; i++) {
+            if (Chars.equalsIgnoreCase(dedupKeys.getQuick(i).token, columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ObjList<ExpressionNode> getDedupKeys() {
+        return dedupKeys;
+    }
+
+    public MatViewDefinition getMatViewDefinition() {
+        return matViewDefinition;
+    }
+
     @Override
     public int getPartitionBy() {
         return partitionBy == null ? PartitionBy.NONE : PartitionBy.fromString(partitionBy.token);
@@ -205,6 +238,14 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         this.ignoreIfExists = flag;
     }
 
+    public boolean isMatView() {
+        return matView;
+    }
+
+    public void setMatView(boolean matView) {
+        this.matView = matView;
+    }
+
     public void setIndexFlags(boolean indexFlag, int indexValueBlockSize) {
         setIndexFlags0(columnBits.size() - 1, indexFlag, indexValueBlockSize);
     }
@@ -223,7 +264,7 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
 
     @Override
     public void toSink(CharSink sink) {
-        sink.put("create table ");
+        sink.put(matView ? "create materialized view " : "create table ");
         sink.put(getName().token);
         if (getQueryModel() != null) {
             sink.put(" as (");
@@ -303,6 +344,17 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         if (partitionBy != null) {
             sink.put(" partition by ").put(partitionBy.token);
         }
+
+        if (dedupKeys.size() > 0) {
+            sink.put(" dedup upsert keys(");
+            for (int i = 0, n = dedupKeys.size(); i < n; i++) {
+                if (i > 0) {
+                    sink.put(", ");
+                }
+                sink.put(dedupKeys.getQuick(i).token);
+            }
+            sink.put(')');
+        }
     }
 
     private int getHighAt(int index) {
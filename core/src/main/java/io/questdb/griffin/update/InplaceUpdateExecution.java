@@ -24,47 +24,62 @@
 
 package io.questdb.griffin.update;
 
+import io.questdb.MessageBus;
 import io.questdb.cairo.*;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.*;
 import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
 import io.questdb.cairo.vm.api.MemoryCMARW;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
+import io.questdb.mp.MCSequence;
+import io.questdb.mp.MPSequence;
+import io.questdb.mp.RingQueue;
 import io.questdb.std.*;
 import io.questdb.std.str.Path;
+import io.questdb.tasks.ColumnUpdateTask;
 
 import java.io.Closeable;
 
 import static io.questdb.cairo.TableUtils.dFile;
 
+/**
+ * Writes UPDATE values in place. Rows matched by the update cursor are staged in batches,
+ * one partition per batch. Batches are written to column files by {@link ColumnUpdateJob}
+ * on the shared worker pool while the cursor carries on with the following rows.
+ * The caller helps writing batches, so that UPDATE does not depend on free workers.
+ * <p>
+ * Values are written in place without undo. When the cursor or a batch fails, batches that
+ * were already written keep the new values, UPDATE reports the error and the table is not
+ * committed. Rows of the failed batch and of the following ones keep old values.
+ */
 public class InplaceUpdateExecution implements Closeable {
     private static final Log LOG = LogFactory.getLog(InplaceUpdateExecution.class);
-    private final FilesFacade ff;
-    private final int rootLen;
+    // bounds memory of staged values when update touches large partitions
+    private static final int MAX_BATCH_ROW_COUNT = 1024 * 1024;
+    private final CairoConfiguration configuration;
+    private final RingQueue<ColumnUpdateTask> queue;
+    private final MPSequence pubSeq;
+    private final MCSequence subSeq;
     private final IntList updateToColumnMap = new IntList();
-    private final ObjList<MemoryCMARW> updateMemory = new ObjList<>();
-    private final long dataAppendPageSize;
-    private final long fileOpenOpts;
-    private Path path;
-
-    public InplaceUpdateExecution(CairoConfiguration configuration) {
-        ff = configuration.getFilesFacade();
-        path = new Path().of(configuration.getRoot());
-        rootLen = path.length();
-        dataAppendPageSize = configuration.getDataAppendPageSize();
-        this.fileOpenOpts = configuration.getWriterFileOpenOpts();
+    private final ObjList<UpdateBatch> batches = new ObjList<>();
+
+    public InplaceUpdateExecution(CairoConfiguration configuration, MessageBus messageBus) {
+        this.configuration = configuration;
+        this.queue = messageBus.getColumnUpdateQueue();
+        this.pubSeq = messageBus.getColumnUpdatePubSeq();
+        this.subSeq = messageBus.getColumnUpdateSubSeq();
     }
 
     @Override
     public void close() {
-        path = Misc.free(path);
+        Misc.freeObjList(batches);
+        batches.clear();
     }
 
-    // This is very hacky way to update in place for testing only
-    // TODO: rewrite to production grade
     public void executeUpdate(TableWriter tableWriter, UpdateStatement updateStatement, SqlExecutionContext executionContext) throws SqlException {
 
         if (tableWriter.inTransaction()) {
@@ -88,154 +103,344 @@ public class InplaceUpdateExecution implements Closeable {
             CharSequence columnName = updateToMetadata.getColumnName(i);
             int tableColumnIndex = writerMetadata.getColumnIndex(columnName);
             assert tableColumnIndex >= 0;
+            int columnType = writerMetadata.getColumnType(tableColumnIndex);
+            if (!isSupported(columnType)) {
+                throw SqlException.$(0, "Column type ")
+                        .put(ColumnType.nameOf(columnType))
+                        .put(" not supported for updates");
+            }
             updateToColumnMap.add(tableColumnIndex);
         }
 
-        // Create update memory list of all columns to be updated
-        initUpdateMemory(updateToColumnCount);
+        // Keep one batch per worker in flight and one more for the cursor to fill.
+        // Batches hold native memory of staged values, they are freed once the update is done
+        final int batchCount = Math.max(executionContext.getWorkerCount(), 1) + 1;
+        for (int i = 0; i < batchCount; i++) {
+            batches.add(new UpdateBatch(configuration));
+        }
 
         // Start execution frame by frame
         RecordCursorFactory updateStatementDataCursorFactory = updateStatement.getUpdateToDataCursorFactory();
 
         // Track how many records updated
         long rowsUpdated = 0;
+        int batchIndex = 0;
+        UpdateBatch batch = null;
+
+        try {
+            // Start row by row updates
+            try (RecordCursor recordCursor = updateStatementDataCursorFactory.getCursor(executionContext)) {
 
-        // Start row by row updates
-        try (RecordCursor recordCursor = updateStatementDataCursorFactory.getCursor(executionContext)) {
+                Record masterRecord = recordCursor.getRecord();
 
-            Record masterRecord = recordCursor.getRecord();
-            long currentPartitionIndex = -1L;
+                long lastRowId = -1;
+                while (recordCursor.hasNext()) {
+                    long rowId = masterRecord.getUpdateRowId();
 
-            long lastRowId = -1;
-            while (recordCursor.hasNext()) {
-                long rowId = masterRecord.getUpdateRowId();
+                    // Some joins expand results set and returns same row multiple times
+                    if (rowId == lastRowId) {
+                        continue;
+                    }
+                    lastRowId = rowId;
 
-                // Some joins expand results set and returns same row multiple times
-                if (rowId == lastRowId) {
-                    continue;
+                    int partitionIndex = Rows.toPartitionIndex(rowId);
+                    if (batch == null || batch.partitionIndex != partitionIndex || batch.size() == MAX_BATCH_ROW_COUNT) {
+                        if (batch != null) {
+                            dispatch(batch);
+                        }
+                        batch = acquireBatch(batchIndex++ % batchCount);
+                        batch.of(tableWriter, partitionIndex, updateToColumnMap);
+                    }
+                    batch.add(Rows.toLocalRowID(rowId), masterRecord);
+                    rowsUpdated++;
                 }
-                lastRowId = rowId;
-
-                int partitionIndex = Rows.toPartitionIndex(rowId);
-                long partitionRowId = Rows.toLocalRowID(rowId);
-                if (partitionIndex != currentPartitionIndex) {
-                    // Map columns to be updated for RW
-                    openPartitionColumnsForUpdate(tableWriter, updateMemory, partitionIndex, updateToColumnMap);
-                    currentPartitionIndex = partitionIndex;
+
+                if (batch != null) {
+                    dispatch(batch);
+                }
+            } finally {
+                // workers may be writing staged values, wait for them also when the cursor failed
+                for (int i = 0; i < batchCount; i++) {
+                    awaitBatch(batches.getQuick(i));
                 }
+            }
 
-                // Update values in-place
-                updateColumnValues(
-                        writerMetadata,
-                        updateToColumnMap,
-                        updateToColumnCount,
-                        updateMemory,
-                        partitionRowId,
-                        masterRecord);
-                rowsUpdated++;
+            for (int i = 0; i < batchCount; i++) {
+                checkError(batches.getQuick(i));
             }
         } finally {
-            for (int i = 0; i < updateMemory.size(); i++) {
-                updateMemory.getQuick(i).close(false);
-            }
+            Misc.freeObjList(batches);
+            batches.clear();
         }
+
         if (rowsUpdated > 0) {
             tableWriter.commit();
         }
     }
 
-    private void updateColumnValues(
-            RecordMetadata metadata,
-            IntList updateToColumnMap,
-            int columnCount,
-            ObjList<MemoryCMARW> updateMemory,
-            long rowId,
-            Record record
-    ) throws SqlException {
-        for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
-            int columnType = metadata.getColumnType(updateToColumnMap.get(columnIndex));
-            MemoryCMARW primaryColMem = updateMemory.get(columnIndex);
-
-            switch (ColumnType.tagOf(columnType)) {
-                case ColumnType.INT:
-                    primaryColMem.putInt(rowId << 2, record.getInt(columnIndex));
-                    break;
-                case ColumnType.FLOAT:
-                    primaryColMem.putFloat(rowId << 2, record.getFloat(columnIndex));
-                    break;
-                case ColumnType.LONG:
-                    primaryColMem.putLong(rowId << 3, record.getLong(columnIndex));
-                    break;
-                case ColumnType.TIMESTAMP:
-                    primaryColMem.putLong(rowId << 3, record.getTimestamp(columnIndex));
-                    break;
-                case ColumnType.DATE:
-                    primaryColMem.putLong(rowId << 3, record.getDate(columnIndex));
-                    break;
-                case ColumnType.DOUBLE:
-                    primaryColMem.putDouble(rowId << 3, record.getDouble(columnIndex));
-                    break;
-                case ColumnType.SHORT:
-                    primaryColMem.putShort(rowId << 1, record.getShort(columnIndex));
-                    break;
-                case ColumnType.CHAR:
-                    primaryColMem.putChar(rowId << 1, record.getChar(columnIndex));
-                    break;
-                case ColumnType.BYTE:
-                case ColumnType.BOOLEAN:
-                    primaryColMem.putByte(rowId, record.getByte(columnIndex));
-                    break;
-                case ColumnType.GEOBYTE:
-                    primaryColMem.putByte(rowId, record.getGeoByte(columnIndex));
-                    break;
-                case ColumnType.GEOSHORT:
-                    primaryColMem.putShort(rowId << 1, record.getGeoShort(columnIndex));
-                    break;
-                case ColumnType.GEOINT:
-                    primaryColMem.putInt(rowId << 2, record.getGeoInt(columnIndex));
-                    break;
-                case ColumnType.GEOLONG:
-                    primaryColMem.putLong(rowId << 3, record.getGeoLong(columnIndex));
-                    break;
-                default:
-                    throw SqlException.$(0, "Column type ")
-                            .put(ColumnType.nameOf(columnType))
-                            .put(" not supported for updates");
+    private static void checkError(UpdateBatch batch) {
+        final Throwable e = batch.error;
+        if (e != null) {
+            batch.error = null;
+            if (e instanceof CairoException) {
+                throw (CairoException) e;
             }
+            throw CairoException.instance(0).put("update failed [error=").put(e.getMessage()).put(']');
         }
     }
 
-    private void initUpdateMemory(int columnCount) {
-        for(int i = updateMemory.size(); i < columnCount; i++) {
-            updateMemory.add(Vm.getCMARWInstance());
+    private static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.INT:
+            case ColumnType.FLOAT:
+            case ColumnType.LONG:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.DATE:
+            case ColumnType.DOUBLE:
+            case ColumnType.SHORT:
+            case ColumnType.CHAR:
+            case ColumnType.BYTE:
+            case ColumnType.BOOLEAN:
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+            case ColumnType.GEOLONG:
+                return true;
+            default:
+                return false;
         }
     }
 
-    private void openPartitionColumnsForUpdate(TableWriter tableWriter, ObjList<MemoryCMARW> updateMemory, int partitionIndex, IntList columnMap) {
-        long partitionTimestamp = tableWriter.getPartitionTimestamp(partitionIndex);
-        RecordMetadata metadata = tableWriter.getMetadata();
-        try {
-            path.concat(tableWriter.getTableName());
+    private UpdateBatch acquireBatch(int index) {
+        final UpdateBatch batch = batches.getQuick(index);
+        awaitBatch(batch);
+        checkError(batch);
+        return batch;
+    }
+
+    private void awaitBatch(UpdateBatch batch) {
+        // help workers, this is what makes update work when worker pool is busy or absent
+        while (batch.inFlight) {
+            final long seq = subSeq.next();
+            if (seq > -1) {
+                queue.get(seq).run();
+                subSeq.done(seq);
+            } else {
+                Os.pause();
+            }
+        }
+    }
+
+    private void dispatch(UpdateBatch batch) {
+        final long seq = pubSeq.next();
+        if (seq < 0) {
+            // queue is full, write the batch ourselves
+            batch.run();
+        } else {
+            batch.inFlight = true;
+            queue.get(seq).of(batch);
+            pubSeq.done(seq);
+        }
+    }
+
+    /**
+     * Values of updated columns staged for rows of a single partition. The cursor thread
+     * fills the batch, a worker then copies staged values into the partition's column files.
+     */
+    public static class UpdateBatch implements Closeable {
+        private final FilesFacade ff;
+        private final CharSequence root;
+        private final long dataAppendPageSize;
+        private final long fileOpenOpts;
+        private final int commitMode;
+        private final Path path = new Path();
+        private final DirectLongList rowIds = new DirectLongList(1024, MemoryTag.NATIVE_DEFAULT);
+        private final ObjList<MemoryCARW> values = new ObjList<>();
+        private final ObjList<CharSequence> columnNames = new ObjList<>();
+        private final IntList columnTypes = new IntList();
+        private final LongList columnNameTxns = new LongList();
+        private final LongList columnTops = new LongList();
+        private final MemoryCMARW columnMem = Vm.getCMARWInstance();
+        private volatile boolean inFlight;
+        private Throwable error;
+        private int partitionIndex;
+
+        private UpdateBatch(CairoConfiguration configuration) {
+            this.ff = configuration.getFilesFacade();
+            this.root = configuration.getRoot();
+            this.dataAppendPageSize = configuration.getDataAppendPageSize();
+            this.fileOpenOpts = configuration.getWriterFileOpenOpts();
+            this.commitMode = configuration.getCommitMode();
+        }
+
+        @Override
+        public void close() {
+            Misc.free(path);
+            Misc.free(rowIds);
+            Misc.freeObjList(values);
+            Misc.free(columnMem);
+        }
+
+        public void run() {
+            try {
+                write();
+            } catch (Throwable e) {
+                LOG.error().$("could not update partition [path=").$(path).$(", ex=").$(e).$(']').$();
+                error = e;
+            } finally {
+                inFlight = false;
+            }
+        }
+
+        private void add(long localRowId, Record record) {
+            rowIds.add(localRowId);
+            for (int i = 0, n = columnTypes.size(); i < n; i++) {
+                if (localRowId < columnTops.getQuick(i)) {
+                    throw CairoException.instance(0)
+                            .put("cannot update rows added before the column [column=").put(columnNames.getQuick(i))
+                            .put(", partition=").put(path)
+                            .put(']');
+                }
+
+                final MemoryCARW mem = values.getQuick(i);
+                switch (ColumnType.tagOf(columnTypes.getQuick(i))) {
+                    case ColumnType.INT:
+                        mem.putInt(record.getInt(i));
+                        break;
+                    case ColumnType.FLOAT:
+                        mem.putFloat(record.getFloat(i));
+                        break;
+                    case ColumnType.LONG:
+                        mem.putLong(record.getLong(i));
+                        break;
+                    case ColumnType.TIMESTAMP:
+                        mem.putLong(record.getTimestamp(i));
+                        break;
+                    case ColumnType.DATE:
+                        mem.putLong(record.getDate(i));
+                        break;
+                    case ColumnType.DOUBLE:
+                        mem.putDouble(record.getDouble(i));
+                        break;
+                    case ColumnType.SHORT:
+                        mem.putShort(record.getShort(i));
+                        break;
+                    case ColumnType.CHAR:
+                        mem.putChar(record.getChar(i));
+                        break;
+                    case ColumnType.BYTE:
+                    case ColumnType.BOOLEAN:
+                        mem.putByte(record.getByte(i));
+                        break;
+                    case ColumnType.GEOBYTE:
+                        mem.putByte(record.getGeoByte(i));
+                        break;
+                    case ColumnType.GEOSHORT:
+                        mem.putShort(record.getGeoShort(i));
+                        break;
+                    case ColumnType.GEOINT:
+                        mem.putInt(record.getGeoInt(i));
+                        break;
+                    default:
+                        mem.putLong(record.getGeoLong(i));
+                        break;
+                }
+            }
+        }
+
+        private void of(TableWriter tableWriter, int partitionIndex, IntList columnMap) {
+            final long partitionTimestamp = tableWriter.getPartitionTimestamp(partitionIndex);
+            final RecordMetadata metadata = tableWriter.getMetadata();
+            this.partitionIndex = partitionIndex;
+            this.error = null;
+            rowIds.clear();
+            columnNames.clear();
+            columnTypes.clear();
+            columnNameTxns.clear();
+            columnTops.clear();
+
+            path.of(root).concat(tableWriter.getTableName());
             TableUtils.setPathForPartition(path, tableWriter.getPartitionBy(), partitionTimestamp, false);
-            int pathTrimToLen = path.length();
+            TableUtils.txnPartitionConditionally(path, tableWriter.getPartitionNameTxn(partitionIndex));
 
             for (int i = 0, n = columnMap.size(); i < n; i++) {
-                int columnIndex = columnMap.get(i);
-                CharSequence name = metadata.getColumnName(columnMap.get(i));
-                MemoryCMARW colMem = updateMemory.get(i);
-                colMem.close(false);
-                long columnNameTxn = tableWriter.getColumnNameTxn(partitionTimestamp, columnIndex);
-                colMem.of(
-                        ff,
-                        dFile(path.trimTo(pathTrimToLen), name, columnNameTxn),
-                        dataAppendPageSize,
-                        -1,
-                        MemoryTag.MMAP_TABLE_WRITER,
-                        fileOpenOpts
-                );
+                final int columnIndex = columnMap.getQuick(i);
+                columnNames.add(metadata.getColumnName(columnIndex));
+                columnTypes.add(metadata.getColumnType(columnIndex));
+                columnNameTxns.add(tableWriter.getColumnNameTxn(partitionTimestamp, columnIndex));
+                // column without file in this partition has all rows in its top
+                columnTops.add(tableWriter.getColumnTop(partitionTimestamp, columnIndex, Long.MAX_VALUE));
+                if (i == values.size()) {
+                    values.add(Vm.getCARWInstance(Numbers.SIZE_1MB, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT));
+                }
+                values.getQuick(i).jumpTo(0);
+            }
+        }
+
+        private long size() {
+            return rowIds.size();
+        }
+
+        private void write() {
+            final int plen = path.length();
+            final long rowCount = rowIds.size();
+            final long rowIdsAddr = rowIds.getAddress();
+            try {
+                for (int i = 0, n = columnNames.size(); i < n; i++) {
+                    columnMem.of(
+                            ff,
+                            dFile(path.trimTo(plen), columnNames.getQuick(i), columnNameTxns.getQuick(i)),
+                            dataAppendPageSize,
+                            -1,
+                            MemoryTag.MMAP_TABLE_WRITER,
+                            fileOpenOpts
+                    );
+                    try {
+                        final int shl = ColumnType.pow2SizeOf(columnTypes.getQuick(i));
+                        final long top = columnTops.getQuick(i);
+                        final long srcAddr = values.getQuick(i).getPageAddress(0);
+                        final long dstAddr = columnMem.getPageAddress(0);
+                        assert ((rowIds.get(rowCount - 1) - top + 1) << shl) <= columnMem.size();
+                        copyValues(rowIdsAddr, rowCount, srcAddr, dstAddr, top, shl);
+                        if (commitMode != CommitMode.NOSYNC) {
+                            columnMem.sync(commitMode == CommitMode.ASYNC);
+                        }
+                    } finally {
+                        columnMem.close(false);
+                    }
+                }
+            } finally {
+                path.trimTo(plen);
+            }
+        }
+
+        private static void copyValues(long rowIdsAddr, long rowCount, long srcAddr, long dstAddr, long top, int shl) {
+            switch (shl) {
+                case 0:
+                    for (long r = 0; r < rowCount; r++) {
+                        final long rowId = Unsafe.getUnsafe().getLong(rowIdsAddr + (r << 3)) - top;
+                        Unsafe.getUnsafe().putByte(dstAddr + rowId, Unsafe.getUnsafe().getByte(srcAddr + r));
+                    }
+                    break;
+                case 1:
+                    for (long r = 0; r < rowCount; r++) {
+                        final long rowId = Unsafe.getUnsafe().getLong(rowIdsAddr + (r << 3)) - top;
+                        Unsafe.getUnsafe().putShort(dstAddr + (rowId << 1), Unsafe.getUnsafe().getShort(srcAddr + (r << 1)));
+                    }
+                    break;
+                case 2:
+                    for (long r = 0; r < rowCount; r++) {
+                        final long rowId = Unsafe.getUnsafe().getLong(rowIdsAddr + (r << 3)) - top;
+                        Unsafe.getUnsafe().putInt(dstAddr + (rowId << 2), Unsafe.getUnsafe().getInt(srcAddr + (r << 2)));
+                    }
+                    break;
+                default:
+                    for (long r = 0; r < rowCount; r++) {
+                        final long rowId = Unsafe.getUnsafe().getLong(rowIdsAddr + (r << 3)) - top;
+                        Unsafe.getUnsafe().putLong(dstAddr + (rowId << 3), Unsafe.getUnsafe().getLong(srcAddr + (r << 3)));
+                    }
+                    break;
             }
-        } finally {
-            path.trimTo(rootLen);
         }
     }
 }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.metrics;
+
+import io.questdb.std.CharSequenceHashSet;
+import io.questdb.std.Chars;
+import io.questdb.std.ConcurrentHashMap;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.CharSink;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class CounterWithDynamicLabelImpl implements CounterWithDynamicLabel {
+    private final CharSequence name;
+    private final CharSequence labelName0;
+    private final ConcurrentHashMap<LongAdder> counters = new ConcurrentHashMap<>();
+    // label values in order of registration, guarded by "this"
+    private final ObjList<CharSequence> labelValues0 = new ObjList<>();
+
+    CounterWithDynamicLabelImpl(CharSequence name, CharSequence labelName0) {
+        this.name = name;
+        this.labelName0 = labelName0;
+    }
+
+    @Override
+    public void add(CharSequence labelValue0, long value) {
+        getCounter(labelValue0).add(value);
+    }
+
+    @Override
+    public synchronized void collectLabelValues(CharSequenceHashSet sink) {
+        for (int i = 0, n = labelValues0.size(); i < n; i++) {
+            sink.add(labelValues0.getQuick(i));
+        }
+    }
+
+    @Override
+    public long get(CharSequence labelValue0) {
+        final LongAdder counter = counters.get(labelValue0);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    @Override
+    public synchronized int getLabelValueCount() {
+        return labelValues0.size();
+    }
+
+    @Override
+    public synchronized CharSequence getLabelValue(int index) {
+        return labelValues0.getQuick(index);
+    }
+
+    @Override
+    public void inc(CharSequence labelValue0) {
+        getCounter(labelValue0).increment();
+    }
+
+    @Override
+    public synchronized void remove(CharSequence labelValue0) {
+        if (counters.remove(labelValue0) != null) {
+            for (int i = 0, n = labelValues0.size(); i < n; i++) {
+                if (Chars.equals(labelValues0.getQuick(i), labelValue0)) {
+                    labelValues0.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void scrapeIntoPrometheus(CharSink sink) {
+        PrometheusFormatUtils.appendCounterType(name, sink);
+        for (int i = 0, n = labelValues0.size(); i < n; i++) {
+            final CharSequence labelValue0 = labelValues0.getQuick(i);
+            PrometheusFormatUtils.appendCounterNamePrefix(name, sink);
+            sink.put('{');
+            PrometheusFormatUtils.appendLabel(sink, labelName0, labelValue0);
+            sink.put('}');
+            PrometheusFormatUtils.appendSampleLineSuffix(sink, counters.get(labelValue0).sum());
+        }
+        PrometheusFormatUtils.appendNewLine(sink);
+    }
+
+    private LongAdder getCounter(CharSequence labelValue0) {
+        final LongAdder counter = counters.get(labelValue0);
+        if (counter != null) {
+            return counter;
+        }
+        return newCounter(labelValue0);
+    }
+
+    private synchronized LongAdder newCounter(CharSequence labelValue0) {
+        LongAdder counter = counters.get(labelValue0);
+        if (counter == null) {
+            final String label = Chars.toString(labelValue0);
+            counter = new LongAdder();
+            counters.put(label, counter);
+            labelValues0.add(label);
+        }
+        return counter;
+    }
+}
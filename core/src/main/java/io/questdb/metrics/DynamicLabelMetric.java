@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.metrics;
+
+import io.questdb.std.CharSequenceHashSet;
+
+/**
+ * Metric with a single label whose values are registered on first use, e.g. table name.
+ */
+public interface DynamicLabelMetric extends Scrapable {
+
+    /**
+     * Adds label values registered so far to the sink, values already in the sink are skipped.
+     *
+     * @param sink set of label values
+     */
+    void collectLabelValues(CharSequenceHashSet sink);
+
+    int getLabelValueCount();
+
+    CharSequence getLabelValue(int index);
+
+    /**
+     * Drops the label value and its samples, e.g. when table is dropped. Recording
+     * the value again registers it anew, starting from zero.
+     *
+     * @param labelValue0 label value to drop
+     */
+    void remove(CharSequence labelValue0);
+}
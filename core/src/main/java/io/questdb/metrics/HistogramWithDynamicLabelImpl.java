@@ -0,0 +1,183 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.metrics;
+
+import io.questdb.std.CharSequenceHashSet;
+import io.questdb.std.Chars;
+import io.questdb.std.ConcurrentHashMap;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.CharSink;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class HistogramWithDynamicLabelImpl implements HistogramWithDynamicLabel {
+    private final CharSequence name;
+    private final CharSequence labelName0;
+    // inclusive upper bounds of buckets, ascending, the +Inf bucket is implicit
+    private final long[] bucketBounds;
+    private final ConcurrentHashMap<Buckets> histograms = new ConcurrentHashMap<>();
+    // label values in order of registration, guarded by "this"
+    private final ObjList<CharSequence> labelValues0 = new ObjList<>();
+
+    HistogramWithDynamicLabelImpl(CharSequence name, CharSequence labelName0, long[] bucketBounds) {
+        this.name = name;
+        this.labelName0 = labelName0;
+        this.bucketBounds = bucketBounds;
+    }
+
+    @Override
+    public synchronized void collectLabelValues(CharSequenceHashSet sink) {
+        for (int i = 0, n = labelValues0.size(); i < n; i++) {
+            sink.add(labelValues0.getQuick(i));
+        }
+    }
+
+    @Override
+    public long getCount(CharSequence labelValue0) {
+        final Buckets buckets = histograms.get(labelValue0);
+        return buckets != null ? buckets.count() : 0;
+    }
+
+    @Override
+    public synchronized int getLabelValueCount() {
+        return labelValues0.size();
+    }
+
+    @Override
+    public synchronized CharSequence getLabelValue(int index) {
+        return labelValues0.getQuick(index);
+    }
+
+    @Override
+    public long getSum(CharSequence labelValue0) {
+        final Buckets buckets = histograms.get(labelValue0);
+        return buckets != null ? buckets.sum.sum() : 0;
+    }
+
+    @Override
+    public void record(CharSequence labelValue0, long value) {
+        Buckets buckets = histograms.get(labelValue0);
+        if (buckets == null) {
+            buckets = newBuckets(labelValue0);
+        }
+        buckets.record(value);
+    }
+
+    @Override
+    public synchronized void remove(CharSequence labelValue0) {
+        if (histograms.remove(labelValue0) != null) {
+            for (int i = 0, n = labelValues0.size(); i < n; i++) {
+                if (Chars.equals(labelValues0.getQuick(i), labelValue0)) {
+                    labelValues0.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void scrapeIntoPrometheus(CharSink sink) {
+        PrometheusFormatUtils.appendHistogramType(name, sink);
+        for (int i = 0, n = labelValues0.size(); i < n; i++) {
+            final CharSequence labelValue0 = labelValues0.getQuick(i);
+            final Buckets buckets = histograms.get(labelValue0);
+            long cumulativeCount = 0;
+            for (int j = 0, m = bucketBounds.length; j < m; j++) {
+                cumulativeCount += buckets.counts[j].sum();
+                appendBucket(sink, labelValue0, bucketBounds[j], cumulativeCount);
+            }
+            cumulativeCount += buckets.counts[bucketBounds.length].sum();
+            appendBucket(sink, labelValue0, Long.MAX_VALUE, cumulativeCount);
+            appendSample(sink, "_sum", labelValue0, buckets.sum.sum());
+            appendSample(sink, "_count", labelValue0, cumulativeCount);
+        }
+        PrometheusFormatUtils.appendNewLine(sink);
+    }
+
+    private void appendBucket(CharSink sink, CharSequence labelValue0, long bound, long count) {
+        PrometheusFormatUtils.appendMetricName(name, "_bucket", sink);
+        sink.put('{');
+        PrometheusFormatUtils.appendLabel(sink, labelName0, labelValue0);
+        sink.put(",le=\"");
+        if (bound == Long.MAX_VALUE) {
+            sink.put("+Inf");
+        } else {
+            sink.put(bound);
+        }
+        sink.put("\"}");
+        PrometheusFormatUtils.appendSampleLineSuffix(sink, count);
+    }
+
+    private void appendSample(CharSink sink, CharSequence suffix, CharSequence labelValue0, long value) {
+        PrometheusFormatUtils.appendMetricName(name, suffix, sink);
+        sink.put('{');
+        PrometheusFormatUtils.appendLabel(sink, labelName0, labelValue0);
+        sink.put('}');
+        PrometheusFormatUtils.appendSampleLineSuffix(sink, value);
+    }
+
+    private synchronized Buckets newBuckets(CharSequence labelValue0) {
+        Buckets buckets = histograms.get(labelValue0);
+        if (buckets == null) {
+            final String label = Chars.toString(labelValue0);
+            buckets = new Buckets(bucketBounds);
+            histograms.put(label, buckets);
+            labelValues0.add(label);
+        }
+        return buckets;
+    }
+
+    private static class Buckets {
+        private final long[] bounds;
+        // one per bucket, not cumulative, the last one is the +Inf bucket
+        private final LongAdder[] counts;
+        private final LongAdder sum = new LongAdder();
+
+        private Buckets(long[] bounds) {
+            this.bounds = bounds;
+            this.counts = new LongAdder[bounds.length + 1];
+            for (int i = 0, n = counts.length; i < n; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        private long count() {
+            long count = 0;
+            for (int i = 0, n = counts.length; i < n; i++) {
+                count += counts[i].sum();
+            }
+            return count;
+        }
+
+        private void record(long value) {
+            int index = 0;
+            while (index < bounds.length && value > bounds[index]) {
+                index++;
+            }
+            counts[index].increment();
+            sum.add(value);
+        }
+    }
+}
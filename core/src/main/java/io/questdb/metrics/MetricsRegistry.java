@@ -30,6 +30,8 @@ public interface MetricsRegistry extends Scrapable {
 
     CounterWithOneLabel newCounter(CharSequence name, CharSequence labelName0, CharSequence[] labelValues0);
 
+    CounterWithDynamicLabel newCounter(CharSequence name, CharSequence labelName0);
+
     CounterWithTwoLabels newCounter(CharSequence name,
                                     CharSequence labelName0, CharSequence[] labelValues0,
                                     CharSequence labelName1, CharSequence[] labelValues1);
@@ -38,5 +40,7 @@ public interface MetricsRegistry extends Scrapable {
 
     Gauge newGauge(int memoryTag);
 
+    HistogramWithDynamicLabel newHistogram(CharSequence name, CharSequence labelName0, long[] bucketBounds);
+
     Gauge newVirtualGauge(CharSequence name, VirtualGauge.StatProvider provider);
 }
@@ -44,6 +44,13 @@ public class MetricsRegistryImpl implements MetricsRegistry {
         return counter;
     }
 
+    @Override
+    public CounterWithDynamicLabel newCounter(CharSequence name, CharSequence labelName0) {
+        CounterWithDynamicLabel counter = new CounterWithDynamicLabelImpl(name, labelName0);
+        metrics.add(counter);
+        return counter;
+    }
+
     @Override
     public CounterWithTwoLabels newCounter(CharSequence name,
                                            CharSequence labelName0, CharSequence[] labelValues0,
@@ -67,6 +74,13 @@ public class MetricsRegistryImpl implements MetricsRegistry {
         return gauge;
     }
 
+    @Override
+    public HistogramWithDynamicLabel newHistogram(CharSequence name, CharSequence labelName0, long[] bucketBounds) {
+        HistogramWithDynamicLabel histogram = new HistogramWithDynamicLabelImpl(name, labelName0, bucketBounds);
+        metrics.add(histogram);
+        return histogram;
+    }
+
     @Override
     public Gauge newVirtualGauge(CharSequence _name, VirtualGauge.StatProvider provider) {
         VirtualGauge gauge = new VirtualGauge(_name, provider);
@@ -24,9 +24,10 @@
 
 package io.questdb.metrics;
 
+import io.questdb.std.CharSequenceHashSet;
 import io.questdb.std.str.CharSink;
 
-class NullCounter implements Counter, CounterWithOneLabel, CounterWithTwoLabels {
+class NullCounter implements Counter, CounterWithOneLabel, CounterWithTwoLabels, CounterWithDynamicLabel {
     static final NullCounter INSTANCE = new NullCounter();
 
     private NullCounter() {
@@ -49,10 +50,41 @@ class NullCounter implements Counter, CounterWithOneLabel, CounterWithTwoLabels
     public void inc(short label0) {
     }
 
+    @Override
+    public void add(CharSequence labelValue0, long value) {
+    }
+
+    @Override
+    public void collectLabelValues(CharSequenceHashSet sink) {
+    }
+
+    @Override
+    public long get(CharSequence labelValue0) {
+        return 0;
+    }
+
+    @Override
+    public int getLabelValueCount() {
+        return 0;
+    }
+
+    @Override
+    public CharSequence getLabelValue(int index) {
+        return null;
+    }
+
+    @Override
+    public void inc(CharSequence labelValue0) {
+    }
+
     @Override
     public void inc(short label0, short label1) {
     }
 
+    @Override
+    public void remove(CharSequence labelValue0) {
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
     }
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.metrics;
+
+import io.questdb.std.CharSequenceHashSet;
+import io.questdb.std.str.CharSink;
+
+class NullHistogram implements HistogramWithDynamicLabel {
+    static final NullHistogram INSTANCE = new NullHistogram();
+
+    private NullHistogram() {
+    }
+
+    @Override
+    public void collectLabelValues(CharSequenceHashSet sink) {
+    }
+
+    @Override
+    public long getCount(CharSequence labelValue0) {
+        return 0;
+    }
+
+    @Override
+    public int getLabelValueCount() {
+        return 0;
+    }
+
+    @Override
+    public CharSequence getLabelValue(int index) {
+        return null;
+    }
+
+    @Override
+    public long getSum(CharSequence labelValue0) {
+        return 0;
+    }
+
+    @Override
+    public void record(CharSequence labelValue0, long value) {
+    }
+
+    @Override
+    public void remove(CharSequence labelValue0) {
+    }
+
+    @Override
+    public void scrapeIntoPrometheus(CharSink sink) {
+    }
+}
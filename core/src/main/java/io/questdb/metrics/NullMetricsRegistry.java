@@ -38,6 +38,11 @@ public class NullMetricsRegistry implements MetricsRegistry {
         return NullCounter.INSTANCE;
     }
 
+    @Override
+    public CounterWithDynamicLabel newCounter(CharSequence name, CharSequence labelName0) {
+        return NullCounter.INSTANCE;
+    }
+
     @Override
     public CounterWithTwoLabels newCounter(CharSequence name,
                                            CharSequence labelName0, CharSequence[] labelValues0,
@@ -55,6 +60,11 @@ public class NullMetricsRegistry implements MetricsRegistry {
         return NullGauge.INSTANCE;
     }
 
+    @Override
+    public HistogramWithDynamicLabel newHistogram(CharSequence name, CharSequence labelName0, long[] bucketBounds) {
+        return NullHistogram.INSTANCE;
+    }
+
     @Override
     public Gauge newVirtualGauge(CharSequence name, VirtualGauge.StatProvider provider) {
         return NullGauge.INSTANCE;
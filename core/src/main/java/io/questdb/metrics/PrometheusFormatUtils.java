@@ -58,4 +58,16 @@ class PrometheusFormatUtils {
         sink.put(name);
         sink.put("_total");
     }
+
+    static void appendHistogramType(CharSequence name, CharSink sink) {
+        sink.put(TYPE_PREFIX);
+        sink.put(name);
+        sink.put(" histogram\n");
+    }
+
+    static void appendMetricName(CharSequence name, CharSequence suffix, CharSink sink) {
+        sink.put(METRIC_NAME_PREFIX);
+        sink.put(name);
+        sink.put(suffix);
+    }
 }
@@ -119,6 +119,8 @@ public class IODispatcherLinux<C extends IOContext> extends AbstractIODispatcher
         processDisconnects(timestamp);
         final int n = epoll.poll();
         int watermark = pending.size();
+        // lowest pending row published in this iteration, rows are deleted in one go after the loop
+        int publishedLo = watermark;
         int offset = 0;
         if (n > 0) {
             // check all activated FDs
@@ -135,7 +137,7 @@ public class IODispatcherLinux<C extends IOContext> extends AbstractIODispatcher
                     // 1. find payload
                     // 2. remove row from pending, remaining rows will be timed out
                     int row = pending.binarySearch(id, M_ID);
-                    if (row < 0) {
+                    if (row < 0 || pending.get(row) == null) {
                         LOG.error().$("internal error: epoll returned unexpected id [id=").$(id).$(']').$();
                         continue;
                     }
@@ -144,11 +146,18 @@ public class IODispatcherLinux<C extends IOContext> extends AbstractIODispatcher
                             (epoll.getEvent() & EpollAccessor.EPOLLIN) > 0 ? IOOperation.READ : IOOperation.WRITE,
                             pending.get(row)
                     );
-                    pending.deleteRow(row);
+                    // null payload marks row for deletion, shifting pending rows on each event
+                    // is quadratic when many connections become active at once
+                    pending.set(row, null);
+                    publishedLo = Math.min(publishedLo, row);
                     watermark--;
                 }
             }
 
+            if (publishedLo < pending.size()) {
+                pending.deleteNullRows(publishedLo);
+            }
+
             // process rows over watermark
             if (watermark < pending.size()) {
                 enqueuePending(watermark);
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.std;
+
+import java.io.Closeable;
+
+/**
+ * Thread-safe variant of {@link AssociativeCache}, intended to be shared by all worker threads
+ * of a server. Values are checked out by {@link #poll(CharSequence)}, which removes them from the
+ * cache, and returned by {@link #put(CharSequence, Object)} once caller is done with them. This way
+ * value is never used by two threads at the same time. Checked out values keep their slots, so that
+ * returning value does not evict anything.
+ * <p>
+ * Eviction is LRU within a row, row is selected by key hash. Rows are guarded by striped locks,
+ * threads working with different keys rarely contend.
+ */
+public class ConcurrentAssociativeCache<V> implements Closeable, Mutable {
+
+    private static final int NOT_FOUND = -1;
+    private static final int MIN_BLOCKS = 1;
+    private static final int MIN_ROWS = 1;
+    private static final int MAX_LOCKS = 64;
+    private final CharSequence[] keys;
+    private final V[] values;
+    private final Object[] locks;
+    private final int rmask;
+    private final int bmask;
+    private final int lmask;
+    private final int blocks;
+    private final int bshift;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentAssociativeCache(int blocks, int rows) {
+        this.blocks = Math.max(MIN_BLOCKS, Numbers.ceilPow2(blocks));
+        rows = Math.max(MIN_ROWS, Numbers.ceilPow2(rows));
+
+        int size = rows * this.blocks;
+        if (size < 0) {
+            throw new OutOfMemoryError();
+        }
+        this.keys = new CharSequence[size];
+        this.values = (V[]) new Object[size];
+        this.rmask = rows - 1;
+        this.bmask = this.blocks - 1;
+        this.bshift = Numbers.msb(this.blocks);
+
+        final int lockCount = Math.min(rows, MAX_LOCKS);
+        this.locks = new Object[lockCount];
+        for (int i = 0; i < lockCount; i++) {
+            locks[i] = new Object();
+        }
+        this.lmask = lockCount - 1;
+    }
+
+    @Override
+    public void clear() {
+        for (int lo = 0, n = keys.length; lo < n; lo += blocks) {
+            synchronized (locks[lockIndex(lo)]) {
+                for (int i = lo, hi = lo + blocks; i < hi; i++) {
+                    if (keys[i] != null) {
+                        keys[i] = null;
+                        free(i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Checks out value for the key. Value is removed from the cache until it is returned via put().
+     *
+     * @param key cache key
+     * @return value or null when cache does not have idle value for the key
+     */
+    public V poll(CharSequence key) {
+        final int lo = row(key) << bshift;
+        synchronized (locks[lockIndex(lo)]) {
+            final int index = getIndex(lo, key, false);
+            if (index == NOT_FOUND) {
+                return null;
+            }
+            final V value = values[index];
+            values[index] = null;
+            return value;
+        }
+    }
+
+    /**
+     * Adds or returns value to the cache. Several values can be cached under the same key,
+     * so that concurrent executions of the same query can reuse their own instances. When
+     * the row is full, least recently used value of the row is evicted and freed.
+     *
+     * @param key   cache key
+     * @param value value, ignored when null
+     */
+    public void put(CharSequence key, V value) {
+        if (value == null) {
+            return;
+        }
+        final int lo = row(key) << bshift;
+        V outgoingValue = null;
+        synchronized (locks[lockIndex(lo)]) {
+            // reuse slot of checked out value, if there is one
+            final int index = getIndex(lo, key, true);
+            final CharSequence k;
+            if (index != NOT_FOUND) {
+                k = keys[index];
+                System.arraycopy(keys, lo, keys, lo + 1, index - lo);
+                System.arraycopy(values, lo, values, lo + 1, index - lo);
+            } else {
+                outgoingValue = values[lo + bmask];
+                k = Chars.toString(key);
+                System.arraycopy(keys, lo, keys, lo + 1, bmask);
+                System.arraycopy(values, lo, values, lo + 1, bmask);
+            }
+            keys[lo] = k;
+            values[lo] = value;
+        }
+        // evicted value is freed outside of the lock
+        Misc.free(outgoingValue);
+    }
+
+    /**
+     * Removes all entries of the key, idle values are freed. Checked out values stay with
+     * their callers and are cached again only when returned via put().
+     *
+     * @param key cache key
+     */
+    public void remove(CharSequence key) {
+        final int lo = row(key) << bshift;
+        final int hi = lo + blocks;
+        ObjList<V> outgoingValues = null;
+        synchronized (locks[lockIndex(lo)]) {
+            // compact the row, getIndex() stops at the first empty slot
+            int dst = lo;
+            for (int i = lo; i < hi; i++) {
+                final CharSequence k = keys[i];
+                if (k == null) {
+                    break;
+                }
+                if (Chars.equals(k, key)) {
+                    if (values[i] != null) {
+                        if (outgoingValues == null) {
+                            outgoingValues = new ObjList<>();
+                        }
+                        outgoingValues.add(values[i]);
+                    }
+                } else {
+                    keys[dst] = k;
+                    values[dst] = values[i];
+                    dst++;
+                }
+            }
+            for (int i = dst; i < hi && keys[i] != null; i++) {
+                keys[i] = null;
+                values[i] = null;
+            }
+        }
+        // removed values are freed outside of the lock
+        Misc.freeObjList(outgoingValues);
+    }
+
+    private void free(int index) {
+        values[index] = Misc.free(values[index]);
+    }
+
+    // finds slot with the key, which either holds idle value or is checked out
+    private int getIndex(int lo, CharSequence key, boolean checkedOut) {
+        for (int i = lo, hi = lo + blocks; i < hi; i++) {
+            CharSequence k = keys[i];
+            if (k == null) {
+                return NOT_FOUND;
+            }
+
+            if ((values[i] == null) == checkedOut && Chars.equals(k, key)) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int lockIndex(int lo) {
+        return (lo >> bshift) & lmask;
+    }
+
+    private int row(CharSequence key) {
+        return Hash.spread(Chars.hashCode(key)) & rmask;
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.std;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+
+/**
+ * Pool for objects that are shared between threads, e.g. via {@link ConcurrentAssociativeCache}.
+ * Such objects can be closed, and therefore returned to the pool, by a thread other than the one
+ * that took them out.
+ */
+public class ConcurrentWeakAutoClosableObjectPool<T extends Closeable> extends WeakAutoClosableObjectPool<T> {
+
+    public ConcurrentWeakAutoClosableObjectPool(@NotNull AutoClosableObjectFactory<T> factory, int initSize) {
+        super(factory, initSize);
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+    }
+
+    @Override
+    public synchronized T pop() {
+        return super.pop();
+    }
+
+    @Override
+    public synchronized boolean push(T obj) {
+        return super.push(obj);
+    }
+}
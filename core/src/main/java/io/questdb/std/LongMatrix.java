@@ -53,23 +53,41 @@ public class LongMatrix<T> {
         int low = 0;
         int high = pos;
 
-        while (low < high) {
-
-            if (high - low < 65) {
-                return scanSearch(v, index);
-            }
-
+        while (high - low > 64) {
             int mid = (low + high - 1) >>> 1;
             long midVal = get(mid, index);
 
             if (midVal < v)
                 low = mid + 1;
             else if (midVal > v)
-                high = mid - 1;
+                high = mid;
             else
                 return mid;
         }
-        return -(low + 1);
+        return scanSearch(v, index, low, high);
+    }
+
+    /**
+     * Deletes all rows with null payload in single pass. Rows before "lo" are
+     * expected to have payload.
+     *
+     * @param lo index of the first row that may have to be deleted
+     */
+    public void deleteNullRows(int lo) {
+        int dst = lo;
+        for (int r = lo; r < pos; r++) {
+            if (payload[r] != null) {
+                if (r != dst) {
+                    System.arraycopy(data, r << bits, data, dst << bits, 1 << bits);
+                    payload[dst] = payload[r];
+                }
+                dst++;
+            }
+        }
+        for (int r = dst; r < pos; r++) {
+            payload[r] = null;
+        }
+        pos = dst;
     }
 
     public void deleteRow(int r) {
@@ -131,9 +149,8 @@ public class LongMatrix<T> {
         return pos++;
     }
 
-    private int scanSearch(long v, int index) {
-        int sz = size();
-        for (int i = 0; i < sz; i++) {
+    private int scanSearch(long v, int index, int low, int high) {
+        for (int i = low; i < high; i++) {
             long f = get(i, index);
             if (f == v) {
                 return i;
@@ -142,6 +159,6 @@ public class LongMatrix<T> {
                 return -(i + 1);
             }
         }
-        return -(sz + 1);
+        return -(high + 1);
     }
 }
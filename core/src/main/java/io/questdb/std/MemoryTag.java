@@ -49,7 +49,8 @@ public final class MemoryTag {
     public static final int NATIVE_LONG_LIST = 21;
     public static final int NATIVE_JIT = 22;
     public static final int NATIVE_OFFLOAD = 23;
-    public static final int SIZE = NATIVE_OFFLOAD + 1;
+    public static final int NATIVE_RESULT_CACHE = 24;
+    public static final int SIZE = NATIVE_RESULT_CACHE + 1;
     private static final ObjList<String> tagNameMap = new ObjList<>(SIZE);
 
     public static String nameOf(int tag) {
@@ -81,5 +82,6 @@ public final class MemoryTag {
         tagNameMap.extendAndSet(NATIVE_LONG_LIST, "NATIVE_LONG_LIST");
         tagNameMap.extendAndSet(NATIVE_JIT, "NATIVE_JIT");
         tagNameMap.extendAndSet(NATIVE_OFFLOAD, "NATIVE_OFFLOAD");
+        tagNameMap.extendAndSet(NATIVE_RESULT_CACHE, "NATIVE_RESULT_CACHE");
     }
 }
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.std;
+
+import java.util.Arrays;
+
+/**
+ * Compresses native memory into Snappy block format. Input is processed in 64KB blocks, matches are
+ * looked up in a hash table of 4-byte sequences and every copy fits 2-byte offset.
+ * <p>
+ * Instances are not thread-safe, the hash table is reused between calls.
+ */
+public class SnappyCompressor {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int HASH_BITS = 14;
+    private static final int MAX_COPY_LEN = 64;
+    private final int[] table = new int[1 << HASH_BITS];
+
+    public static long maxCompressedLength(long len) {
+        return 32 + len + len / 6;
+    }
+
+    /**
+     * @param src address of data to compress
+     * @param len length of data
+     * @param dst address of output buffer, it must have at least {@link #maxCompressedLength(long)} bytes available
+     * @return number of bytes written to the output buffer
+     */
+    public long compress(long src, long len, long dst) {
+        long p = putVarint(dst, len);
+        for (long lo = 0; lo < len; lo += BLOCK_SIZE) {
+            p = compressBlock(src + lo, (int) Math.min(BLOCK_SIZE, len - lo), p);
+        }
+        return p - dst;
+    }
+
+    private static int hash(int value) {
+        return (value * 0x1e35a7bd) >>> (32 - HASH_BITS);
+    }
+
+    private static long putCopy(long p, int offset, int len) {
+        while (len > 0) {
+            final int n = Math.min(len, MAX_COPY_LEN);
+            Unsafe.getUnsafe().putByte(p++, (byte) (((n - 1) << 2) | 2));
+            Unsafe.getUnsafe().putShort(p, (short) offset);
+            p += 2;
+            len -= n;
+        }
+        return p;
+    }
+
+    private static long putLiteral(long p, long lo, int len) {
+        if (len == 0) {
+            return p;
+        }
+        final int n = len - 1;
+        if (n < 60) {
+            Unsafe.getUnsafe().putByte(p++, (byte) (n << 2));
+        } else if (n < 1 << 8) {
+            Unsafe.getUnsafe().putByte(p++, (byte) (60 << 2));
+            Unsafe.getUnsafe().putByte(p++, (byte) n);
+        } else {
+            Unsafe.getUnsafe().putByte(p++, (byte) (61 << 2));
+            Unsafe.getUnsafe().putShort(p, (short) n);
+            p += 2;
+        }
+        Vect.memcpy(p, lo, len);
+        return p + len;
+    }
+
+    private static long putVarint(long p, long value) {
+        while (value > 0x7f) {
+            Unsafe.getUnsafe().putByte(p++, (byte) (value | 0x80));
+            value >>>= 7;
+        }
+        Unsafe.getUnsafe().putByte(p++, (byte) value);
+        return p;
+    }
+
+    private long compressBlock(long src, int len, long p) {
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int pos = 0;
+        while (pos + Integer.BYTES <= len) {
+            final int value = Unsafe.getUnsafe().getInt(src + pos);
+            final int h = hash(value);
+            final int candidate = table[h];
+            table[h] = pos;
+            if (candidate > -1 && Unsafe.getUnsafe().getInt(src + candidate) == value) {
+                int matchLen = Integer.BYTES;
+                while (pos + matchLen < len && Unsafe.getUnsafe().getByte(src + candidate + matchLen) == Unsafe.getUnsafe().getByte(src + pos + matchLen)) {
+                    matchLen++;
+                }
+                p = putLiteral(p, src + anchor, pos - anchor);
+                p = putCopy(p, pos - candidate, matchLen);
+                pos += matchLen;
+                anchor = pos;
+            } else {
+                // step over incompressible data faster the longer it is
+                pos += 1 + ((pos - anchor) >>> 5);
+            }
+        }
+        return putLiteral(p, src + anchor, len - anchor);
+    }
+}
@@ -105,6 +105,13 @@ public class MetricsTest {
             return delegate.newCounter(name);
         }
 
+        @Override
+        public CounterWithDynamicLabel newCounter(CharSequence name, CharSequence labelName0) {
+            addMetricName(name);
+            addLabelNames(name, Collections.singletonList(labelName0));
+            return delegate.newCounter(name, labelName0);
+        }
+
         @Override
         public CounterWithOneLabel newCounter(CharSequence name, CharSequence labelName0, CharSequence[] labelValues0) {
             addMetricName(name);
@@ -134,6 +141,13 @@ public class MetricsTest {
             return gauge;
         }
 
+        @Override
+        public HistogramWithDynamicLabel newHistogram(CharSequence name, CharSequence labelName0, long[] bucketBounds) {
+            addMetricName(name);
+            addLabelNames(name, Collections.singletonList(labelName0));
+            return delegate.newHistogram(name, labelName0, bucketBounds);
+        }
+
         @Override
         public Gauge newVirtualGauge(CharSequence name, VirtualGauge.StatProvider provider) {
             addMetricName(name);
@@ -85,10 +85,16 @@ public class PropServerConfigurationTest {
         Assert.assertEquals("index.html", configuration.getHttpServerConfiguration().getStaticContentProcessorConfiguration().getIndexFileName());
         Assert.assertTrue(configuration.getHttpServerConfiguration().isEnabled());
         Assert.assertFalse(configuration.getHttpServerConfiguration().getHttpContextConfiguration().getDumpNetworkTraffic());
-        Assert.assertFalse(configuration.getHttpServerConfiguration().getHttpContextConfiguration().allowDeflateBeforeSend());
+        Assert.assertTrue(configuration.getHttpServerConfiguration().getHttpContextConfiguration().allowDeflateBeforeSend());
         Assert.assertTrue(configuration.getHttpServerConfiguration().isQueryCacheEnabled());
         Assert.assertEquals(4, configuration.getHttpServerConfiguration().getQueryCacheBlockCount());
         Assert.assertEquals(16, configuration.getHttpServerConfiguration().getQueryCacheRowCount());
+        Assert.assertEquals(2, configuration.getHttpServerConfiguration().getAsyncQueryWorkerCount());
+        Assert.assertEquals(300_000, configuration.getHttpServerConfiguration().getAsyncQueryResultTtl());
+        Assert.assertEquals(64, configuration.getHttpServerConfiguration().getAsyncQueryResultLimit());
+        Assert.assertEquals(64, configuration.getHttpServerConfiguration().getSubscriptionLimit());
+        Assert.assertEquals(10_000, configuration.getHttpServerConfiguration().getSubscriptionHeartbeatInterval());
+        Assert.assertFalse(configuration.getHttpServerConfiguration().isQueryCacheLiteralNormalizationEnabled());
 
         Assert.assertEquals(100, configuration.getWorkerPoolConfiguration().getYieldThreshold());
         Assert.assertEquals(10000, configuration.getWorkerPoolConfiguration().getSleepThreshold());
@@ -139,6 +145,9 @@ public class PropServerConfigurationTest {
 
         Assert.assertEquals(CommitMode.NOSYNC, configuration.getCairoConfiguration().getCommitMode());
         Assert.assertEquals(2097152, configuration.getCairoConfiguration().getSqlCopyBufferSize());
+        Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getSqlCopyParallelMinSize());
+        Assert.assertEquals(32, configuration.getCairoConfiguration().getSqlCopyQueueCapacity());
+        TestUtils.assertEquals(new File(root, "tmp").getAbsolutePath(), configuration.getCairoConfiguration().getSqlCopyWorkRoot());
         Assert.assertEquals(32, configuration.getCairoConfiguration().getCopyPoolCapacity());
         Assert.assertEquals(5, configuration.getCairoConfiguration().getCreateAsSelectRetryCount());
         Assert.assertEquals("fast", configuration.getCairoConfiguration().getDefaultMapType());
@@ -149,6 +158,7 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(120_000, configuration.getCairoConfiguration().getInactiveReaderTTL());
         Assert.assertEquals(600_000, configuration.getCairoConfiguration().getInactiveWriterTTL());
         Assert.assertEquals(256, configuration.getCairoConfiguration().getIndexValueBlockSize());
+        Assert.assertEquals(1000, configuration.getCairoConfiguration().getMatViewRefreshInterval());
         Assert.assertEquals(30, configuration.getCairoConfiguration().getMaxSwapFileCount());
         Assert.assertEquals(509, configuration.getCairoConfiguration().getMkDirMode());
         Assert.assertEquals(8, configuration.getCairoConfiguration().getBindVariablePoolSize());
@@ -202,6 +212,7 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(2048, configuration.getLineUdpReceiverConfiguration().getMsgBufferSize());
         Assert.assertEquals(10000, configuration.getLineUdpReceiverConfiguration().getMsgCount());
         Assert.assertEquals(8388608, configuration.getLineUdpReceiverConfiguration().getReceiveBufferSize());
+        Assert.assertEquals(1, configuration.getLineUdpReceiverConfiguration().getSocketCount());
         Assert.assertSame(AllowAllCairoSecurityContext.INSTANCE, configuration.getLineUdpReceiverConfiguration().getCairoSecurityContext());
         Assert.assertTrue(configuration.getLineUdpReceiverConfiguration().isEnabled());
         Assert.assertEquals(-1, configuration.getLineUdpReceiverConfiguration().ownThreadAffinity());
@@ -209,6 +220,8 @@ public class PropServerConfigurationTest {
 
         Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelFilterEnabled());
         Assert.assertEquals(1_000_000, configuration.getCairoConfiguration().getSqlPageFrameMaxRows());
+        Assert.assertEquals(0, configuration.getCairoConfiguration().getSqlResultCacheSize());
+        Assert.assertEquals(4 * 1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheEntryMaxSize());
         Assert.assertEquals(1000, configuration.getCairoConfiguration().getSqlPageFrameMinRows());
         Assert.assertEquals(4, configuration.getCairoConfiguration().getPageFrameReduceShardCount());
         Assert.assertEquals(64, configuration.getCairoConfiguration().getPageFrameReduceQueueCapacity());
@@ -610,6 +623,12 @@ public class PropServerConfigurationTest {
             Assert.assertFalse(configuration.getHttpServerConfiguration().isQueryCacheEnabled());
             Assert.assertEquals(32, configuration.getHttpServerConfiguration().getQueryCacheBlockCount());
             Assert.assertEquals(16, configuration.getHttpServerConfiguration().getQueryCacheRowCount());
+            Assert.assertEquals(1, configuration.getHttpServerConfiguration().getAsyncQueryWorkerCount());
+            Assert.assertEquals(60_000, configuration.getHttpServerConfiguration().getAsyncQueryResultTtl());
+            Assert.assertEquals(8, configuration.getHttpServerConfiguration().getAsyncQueryResultLimit());
+            Assert.assertEquals(4, configuration.getHttpServerConfiguration().getSubscriptionLimit());
+            Assert.assertEquals(1000, configuration.getHttpServerConfiguration().getSubscriptionHeartbeatInterval());
+            Assert.assertTrue(configuration.getHttpServerConfiguration().isQueryCacheLiteralNormalizationEnabled());
 
             Assert.assertTrue(configuration.getHttpServerConfiguration().getHttpContextConfiguration().readOnlySecurityContext());
             Assert.assertEquals(50000, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getMaxQueryResponseRowLimit());
@@ -625,7 +644,7 @@ public class PropServerConfigurationTest {
                     configuration.getHttpServerConfiguration().getStaticContentProcessorConfiguration().getPublicDirectory());
 
             Assert.assertEquals("Keep-Alive: timeout=10, max=50000" + Misc.EOL, configuration.getHttpServerConfiguration().getStaticContentProcessorConfiguration().getKeepAliveHeader());
-            Assert.assertTrue(configuration.getHttpServerConfiguration().getHttpContextConfiguration().allowDeflateBeforeSend());
+            Assert.assertFalse(configuration.getHttpServerConfiguration().getHttpContextConfiguration().allowDeflateBeforeSend());
 
             Assert.assertEquals(63, configuration.getHttpServerConfiguration().getDispatcherConfiguration().getLimit());
             Assert.assertEquals(64, configuration.getHttpServerConfiguration().getDispatcherConfiguration().getEventCapacity());
@@ -654,6 +673,9 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(2_000, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getConnectionCheckFrequency());
             Assert.assertEquals(4, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getFloatScale());
             Assert.assertEquals(4194304, configuration.getCairoConfiguration().getSqlCopyBufferSize());
+            Assert.assertEquals(1024 * 1024, configuration.getCairoConfiguration().getSqlCopyParallelMinSize());
+            Assert.assertEquals(16, configuration.getCairoConfiguration().getSqlCopyQueueCapacity());
+            TestUtils.assertEquals("/tmp/import", configuration.getCairoConfiguration().getSqlCopyWorkRoot());
             Assert.assertEquals(64, configuration.getCairoConfiguration().getCopyPoolCapacity());
             Assert.assertSame(FilesFacadeImpl.INSTANCE, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getFilesFacade());
             Assert.assertEquals("Keep-Alive: timeout=10, max=50000" + Misc.EOL, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getKeepAliveHeader());
@@ -672,6 +694,7 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(600_000, configuration.getCairoConfiguration().getInactiveReaderTTL());
             Assert.assertEquals(400_000, configuration.getCairoConfiguration().getInactiveWriterTTL());
             Assert.assertEquals(1024, configuration.getCairoConfiguration().getIndexValueBlockSize());
+            Assert.assertEquals(250, configuration.getCairoConfiguration().getMatViewRefreshInterval());
             Assert.assertEquals(23, configuration.getCairoConfiguration().getMaxSwapFileCount());
             Assert.assertEquals(509, configuration.getCairoConfiguration().getMkDirMode());
             Assert.assertEquals(1000000, configuration.getCairoConfiguration().getParallelIndexThreshold());
@@ -735,6 +758,7 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(4 * 1024 * 1024, configuration.getLineUdpReceiverConfiguration().getMsgBufferSize());
             Assert.assertEquals(4000, configuration.getLineUdpReceiverConfiguration().getMsgCount());
             Assert.assertEquals(512, configuration.getLineUdpReceiverConfiguration().getReceiveBufferSize());
+            Assert.assertEquals(4, configuration.getLineUdpReceiverConfiguration().getSocketCount());
             Assert.assertEquals(PartitionBy.MONTH, configuration.getLineUdpReceiverConfiguration().getDefaultPartitionBy());
             Assert.assertFalse(configuration.getLineUdpReceiverConfiguration().isEnabled());
             Assert.assertEquals(2, configuration.getLineUdpReceiverConfiguration().ownThreadAffinity());
@@ -742,6 +766,8 @@ public class PropServerConfigurationTest {
 
             Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelFilterEnabled());
             Assert.assertEquals(1000, configuration.getCairoConfiguration().getSqlPageFrameMaxRows());
+            Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheSize());
+            Assert.assertEquals(1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheEntryMaxSize());
             Assert.assertEquals(100, configuration.getCairoConfiguration().getSqlPageFrameMinRows());
             Assert.assertEquals(128, configuration.getCairoConfiguration().getPageFrameReduceShardCount());
             Assert.assertEquals(1024, configuration.getCairoConfiguration().getPageFrameReduceQueueCapacity());
@@ -79,6 +79,7 @@ public class AbstractCairoTest {
     protected static int binaryEncodingMaxLength = -1;
     protected static CharSequence defaultMapType;
     protected static int pageFrameMaxRows = -1;
+    protected static long sqlResultCacheSize = -1;
     protected static int jitMode = SqlJitMode.JIT_MODE_ENABLED;
     protected static int rndFunctionMemoryPageSize = -1;
     protected static int rndFunctionMemoryMaxPages = -1;
@@ -86,6 +87,7 @@ public class AbstractCairoTest {
     protected static Boolean snapshotRecoveryEnabled = null;
     protected static Boolean enableParallelFilter = null;
     protected static int queryCacheEventQueueCapacity = -1;
+    protected static long sqlCopyParallelMinSize = -1;
     protected static int pageFrameReduceShardCount = -1;
     protected static int pageFrameReduceQueueCapacity = -1;
 
@@ -205,6 +207,11 @@ public class AbstractCairoTest {
                 return pageFrameMaxRows < 0 ? super.getSqlPageFrameMaxRows() : pageFrameMaxRows;
             }
 
+            @Override
+            public long getSqlResultCacheSize() {
+                return sqlResultCacheSize < 0 ? super.getSqlResultCacheSize() : sqlResultCacheSize;
+            }
+
             @Override
             public long getWriterAsyncCommandBusyWaitTimeout() {
                 return writerAsyncCommandBusyWaitTimeout < 0 ? super.getWriterAsyncCommandBusyWaitTimeout() : writerAsyncCommandBusyWaitTimeout;
@@ -265,6 +272,11 @@ public class AbstractCairoTest {
                 return writerCommandQueueSlotSize;
             }
 
+            @Override
+            public long getSqlCopyParallelMinSize() {
+                return sqlCopyParallelMinSize < 0 ? super.getSqlCopyParallelMinSize() : sqlCopyParallelMinSize;
+            }
+
             @Override
             public int getQueryCacheEventQueueCapacity() {
                 return queryCacheEventQueueCapacity < 0 ? super.getQueryCacheEventQueueCapacity() : queryCacheEventQueueCapacity;
@@ -323,6 +335,7 @@ public class AbstractCairoTest {
         writerAsyncCommandBusyWaitTimeout = -1;
         writerAsyncCommandMaxTimeout = -1;
         pageFrameMaxRows = -1;
+        sqlResultCacheSize = -1;
         jitMode = SqlJitMode.JIT_MODE_ENABLED;
         rndFunctionMemoryPageSize = -1;
         rndFunctionMemoryMaxPages = -1;
@@ -333,6 +346,7 @@ public class AbstractCairoTest {
         hideTelemetryTable = false;
         writerCommandQueueCapacity = 4;
         queryCacheEventQueueCapacity = -1;
+        sqlCopyParallelMinSize = -1;
         pageFrameReduceShardCount = -1;
         pageFrameReduceQueueCapacity = -1;
     }
@@ -65,6 +65,8 @@ public class HttpQueryTestBuilder {
     private int jitMode = SqlJitMode.JIT_MODE_ENABLED;
     private FilesFacade filesFacade = new FilesFacadeImpl();
     private QueryFutureUpdateListener queryFutureUpdateListener;
+    private boolean asyncQueries;
+    private boolean subscriptions;
 
     public int getWorkerCount() {
         return this.workerCount;
@@ -219,10 +221,13 @@ public class HttpQueryTestBuilder {
                     }
                 });
 
+                final AsyncQueryRegistry asyncQueryRegistry = asyncQueries
+                        ? new AsyncQueryRegistry(httpConfiguration, engine, null, null, metrics)
+                        : null;
                 httpServer.bind(new HttpRequestProcessorFactory() {
                     @Override
                     public HttpRequestProcessor newInstance() {
-                        return new JsonQueryProcessor(httpConfiguration.getJsonQueryProcessorConfiguration(), engine, 1);
+                        return new JsonQueryProcessor(httpConfiguration.getJsonQueryProcessorConfiguration(), engine, 1, null, null, asyncQueryRegistry);
                     }
 
                     @Override
@@ -231,6 +236,24 @@ public class HttpQueryTestBuilder {
                     }
                 });
 
+                final SubscriptionJob subscriptionJob = subscriptions
+                        ? new SubscriptionJob(httpConfiguration, engine.getConfiguration().getMillisecondClock())
+                        : null;
+                if (subscriptionJob != null) {
+                    workerPool.assign(subscriptionJob);
+                }
+                httpServer.bind(new HttpRequestProcessorFactory() {
+                    @Override
+                    public HttpRequestProcessor newInstance() {
+                        return new SubscriptionProcessor(httpConfiguration.getJsonQueryProcessorConfiguration(), engine, null, subscriptionJob);
+                    }
+
+                    @Override
+                    public String getUrl() {
+                        return "/subscribe";
+                    }
+                });
+
                 QueryCache.configure(httpConfiguration);
 
                 workerPool.start(LOG);
@@ -239,6 +262,8 @@ public class HttpQueryTestBuilder {
                     code.run(engine);
                 } finally {
                     workerPool.halt();
+                    Misc.free(asyncQueryRegistry);
+                    Misc.free(subscriptionJob);
 
                     if (telemetryJob != null) {
                         Misc.free(telemetryJob);
@@ -258,6 +283,11 @@ public class HttpQueryTestBuilder {
         return this;
     }
 
+    public HttpQueryTestBuilder withAsyncQueries(boolean asyncQueries) {
+        this.asyncQueries = asyncQueries;
+        return this;
+    }
+
     public HttpQueryTestBuilder withCustomTextImportProcessor(HttpRequestProcessorBuilder textQueryProcessor) {
         this.textImportProcessor = textQueryProcessor;
         return this;
@@ -273,6 +303,11 @@ public class HttpQueryTestBuilder {
         return this;
     }
 
+    public HttpQueryTestBuilder withSubscriptions(boolean subscriptions) {
+        this.subscriptions = subscriptions;
+        return this;
+    }
+
     public HttpQueryTestBuilder withTelemetry(boolean telemetry) {
         this.telemetry = telemetry;
         return this;
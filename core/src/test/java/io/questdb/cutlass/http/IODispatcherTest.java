@@ -54,7 +54,14 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +69,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
 
 import static io.questdb.test.tools.TestUtils.assertMemoryLeak;
 
@@ -3047,6 +3055,150 @@ public class IODispatcherTest {
         );
     }
 
+    @Test
+    public void testJsonQueryAsync() throws Exception {
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(1)
+                .withAsyncQueries(true)
+                .withHttpServerConfigBuilder(
+                        new HttpServerConfigurationBuilder()
+                                .withSendBufferSize(1024)
+                                .withServerKeepAlive(true)
+                )
+                .run(engine -> {
+                    SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1);
+                    try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                        compiler.compile("create table x as (select x, rnd_symbol('a','b','c') s, rnd_str(5, 20, 1) str from long_sequence(2000))", executionContext);
+                    }
+
+                    try (Socket socket = new Socket("127.0.0.1", 9001)) {
+                        final InputStream in = new BufferedInputStream(socket.getInputStream());
+                        final OutputStream out = socket.getOutputStream();
+                        final StringSink headers = new StringSink();
+
+                        String response = new String(receiveChunked(in, out, "/exec?query=x&async=true", false, headers));
+                        TestUtils.assertContains(response, "\"query\":\"x\",\"id\":\"");
+                        final String id = response.substring(response.indexOf("\"id\":\"") + 6, response.indexOf("\",\"status\""));
+                        do {
+                            response = new String(receiveChunked(in, out, "/exec?id=" + id + "&limit=1", false, headers));
+                        } while (response.contains("\"status\":\"queued\"") || response.contains("\"status\":\"running\""));
+
+                        // pages of the spooled result are the same as pages of the synchronous query
+                        for (String limit : new String[]{"&limit=1", "&limit=101,105", "&limit=1990,2010&count=true", "&cols=s,x&nm=true", ""}) {
+                            Assert.assertArrayEquals(
+                                    receiveChunked(in, out, "/exec?query=x" + limit, false, headers),
+                                    receiveChunked(in, out, "/exec?id=" + id + limit, false, headers)
+                            );
+                        }
+
+                        response = new String(receiveChunked(in, out, "/exec?query=y&async=true", false, headers));
+                        final String failedId = response.substring(response.indexOf("\"id\":\"") + 6, response.indexOf("\",\"status\""));
+                        do {
+                            response = new String(receiveChunked(in, out, "/exec?id=" + failedId, false, headers));
+                        } while (response.contains("\"status\":\"queued\"") || response.contains("\"status\":\"running\""));
+                        Assert.assertEquals("{\"query\":\"y\",\"error\":\"table does not exist [name=y]\",\"position\":0}", response);
+
+                        Assert.assertEquals(
+                                "{\"query\":\"\",\"error\":\"unknown or expired async query id\",\"position\":0}",
+                                new String(receiveChunked(in, out, "/exec?id=abc", false, headers))
+                        );
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Test
+    public void testJsonQueryAsyncUpdate() throws Exception {
+        final String baseDir = temp.getRoot().getAbsolutePath();
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(1)
+                .withAsyncQueries(true)
+                .withHttpServerConfigBuilder(
+                        new HttpServerConfigurationBuilder()
+                                .withServerKeepAlive(true)
+                )
+                .run(new DefaultCairoConfiguration(baseDir) {
+                    @Override
+                    public boolean enableDevelopmentUpdates() {
+                        return true;
+                    }
+                }, engine -> {
+                    SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1);
+                    try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                        compiler.compile("create table x as (select x, timestamp_sequence(0, 1000000) ts from long_sequence(3)) timestamp(ts) partition by DAY", executionContext);
+                    }
+
+                    try (Socket socket = new Socket("127.0.0.1", 9001)) {
+                        final InputStream in = new BufferedInputStream(socket.getInputStream());
+                        final OutputStream out = socket.getOutputStream();
+                        final StringSink headers = new StringSink();
+
+                        // async job cannot execute UPDATE, it must not report it as done
+                        String response = new String(receiveChunked(in, out, "/exec?query=update%20x%20set%20x%20%3D%200&async=true", false, headers));
+                        final String id = response.substring(response.indexOf("\"id\":\"") + 6, response.indexOf("\",\"status\""));
+                        do {
+                            response = new String(receiveChunked(in, out, "/exec?id=" + id, false, headers));
+                        } while (response.contains("\"status\":\"queued\"") || response.contains("\"status\":\"running\""));
+                        TestUtils.assertContains(response, "\"error\":\"unsupported statement type");
+
+                        response = new String(receiveChunked(in, out, "/exec?query=select%20sum(x)%20from%20x", false, headers));
+                        TestUtils.assertContains(response, "\"dataset\":[[6]]");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Test
+    public void testJsonQueryGzip() throws Exception {
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(1)
+                .withHttpServerConfigBuilder(
+                        new HttpServerConfigurationBuilder()
+                                .withSendBufferSize(1024)
+                                .withAllowDeflateBeforeSend(true)
+                                .withServerKeepAlive(true)
+                )
+                .run(engine -> {
+                    SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1);
+                    try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                        compiler.compile("create table x as (select x, rnd_symbol('a','b','c') s, rnd_str(5, 20, 1) str from long_sequence(2000))", executionContext);
+                    }
+
+                    try (Socket socket = new Socket("127.0.0.1", 9001)) {
+                        final InputStream in = new BufferedInputStream(socket.getInputStream());
+                        final OutputStream out = socket.getOutputStream();
+                        // clients with and without gzip share keep-alive connection
+                        for (String url : new String[]{"/exec?query=x", "/exp?query=x", "/exec?query=y"}) {
+                            final StringSink headers = new StringSink();
+                            final byte[] compressed = receiveChunked(in, out, url, true, headers);
+                            TestUtils.assertContains(headers, "Content-Encoding: gzip");
+                            final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+                            try (GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                                int b;
+                                while ((b = is.read()) != -1) {
+                                    inflated.write(b);
+                                }
+                            }
+
+                            headers.clear();
+                            final byte[] plain = receiveChunked(in, out, url, false, headers);
+                            Assert.assertFalse(Chars.contains(headers, "Content-Encoding"));
+                            Assert.assertArrayEquals(plain, inflated.toByteArray());
+                            if (plain.length > 10_000) {
+                                Assert.assertTrue(compressed.length < plain.length / 2);
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
     @Test
     public void testJsonQueryInfinity() throws Exception {
         testJsonQuery(
@@ -6191,6 +6343,71 @@ public class IODispatcherTest {
         });
     }
 
+    @Test
+    public void testSubscription() throws Exception {
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(1)
+                .withSubscriptions(true)
+                .withHttpServerConfigBuilder(
+                        new HttpServerConfigurationBuilder()
+                                .withSendBufferSize(1024)
+                                .withServerKeepAlive(true)
+                )
+                .run(engine -> {
+                    SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1);
+                    try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                        compiler.compile("create table x (ts timestamp, s symbol, v long) timestamp(ts) partition by day", executionContext);
+                        TestUtils.insert(compiler, executionContext, "insert into x values ('2022-01-01T00:00:00.000000Z', 'a', 1)");
+
+                        try (
+                                Socket subscriber = new Socket("127.0.0.1", 9001);
+                                Socket client = new Socket("127.0.0.1", 9001)
+                        ) {
+                            final InputStream in = new BufferedInputStream(subscriber.getInputStream());
+                            subscriber.getOutputStream().write("GET /subscribe?table=x&filter=s%3D'a' HTTP/1.1\r\nHost: localhost:9000\r\n\r\n".getBytes());
+                            final StringSink headers = new StringSink();
+                            String line;
+                            while (!(line = readLine(in)).isEmpty()) {
+                                headers.put(line).put('\n');
+                            }
+                            TestUtils.assertContains(headers, "Content-Type: text/event-stream");
+                            Assert.assertEquals(
+                                    "event: columns\n" +
+                                            "data: {\"table\":\"x\",\"columns\":[{\"name\":\"ts\",\"type\":\"TIMESTAMP\"},{\"name\":\"s\",\"type\":\"SYMBOL\"},{\"name\":\"v\",\"type\":\"LONG\"}]}\n\n",
+                                    readChunk(in)
+                            );
+
+                            // rows committed before subscription and rows rejected by filter are not streamed
+                            TestUtils.insert(compiler, executionContext, "insert into x values ('2022-01-01T00:00:01.000000Z', 'b', 2)");
+                            TestUtils.insert(compiler, executionContext, "insert into x values ('2022-01-01T00:00:02.000000Z', 'a', 3)");
+                            Assert.assertEquals("data: [\"2022-01-01T00:00:02.000000Z\",\"a\",3]\n\n", readChunk(in));
+
+                            compiler.compile("alter table x add column z int", executionContext).execute(null).await();
+                            Assert.assertEquals("event: error\ndata: {\"error\":\"table structure has changed, subscribe again\"}\n\n", readChunk(in));
+                            Assert.assertEquals("", readChunk(in));
+
+                            final InputStream clientIn = new BufferedInputStream(client.getInputStream());
+                            final OutputStream clientOut = client.getOutputStream();
+                            Assert.assertEquals(
+                                    "{\"query\":\"\",\"error\":\"table does not exist\",\"position\":0}",
+                                    new String(receiveChunked(clientIn, clientOut, "/subscribe?table=y", false, headers))
+                            );
+                            Assert.assertEquals(
+                                    "{\"query\":\"v\",\"error\":\"boolean expression expected\",\"position\":0}",
+                                    new String(receiveChunked(clientIn, clientOut, "/subscribe?table=x&filter=v", false, headers))
+                            );
+                            Assert.assertEquals(
+                                    "{\"query\":\"v>1 limit 1\",\"error\":\"unexpected token: limit\",\"position\":4}",
+                                    new String(receiveChunked(clientIn, clientOut, "/subscribe?table=x&filter=v>1%20limit%201", false, headers))
+                            );
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
     @Test
     public void testTextQueryCreateTable() throws Exception {
         testJsonQuery(
@@ -6658,6 +6875,58 @@ public class IODispatcherTest {
         }
     }
 
+    private static byte[] receiveChunked(
+            InputStream in,
+            OutputStream out,
+            String url,
+            boolean gzip,
+            StringSink headers
+    ) throws IOException {
+        out.write(("GET " + url + " HTTP/1.1\r\nHost: localhost:9000\r\n" + (gzip ? "Accept-Encoding: gzip, deflate, br\r\n" : "") + "\r\n").getBytes());
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            headers.put(line).put('\n');
+        }
+        Assert.assertTrue(Chars.contains(headers, "Transfer-Encoding: chunked"));
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int len;
+        while ((len = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+            for (int i = 0; i < len; i++) {
+                body.write(in.read());
+            }
+            Assert.assertEquals("", readLine(in));
+        }
+        Assert.assertEquals("", readLine(in));
+        return body.toByteArray();
+    }
+
+    private static String readChunk(InputStream in) throws IOException {
+        // chunk size is preceded by line break that ends previous chunk, except for the first
+        // chunk where it ends the headers, reading it after the data would block until next chunk
+        String size = readLine(in);
+        if (size.isEmpty()) {
+            size = readLine(in);
+        }
+        final int len = Integer.parseInt(size.trim(), 16);
+        final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        for (int i = 0; i < len; i++) {
+            chunk.write(in.read());
+        }
+        return chunk.toString();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            Assert.assertNotEquals(-1, c);
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
     private static void sendRequest(String request, long fd, long buffer) {
         final int requestLen = request.length();
         Chars.asciiStrCpy(request, requestLen, buffer);
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.StringSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static io.questdb.cairo.sql.DataFrameCursorFactory.ORDER_ASC;
+
+public class ArrowStreamWriterTest extends AbstractGriffinTest {
+
+    @Test
+    public void testCursorAndPageFrameProduceSameStream() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select" +
+                    " rnd_int() i," +
+                    " rnd_double() d," +
+                    " rnd_boolean() b," +
+                    " rnd_symbol('a','b','c') s," +
+                    " timestamp_sequence(0, 100000000) t" +
+                    " from long_sequence(100)" +
+                    ") timestamp (t) partition by DAY", sqlExecutionContext);
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory();
+                    ArrowStreamWriter writer = new ArrowStreamWriter(30)
+            ) {
+                Assert.assertTrue(ArrowStreamWriter.isPageFrameExportSupported(factory.getMetadata()));
+
+                final byte[] cursorStream;
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    writer.of(factory.getMetadata(), cursor, 5, 95);
+                    cursorStream = drain(writer, null);
+                }
+                writer.clear();
+
+                final StringSink messages = new StringSink();
+                final byte[] frameStream;
+                try (PageFrameCursor cursor = factory.getPageFrameCursor(sqlExecutionContext, ORDER_ASC)) {
+                    writer.of(factory.getMetadata(), cursor, 5, 95);
+                    frameStream = drain(writer, messages);
+                }
+                Assert.assertEquals("schema\ndictionary\nbatch 30\nbatch 30\nbatch 30\nend\n", filterNulls(messages));
+                Assert.assertArrayEquals(cursorStream, frameStream);
+            }
+        });
+    }
+
+    @Test
+    public void testNullCounts() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select" +
+                    " rnd_int(0, 10, 2) i," +
+                    " timestamp_sequence(0, 100000000) t" +
+                    " from long_sequence(10)" +
+                    ") timestamp (t) partition by DAY", sqlExecutionContext);
+            compiler.compile("alter table x add column l long", sqlExecutionContext).execute(null).await();
+            executeInsert("insert into x values (1, 2000000000, 5)");
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory();
+                    ArrowStreamWriter writer = new ArrowStreamWriter(1000)
+            ) {
+                final StringSink expected = new StringSink();
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    long nulls = 0;
+                    while (cursor.hasNext()) {
+                        if (cursor.getRecord().getInt(0) == Integer.MIN_VALUE) {
+                            nulls++;
+                        }
+                    }
+                    // column top splits the partition into two page frames
+                    expected.put("schema\nbatch 10 nulls ").put(nulls).put(",0,10\nbatch 1 nulls 0,0,0\nend\n");
+                }
+
+                final StringSink messages = new StringSink();
+                try (PageFrameCursor cursor = factory.getPageFrameCursor(sqlExecutionContext, ORDER_ASC)) {
+                    writer.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE);
+                    drain(writer, messages);
+                }
+                Assert.assertEquals(expected.toString(), messages.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testNullableStringAndLongBuffers() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x (s string, l long)", sqlExecutionContext);
+            executeInsert("insert into x values ('ab', 1)");
+            executeInsert("insert into x values (null, null)");
+            executeInsert("insert into x values ('cde', 3)");
+            executeInsert("insert into x values ('', null)");
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory();
+                    ArrowStreamWriter writer = new ArrowStreamWriter(1000)
+            ) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    writer.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE);
+
+                    Assert.assertTrue(writer.nextMessage());
+                    byte[] bytes = toBytes(writer);
+                    int message = 8 + getInt(bytes, 8);
+                    Assert.assertEquals(1, bytes[field(bytes, message, 1)]);
+                    int p = field(bytes, message, 2);
+                    final int schema = p + getInt(bytes, p);
+                    p = field(bytes, schema, 1);
+                    final int fields = p + getInt(bytes, p);
+                    Assert.assertEquals(2, getInt(bytes, fields));
+
+                    int f = fields + 4 + getInt(bytes, fields + 4);
+                    Assert.assertEquals("s", getString(bytes, field(bytes, f, 0)));
+                    Assert.assertEquals(1, bytes[field(bytes, f, 1)]);
+                    // Utf8
+                    Assert.assertEquals(5, bytes[field(bytes, f, 2)]);
+
+                    f = fields + 8 + getInt(bytes, fields + 8);
+                    Assert.assertEquals("l", getString(bytes, field(bytes, f, 0)));
+                    Assert.assertEquals(1, bytes[field(bytes, f, 1)]);
+                    // Int, 64 bit, signed
+                    Assert.assertEquals(2, bytes[field(bytes, f, 2)]);
+                    p = field(bytes, f, 3);
+                    final int intType = p + getInt(bytes, p);
+                    Assert.assertEquals(64, getInt(bytes, field(bytes, intType, 0)));
+                    Assert.assertEquals(1, bytes[field(bytes, intType, 1)]);
+
+                    Assert.assertTrue(writer.nextMessage());
+                    bytes = toBytes(writer);
+                    final int body = 8 + getInt(bytes, 4);
+                    message = 8 + getInt(bytes, 8);
+                    Assert.assertEquals(3, bytes[field(bytes, message, 1)]);
+                    p = field(bytes, message, 2);
+                    final int batch = p + getInt(bytes, p);
+                    Assert.assertEquals(4, getLong(bytes, field(bytes, batch, 0)));
+
+                    p = field(bytes, batch, 1);
+                    final int nodes = p + getInt(bytes, p);
+                    Assert.assertEquals(2, getInt(bytes, nodes));
+                    Assert.assertEquals(4, getLong(bytes, nodes + 4));
+                    Assert.assertEquals(1, getLong(bytes, nodes + 12));
+                    Assert.assertEquals(4, getLong(bytes, nodes + 20));
+                    Assert.assertEquals(2, getLong(bytes, nodes + 28));
+
+                    p = field(bytes, batch, 2);
+                    final int buffers = p + getInt(bytes, p);
+                    Assert.assertEquals(5, getInt(bytes, buffers));
+
+                    // s: validity, offsets and utf8 data
+                    byte[] buffer = getBuffer(bytes, body, buffers, 0);
+                    Assert.assertEquals(1, buffer.length);
+                    Assert.assertEquals(0b1101, buffer[0]);
+                    buffer = getBuffer(bytes, body, buffers, 1);
+                    Assert.assertEquals(5 * Integer.BYTES, buffer.length);
+                    final int[] offsets = {0, 2, 2, 5, 5};
+                    for (int i = 0; i < offsets.length; i++) {
+                        Assert.assertEquals(offsets[i], getInt(buffer, i * Integer.BYTES));
+                    }
+                    Assert.assertEquals("abcde", new String(getBuffer(bytes, body, buffers, 2), StandardCharsets.UTF_8));
+
+                    // l: validity and values
+                    buffer = getBuffer(bytes, body, buffers, 3);
+                    Assert.assertEquals(1, buffer.length);
+                    Assert.assertEquals(0b0101, buffer[0]);
+                    buffer = getBuffer(bytes, body, buffers, 4);
+                    Assert.assertEquals(4 * Long.BYTES, buffer.length);
+                    Assert.assertEquals(1, getLong(buffer, 0));
+                    Assert.assertEquals(3, getLong(buffer, 2 * Long.BYTES));
+
+                    Assert.assertTrue(writer.nextMessage());
+                    Assert.assertEquals(0, getInt(toBytes(writer), 4));
+                    Assert.assertFalse(writer.nextMessage());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testVarSizeColumnsUseCursor() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select" +
+                    " rnd_str(3, 3, 1) s," +
+                    " x l" +
+                    " from long_sequence(7))", sqlExecutionContext);
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x where l > 2", sqlExecutionContext).getRecordCursorFactory();
+                    ArrowStreamWriter writer = new ArrowStreamWriter(2)
+            ) {
+                Assert.assertFalse(ArrowStreamWriter.isPageFrameExportSupported(factory.getMetadata()));
+                final StringSink messages = new StringSink();
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    writer.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE);
+                    drain(writer, messages);
+                }
+                Assert.assertEquals("schema\nbatch 2\nbatch 2\nbatch 1\nend\n", filterNulls(messages));
+                Assert.assertFalse(writer.nextMessage());
+            }
+        });
+    }
+
+    private static byte[] drain(ArrowStreamWriter writer, StringSink messages) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (writer.nextMessage()) {
+            final byte[] bytes = toBytes(writer);
+            if (messages != null) {
+                describe(bytes, messages);
+            }
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void describe(byte[] bytes, StringSink sink) {
+        Assert.assertEquals(-1, getInt(bytes, 0));
+        final int metadataLen = getInt(bytes, 4);
+        if (metadataLen == 0) {
+            sink.put("end\n");
+            return;
+        }
+        Assert.assertEquals(0, metadataLen % 8);
+
+        final int message = 8 + getInt(bytes, 8);
+        final int headerType = bytes[field(bytes, message, 1)];
+        final int bodyLength = (int) getLong(bytes, field(bytes, message, 3));
+        Assert.assertEquals(bytes.length, 8 + metadataLen + bodyLength);
+        switch (headerType) {
+            case 1:
+                sink.put("schema\n");
+                break;
+            case 2:
+                sink.put("dictionary\n");
+                break;
+            case 3:
+                int p = field(bytes, message, 2);
+                final int batch = p + getInt(bytes, p);
+                sink.put("batch ").put(getLong(bytes, field(bytes, batch, 0)));
+                p = field(bytes, batch, 1);
+                final int nodes = p + getInt(bytes, p);
+                final int nodeCount = getInt(bytes, nodes);
+                sink.put(" nulls ");
+                for (int i = 0; i < nodeCount; i++) {
+                    if (i > 0) {
+                        sink.put(',');
+                    }
+                    sink.put(getLong(bytes, nodes + 4 + i * 16 + 8));
+                }
+                sink.put('\n');
+                break;
+            default:
+                Assert.fail("unexpected header type: " + headerType);
+        }
+    }
+
+    private static byte[] getBuffer(byte[] bytes, int body, int buffers, int index) {
+        final int buffer = buffers + 4 + index * 16;
+        final int offset = body + (int) getLong(bytes, buffer);
+        return Arrays.copyOfRange(bytes, offset, offset + (int) getLong(bytes, buffer + 8));
+    }
+
+    private static String getString(byte[] bytes, int p) {
+        final int str = p + getInt(bytes, p);
+        return new String(bytes, str + 4, getInt(bytes, str), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toBytes(ArrowStreamWriter writer) {
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        for (int i = 0, n = writer.getSegmentCount(); i < n; i++) {
+            final long address = writer.getSegmentAddress(i);
+            for (long p = 0, size = writer.getSegmentSize(i); p < size; p++) {
+                message.write(address == 0 ? 0 : Unsafe.getUnsafe().getByte(address + p));
+            }
+        }
+        return message.toByteArray();
+    }
+
+    private static String filterNulls(StringSink messages) {
+        return messages.toString().replaceAll(" nulls [0-9,]+", "");
+    }
+
+    private static int field(byte[] bytes, int table, int index) {
+        final int vtable = table - getInt(bytes, table);
+        final int offset = getShort(bytes, vtable + 4 + index * 2);
+        Assert.assertNotEquals(0, offset);
+        return table + offset;
+    }
+
+    private static int getInt(byte[] bytes, int p) {
+        return (bytes[p] & 0xff) | (bytes[p + 1] & 0xff) << 8 | (bytes[p + 2] & 0xff) << 16 | (bytes[p + 3] & 0xff) << 24;
+    }
+
+    private static long getLong(byte[] bytes, int p) {
+        return (getInt(bytes, p) & 0xffffffffL) | ((long) getInt(bytes, p + 4) << 32);
+    }
+
+    private static int getShort(byte[] bytes, int p) {
+        return (bytes[p] & 0xff) | (bytes[p + 1] & 0xff) << 8;
+    }
+}
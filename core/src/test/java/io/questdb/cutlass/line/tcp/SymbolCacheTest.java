@@ -296,6 +296,124 @@ public class SymbolCacheTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testSharedSymbolKeyMap() throws Exception {
+        String tableName = "tb1";
+        FilesFacade ff = new FilesFacadeImpl();
+        TestUtils.assertMemoryLeak(() -> {
+            final SharedSymbolKeyMap sharedMap = new SharedSymbolKeyMap(-1, 0);
+            try (Path path = new Path();
+                 TableModel model = new TableModel(configuration, tableName, PartitionBy.DAY)
+                         .col("symCol", ColumnType.SYMBOL);
+                 SymbolCache cache1 = new SymbolCache(new DefaultLineTcpReceiverConfiguration());
+                 SymbolCache cache2 = new SymbolCache(new DefaultLineTcpReceiverConfiguration())
+            ) {
+                CairoTestUtils.create(model);
+                try (
+                        TableWriter writer = new TableWriter(configuration, tableName, metrics);
+                        TxReader txReader1 = new TxReader(ff).ofRO(path.of(configuration.getRoot()).concat(tableName), PartitionBy.DAY);
+                        TxReader txReader2 = new TxReader(ff).ofRO(path.of(configuration.getRoot()).concat(tableName), PartitionBy.DAY)
+                ) {
+                    int symColIndex = writer.getColumnIndex("symCol");
+                    TableWriter.Row r = writer.newRow();
+                    r.putSym(symColIndex, "sym1");
+                    r.append();
+                    r = writer.newRow();
+                    r.putSym(symColIndex, "sym2");
+                    r.append();
+                    writer.commit();
+
+                    cache1.of(configuration, path.of(configuration.getRoot()).concat(tableName), "symCol", 0, txReader1, -1, sharedMap);
+                    cache2.of(configuration, path.of(configuration.getRoot()).concat(tableName), "symCol", 0, txReader2, -1, sharedMap);
+
+                    Assert.assertEquals(1, cache1.keyOf("sym2"));
+                    Assert.assertEquals(1, cache1.getCacheValueCount());
+                    // value resolved by the first cache is visible to the second one
+                    Assert.assertEquals(1, sharedMap.size());
+                    Assert.assertEquals(0, cache2.getCacheValueCount());
+                    Assert.assertEquals(1, cache2.keyOf("sym2"));
+                    Assert.assertEquals(1, cache2.getCacheValueCount());
+                    Assert.assertEquals(0, cache2.keyOf("sym1"));
+                    Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, cache2.keyOf("missing"));
+                    Assert.assertEquals(2, sharedMap.size());
+
+                    // closing one of the caches must not drop the values shared with the other
+                    cache1.close();
+                    Assert.assertEquals(0, cache1.getCacheValueCount());
+                    Assert.assertEquals(2, sharedMap.size());
+                    Assert.assertEquals(0, cache2.keyOf("sym1"));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSharedSymbolKeyMapInvalidatedOnTruncateAndColumnDrop() throws Exception {
+        String tableName = "tb1";
+        FilesFacade ff = new FilesFacadeImpl();
+        TestUtils.assertMemoryLeak(() -> {
+            final ObjList<SharedSymbolKeyMap> maps = new ObjList<>();
+            try (Path path = new Path();
+                 TableModel model = new TableModel(configuration, tableName, PartitionBy.DAY)
+                         .col("symCol", ColumnType.SYMBOL)
+                         .col("symCol2", ColumnType.SYMBOL);
+                 SymbolCache cache = new SymbolCache(new DefaultLineTcpReceiverConfiguration())
+            ) {
+                CairoTestUtils.create(model);
+                try (
+                        TableWriter writer = new TableWriter(configuration, tableName, metrics);
+                        TxReader txReader = new TxReader(ff).ofRO(path.of(configuration.getRoot()).concat(tableName), PartitionBy.DAY)
+                ) {
+                    TableWriter.Row r = writer.newRow();
+                    r.putSym(0, "sym1");
+                    r.putSym(1, "x");
+                    r.append();
+                    r = writer.newRow();
+                    r.putSym(0, "sym2");
+                    r.append();
+                    writer.commit();
+
+                    final SharedSymbolKeyMap map1;
+                    try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, tableName)) {
+                        map1 = SharedSymbolKeyMap.getOrCreate(maps, reader.getMetadata(), 0, -1, reader.getTxFile().getTruncateVersion());
+                        Assert.assertSame(map1, SharedSymbolKeyMap.getOrCreate(maps, reader.getMetadata(), 0, -1, reader.getTxFile().getTruncateVersion()));
+                        Assert.assertNotNull(SharedSymbolKeyMap.getOrCreate(maps, reader.getMetadata(), 1, -1, reader.getTxFile().getTruncateVersion()));
+                    }
+                    cache.of(configuration, path.of(configuration.getRoot()).concat(tableName), "symCol", 0, txReader, -1, map1);
+                    Assert.assertEquals(1, cache.keyOf("sym2"));
+                    Assert.assertEquals(1, map1.size());
+                    cache.close();
+
+                    // symbols get keys in different order after truncate
+                    writer.truncate();
+                    r = writer.newRow();
+                    r.putSym(0, "sym2");
+                    r.append();
+                    r = writer.newRow();
+                    r.putSym(0, "sym1");
+                    r.append();
+                    writer.commit();
+                    writer.removeColumn("symCol2");
+
+                    final SharedSymbolKeyMap map2;
+                    try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, tableName)) {
+                        map2 = SharedSymbolKeyMap.getOrCreate(maps, reader.getMetadata(), 0, -1, reader.getTxFile().getTruncateVersion());
+                    }
+                    Assert.assertNotSame(map1, map2);
+                    Assert.assertEquals(0, map2.size());
+                    // map of the dropped column is gone
+                    Assert.assertNull(maps.getQuiet(1));
+
+                    cache.of(configuration, path.of(configuration.getRoot()).concat(tableName), "symCol", 0, txReader, -1, map2);
+                    Assert.assertEquals(0, cache.keyOf("sym2"));
+                    Assert.assertEquals(1, cache.keyOf("sym1"));
+                }
+            } finally {
+                engine.releaseAllReaders();
+            }
+        });
+    }
+
     @Test
     public void testAddSymbolColumnConcurrent() throws Throwable {
         ConcurrentLinkedQueue<Throwable> exceptions = new ConcurrentLinkedQueue<>();
@@ -32,11 +32,13 @@ import io.questdb.network.Net;
 import io.questdb.network.NetworkError;
 import io.questdb.network.NetworkFacade;
 import io.questdb.network.NetworkFacadeImpl;
+import io.questdb.std.Misc;
 import io.questdb.std.Os;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
 public class LinuxLineUdpProtoReceiverTest extends AbstractCairoTest {
@@ -72,6 +74,26 @@ public class LinuxLineUdpProtoReceiverTest extends AbstractCairoTest {
         assertFrequentCommit(GENERIC_FACTORY);
     }
 
+    @Test
+    public void testGenericMulticastSingleSocket() throws Exception {
+        assertMulticastSingleSocket(GENERIC_FACTORY);
+    }
+
+    @Test
+    public void testGenericMultiSocketConcurrentSenders() throws Exception {
+        assertMultiSocketConcurrentSenders(GENERIC_FACTORY, 2);
+    }
+
+    @Test
+    public void testGenericMultiSocketManyTables() throws Exception {
+        assertMultiSocketConcurrentSenders(GENERIC_FACTORY, 8);
+    }
+
+    @Test
+    public void testGenericMultiSocketReceive() throws Exception {
+        assertMultiSocketReceive(GENERIC_FACTORY);
+    }
+
     @Test
     public void testGenericSimpleReceive() throws Exception {
         assertReceive(new DefaultLineUdpReceiverConfiguration(), GENERIC_FACTORY);
@@ -117,6 +139,38 @@ public class LinuxLineUdpProtoReceiverTest extends AbstractCairoTest {
         assertFrequentCommit(LINUX_FACTORY);
     }
 
+    @Test
+    public void testLinuxMulticastSingleSocket() throws Exception {
+        if (Os.type != Os.LINUX_AMD64) {
+            return;
+        }
+        assertMulticastSingleSocket(LINUX_FACTORY);
+    }
+
+    @Test
+    public void testLinuxMultiSocketConcurrentSenders() throws Exception {
+        if (Os.type != Os.LINUX_AMD64) {
+            return;
+        }
+        assertMultiSocketConcurrentSenders(LINUX_FACTORY, 2);
+    }
+
+    @Test
+    public void testLinuxMultiSocketManyTables() throws Exception {
+        if (Os.type != Os.LINUX_AMD64) {
+            return;
+        }
+        assertMultiSocketConcurrentSenders(LINUX_FACTORY, 8);
+    }
+
+    @Test
+    public void testLinuxMultiSocketReceive() throws Exception {
+        if (Os.type != Os.LINUX_AMD64) {
+            return;
+        }
+        assertMultiSocketReceive(LINUX_FACTORY);
+    }
+
     @Test
     public void testLinuxSimpleReceive() throws Exception {
         if (Os.type != Os.LINUX_AMD64) {
@@ -223,6 +277,124 @@ public class LinuxLineUdpProtoReceiverTest extends AbstractCairoTest {
         assertReceive(configuration, factory);
     }
 
+    private void assertMulticastSingleSocket(ReceiverFactory factory) throws Exception {
+        final AtomicInteger socketCount = new AtomicInteger();
+        final NetworkFacade nf = new NetworkFacadeImpl() {
+            @Override
+            public long socketUdp() {
+                socketCount.incrementAndGet();
+                return super.socketUdp();
+            }
+        };
+        // every socket joined to the group would receive a copy of each datagram,
+        // socket count is ignored and rows must not be duplicated
+        LineUdpReceiverConfiguration configuration = new DefaultLineUdpReceiverConfiguration() {
+            @Override
+            public NetworkFacade getNetworkFacade() {
+                return nf;
+            }
+
+            @Override
+            public int getSocketCount() {
+                return 4;
+            }
+        };
+        assertReceive(configuration, factory);
+        Assert.assertEquals(1, socketCount.get());
+    }
+
+    private void assertMultiSocketConcurrentSenders(ReceiverFactory factory, int tableCount) throws Exception {
+        final AtomicInteger socketCount = new AtomicInteger();
+        final NetworkFacade nf = new NetworkFacadeImpl() {
+            @Override
+            public long socketUdp() {
+                socketCount.incrementAndGet();
+                return super.socketUdp();
+            }
+        };
+        final LineUdpReceiverConfiguration receiverCfg = new DefaultLineUdpReceiverConfiguration() {
+            @Override
+            public NetworkFacade getNetworkFacade() {
+                return nf;
+            }
+
+            @Override
+            public int getSocketCount() {
+                return 4;
+            }
+
+            @Override
+            public boolean isUnicast() {
+                return true;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            final int senderCount = 8;
+            final int rowCount = 120;
+            try (CairoEngine engine = new CairoEngine(configuration)) {
+                for (int t = 0; t < tableCount; t++) {
+                    try (TableModel model = new TableModel(configuration, "tab" + t, PartitionBy.NONE)
+                            .col("sender", ColumnType.INT)
+                            .col("size", ColumnType.DOUBLE)
+                            .timestamp()) {
+                        CairoTestUtils.create(model);
+                    }
+                }
+
+                try (AbstractLineProtoUdpReceiver receiver = factory.create(receiverCfg, engine, null, false, null, null, metrics)) {
+                    Assert.assertEquals(4, socketCount.get());
+                    receiver.start();
+
+                    // senders bind to different ports, the kernel spreads them across sockets,
+                    // receivers pass lines on to the receiver that owns the table
+                    final LineUdpSender[] senders = new LineUdpSender[senderCount];
+                    try {
+                        for (int i = 0; i < senderCount; i++) {
+                            senders[i] = new LineUdpSender(NetworkFacadeImpl.INSTANCE, 0, Net.parseIPv4("127.0.0.1"), receiverCfg.getPort(), 200, 1);
+                        }
+                        for (int r = 0; r < rowCount; r++) {
+                            for (int i = 0; i < senderCount; i++) {
+                                senders[i].metric("tab" + (r % tableCount)).field("sender", i).field("size", r + 0.5).$(100000000000L + r);
+                            }
+                        }
+                        for (int i = 0; i < senderCount; i++) {
+                            senders[i].flush();
+                        }
+                    } finally {
+                        Misc.free(senders);
+                    }
+
+                    for (int t = 0; t < tableCount; t++) {
+                        try (TableReader reader = new TableReader(new DefaultCairoConfiguration(root), "tab" + t, null)) {
+                            int count = 1000000;
+                            while (count-- > 0 && reader.size() < senderCount * rowCount / tableCount) {
+                                reader.reload();
+                                Os.pause();
+                            }
+                            Assert.assertEquals(senderCount * rowCount / tableCount, reader.size());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void assertMultiSocketReceive(ReceiverFactory factory) throws Exception {
+        LineUdpReceiverConfiguration configuration = new DefaultLineUdpReceiverConfiguration() {
+            @Override
+            public int getSocketCount() {
+                return 4;
+            }
+
+            @Override
+            public boolean isUnicast() {
+                return true;
+            }
+        };
+        assertReceive(configuration, factory);
+    }
+
     private void assertReceive(LineUdpReceiverConfiguration receiverCfg, ReceiverFactory factory) throws Exception {
         TestUtils.assertMemoryLeak(() -> {
             final String expected = "colour\tshape\tsize\ttimestamp\n" +
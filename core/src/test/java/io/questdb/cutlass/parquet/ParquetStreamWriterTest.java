@@ -0,0 +1,358 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.parquet;
+
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.Unsafe;
+import io.questdb.std.Zip;
+import io.questdb.std.str.StringSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.questdb.cairo.sql.DataFrameCursorFactory.ORDER_ASC;
+
+public class ParquetStreamWriterTest extends AbstractGriffinTest {
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_PLAIN_DICTIONARY = 2;
+
+    @Test
+    public void testCodecOf() {
+        Assert.assertEquals(ParquetStreamWriter.CODEC_SNAPPY, ParquetStreamWriter.codecOf("Snappy"));
+        Assert.assertEquals(ParquetStreamWriter.CODEC_GZIP, ParquetStreamWriter.codecOf("gzip"));
+        Assert.assertEquals(ParquetStreamWriter.CODEC_UNCOMPRESSED, ParquetStreamWriter.codecOf("none"));
+        Assert.assertEquals(ParquetStreamWriter.CODEC_UNCOMPRESSED, ParquetStreamWriter.codecOf("uncompressed"));
+        Assert.assertEquals(-1, ParquetStreamWriter.codecOf("lz4"));
+    }
+
+    @Test
+    public void testCursorAndPageFrameProduceSameFile() throws Exception {
+        // gzip header is allocated once, when Zip class is loaded
+        Zip.init();
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select" +
+                    " rnd_int(0, 100, 2) i," +
+                    " rnd_double(2) d," +
+                    " rnd_boolean() b," +
+                    " rnd_byte() bt," +
+                    " rnd_short() sh," +
+                    " rnd_symbol('a','b','c',null) s," +
+                    " timestamp_sequence(0, 100000000) t" +
+                    " from long_sequence(100)" +
+                    ") timestamp (t) partition by DAY", sqlExecutionContext);
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory();
+                    ParquetStreamWriter writer = new ParquetStreamWriter(30)
+            ) {
+                Assert.assertTrue(ParquetStreamWriter.isPageFrameExportSupported(factory.getMetadata()));
+                for (int codec = ParquetStreamWriter.CODEC_UNCOMPRESSED; codec <= ParquetStreamWriter.CODEC_GZIP; codec++) {
+                    final byte[] cursorFile;
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        writer.of(factory.getMetadata(), cursor, 5, 95, codec);
+                        cursorFile = drain(writer, 3, 7);
+                    }
+
+                    final byte[] frameFile;
+                    try (PageFrameCursor cursor = factory.getPageFrameCursor(sqlExecutionContext, ORDER_ASC)) {
+                        writer.of(factory.getMetadata(), cursor, 5, 95, codec);
+                        frameFile = drain(writer, 3, 7);
+                    }
+                    Assert.assertArrayEquals(cursorFile, frameFile);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDecodePages() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x (s symbol, str string, l long)", sqlExecutionContext);
+            executeInsert("insert into x values ('a', 'x', 1)");
+            executeInsert("insert into x values (null, 'yz', null)");
+            executeInsert("insert into x values ('b', null, 3)");
+            executeInsert("insert into x values ('a', '', 4)");
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory();
+                    ParquetStreamWriter writer = new ParquetStreamWriter(1000);
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                writer.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE, ParquetStreamWriter.CODEC_UNCOMPRESSED);
+                final PageReader reader = new PageReader(drain(writer, 1, 3));
+
+                // symbol column is dictionary encoded
+                reader.nextPage();
+                Assert.assertEquals(PAGE_DICTIONARY, reader.header.get("1").intValue());
+                Assert.assertEquals(2, reader.header.get("7.1").intValue());
+                Assert.assertEquals(ENCODING_PLAIN_DICTIONARY, reader.header.get("7.2").intValue());
+                final String[] dictionary = {reader.readString(), reader.readString()};
+                Assert.assertEquals("a", dictionary[0]);
+                Assert.assertEquals("b", dictionary[1]);
+
+                reader.nextPage();
+                Assert.assertEquals(PAGE_DATA, reader.header.get("1").intValue());
+                Assert.assertEquals(4, reader.header.get("5.1").intValue());
+                Assert.assertEquals(ENCODING_PLAIN_DICTIONARY, reader.header.get("5.2").intValue());
+                boolean[] defined = reader.readDefinitionLevels(4);
+                final int bitWidth = reader.bytes[reader.pos++];
+                final int[] keys = reader.readHybrid(bitWidth, 3);
+                final StringSink sink = new StringSink();
+                for (int r = 0, k = 0; r < 4; r++) {
+                    sink.put(defined[r] ? dictionary[keys[k++]] : "null").put(',');
+                }
+                Assert.assertEquals("a,null,b,a,", sink.toString());
+
+                reader.nextPage();
+                Assert.assertEquals(PAGE_DATA, reader.header.get("1").intValue());
+                Assert.assertEquals(ENCODING_PLAIN, reader.header.get("5.2").intValue());
+                defined = reader.readDefinitionLevels(4);
+                sink.clear();
+                for (int r = 0; r < 4; r++) {
+                    sink.put(defined[r] ? reader.readString() : "null").put(',');
+                }
+                Assert.assertEquals("x,yz,null,,", sink.toString());
+
+                reader.nextPage();
+                Assert.assertEquals(PAGE_DATA, reader.header.get("1").intValue());
+                Assert.assertEquals(ENCODING_PLAIN, reader.header.get("5.2").intValue());
+                defined = reader.readDefinitionLevels(4);
+                sink.clear();
+                for (int r = 0; r < 4; r++) {
+                    if (defined[r]) {
+                        sink.put(reader.readLong());
+                    } else {
+                        sink.put("null");
+                    }
+                    sink.put(',');
+                }
+                Assert.assertEquals("1,null,3,4,", sink.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testEmptyResult() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select x l, rnd_str(3, 3, 1) s from long_sequence(7))", sqlExecutionContext);
+            try (
+                    RecordCursorFactory factory = compiler.compile("x where l < 0", sqlExecutionContext).getRecordCursorFactory();
+                    ParquetStreamWriter writer = new ParquetStreamWriter(1000);
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                writer.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE, ParquetStreamWriter.CODEC_SNAPPY);
+                drain(writer, 0, 2);
+                Assert.assertFalse(writer.nextMessage());
+            }
+        });
+    }
+
+    @Test
+    public void testVarSizeColumnsUseCursor() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select" +
+                    " rnd_str(3, 3, 1) s," +
+                    " rnd_long256() l256," +
+                    " rnd_geohash(20) g," +
+                    " rnd_bin(1, 8, 1) bn," +
+                    " x l" +
+                    " from long_sequence(7))", sqlExecutionContext);
+
+            try (
+                    RecordCursorFactory factory = compiler.compile("x where l > 2", sqlExecutionContext).getRecordCursorFactory();
+                    ParquetStreamWriter writer = new ParquetStreamWriter(2);
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                Assert.assertFalse(ParquetStreamWriter.isPageFrameExportSupported(factory.getMetadata()));
+                writer.of(factory.getMetadata(), cursor, 0, Long.MAX_VALUE, ParquetStreamWriter.CODEC_GZIP);
+                drain(writer, 3, 5);
+                Assert.assertFalse(writer.nextMessage());
+            }
+        });
+    }
+
+    // magic bytes, column chunk for every column of every row group and the footer
+    private static byte[] drain(ParquetStreamWriter writer, int rowGroupCount, int columnCount) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int messageCount = 0;
+        while (writer.nextMessage()) {
+            messageCount++;
+            for (int i = 0, n = writer.getSegmentCount(); i < n; i++) {
+                final long address = writer.getSegmentAddress(i);
+                for (long p = 0, size = writer.getSegmentSize(i); p < size; p++) {
+                    out.write(Unsafe.getUnsafe().getByte(address + p));
+                }
+            }
+        }
+        Assert.assertEquals(2 + rowGroupCount * columnCount, messageCount);
+
+        final byte[] bytes = out.toByteArray();
+        Assert.assertEquals("PAR1", new String(bytes, 0, 4));
+        Assert.assertEquals("PAR1", new String(bytes, bytes.length - 4, 4));
+        final int footerLength = (bytes[bytes.length - 8] & 0xff)
+                | (bytes[bytes.length - 7] & 0xff) << 8
+                | (bytes[bytes.length - 6] & 0xff) << 16
+                | (bytes[bytes.length - 5] & 0xff) << 24;
+        Assert.assertTrue(footerLength > 0 && footerLength <= bytes.length - 12);
+        return bytes;
+    }
+
+    // reads pages of uncompressed file one after another
+    private static class PageReader {
+        private final byte[] bytes;
+        // i32 fields of the page header keyed by their path of field ids, e.g. "5.2"
+        private final Map<String, Long> header = new HashMap<>();
+        private int pos = 4;
+        private int pageEnd = 4;
+
+        private PageReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private void nextPage() {
+            pos = pageEnd;
+            header.clear();
+            readStruct("");
+            pageEnd = pos + header.get("3").intValue();
+            Assert.assertEquals(header.get("2"), header.get("3"));
+        }
+
+        private boolean[] readDefinitionLevels(int rows) {
+            final int len = readInt();
+            final int end = pos + len;
+            final int[] levels = readHybrid(1, rows);
+            Assert.assertEquals(end, pos);
+            final boolean[] defined = new boolean[rows];
+            for (int i = 0; i < rows; i++) {
+                defined[i] = levels[i] == 1;
+            }
+            return defined;
+        }
+
+        // RLE and bit-packed hybrid encoding
+        private int[] readHybrid(int bitWidth, int count) {
+            final int[] values = new int[count];
+            int n = 0;
+            while (n < count) {
+                final long runHeader = readVarint();
+                if ((runHeader & 1) == 0) {
+                    int value = 0;
+                    for (int i = 0, len = (bitWidth + 7) / 8; i < len; i++) {
+                        value |= (bytes[pos++] & 0xff) << (i * 8);
+                    }
+                    for (long i = runHeader >>> 1; i > 0 && n < count; i--) {
+                        values[n++] = value;
+                    }
+                } else {
+                    final int valueCount = (int) (runHeader >>> 1) * 8;
+                    final int lo = pos;
+                    for (int i = 0; i < valueCount; i++) {
+                        int value = 0;
+                        for (int b = 0; b < bitWidth; b++) {
+                            final int bit = i * bitWidth + b;
+                            value |= ((bytes[lo + bit / 8] >> (bit % 8)) & 1) << b;
+                        }
+                        if (n < count) {
+                            values[n++] = value;
+                        }
+                    }
+                    pos = lo + valueCount * bitWidth / 8;
+                }
+            }
+            return values;
+        }
+
+        private int readInt() {
+            final int value = (bytes[pos] & 0xff)
+                    | (bytes[pos + 1] & 0xff) << 8
+                    | (bytes[pos + 2] & 0xff) << 16
+                    | (bytes[pos + 3] & 0xff) << 24;
+            pos += 4;
+            return value;
+        }
+
+        private long readLong() {
+            final long lo = readInt() & 0xffffffffL;
+            return lo | (long) readInt() << 32;
+        }
+
+        private String readString() {
+            final int len = readInt();
+            final String value = new String(bytes, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return value;
+        }
+
+        // Thrift compact protocol struct, only the field types page header uses
+        private void readStruct(String path) {
+            int fieldId = 0;
+            while (true) {
+                final int b = bytes[pos++] & 0xff;
+                if (b == 0) {
+                    return;
+                }
+                final int delta = b >>> 4;
+                fieldId = delta != 0 ? fieldId + delta : (int) zigzag(readVarint());
+                final String fieldPath = path + fieldId;
+                switch (b & 0x0f) {
+                    case 5:
+                    case 6:
+                        header.put(fieldPath, zigzag(readVarint()));
+                        break;
+                    case 12:
+                        readStruct(fieldPath + '.');
+                        break;
+                    default:
+                        Assert.fail("unexpected thrift type: " + (b & 0x0f));
+                }
+            }
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++] & 0xff;
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static long zigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
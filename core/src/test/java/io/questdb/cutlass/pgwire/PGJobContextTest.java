@@ -60,6 +60,7 @@ import org.postgresql.core.BaseConnection;
 import org.postgresql.util.PGTimestamp;
 import org.postgresql.util.PSQLException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -1198,6 +1199,63 @@ public class PGJobContextTest extends BasePGTest {
         });
     }
 
+    @Test
+    public void testBatchInsertAutoCommitIsAtomic() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("create table anothertab(id long, val int, k timestamp) timestamp(k)");
+                }
+
+                // pipelined inserts are committed together on Sync, the out-of-order row
+                // fails the batch and none of the rows are kept
+                try (PreparedStatement batchInsert = connection.prepareStatement("insert into anothertab(id, val, k) values(?,?,?)")) {
+                    batchInsert.setLong(1, 3L);
+                    batchInsert.setInt(2, 4);
+                    batchInsert.setLong(3, 1_000L);
+                    batchInsert.addBatch();
+                    batchInsert.setLong(1, 4L);
+                    batchInsert.setInt(2, 5);
+                    batchInsert.setLong(3, 2_000L);
+                    batchInsert.addBatch();
+                    batchInsert.setLong(1, 5L);
+                    batchInsert.setInt(2, 6);
+                    batchInsert.setLong(3, 0L);
+                    batchInsert.addBatch();
+                    batchInsert.executeBatch();
+                    Assert.fail();
+                } catch (SQLException e) {
+                    LOG.error().$(e).$();
+                }
+
+                StringSink sink = new StringSink();
+                try (Statement statement = connection.createStatement()) {
+                    ResultSet rs = statement.executeQuery("select * from anothertab");
+                    assertResultSet("id[BIGINT],val[INTEGER],k[TIMESTAMP]\n", sink, rs);
+                }
+
+                try (PreparedStatement batchInsert = connection.prepareStatement("insert into anothertab(id, val, k) values(?,?,?)")) {
+                    for (int i = 0; i < 100; i++) {
+                        batchInsert.setLong(1, i);
+                        batchInsert.setInt(2, i);
+                        batchInsert.setLong(3, i * 1_000L);
+                        batchInsert.addBatch();
+                    }
+                    batchInsert.executeBatch();
+                }
+
+                sink.clear();
+                try (Statement statement = connection.createStatement()) {
+                    ResultSet rs = statement.executeQuery("select count() from anothertab");
+                    assertResultSet("count[BIGINT]\n100\n", sink, rs);
+                }
+            }
+        });
+    }
+
     @Test
     public void testBatchInsertWithTransaction() throws Exception {
         assertMemoryLeak(() -> {
@@ -1658,26 +1716,343 @@ public class PGJobContextTest extends BasePGTest {
     }
 
     @Test
-    @Ignore
-    public void testCopyIn() throws SQLException {
-        try (
-                final PGWireServer ignored = createPGServer(2);
-                final Connection connection = getConnection(false, true)
-        ) {
-            PreparedStatement stmt = connection.prepareStatement("create table tab (a int, b int)");
-            stmt.execute();
+    public void testCommitFailsOnFirstOfTwoTables() throws Exception {
+        assertMemoryLeak(() -> {
+            ff = new FilesFacadeImpl() {
+                @Override
+                public long openRW(LPSZ name, long opts) {
+                    // out-of-order commit into tab_a cannot create its partition
+                    if (Chars.contains(name, "tab_a") && Chars.contains(name, "1970-01-01")) {
+                        return -1;
+                    }
+                    return super.openRW(name, opts);
+                }
+            };
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table tab_a (a int, ts timestamp) timestamp(ts) partition by DAY");
+                    statement.execute("create table tab_b (b int, ts timestamp) timestamp(ts) partition by DAY");
+                    statement.execute("insert into tab_a values (1, '1970-01-02')");
+                }
 
-            CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("insert into tab_a values (2, '1970-01-01')");
+                    statement.execute("insert into tab_b values (3, '1970-01-01')");
+                }
+                try {
+                    connection.commit();
+                    Assert.fail();
+                } catch (PSQLException e) {
+                    LOG.error().$(e).$();
+                }
+                connection.setAutoCommit(true);
 
-            CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
+                // neither table kept the rows and both writers were released
+                final StringSink sink = new StringSink();
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("insert into tab_b values (4, '1970-01-02')");
+                    try (ResultSet rs = statement.executeQuery("select a from tab_a")) {
+                        assertResultSet("a[INTEGER]\n1\n", sink, rs);
+                    }
+                    sink.clear();
+                    try (ResultSet rs = statement.executeQuery("select b from tab_b")) {
+                        assertResultSet("b[INTEGER]\n4\n", sink, rs);
+                    }
+                }
+            }
+        });
+    }
 
-            String text = "a,b\r\n" +
-                    "10,20";
+    @Test
+    public void testCopyInBinary() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b string, ts timestamp) timestamp(ts) partition by DAY").execute();
 
-            byte[] bytes = text.getBytes();
-            copyIn.writeToCopy(bytes, 0, bytes.length);
-            copyIn.endCopy();
-        }
+                final java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(1024);
+                buf.put(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0}).putInt(0).putInt(0);
+                for (int i = 0; i < 3; i++) {
+                    buf.putShort((short) 3);
+                    buf.putInt(4).putInt(i * 10);
+                    if (i == 1) {
+                        buf.putInt(-1);
+                    } else {
+                        final byte[] str = ("s" + i).getBytes();
+                        buf.putInt(str.length).put(str);
+                    }
+                    // micros since 2000-01-01
+                    buf.putInt(8).putLong(i * 1_000_000L);
+                }
+                buf.putShort((short) -1);
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final CopyIn copyIn = copyManager.copyIn("copy tab from STDIN with (format binary)");
+                // split frames mid-tuple
+                copyIn.writeToCopy(buf.array(), 0, 20);
+                copyIn.writeToCopy(buf.array(), 20, buf.position() - 20);
+                Assert.assertEquals(3, copyIn.endCopy());
+
+                final StringSink sink = new StringSink();
+                try (ResultSet rs = connection.createStatement().executeQuery("tab")) {
+                    assertResultSet(
+                            "a[INTEGER],b[VARCHAR],ts[TIMESTAMP]\n" +
+                                    "0,s0,2000-01-01 00:00:00.0\n" +
+                                    "10,null,2000-01-01 00:00:01.0\n" +
+                                    "20,s2,2000-01-01 00:00:02.0\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInCsv() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b string)").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final CopyIn copyIn = copyManager.copyIn("copy tab from STDIN with (format csv, header true)");
+                final byte[] bytes = ("a,b\r\n" +
+                        "10,x\r\n" +
+                        "20,\"y,z\"\r\n").getBytes();
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                Assert.assertEquals(2, copyIn.endCopy());
+
+                final StringSink sink = new StringSink();
+                try (ResultSet rs = connection.createStatement().executeQuery("tab")) {
+                    assertResultSet(
+                            "a[INTEGER],b[VARCHAR]\n" +
+                                    "10,x\n" +
+                                    "20,y,z\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInMissingTable() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                try {
+                    copyManager.copyIn("copy tab from STDIN");
+                    Assert.fail();
+                } catch (PSQLException e) {
+                    assertContains(e.getMessage(), "table 'tab' does not exist");
+                }
+                // connection is still usable
+                connection.prepareStatement("create table tab (a int)").execute();
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInText() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b string)").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
+                final byte[] bytes = ("10\tx\n" +
+                        "\\N\ty\n" +
+                        "30\t\\N\n").getBytes();
+                // one byte per frame
+                for (int i = 0; i < bytes.length; i++) {
+                    copyIn.writeToCopy(bytes, i, 1);
+                }
+                Assert.assertEquals(3, copyIn.endCopy());
+
+                final StringSink sink = new StringSink();
+                try (ResultSet rs = connection.createStatement().executeQuery("tab")) {
+                    assertResultSet(
+                            "a[INTEGER],b[VARCHAR]\n" +
+                                    "10,x\n" +
+                                    "null,y\n" +
+                                    "30,null\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInTextBadRow() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b string)").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
+                final byte[] bytes = ("10\tx\n" +
+                        "abc\ty\n" +
+                        "30\tz\n").getBytes();
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                try {
+                    copyIn.endCopy();
+                    Assert.fail();
+                } catch (PSQLException e) {
+                    assertContains(e.getMessage(), "invalid value [line=2, column=a, type=INT]");
+                }
+
+                // rows before the bad one are rolled back
+                final StringSink sink = new StringSink();
+                try (ResultSet rs = connection.createStatement().executeQuery("select count() from tab")) {
+                    assertResultSet(
+                            "count[BIGINT]\n" +
+                                    "0\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInTextEscapes() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b string)").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
+                final byte[] bytes = ("1\ttab\\there\n" +
+                        "2\tline1\\nline2\n" +
+                        "3\tback\\\\slash\n" +
+                        "4\t\"quoted\n" +
+                        "5\t\\\\N\n" +
+                        "6\tdelimiter\\\tescaped\n" +
+                        "7\toctal \\101 hex \\x42\n" +
+                        "\\.\n").getBytes();
+                // one byte per frame
+                for (int i = 0; i < bytes.length; i++) {
+                    copyIn.writeToCopy(bytes, i, 1);
+                }
+                Assert.assertEquals(7, copyIn.endCopy());
+
+                final StringSink sink = new StringSink();
+                try (ResultSet rs = connection.createStatement().executeQuery("tab")) {
+                    assertResultSet(
+                            "a[INTEGER],b[VARCHAR]\n" +
+                                    "1,tab\there\n" +
+                                    "2,line1\nline2\n" +
+                                    "3,back\\slash\n" +
+                                    "4,\"quoted\n" +
+                                    "5,\\N\n" +
+                                    "6,delimiter\tescaped\n" +
+                                    "7,octal A hex B\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyOutBinary() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab as (select cast(x as int) a, cast(x * 1000000 as timestamp) ts from long_sequence(2))").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Assert.assertEquals(2, copyManager.copyOut("copy tab to STDOUT with (format binary)", out));
+
+                final java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(1024);
+                buf.put(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0}).putInt(0).putInt(0);
+                for (int i = 1; i < 3; i++) {
+                    buf.putShort((short) 2);
+                    buf.putInt(4).putInt(i);
+                    // micros since 2000-01-01
+                    buf.putInt(8).putLong(i * 1_000_000L - 946684800000000L);
+                }
+                buf.putShort((short) -1);
+                Assert.assertArrayEquals(java.util.Arrays.copyOf(buf.array(), buf.position()), out.toByteArray());
+            }
+        });
+    }
+
+    @Test
+    public void testCopyOutCsv() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab as (select cast(x as int) a, cast(x * 1000000 as timestamp) ts from long_sequence(3))").execute();
+                connection.prepareStatement("insert into tab values (null, 4000000)").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Assert.assertEquals(2, copyManager.copyOut("copy (select a, 'x,\"y' b from tab where ts > 2000000) to STDOUT with (format csv, header true)", out));
+                Assert.assertEquals(
+                        "a,b\n" +
+                                "3,\"x,\"\"y\"\n" +
+                                ",\"x,\"\"y\"\n",
+                        out.toString()
+                );
+            }
+        });
+    }
+
+    @Test
+    public void testCopyOutText() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.prepareStatement("create table tab (a int, b string, ts timestamp)").execute();
+                connection.prepareStatement("insert into tab values (1, 'x\ty', 1000000)").execute();
+                connection.prepareStatement("insert into tab values (null, null, 2000000)").execute();
+                connection.prepareStatement("insert into tab values (3, 'a\\b', null)").execute();
+
+                final CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Assert.assertEquals(3, copyManager.copyOut("copy tab to STDOUT", out));
+                Assert.assertEquals(
+                        "1\tx\\ty\t1970-01-01 00:00:01.000000\n" +
+                                "\\N\t\\N\t1970-01-01 00:00:02.000000\n" +
+                                "3\ta\\\\b\t\\N\n",
+                        out.toString()
+                );
+            }
+        });
     }
 
     @Test
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Test;
+
+public class PGTimestampFormatterTest {
+    private final PGTimestampFormatter formatter = new PGTimestampFormatter();
+    private final StringSink expected = new StringSink();
+    private final StringSink actual = new StringSink();
+
+    @Test
+    public void testDayBoundaries() {
+        assertFormat(0);
+        assertFormat(Timestamps.DAY_MICROS - 1);
+        assertFormat(Timestamps.DAY_MICROS);
+        assertFormat(-1);
+        assertFormat(-Timestamps.DAY_MICROS - 1);
+        assertFormat(951782400000000L); // 2000-02-29
+        assertFormat(253402300799999999L);
+    }
+
+    @Test
+    public void testRandom() {
+        final Rnd rnd = new Rnd();
+        for (int i = 0; i < 10_000; i++) {
+            assertFormat(rnd.nextLong() % 253402300799999999L);
+        }
+    }
+
+    @Test
+    public void testSequence() {
+        for (long ts = 1640995200000000L, hi = ts + 3 * Timestamps.DAY_MICROS; ts < hi; ts += 7_000_123L) {
+            assertFormat(ts);
+        }
+    }
+
+    private void assertFormat(long micros) {
+        expected.clear();
+        actual.clear();
+        TimestampFormatUtils.PG_TIMESTAMP_FORMAT.format(micros, null, null, expected);
+        formatter.format(micros, actual);
+        TestUtils.assertEquals(expected, actual);
+    }
+}
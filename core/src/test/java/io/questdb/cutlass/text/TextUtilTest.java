@@ -35,6 +35,27 @@ import java.nio.charset.StandardCharsets;
 
 public class TextUtilTest {
 
+    @Test
+    public void testFindQuoteOrLineEnd() {
+        assertFind("abcdefghijklmnopqrst\"uv", 20, false);
+        assertFind("abcdefg\nhijklmnop", 7, false);
+        assertFind("abcdefghijklmnop\r", 16, false);
+        assertFind("a,b,c,d,e,f,g,h", 15, false);
+        assertFind("ąćęłńóśźż\"ąćęłńóśźż", 18, false);
+        assertFind("", 0, false);
+    }
+
+    @Test
+    public void testFindStructuralByte() {
+        assertFind("abcdefghijklmnopqrst,uv", 20, true);
+        assertFind("abcdefg\"hijklmnop", 7, true);
+        assertFind("abcdefghijklmnop\n", 16, true);
+        assertFind("abc\r", 3, true);
+        assertFind("abcdefghijklmnopq", 17, true);
+        assertFind("ąćęłńóśźżąćęłńóśźż|", 36, true);
+        assertFind("", 0, true);
+    }
+
     @Test
     public void testQuotedTextParsing() throws Utf8Exception {
         StringSink query = new StringSink();
@@ -65,6 +86,26 @@ public class TextUtilTest {
         Assert.assertEquals(text.replace("\"\"", "\""), query.toString());
     }
 
+    private void assertFind(String text, int expected, boolean structural) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        // leave room for an unaligned start
+        long size = bytes.length + 3;
+        long ptr = Unsafe.malloc(size, MemoryTag.NATIVE_DEFAULT);
+        try {
+            for (int offset = 0; offset < 4; offset++) {
+                long lo = ptr + offset;
+                for (int i = 0; i < bytes.length; i++) {
+                    Unsafe.getUnsafe().putByte(lo + i, bytes[i]);
+                }
+                long hi = lo + bytes.length;
+                long found = structural ? TextUtil.findStructuralByte(lo, hi, (byte) (text.indexOf('|') > -1 ? '|' : ',')) : TextUtil.findQuoteOrLineEnd(lo, hi);
+                Assert.assertEquals(expected, found - lo);
+            }
+        } finally {
+            Unsafe.free(ptr, size, MemoryTag.NATIVE_DEFAULT);
+        }
+    }
+
     private void copyToSinkWithTextUtil(StringSink query, String text, boolean doubleQuoteParse) throws Utf8Exception {
         byte[] bytes = text.getBytes(Files.UTF_8);
         long ptr = Unsafe.malloc(bytes.length, MemoryTag.NATIVE_DEFAULT);
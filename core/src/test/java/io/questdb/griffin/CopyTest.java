@@ -24,11 +24,30 @@
 
 package io.questdb.griffin;
 
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.PartitionBy;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cutlass.text.Atomicity;
+import io.questdb.cutlass.text.ParallelCsvFileImporter;
+import io.questdb.griffin.model.CopyModel;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 public class CopyTest extends AbstractGriffinTest {
     @BeforeClass
@@ -67,6 +86,184 @@ public class CopyTest extends AbstractGriffinTest {
         ));
     }
 
+    @Test
+    public void testCopyToFile() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x to 'x.csv' with (format csv)",
+                null,
+                10,
+                "only parquet format is supported for COPY TO file"
+        ));
+    }
+
+    @Test
+    public void testCopyToFileHack() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x to '../x.parquet'",
+                null,
+                10,
+                "'.' is not allowed"
+        ));
+    }
+
+    @Test
+    public void testCopyToParquet() throws Exception {
+        // gzip header is allocated once, when Zip class is loaded
+        Zip.init();
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select x a, rnd_symbol('a','b',null) s, rnd_str(2,2,1) b from long_sequence(100))", sqlExecutionContext);
+            final File file = new File(inputRoot, "x.parquet");
+            try {
+                CompiledQuery cq = compiler.compile("copy (select a, s, b from x where a > 1) to 'x.parquet' with (format parquet, compression gzip)", sqlExecutionContext);
+                Assert.assertEquals(CompiledQuery.COPY_LOCAL, cq.getType());
+                assertParquetFile(file);
+
+                // format is implied by the target, file is overwritten
+                compiler.compile("copy x to 'x.parquet'", sqlExecutionContext);
+                assertParquetFile(file);
+            } finally {
+                Assert.assertTrue(!file.exists() || file.delete());
+            }
+        });
+    }
+
+    @Test
+    public void testCopyToParquetInvalidCompression() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x to 'x.parquet' with (format parquet, compression lz4)",
+                null,
+                56,
+                "'snappy', 'gzip' or 'uncompressed' expected"
+        ));
+    }
+
+    @Test
+    public void testCopyToStdoutParquet() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x to stdout with (format parquet)",
+                null,
+                10,
+                "parquet format is only supported for COPY TO file"
+        ));
+    }
+
+    @Test
+    public void testCopyToStdout() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select x a from long_sequence(3))", sqlExecutionContext);
+            CompiledQuery cq = compiler.compile("copy (select a from x where a > 1) to stdout with (format csv, header true)", sqlExecutionContext);
+            try (RecordCursorFactory factory = cq.getRecordCursorFactory()) {
+                Assert.assertEquals(CompiledQuery.COPY_TO_REMOTE, cq.getType());
+                Assert.assertEquals(CopyModel.FORMAT_CSV, cq.getCopyFormat());
+                Assert.assertEquals(',', cq.getCopyDelimiter());
+                Assert.assertTrue(cq.isCopyHeader());
+                assertCursor("a\n2\n3\n", factory, true, true, false);
+            }
+
+            cq = compiler.compile("copy x to stdout", sqlExecutionContext);
+            try (RecordCursorFactory ignored = cq.getRecordCursorFactory()) {
+                Assert.assertEquals(CopyModel.FORMAT_TEXT, cq.getCopyFormat());
+                Assert.assertEquals('\t', cq.getCopyDelimiter());
+                Assert.assertFalse(cq.isCopyHeader());
+            }
+        });
+    }
+
+    @Test
+    public void testParallelCopy() throws Exception {
+        assertMemoryLeak(() -> {
+            final File file = new File(inputRoot, "parallel.csv");
+            final Rnd rnd = new Rnd();
+            final StringSink sink = new StringSink();
+            sink.put("id,ts,sym,s\r\n");
+            for (int i = 0; i < 5000; i++) {
+                // lines are not in timestamp order, they span 5 days
+                final long ts = 1_600_000_000_000_000L + rnd.nextPositiveLong() % (5 * Timestamps.DAY_MICROS);
+                sink.put(i).put(',');
+                TimestampFormatUtils.appendDateTimeUSec(sink, ts / 10_000 * 10_000 + i);
+                sink.put(',').put(rnd.nextInt(5) == 0 ? "" : "s" + rnd.nextInt(10));
+                // quoted values with line ends must not be mistaken for line starts
+                sink.put(',').put(i % 4 == 0 ? "\"a,\nb\"\"c\"" : "v" + i).put('\n');
+            }
+            Files.write(file.toPath(), sink.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                compiler.compile("copy s from 'parallel.csv' with header true timestamp 'ts' partition by DAY", sqlExecutionContext);
+
+                sqlCopyParallelMinSize = 0;
+                try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                    compiler.compile("copy p from 'parallel.csv' with header true timestamp 'ts' partition by DAY", new SqlExecutionContextImpl(engine, 4));
+                }
+                Assert.assertFalse(new File(configuration.getSqlCopyWorkRoot().toString(), "p").exists());
+
+                assertSql("select count() from p", "count\n5000\n");
+                assertSql("select s, count() from p where s ~ 'a' order by 1", "s\tcount\na,\nb\"c\t1250\n");
+                TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "s", "p", LOG);
+            } finally {
+                Assert.assertTrue(file.delete());
+            }
+        });
+    }
+
+    @Test
+    public void testParallelCopyAttachFailure() throws Exception {
+        final FilesFacade ff = new FilesFacadeImpl() {
+            private int count;
+
+            @Override
+            public boolean rename(LPSZ from, LPSZ to) {
+                // fail to move the second loaded partition into the table
+                if (Chars.endsWith(to, TableUtils.DETACHED_DIR_MARKER) && ++count == 2) {
+                    return false;
+                }
+                return super.rename(from, to);
+            }
+        };
+        assertMemoryLeak(ff, () -> {
+            final File file = new File(inputRoot, "parallel.csv");
+            writeParallelCsv(file, "2020-09-1");
+            try {
+                sqlCopyParallelMinSize = 0;
+                try (SqlCompiler compiler = new SqlCompiler(engine)) {
+                    compiler.compile("copy p from 'parallel.csv' with header true timestamp 'ts' partition by DAY", new SqlExecutionContextImpl(engine, 4));
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getFlyweightMessage(), "could not move partition");
+                }
+                // partition attached before the failure is removed
+                assertSql("select count() from p", "count\n0\n");
+            } finally {
+                Assert.assertTrue(file.delete());
+            }
+        });
+    }
+
+    @Test
+    public void testParallelCopyBadTimestampSkipAll() throws Exception {
+        assertMemoryLeak(() -> {
+            final File file = new File(inputRoot, "parallel.csv");
+            writeParallelCsv(file, "x");
+            try (
+                    ParallelCsvFileImporter importer = new ParallelCsvFileImporter(engine);
+                    Path path = new Path()
+            ) {
+                importer.configureDestination("p", Atomicity.SKIP_ALL, PartitionBy.DAY, "ts");
+                importer.setForceHeaders(true);
+                final long fd = TableUtils.openRO(configuration.getFilesFacade(), path.of(file.getAbsolutePath()).$(), LOG);
+                try {
+                    importer.process(fd, file.length(), 4, AllowAllCairoSecurityContext.INSTANCE);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getFlyweightMessage(), "bad timestamp");
+                } finally {
+                    configuration.getFilesFacade().close(fd);
+                }
+                assertSql("select count() from p", "count\n0\n");
+            } finally {
+                Assert.assertTrue(file.delete());
+            }
+        });
+    }
+
     @Test
     public void testSimpleCopy() throws Exception {
         assertMemoryLeak(() -> {
@@ -259,4 +456,30 @@ public class CopyTest extends AbstractGriffinTest {
             assertFactoryCursor(expected, expectedTimestamp, factory, supportsRandomAccess, sqlExecutionContext, true, true);
         }
     }
+
+    private static void assertParquetFile(File file) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+            final byte[] magic = new byte[4];
+            f.readFully(magic);
+            Assert.assertEquals("PAR1", new String(magic));
+            f.seek(f.length() - 4);
+            f.readFully(magic);
+            Assert.assertEquals("PAR1", new String(magic));
+            // footer length is stored in little endian
+            f.seek(f.length() - 8);
+            final int footerLength = Integer.reverseBytes(f.readInt());
+            Assert.assertTrue(footerLength > 0 && footerLength < f.length() - 12);
+        }
+    }
+
+    private static void writeParallelCsv(File file, CharSequence lastDayPrefix) throws IOException {
+        final StringSink sink = new StringSink();
+        sink.put("id,ts,s\n");
+        for (int i = 0; i < 2000; i++) {
+            sink.put(i).put(",2020-09-1").put(i % 3).put("T00:00:00.000000Z,v").put(i).put('\n');
+        }
+        // last line, which is past text analysis, has the timestamp of yet another day unless the prefix breaks it
+        sink.put(2000).put(',').put(lastDayPrefix).put("3T00:00:00.000000Z,v2000\n");
+        Files.write(file.toPath(), sink.toString().getBytes(StandardCharsets.UTF_8));
+    }
 }
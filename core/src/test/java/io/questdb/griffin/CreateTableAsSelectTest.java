@@ -58,6 +58,47 @@ public class CreateTableAsSelectTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testCreateTableAsSelectCopiesPageFrames() throws Exception {
+        assertMemoryLeak(() -> {
+            createAllTypesSrcTable();
+
+            compiler.compile("create table dest_month as (select * from src) timestamp(ts) partition by month", sqlExecutionContext);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "src", "dest_month", LOG);
+
+            compiler.compile("create table dest_hour as (select * from src) timestamp(ts) partition by hour", sqlExecutionContext);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "src", "dest_hour", LOG);
+
+            compiler.compile("create table dest_none as (select * from src)", sqlExecutionContext);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "src", "dest_none", LOG);
+
+            compiler.compile("create table dest_index as (select sym, ts from src), index(sym) timestamp(ts) partition by day", sqlExecutionContext);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "select sym, ts from src where sym = 'PZD'", "dest_index where sym = 'PZD'", LOG);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "select sym, ts from src where sym = null", "dest_index where sym = null", LOG);
+        });
+    }
+
+    @Test
+    public void testCreateTableAsSelectUnorderedPageFrames() throws Exception {
+        assertMemoryLeak(() -> {
+            // timestamps are a permutation, so that table does not appear ordered
+            compiler.compile("create table src as (select x id, cast((x * 7919 % 1000) * 1000000000L as timestamp) ts from long_sequence(1000))", sqlExecutionContext);
+            compiler.compile("create table dest as (select * from (src timestamp(ts))) timestamp(ts) partition by hour", sqlExecutionContext);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "src order by ts", "dest", LOG);
+        });
+    }
+
+    @Test
+    public void testInsertAsSelectPageFramesO3() throws Exception {
+        assertMemoryLeak(() -> {
+            createAllTypesSrcTable();
+
+            compiler.compile("create table dest as (select * from src where ts > '1970-01-02T12') timestamp(ts) partition by day", sqlExecutionContext);
+            compiler.compile("insert into dest select * from src where ts <= '1970-01-02T12'", sqlExecutionContext);
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "src", "dest", LOG);
+        });
+    }
+
     private void testCreatePartitionedTableAsSelectWithOrderBy(String orderByClause) throws Exception {
         assertMemoryLeak(() -> {
             createSrcTable();
@@ -79,6 +120,45 @@ public class CreateTableAsSelectTest extends AbstractGriffinTest {
         });
     }
 
+    private void createAllTypesSrcTable() throws SqlException {
+        compiler.compile(
+                "create table src as (" +
+                        "select" +
+                        " x id," +
+                        " rnd_boolean() b," +
+                        " rnd_byte() bt," +
+                        " rnd_short() sh," +
+                        " rnd_int(0, 100, 2) i," +
+                        " rnd_long(0, 1000, 2) l," +
+                        " rnd_float(2) f," +
+                        " rnd_double(2) d," +
+                        " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) dt," +
+                        " rnd_symbol(20, 2, 5, 3) sym," +
+                        " rnd_str(20, 1, 8, 3) s," +
+                        " rnd_char() ch," +
+                        " rnd_long256() l256," +
+                        " rnd_geohash(7) g7," +
+                        " rnd_geohash(60) g60," +
+                        " rnd_bin(1, 20, 3) bin," +
+                        " timestamp_sequence(0, 60000000) ts" +
+                        " from long_sequence(2000)" +
+                        ") timestamp(ts) partition by day",
+                sqlExecutionContext
+        );
+        // columns added later have column tops
+        compiler.compile("alter table src add column late_str string", sqlExecutionContext);
+        compiler.compile("alter table src add column late_sym symbol", sqlExecutionContext);
+        compiler.compile(
+                "insert into src select" +
+                        " x + 2000, rnd_boolean(), rnd_byte(), rnd_short(), rnd_int(), rnd_long(), rnd_float(), rnd_double()," +
+                        " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2), rnd_symbol(20, 2, 5, 3), rnd_str(20, 1, 8, 3)," +
+                        " rnd_char(), rnd_long256(), rnd_geohash(7), rnd_geohash(60), rnd_bin(1, 20, 3)," +
+                        " timestamp_sequence(120000000000, 60000000), rnd_str(10, 1, 5, 2), rnd_symbol('a', 'b', null)" +
+                        " from long_sequence(2000)",
+                sqlExecutionContext
+        );
+    }
+
     private void createSrcTable() throws SqlException {
         compiler.compile("create table src (ts timestamp, v long) timestamp(ts) partition by day;", sqlExecutionContext);
         executeInsert("insert into src values (0, 0);");
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import org.junit.Test;
+
+public class DedupTest extends AbstractGriffinTest {
+
+    @Test
+    public void testColumnTopIsMaterialized() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            executeInsert("insert into x values ('2022-01-01T00:00:00', 'a', 1, 's1'), ('2022-01-01T00:00:00', 'b', 2, 's2')");
+            executeInsert("insert into x values ('2022-01-02T00:00:00', 'a', 3, 's3')");
+            compile("alter table x add column n int", sqlExecutionContext);
+
+            executeInsert("insert into x values ('2022-01-01T00:00:00', 'a', 4, 's4', 1)");
+            assertSql(
+                    "x",
+                    "ts\tk\tv\ts\tn\n" +
+                            "2022-01-01T00:00:00.000000Z\tb\t2\ts2\tNaN\n" +
+                            "2022-01-01T00:00:00.000000Z\ta\t4\ts4\t1\n" +
+                            "2022-01-02T00:00:00.000000Z\ta\t3\ts3\tNaN\n"
+            );
+        });
+    }
+
+    @Test
+    public void testDuplicateKeyColumn() throws Exception {
+        assertFailure(
+                "create table y (ts timestamp, k symbol, v long) timestamp(ts) partition by DAY dedup upsert keys(ts, k, k)",
+                null,
+                104,
+                "duplicate dedup key column"
+        );
+    }
+
+    @Test
+    public void testKeysMustIncludeTimestamp() throws Exception {
+        assertFailure(
+                "create table y (ts timestamp, k symbol, v long) timestamp(ts) partition by DAY dedup upsert keys(k)",
+                null,
+                79,
+                "dedup key must include designated timestamp"
+        );
+    }
+
+    @Test
+    public void testNonPartitionedTable() throws Exception {
+        assertFailure(
+                "create table y (ts timestamp, k symbol, v long) timestamp(ts) partition by NONE dedup upsert keys(ts)",
+                null,
+                80,
+                "deduplication is supported only on partitioned tables"
+        );
+    }
+
+    @Test
+    public void testNullSymbolKey() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            executeInsert("insert into x values ('2022-01-03T00:00:00', null, 1, 's1'), ('2022-01-03T00:00:00', null, 2, 's2')");
+            assertSql(
+                    "x",
+                    "ts\tk\tv\ts\n" +
+                            "2022-01-03T00:00:00.000000Z\t\t2\ts2\n"
+            );
+        });
+    }
+
+    @Test
+    public void testUnsupportedKeyType() throws Exception {
+        assertFailure(
+                "create table y (ts timestamp, k string, v long) timestamp(ts) partition by DAY dedup upsert keys(ts, k)",
+                null,
+                101,
+                "unsupported dedup key column type [type=STRING]"
+        );
+    }
+
+    @Test
+    public void testUpsertCommittedRows() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            executeInsert("insert into x values ('2022-01-01T00:00:00', 'a', 1, 's1'), ('2022-01-01T00:00:00', 'b', 2, 's2'), ('2022-01-02T00:00:00', 'a', 3, 's3')");
+
+            // rows replace committed rows in both the older and the last partition
+            executeInsert("insert into x values ('2022-01-02T00:00:00', 'b', 4, 's4'), ('2022-01-01T00:00:00', 'b', 5, null), ('2022-01-02T00:00:00', 'a', 6, 's6')");
+            assertSql(
+                    "x",
+                    "ts\tk\tv\ts\n" +
+                            "2022-01-01T00:00:00.000000Z\ta\t1\ts1\n" +
+                            "2022-01-01T00:00:00.000000Z\tb\t5\t\n" +
+                            "2022-01-02T00:00:00.000000Z\tb\t4\ts4\n" +
+                            "2022-01-02T00:00:00.000000Z\ta\t6\ts6\n"
+            );
+            assertSql("x where k = 'b'",
+                    "ts\tk\tv\ts\n" +
+                            "2022-01-01T00:00:00.000000Z\tb\t5\t\n" +
+                            "2022-01-02T00:00:00.000000Z\tb\t4\ts4\n"
+            );
+        });
+    }
+
+    @Test
+    public void testUpsertLargeRun() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table y (ts timestamp, k symbol, l long, v long) timestamp(ts) partition by DAY dedup upsert keys(ts, k, l)",
+                    sqlExecutionContext
+            );
+            // all rows share timestamp, 21 distinct keys repeat through the run
+            compiler.compile(
+                    "insert into y select '2022-01-01T00:00:00'::timestamp, cast(x % 3 as symbol), x % 7, x from long_sequence(10000)",
+                    sqlExecutionContext
+            );
+            assertSql("select count(), min(v), sum(v) from y", "count\tmin\tsum\n21\t9980\t209790\n");
+
+            // committed rows of the last partition are moved and replaced by the later batch
+            compiler.compile(
+                    "insert into y select '2022-01-01T00:00:00'::timestamp, cast(x % 3 as symbol), x % 7, x + 10000 from long_sequence(10000)",
+                    sqlExecutionContext
+            );
+            assertSql("select count(), min(v), sum(v) from y", "count\tmin\tsum\n21\t19980\t419790\n");
+        });
+    }
+
+    @Test
+    public void testUpsertSameBatch() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            executeInsert("insert into x values ('2022-01-01T00:00:00', 'a', 1, 's1'), ('2022-01-01T00:00:00', 'b', 2, 's2'), ('2022-01-01T00:00:00', 'a', 3, 's3'), ('2022-01-02T00:00:00', 'a', 4, 's4'), ('2022-01-02T00:00:00', 'a', 5, 's5')");
+            assertSql(
+                    "x",
+                    "ts\tk\tv\ts\n" +
+                            "2022-01-01T00:00:00.000000Z\tb\t2\ts2\n" +
+                            "2022-01-01T00:00:00.000000Z\ta\t3\ts3\n" +
+                            "2022-01-02T00:00:00.000000Z\ta\t5\ts5\n"
+            );
+        });
+    }
+
+    private void createX() throws SqlException {
+        compiler.compile(
+                "create table x (ts timestamp, k symbol index, v long, s string) timestamp(ts) partition by DAY dedup upsert keys(ts, k)",
+                sqlExecutionContext
+        );
+    }
+}
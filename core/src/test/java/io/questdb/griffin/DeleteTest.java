@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeleteTest extends AbstractGriffinTest {
+
+    @Test
+    public void testDeleteAcrossPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+
+            Assert.assertEquals(4, compiler.compile("delete from x where x % 3 = 0", sqlExecutionContext).getInsertCount());
+            assertSql(
+                    "x",
+                    "ts\tx\tsym\ts\n" +
+                            "1970-01-01T00:00:00.000000Z\t1\tb\tv1\n" +
+                            "1970-01-01T06:00:00.000000Z\t2\ta\tv2\n" +
+                            "1970-01-01T18:00:00.000000Z\t4\ta\tv4\n" +
+                            "1970-01-02T00:00:00.000000Z\t5\tb\tv5\n" +
+                            "1970-01-02T12:00:00.000000Z\t7\tb\tv7\n" +
+                            "1970-01-02T18:00:00.000000Z\t8\ta\tv8\n" +
+                            "1970-01-03T06:00:00.000000Z\t10\ta\tv10\n" +
+                            "1970-01-03T12:00:00.000000Z\t11\tb\tv11\n"
+            );
+
+            executeInsert("insert into x values ('1970-01-03T23:00:00.000000Z', 13, 'a', 'v13')");
+            assertSql(
+                    "x where sym = 'a'",
+                    "ts\tx\tsym\ts\n" +
+                            "1970-01-01T06:00:00.000000Z\t2\ta\tv2\n" +
+                            "1970-01-01T18:00:00.000000Z\t4\ta\tv4\n" +
+                            "1970-01-02T18:00:00.000000Z\t8\ta\tv8\n" +
+                            "1970-01-03T06:00:00.000000Z\t10\ta\tv10\n" +
+                            "1970-01-03T23:00:00.000000Z\t13\ta\tv13\n"
+            );
+        });
+    }
+
+    @Test
+    public void testDeleteAll() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            Assert.assertEquals(12, compiler.compile("delete from x", sqlExecutionContext).getInsertCount());
+            assertSql("select count() from x", "count\n0\n");
+        });
+    }
+
+    @Test
+    public void testDeleteNothing() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            Assert.assertEquals(0, compiler.compile("delete from x where x > 100", sqlExecutionContext).getInsertCount());
+            assertSql("select count() from x", "count\n12\n");
+        });
+    }
+
+    @Test
+    public void testDeleteWholePartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+
+            Assert.assertEquals(4, compiler.compile("delete from x where ts in '1970-01-02'", sqlExecutionContext).getInsertCount());
+            assertSql(
+                    "x",
+                    "ts\tx\tsym\ts\n" +
+                            "1970-01-01T00:00:00.000000Z\t1\tb\tv1\n" +
+                            "1970-01-01T06:00:00.000000Z\t2\ta\tv2\n" +
+                            "1970-01-01T12:00:00.000000Z\t3\tb\tv3\n" +
+                            "1970-01-01T18:00:00.000000Z\t4\ta\tv4\n" +
+                            "1970-01-03T00:00:00.000000Z\t9\tb\tv9\n" +
+                            "1970-01-03T06:00:00.000000Z\t10\ta\tv10\n" +
+                            "1970-01-03T12:00:00.000000Z\t11\tb\tv11\n" +
+                            "1970-01-03T18:00:00.000000Z\t12\ta\tv12\n"
+            );
+
+            // the active partition goes away, the writer has to carry on appending
+            Assert.assertEquals(4, compiler.compile("delete from x where ts in '1970-01-03'", sqlExecutionContext).getInsertCount());
+            executeInsert("insert into x values ('1970-01-03T06:00:00.000000Z', 13, 'a', 'v13')");
+            assertSql(
+                    "x",
+                    "ts\tx\tsym\ts\n" +
+                            "1970-01-01T00:00:00.000000Z\t1\tb\tv1\n" +
+                            "1970-01-01T06:00:00.000000Z\t2\ta\tv2\n" +
+                            "1970-01-01T12:00:00.000000Z\t3\tb\tv3\n" +
+                            "1970-01-01T18:00:00.000000Z\t4\ta\tv4\n" +
+                            "1970-01-03T06:00:00.000000Z\t13\ta\tv13\n"
+            );
+        });
+    }
+
+    @Test
+    public void testExpectFromKeyword() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            try {
+                compiler.compile("delete x", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(7, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "'from' expected");
+            }
+        });
+    }
+
+    @Test
+    public void testNonPartitionedTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table y as (select x from long_sequence(3))", sqlExecutionContext);
+            try {
+                compiler.compile("delete from y where x = 1", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(12, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "DELETE is supported for partitioned tables only");
+            }
+            assertSql("select count() from y", "count\n3\n");
+
+            compiler.compile("create table z as (select timestamp_sequence(0, 1000000) ts, x from long_sequence(3)) timestamp(ts) partition by NONE", sqlExecutionContext);
+            try {
+                compiler.compile("delete from z", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(12, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "DELETE is supported for partitioned tables only");
+            }
+            assertSql("select count() from z", "count\n3\n");
+        });
+    }
+
+    private void createX() throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select timestamp_sequence(0, 21600000000) ts," +
+                        " x," +
+                        " cast(case when x % 2 = 0 then 'a' else 'b' end as symbol) sym," +
+                        " 'v' || x s" +
+                        " from long_sequence(12)" +
+                        "), index(sym) timestamp(ts) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+}
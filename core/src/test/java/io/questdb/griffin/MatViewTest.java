@@ -0,0 +1,221 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.std.ObjList;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MatViewTest extends AbstractGriffinTest {
+    private static final String BASE_DDL = "create table b as (" +
+            "select timestamp_sequence('2022-01-01', 3600000000L) ts, cast(x % 3 as symbol) k, x v from long_sequence(48)" +
+            ") timestamp(ts) partition by day";
+
+    @Test
+    public void testFullRefreshAfterTruncate() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseAndView();
+            compile("truncate table b", sqlExecutionContext);
+            executeInsert("insert into b values ('2022-01-03T05', '2', 7)");
+            assertRefresh(1);
+            assertSql(
+                    "mv",
+                    "ts\tk\ts\tc\n" +
+                            "2022-01-03T00:00:00.000000Z\t2\t7\t1\n"
+            );
+        });
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseAndView();
+            assertSql(
+                    "mv order by ts, k",
+                    "ts\tk\ts\tc\n" +
+                            "2022-01-01T00:00:00.000000Z\t0\t108\t8\n" +
+                            "2022-01-01T00:00:00.000000Z\t1\t92\t8\n" +
+                            "2022-01-01T00:00:00.000000Z\t2\t100\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t0\t300\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t1\t284\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t2\t292\t8\n"
+            );
+
+            // out-of-order row lands in the first partition, buckets from there on are aggregated again
+            executeInsert("insert into b values ('2022-01-01T05', '1', 1000)");
+            executeInsert("insert into b values ('2022-01-03T05', '2', 7)");
+            assertRefresh(7);
+            assertSql(
+                    "mv order by ts, k",
+                    "ts\tk\ts\tc\n" +
+                            "2022-01-01T00:00:00.000000Z\t0\t108\t8\n" +
+                            "2022-01-01T00:00:00.000000Z\t1\t1092\t9\n" +
+                            "2022-01-01T00:00:00.000000Z\t2\t100\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t0\t300\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t1\t284\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t2\t292\t8\n" +
+                            "2022-01-03T00:00:00.000000Z\t2\t7\t1\n"
+            );
+
+            // nothing changed
+            assertRefresh(0);
+        });
+    }
+
+    @Test
+    public void testNotMatView() throws Exception {
+        assertFailure("refresh materialized view b", BASE_DDL, 26, "materialized view expected");
+    }
+
+    @Test
+    public void testOffsetAndStringKey() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(
+                    "create table b as (" +
+                            "select timestamp_sequence('2022-01-01', 3600000000L) ts, cast(x % 2 as string) k, x v from long_sequence(48)" +
+                            ") timestamp(ts) partition by day",
+                    sqlExecutionContext
+            );
+            // string keys cannot be deduplicated, refresh removes stale buckets before inserting new ones
+            compile("create materialized view mv as (select ts, k, max(v) m from b sample by 12h align to calendar with offset '06:00')", sqlExecutionContext);
+            executeInsert("insert into b values ('2022-01-02T19', '1', 1000)");
+            assertRefresh(6);
+            assertSql(
+                    "mv order by ts, k",
+                    "ts\tk\tm\n" +
+                            "2021-12-31T18:00:00.000000Z\t0\t6\n" +
+                            "2021-12-31T18:00:00.000000Z\t1\t5\n" +
+                            "2022-01-01T06:00:00.000000Z\t0\t18\n" +
+                            "2022-01-01T06:00:00.000000Z\t1\t17\n" +
+                            "2022-01-01T18:00:00.000000Z\t0\t30\n" +
+                            "2022-01-01T18:00:00.000000Z\t1\t29\n" +
+                            "2022-01-02T06:00:00.000000Z\t0\t42\n" +
+                            "2022-01-02T06:00:00.000000Z\t1\t41\n" +
+                            "2022-01-02T18:00:00.000000Z\t0\t48\n" +
+                            "2022-01-02T18:00:00.000000Z\t1\t1000\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRefreshAfterDelete() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseAndView();
+            compile("delete from b where ts < '2022-01-02'", sqlExecutionContext);
+            assertRefresh(3);
+            assertSql(
+                    "mv order by ts, k",
+                    "ts\tk\ts\tc\n" +
+                            "2022-01-02T00:00:00.000000Z\t0\t300\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t1\t284\t8\n" +
+                            "2022-01-02T00:00:00.000000Z\t2\t292\t8\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRefreshJob() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseAndView();
+            executeInsert("insert into b values ('2022-01-03T05', '2', 7)");
+            try (MatViewRefreshJob job = new MatViewRefreshJob(engine, null)) {
+                Assert.assertTrue(job.run(0));
+            }
+            assertSql(
+                    "mv where ts >= '2022-01-03'",
+                    "ts\tk\ts\tc\n" +
+                            "2022-01-03T00:00:00.000000Z\t2\t7\t1\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRegistryFollowsDropAndRename() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseAndView();
+            Assert.assertTrue(isRegistered("mv"));
+            compile("rename table mv to mv2", sqlExecutionContext);
+            Assert.assertFalse(isRegistered("mv"));
+            Assert.assertTrue(isRegistered("mv2"));
+            compile("drop table mv2", sqlExecutionContext);
+            Assert.assertFalse(isRegistered("mv2"));
+        });
+    }
+
+    @Test
+    public void testRefreshUnknownOption() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseAndView();
+            try {
+                compile("refresh materialized view mv all", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(29, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "'full' expected");
+            }
+        });
+    }
+
+    @Test
+    public void testRequiresAlignToCalendar() throws Exception {
+        assertFailure("create materialized view mv as (select ts, sum(v) from b sample by 1h)", BASE_DDL, 67, "materialized view requires ALIGN TO CALENDAR");
+    }
+
+    @Test
+    public void testRequiresPartitioning() throws Exception {
+        assertFailure(
+                "create materialized view mv as (select ts, sum(v) from b sample by 1h align to calendar) partition by none",
+                BASE_DDL,
+                102,
+                "'DAY', 'MONTH' or 'YEAR' expected"
+        );
+    }
+
+    @Test
+    public void testRequiresTimestamp() throws Exception {
+        assertFailure("create materialized view mv2 as (select sum(v) s from b sample by 1d align to calendar)", BASE_DDL, 25, "materialized view query must select the designated timestamp");
+    }
+
+    @Test
+    public void testWildcard() throws Exception {
+        assertFailure("create materialized view mv as (select * from b sample by 1h align to calendar)", BASE_DDL, 39, "wildcard is not supported by materialized views");
+    }
+
+    private void assertRefresh(long expectedRowCount) throws SqlException {
+        Assert.assertEquals(expectedRowCount, compiler.compile("refresh materialized view mv", sqlExecutionContext).getInsertCount());
+    }
+
+    private void createBaseAndView() throws SqlException {
+        compile(BASE_DDL, sqlExecutionContext);
+        compile("create materialized view mv as (select ts, k, sum(v) s, count() c from b sample by 1d align to calendar)", sqlExecutionContext);
+    }
+
+    private boolean isRegistered(String viewName) {
+        final ObjList<String> viewNames = new ObjList<>();
+        engine.getMatViewRegistry().collectViewNames(viewNames);
+        return viewNames.indexOf(viewName) > -1;
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlLiteralNormalizerTest extends AbstractGriffinTest {
+
+    @Test
+    public void testCharAndEscapedStringAreKept() throws Exception {
+        assertNormalized(
+                "select * from x where c = 'a' and s = 'it''s' and d = 'abc'",
+                "select * from x where c = 'a' and s = 'it''s' and d = $1",
+                "STRING"
+        );
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        assertNormalized(
+                "select * from x where a = 1 and b != 'abc' or c <> 3000000000 and (d < 1.5) and e <= 2 and f > 3 and g >= 4",
+                "select * from x where a = $1 and b != $2 or c <> $3 and (d < $4) and e <= $5 and f > $6 and g >= $7",
+                "INT,STRING,LONG,DOUBLE,INT,INT,INT"
+        );
+    }
+
+    @Test
+    public void testExplicitBindVariables() throws Exception {
+        assertNotNormalized("select * from x where a = 1 and b = $1");
+        assertNotNormalized("select * from x where a = :a and b = 2");
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        assertNormalized("select * from x limit 10", "select * from x limit $1", "INT");
+        assertNormalized("select * from x limit 10, 20;", "select * from x limit $1, $2;", "INT,INT");
+        assertNotNormalized("select * from x limit -10");
+    }
+
+    @Test
+    public void testLiteralFollowedByExpression() throws Exception {
+        assertNotNormalized("select * from x where a = 1 + b");
+        assertNotNormalized("select * from x where a = '1'::int");
+        assertNotNormalized("select * from x where a = 1.");
+    }
+
+    @Test
+    public void testNotSelect() throws Exception {
+        assertNotNormalized("insert into x select * from y where a = 1");
+        assertNotNormalized("x where a = 1");
+    }
+
+    @Test
+    public void testProjectionIsKept() throws Exception {
+        assertNormalized(
+                "select a > 1, case when b = 2 then 'x' end from x where d = 4",
+                "select a > 1, case when b = 2 then 'x' end from x where d = $1",
+                "INT"
+        );
+    }
+
+    @Test
+    public void testResultsMatchOriginalQuery() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (" +
+                    "select x, rnd_symbol('aa','bb') sym, x * 0.5 d, timestamp_sequence('2022-01-01', 3600000000L) ts" +
+                    " from long_sequence(100)" +
+                    ") timestamp(ts) partition by day", sqlExecutionContext);
+
+            final String query = "select * from x where ts > '2022-01-02' and ts < '2022-01-03' and sym = 'aa' and d > 15.5 limit 3";
+            final SqlLiteralNormalizer normalizer = new SqlLiteralNormalizer(configuration);
+            bindVariableService.clear();
+            Assert.assertEquals(5, normalizer.of(query, bindVariableService));
+            TestUtils.assertSqlCursors(compiler, sqlExecutionContext, query, normalizer.getSql().toString(), LOG);
+        });
+    }
+
+    private void assertNormalized(String query, String expectedSql, String expectedTypes) throws SqlException {
+        bindVariableService.clear();
+        final SqlLiteralNormalizer normalizer = new SqlLiteralNormalizer(configuration);
+        Assert.assertTrue(normalizer.of(query, bindVariableService) > 0);
+        TestUtils.assertEquals(expectedSql, normalizer.getSql());
+        TestUtils.assertEquals(expectedSql + '\0' + expectedTypes, normalizer.getCacheKey());
+    }
+
+    private void assertNotNormalized(String query) throws SqlException {
+        bindVariableService.clear();
+        final SqlLiteralNormalizer normalizer = new SqlLiteralNormalizer(configuration);
+        Assert.assertEquals(0, normalizer.of(query, bindVariableService));
+        Assert.assertEquals(0, normalizer.getSql().length());
+    }
+}
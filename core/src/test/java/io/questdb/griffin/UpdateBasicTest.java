@@ -24,6 +24,7 @@
 
 package io.questdb.griffin;
 
+import io.questdb.cairo.CairoException;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.PartitionBy;
 import io.questdb.cairo.TableModel;
@@ -31,19 +32,25 @@ import io.questdb.cairo.TableWriter;
 import io.questdb.cairo.sql.ReaderOutOfDateException;
 import io.questdb.griffin.update.InplaceUpdateExecution;
 import io.questdb.griffin.update.UpdateStatement;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.Misc;
+import io.questdb.std.str.LPSZ;
 import io.questdb.test.tools.TestUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class UpdateBasicTest extends AbstractGriffinTest {
     private InplaceUpdateExecution inplaceUpdate;
 
     @Before
     public void setUpUpdates() {
-        inplaceUpdate = new InplaceUpdateExecution(configuration);
+        inplaceUpdate = new InplaceUpdateExecution(configuration, engine.getMessageBus());
     }
 
     @After
@@ -224,6 +231,55 @@ public class UpdateBasicTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testUpdateFailureKeepsWrittenPartitions() throws Exception {
+        final AtomicBoolean failUpdate = new AtomicBoolean();
+        final FilesFacade ff = new FilesFacadeImpl() {
+            @Override
+            public long openRW(LPSZ name, long opts) {
+                if (failUpdate.get() && Chars.contains(name, "1970-01-02") && Chars.endsWith(name, "x.d")) {
+                    return -1;
+                }
+                return super.openRW(name, opts);
+            }
+        };
+        assertMemoryLeak(ff, () -> {
+            compiler.compile("create table up as" +
+                    " (select timestamp_sequence(0, 6 * 60 * 60 * 1000000L) ts," +
+                    " x" +
+                    " from long_sequence(12))" +
+                    " timestamp(ts) partition by DAY", sqlExecutionContext);
+
+            failUpdate.set(true);
+            try {
+                executeUpdate("UPDATE up SET x = 0 WHERE ts < '1970-01-03'");
+                Assert.fail();
+            } catch (CairoException e) {
+                TestUtils.assertContains(e.getFlyweightMessage(), "could not open");
+            } finally {
+                failUpdate.set(false);
+            }
+
+            // values are written in place without undo, the first partition keeps new values
+            assertSql(
+                    "up",
+                    "ts\tx\n" +
+                            "1970-01-01T00:00:00.000000Z\t0\n" +
+                            "1970-01-01T06:00:00.000000Z\t0\n" +
+                            "1970-01-01T12:00:00.000000Z\t0\n" +
+                            "1970-01-01T18:00:00.000000Z\t0\n" +
+                            "1970-01-02T00:00:00.000000Z\t5\n" +
+                            "1970-01-02T06:00:00.000000Z\t6\n" +
+                            "1970-01-02T12:00:00.000000Z\t7\n" +
+                            "1970-01-02T18:00:00.000000Z\t8\n" +
+                            "1970-01-03T00:00:00.000000Z\t9\n" +
+                            "1970-01-03T06:00:00.000000Z\t10\n" +
+                            "1970-01-03T12:00:00.000000Z\t11\n" +
+                            "1970-01-03T18:00:00.000000Z\t12\n"
+            );
+        });
+    }
+
     @Test
     public void testUpdateIdentical() throws Exception {
         assertMemoryLeak(() -> {
@@ -468,6 +524,33 @@ public class UpdateBasicTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testUpdateMultiPartitionedTableFirstPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table up as" +
+                    " (select timestamp_sequence(0, 6 * 60 * 60 * 1000000L) ts," +
+                    " cast(x as int) x" +
+                    " from long_sequence(12))" +
+                    " timestamp(ts) partition by DAY", sqlExecutionContext);
+
+            executeUpdate("UPDATE up SET x = -x WHERE x % 3 = 0");
+
+            assertSql("up", "ts\tx\n" +
+                    "1970-01-01T00:00:00.000000Z\t1\n" +
+                    "1970-01-01T06:00:00.000000Z\t2\n" +
+                    "1970-01-01T12:00:00.000000Z\t-3\n" +
+                    "1970-01-01T18:00:00.000000Z\t4\n" +
+                    "1970-01-02T00:00:00.000000Z\t5\n" +
+                    "1970-01-02T06:00:00.000000Z\t-6\n" +
+                    "1970-01-02T12:00:00.000000Z\t7\n" +
+                    "1970-01-02T18:00:00.000000Z\t8\n" +
+                    "1970-01-03T00:00:00.000000Z\t-9\n" +
+                    "1970-01-03T06:00:00.000000Z\t10\n" +
+                    "1970-01-03T12:00:00.000000Z\t11\n" +
+                    "1970-01-03T18:00:00.000000Z\t-12\n");
+        });
+    }
+
     @Test
     public void testUpdateMultiPartitionedTableSamePartitionManyFrames() throws Exception {
         assertMemoryLeak(() -> {
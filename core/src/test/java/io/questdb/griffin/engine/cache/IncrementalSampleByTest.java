@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.griffin.SqlException;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalSampleByTest extends AbstractGriffinTest {
+    private static final String BASE_DDL = "create table b as (" +
+            "select timestamp_sequence('2022-01-01', 30000000L) ts, cast(x % 3 as symbol) k, x v from long_sequence(240)" +
+            ") timestamp(ts) partition by day";
+    private static final String QUERY = "select ts, k, sum(v) s, count() c from b where ts > dateadd('h', -1, now()) sample by 10m align to calendar";
+    private static final long START = 1640998800000000L; // 2022-01-01T01:00:00.000000Z
+    private final StringSink expectedSink = new StringSink();
+
+    @Override
+    @Before
+    public void setUp() {
+        sqlResultCacheSize = 1024 * 1024;
+        super.setUp();
+    }
+
+    @Test
+    public void testAppend() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(BASE_DDL, sqlExecutionContext);
+            currentMicros = START + Timestamps.HOUR_MICROS;
+            final String query = "select ts, sum(v) s, count() c from b where ts > dateadd('h', -1, now()) sample by 20m align to calendar";
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof IncrementalSampleByRecordCursorFactory);
+                assertSameAsFull(query, factory);
+
+                // window slides past the first rows of the first bucket
+                currentMicros += 5 * Timestamps.MINUTE_MICROS;
+                executeInsert("insert into b values ('2022-01-01T02:01', '1', 1000)");
+                assertSameAsFull(query, factory);
+            }
+        });
+    }
+
+    @Test
+    public void testKeyed() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(BASE_DDL, sqlExecutionContext);
+            currentMicros = START + Timestamps.HOUR_MICROS;
+            try (RecordCursorFactory factory = compiler.compile(QUERY, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof IncrementalSampleByRecordCursorFactory);
+                assertSameAsFull(factory);
+                assertSameAsFull(factory);
+
+                currentMicros += 3 * Timestamps.MINUTE_MICROS;
+                assertSameAsFull(factory);
+
+                executeInsert("insert into b values ('2022-01-01T02:01', '1', 1000)");
+                assertSameAsFull(factory);
+
+                // new bucket with a new key, window moves into the next bucket
+                currentMicros = START + Timestamps.HOUR_MICROS + 17 * Timestamps.MINUTE_MICROS;
+                executeInsert("insert into b values ('2022-01-01T02:15', '3', 7)");
+                assertSameAsFull(factory);
+            }
+        });
+    }
+
+    @Test
+    public void testNotIncremental() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(BASE_DDL, sqlExecutionContext);
+            // buckets are not aligned to calendar
+            assertNotIncremental("select ts, k, sum(v) from b where ts > dateadd('h', -1, now()) sample by 10m");
+            // the bound is not the only volatile part of the query
+            assertNotIncremental("select ts, k, sum(v), rnd_int() from b where ts > dateadd('h', -1, now()) sample by 10m align to calendar");
+            assertNotIncremental("select ts, k, sum(v) from b where ts > dateadd('h', -1, now()) and ts < now() sample by 10m align to calendar");
+            // the bound depends on the row
+            assertNotIncremental("select ts, k, sum(v) from b where ts > dateadd('h', cast(-v as int), now()) sample by 10m align to calendar");
+            assertNotIncremental("select ts, k, sum(v) from b where ts > dateadd('h', -1, now()) sample by 10m fill(null) align to calendar");
+        });
+    }
+
+    @Test
+    public void testOutOfOrder() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(BASE_DDL, sqlExecutionContext);
+            currentMicros = START + Timestamps.HOUR_MICROS;
+            try (RecordCursorFactory factory = compiler.compile(QUERY, sqlExecutionContext).getRecordCursorFactory()) {
+                assertSameAsFull(factory);
+                executeInsert("insert into b values ('2022-01-01T01:30', '3', 7)");
+                assertSameAsFull(factory);
+                executeInsert("insert into b values ('2022-01-01T01:05', '1', 7)");
+                assertSameAsFull(factory);
+                // rows older than the window do not change the result
+                executeInsert("insert into b values ('2022-01-01T00:05', '1', 7)");
+                assertSameAsFull(factory);
+            }
+        });
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(BASE_DDL, sqlExecutionContext);
+            currentMicros = START + Timestamps.HOUR_MICROS;
+            try (RecordCursorFactory factory = compiler.compile(QUERY, sqlExecutionContext).getRecordCursorFactory()) {
+                assertSameAsFull(factory);
+                compile("truncate table b", sqlExecutionContext);
+                assertSameAsFull(factory);
+                executeInsert("insert into b values ('2022-01-01T01:55', '2', 7)");
+                assertSameAsFull(factory);
+            }
+        });
+    }
+
+    private void assertCursor(RecordCursorFactory factory, String expected) throws SqlException {
+        try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+            TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+        }
+    }
+
+    private void assertNotIncremental(String query) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertFalse(factory instanceof IncrementalSampleByRecordCursorFactory);
+        }
+    }
+
+    private void assertSameAsFull(RecordCursorFactory factory) throws SqlException {
+        assertSameAsFull(QUERY, factory);
+    }
+
+    // incremental result must be the same as the result of the query executed in full
+    private void assertSameAsFull(String query, RecordCursorFactory factory) throws SqlException {
+        sqlResultCacheSize = 0;
+        try {
+            TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+        } finally {
+            sqlResultCacheSize = 1024 * 1024;
+        }
+        assertCursor(factory, expectedSink.toString());
+    }
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.cache;
+
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest extends AbstractGriffinTest {
+
+    @Override
+    @Before
+    public void setUp() {
+        sqlResultCacheSize = 1024 * 1024;
+        super.setUp();
+        // cache and its counters are shared by all tests
+        engine.getResultCache().clear();
+    }
+
+    @Test
+    public void testBindVariablesArePartOfKey() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x from long_sequence(5))", sqlExecutionContext);
+            bindVariableService.clear();
+            bindVariableService.setLong(0, 2);
+            assertSql("select x from x where x > $1", "x\n3\n4\n5\n");
+            bindVariableService.setLong(0, 4);
+            assertSql("select x from x where x > $1", "x\n5\n");
+            assertCache(0, 2);
+            bindVariableService.setLong(0, 2);
+            assertSql("select x from x where x > $1", "x\n3\n4\n5\n");
+            assertCache(1, 2);
+        });
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        sqlResultCacheSize = 0;
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x from long_sequence(5))", sqlExecutionContext);
+            assertSql("select sum(x) from x", "sum\n15\n");
+            assertSql("select sum(x) from x", "sum\n15\n");
+            assertCache(0, 0);
+        });
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        // every single row result takes one page
+        sqlResultCacheSize = 2 * Files.PAGE_SIZE;
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x from long_sequence(5))", sqlExecutionContext);
+            assertSql("select x from x where x = 1", "x\n1\n");
+            assertSql("select x from x where x = 2", "x\n2\n");
+            assertSql("select x from x where x = 1", "x\n1\n");
+            assertCache(1, 2);
+            // evicts "x = 2"
+            assertSql("select x from x where x = 3", "x\n3\n");
+            assertSql("select x from x where x = 1", "x\n1\n");
+            assertCache(2, 3);
+            assertSql("select x from x where x = 2", "x\n2\n");
+            assertCache(2, 4);
+            Assert.assertEquals(2 * Files.PAGE_SIZE, engine.getResultCache().getSize());
+        });
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (" +
+                    "select x, rnd_symbol('a','b') s, rnd_str(3,3,0) t, timestamp_sequence(0,1000000) ts from long_sequence(5)" +
+                    ") timestamp(ts) partition by day", sqlExecutionContext);
+            final String expected = "x\ts\tt\tts\n" +
+                    "4\ta\tXGZ\t1970-01-01T00:00:03.000000Z\n" +
+                    "5\tb\tUXI\t1970-01-01T00:00:04.000000Z\n";
+            assertSql("select * from x where x > 3", expected);
+            assertSql("select * from x where x > 3", expected);
+            assertCache(1, 1);
+            // same text, same table version
+            assertSql("select * from x where x > 3", expected);
+            assertCache(2, 1);
+        });
+    }
+
+    @Test
+    public void testInvalidatedByInsert() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x, timestamp_sequence(0,1000000) ts from long_sequence(5)) timestamp(ts)", sqlExecutionContext);
+            assertSql("select count() from x", "count\n5\n");
+            executeInsert("insert into x values (6, 10000000)");
+            assertSql("select count() from x", "count\n6\n");
+            assertCache(0, 2);
+            assertSql("select count() from x", "count\n6\n");
+            assertCache(1, 2);
+        });
+    }
+
+    @Test
+    public void testNonDeterministicNotCached() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x, timestamp_sequence(0,1000000) ts from long_sequence(5)) timestamp(ts)", sqlExecutionContext);
+            assertSql("select count() from x where ts < now()", "count\n5\n");
+            assertSql("select count() from x where ts < now()", "count\n5\n");
+            assertSql("select count() from x where x > rnd_long(-1, 0, 0)", "count\n5\n");
+            assertSql("select count() from x where x > rnd_long(-1, 0, 0)", "count\n5\n");
+            assertSql("select count() from long_sequence(5)", "count\n5\n");
+            assertSql("select count() from long_sequence(5)", "count\n5\n");
+            assertCache(0, 0);
+        });
+    }
+
+    private static void assertCache(long hitCount, long missCount) {
+        Assert.assertEquals(hitCount, engine.getResultCache().getHitCount());
+        Assert.assertEquals(missCount, engine.getResultCache().getMissCount());
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.griffin.AbstractGriffinTest;
+import org.junit.Test;
+
+public class TableIngestionMetricsRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    @Test
+    public void testCommitsAndRows() throws Exception {
+        assertMemoryLeak(() -> {
+            // metrics are shared by all tests, table name keeps the counters apart
+            compiler.compile("create table ingestion_metrics_x (ts timestamp, v long) timestamp(ts) partition by day", sqlExecutionContext);
+            executeInsert("insert into ingestion_metrics_x values ('2022-01-01T00:00:00.000000Z', 1)");
+            executeInsert("insert into ingestion_metrics_x values ('2022-01-01T00:00:01.000000Z', 2)");
+            executeInsert("insert into ingestion_metrics_x values ('2022-01-01T00:00:02.000000Z', 3)");
+            compiler.compile(
+                    "insert into ingestion_metrics_x select timestamp_sequence('2022-01-02', 1000000), x from long_sequence(5)",
+                    sqlExecutionContext
+            );
+            // out of order row in the middle of existing partition
+            executeInsert("insert into ingestion_metrics_x values ('2022-01-01T00:00:00.500000Z', 4)");
+
+            assertSql(
+                    "select table, commits, committed_rows, o3_commits, o3_merged_rows from table_ingestion_metrics() where table = 'ingestion_metrics_x'",
+                    // O3 row copies its partition: 3 existing rows and the new one
+                    "table\tcommits\tcommitted_rows\to3_commits\to3_merged_rows\n" +
+                            "ingestion_metrics_x\t5\t9\t1\t4\n"
+            );
+        });
+    }
+
+    @Test
+    public void testDropAndRenameRemoveMetrics() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table ingestion_metrics_drop (ts timestamp, v long) timestamp(ts) partition by day", sqlExecutionContext);
+            compiler.compile("create table ingestion_metrics_rename (ts timestamp, v long) timestamp(ts) partition by day", sqlExecutionContext);
+            executeInsert("insert into ingestion_metrics_drop values ('2022-01-01T00:00:00.000000Z', 1)");
+            executeInsert("insert into ingestion_metrics_rename values ('2022-01-01T00:00:00.000000Z', 1)");
+            assertSql(
+                    "select table, commits from table_ingestion_metrics() where table like 'ingestion_metrics_%' order by table",
+                    "table\tcommits\n" +
+                            "ingestion_metrics_drop\t1\n" +
+                            "ingestion_metrics_rename\t1\n"
+            );
+
+            compiler.compile("drop table ingestion_metrics_drop", sqlExecutionContext);
+            compiler.compile("rename table ingestion_metrics_rename to ingestion_metrics_renamed", sqlExecutionContext);
+            assertSql(
+                    "select table, commits from table_ingestion_metrics() where table like 'ingestion_metrics_%'",
+                    "table\tcommits\n"
+            );
+
+            executeInsert("insert into ingestion_metrics_renamed values ('2022-01-01T00:00:01.000000Z', 2)");
+            assertSql(
+                    "select table, commits from table_ingestion_metrics() where table like 'ingestion_metrics_%'",
+                    "table\tcommits\n" +
+                            "ingestion_metrics_renamed\t1\n"
+            );
+        });
+    }
+
+    @Test
+    public void testLineTcpOnlyTableListed() throws Exception {
+        assertMemoryLeak(() -> {
+            // ILP rows are counted before the writer job commits them
+            engine.getMetrics().lineTcp().addTableEvent("ingestion_metrics_ilp", 42, 7);
+            assertSql(
+                    "select table, commits, line_tcp_rows, line_tcp_bytes, line_tcp_queue_wait_micros from table_ingestion_metrics() where table = 'ingestion_metrics_ilp'",
+                    "table\tcommits\tline_tcp_rows\tline_tcp_bytes\tline_tcp_queue_wait_micros\n" +
+                            "ingestion_metrics_ilp\t0\t1\t42\t7\n"
+            );
+            engine.getMetrics().removeTable("ingestion_metrics_ilp");
+        });
+    }
+}
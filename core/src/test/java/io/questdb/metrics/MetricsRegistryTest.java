@@ -24,9 +24,11 @@
 
 package io.questdb.metrics;
 
+import io.questdb.std.CharSequenceHashSet;
 import io.questdb.std.str.CharSink;
 import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class MetricsRegistryTest {
@@ -87,6 +89,116 @@ public class MetricsRegistryTest {
         assertScrapable(counter, expected);
     }
 
+    @Test
+    public void testCounterWithDynamicLabel() {
+        MetricsRegistry metricsRegistry = new MetricsRegistryImpl();
+        CounterWithDynamicLabel counter = metricsRegistry.newCounter("counter", "table");
+
+        counter.inc("trades");
+        counter.add("quotes", 5);
+        StringSink tableName = new StringSink();
+        tableName.put("trades");
+        counter.inc(tableName);
+
+        Assert.assertEquals(2, counter.getLabelValueCount());
+        Assert.assertEquals(2, counter.get("trades"));
+        Assert.assertEquals(5, counter.get("quotes"));
+        Assert.assertEquals(0, counter.get("unknown"));
+
+        String expected = "# TYPE questdb_counter_total counter\n" +
+                "questdb_counter_total{table=\"trades\"} 2\n" +
+                "questdb_counter_total{table=\"quotes\"} 5\n" +
+                "\n";
+        assertScrapable(counter, expected);
+    }
+
+    @Test
+    public void testCounterWithDynamicLabelRemove() {
+        MetricsRegistry metricsRegistry = new MetricsRegistryImpl();
+        CounterWithDynamicLabel counter = metricsRegistry.newCounter("counter", "table");
+
+        counter.inc("trades");
+        counter.add("quotes", 5);
+        counter.remove("trades");
+
+        Assert.assertEquals(1, counter.getLabelValueCount());
+        Assert.assertEquals(0, counter.get("trades"));
+        Assert.assertEquals(5, counter.get("quotes"));
+        CharSequenceHashSet labelValues = new CharSequenceHashSet();
+        counter.collectLabelValues(labelValues);
+        Assert.assertEquals(1, labelValues.size());
+        Assert.assertEquals("quotes", labelValues.get(0));
+
+        counter.inc("trades");
+        Assert.assertEquals(1, counter.get("trades"));
+
+        String expected = "# TYPE questdb_counter_total counter\n" +
+                "questdb_counter_total{table=\"quotes\"} 5\n" +
+                "questdb_counter_total{table=\"trades\"} 1\n" +
+                "\n";
+        assertScrapable(counter, expected);
+    }
+
+    @Test
+    public void testHistogramWithDynamicLabel() {
+        MetricsRegistry metricsRegistry = new MetricsRegistryImpl();
+        HistogramWithDynamicLabel histogram = metricsRegistry.newHistogram("latency", "table", new long[]{10, 100});
+
+        histogram.record("trades", 5);
+        histogram.record("trades", 10);
+        histogram.record("trades", 50);
+        histogram.record("trades", 1000);
+        StringSink tableName = new StringSink();
+        tableName.put("quotes");
+        histogram.record(tableName, 20);
+
+        Assert.assertEquals(2, histogram.getLabelValueCount());
+        Assert.assertEquals(4, histogram.getCount("trades"));
+        Assert.assertEquals(1065, histogram.getSum("trades"));
+        Assert.assertEquals(1, histogram.getCount("quotes"));
+        Assert.assertEquals(0, histogram.getCount("unknown"));
+
+        String expected = "# TYPE questdb_latency histogram\n" +
+                "questdb_latency_bucket{table=\"trades\",le=\"10\"} 2\n" +
+                "questdb_latency_bucket{table=\"trades\",le=\"100\"} 3\n" +
+                "questdb_latency_bucket{table=\"trades\",le=\"+Inf\"} 4\n" +
+                "questdb_latency_sum{table=\"trades\"} 1065\n" +
+                "questdb_latency_count{table=\"trades\"} 4\n" +
+                "questdb_latency_bucket{table=\"quotes\",le=\"10\"} 0\n" +
+                "questdb_latency_bucket{table=\"quotes\",le=\"100\"} 1\n" +
+                "questdb_latency_bucket{table=\"quotes\",le=\"+Inf\"} 1\n" +
+                "questdb_latency_sum{table=\"quotes\"} 20\n" +
+                "questdb_latency_count{table=\"quotes\"} 1\n" +
+                "\n";
+        assertScrapable(histogram, expected);
+
+        histogram.remove("trades");
+        Assert.assertEquals(1, histogram.getLabelValueCount());
+        Assert.assertEquals(0, histogram.getCount("trades"));
+        Assert.assertEquals(0, histogram.getSum("trades"));
+    }
+
+    @Test
+    public void testNullHistogramWithDynamicLabel() {
+        MetricsRegistry metricsRegistry = new NullMetricsRegistry();
+        HistogramWithDynamicLabel histogram = metricsRegistry.newHistogram("latency", "table", new long[]{10, 100});
+
+        histogram.record("trades", 5);
+        Assert.assertEquals(0, histogram.getLabelValueCount());
+        Assert.assertEquals(0, histogram.getCount("trades"));
+        assetNull(histogram);
+    }
+
+    @Test
+    public void testNullCounterWithDynamicLabel() {
+        MetricsRegistry metricsRegistry = new NullMetricsRegistry();
+        CounterWithDynamicLabel counter = metricsRegistry.newCounter("counter", "table");
+
+        counter.inc("trades");
+        Assert.assertEquals(0, counter.getLabelValueCount());
+        assetNull(counter);
+    }
+
     @Test
     public void testNullCounter() {
         MetricsRegistry metricsRegistry = new NullMetricsRegistry();
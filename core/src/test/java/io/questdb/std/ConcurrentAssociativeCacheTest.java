@@ -0,0 +1,147 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.std;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentAssociativeCacheTest {
+
+    @Test
+    public void testCheckoutAndReturn() {
+        final ConcurrentAssociativeCache<String> cache = new ConcurrentAssociativeCache<>(8, 8);
+        cache.put("x", "1");
+        Assert.assertEquals("1", cache.poll("x"));
+        // value is checked out
+        Assert.assertNull(cache.poll("x"));
+        cache.put("x", "1");
+        Assert.assertEquals("1", cache.poll("x"));
+    }
+
+    @Test
+    public void testEvictedValueIsFreed() {
+        final AtomicInteger closed = new AtomicInteger();
+        final ConcurrentAssociativeCache<Closeable> cache = new ConcurrentAssociativeCache<>(2, 1);
+        cache.put("a", closed::incrementAndGet);
+        cache.put("b", closed::incrementAndGet);
+        Assert.assertEquals(0, closed.get());
+        cache.put("c", closed::incrementAndGet);
+        Assert.assertEquals(1, closed.get());
+        Assert.assertNull(cache.poll("a"));
+        Assert.assertNotNull(cache.poll("b"));
+
+        cache.clear();
+        Assert.assertEquals(2, closed.get());
+        Assert.assertNull(cache.poll("c"));
+    }
+
+    @Test
+    public void testMultipleValuesPerKey() {
+        final ConcurrentAssociativeCache<String> cache = new ConcurrentAssociativeCache<>(8, 8);
+        cache.put("x", "1");
+        cache.put("x", "2");
+        final String a = cache.poll("x");
+        final String b = cache.poll("x");
+        Assert.assertNotNull(a);
+        Assert.assertNotNull(b);
+        Assert.assertNotEquals(a, b);
+        Assert.assertNull(cache.poll("x"));
+    }
+
+    @Test
+    public void testRemove() {
+        final AtomicInteger closed = new AtomicInteger();
+        final ConcurrentAssociativeCache<Closeable> cache = new ConcurrentAssociativeCache<>(4, 1);
+        cache.put("a", closed::incrementAndGet);
+        cache.put("b", closed::incrementAndGet);
+        cache.put("a", closed::incrementAndGet);
+        final Closeable checkedOut = cache.poll("a");
+        Assert.assertNotNull(checkedOut);
+
+        cache.remove("a");
+        // idle value is freed, checked out value stays with the caller
+        Assert.assertEquals(1, closed.get());
+        Assert.assertNull(cache.poll("a"));
+        Assert.assertNotNull(cache.poll("b"));
+
+        cache.put("a", checkedOut);
+        Assert.assertSame(checkedOut, cache.poll("a"));
+        Assert.assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void testReturnDoesNotEvict() {
+        final ConcurrentAssociativeCache<String> cache = new ConcurrentAssociativeCache<>(2, 1);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.poll("a"));
+        cache.put("a", "1");
+        Assert.assertEquals("2", cache.poll("b"));
+        Assert.assertEquals("1", cache.poll("a"));
+    }
+
+    @Test
+    public void testConcurrentCheckout() throws Exception {
+        final int threadCount = 4;
+        final int iterations = 10_000;
+        final ConcurrentAssociativeCache<AtomicInteger> cache = new ConcurrentAssociativeCache<>(4, 4);
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        final AtomicInteger errors = new AtomicInteger();
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(() -> {
+                final Rnd rnd = new Rnd();
+                try {
+                    barrier.await();
+                    for (int i = 0; i < iterations; i++) {
+                        final String key = "q" + rnd.nextInt(8);
+                        AtomicInteger value = cache.poll(key);
+                        if (value == null) {
+                            value = new AtomicInteger();
+                        }
+                        // value must not be shared with other threads while it is checked out
+                        if (value.incrementAndGet() != 1) {
+                            errors.incrementAndGet();
+                        }
+                        value.decrementAndGet();
+                        cache.put(key, value);
+                    }
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < threadCount; t++) {
+            threads[t].join();
+        }
+        Assert.assertEquals(0, errors.get());
+    }
+}
@@ -63,6 +63,56 @@ public class LongMatrixTest {
         Assert.assertEquals(631, m.get(r, 0));
     }
 
+    @Test
+    public void testBinarySearchAllValues() {
+        LongMatrix<String> m = new LongMatrix<>(2);
+        for (int i = 0; i < 5000; i++) {
+            int r = m.addRow();
+            m.set(r, 0, 3L * i);
+            m.set(r, "s" + i);
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(i, m.binarySearch(3L * i, 0));
+            Assert.assertEquals(-(i + 2), m.binarySearch(3L * i + 1, 0));
+        }
+        Assert.assertEquals(-1, m.binarySearch(-1, 0));
+    }
+
+    @Test
+    public void testDeleteNullRows() {
+        LongMatrix<String> m = new LongMatrix<>(2);
+        for (int i = 0; i < 1000; i++) {
+            int r = m.addRow();
+            m.set(r, 0, i);
+            m.set(r, 1, i);
+            m.set(r, "s" + i);
+        }
+
+        for (int i = 100; i < 1000; i += 3) {
+            m.set(i, null);
+        }
+        m.set(999, null);
+        m.deleteNullRows(100);
+
+        Assert.assertEquals(1000 - 300 - 1, m.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, m.get(i, 0));
+            Assert.assertEquals("s" + i, m.get(i));
+        }
+        for (int i = 100, r = 100; i < 999; i++) {
+            if ((i - 100) % 3 != 0) {
+                Assert.assertEquals(i, m.get(r, 0));
+                Assert.assertEquals(i, m.get(r, 1));
+                Assert.assertEquals("s" + i, m.get(r));
+                r++;
+            }
+        }
+
+        m.deleteNullRows(0);
+        Assert.assertEquals(699, m.size());
+    }
+
     @Test
     public void testDeleteRow() {
         LongMatrix<String> m = new LongMatrix<>(2);
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.std;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnappyCompressorTest {
+
+    @Test
+    public void testEmpty() {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void testRandom() {
+        final Rnd rnd = new Rnd();
+        final byte[] data = new byte[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rnd.nextByte();
+        }
+        assertRoundTrip(data);
+    }
+
+    @Test
+    public void testRepetitive() {
+        final Rnd rnd = new Rnd();
+        final byte[] data = new byte[300_000];
+        for (int i = 0; i < data.length; i++) {
+            // short alphabet and runs produce both literals and long copies
+            data[i] = (byte) (i % 1000 < 700 ? 'a' + (i % 7) : 'a' + rnd.nextInt(4));
+        }
+        Assert.assertTrue(assertRoundTrip(data) < data.length / 3);
+    }
+
+    private static long assertRoundTrip(byte[] data) {
+        final long len = data.length;
+        final long capacity = SnappyCompressor.maxCompressedLength(len);
+        final long src = Unsafe.malloc(Math.max(len, 1), MemoryTag.NATIVE_DEFAULT);
+        final long dst = Unsafe.malloc(capacity, MemoryTag.NATIVE_DEFAULT);
+        try {
+            for (int i = 0; i < data.length; i++) {
+                Unsafe.getUnsafe().putByte(src + i, data[i]);
+            }
+            final long compressed = new SnappyCompressor().compress(src, len, dst);
+            Assert.assertTrue(compressed <= capacity);
+            Assert.assertArrayEquals(data, uncompress(dst, compressed));
+            return compressed;
+        } finally {
+            Unsafe.free(src, Math.max(len, 1), MemoryTag.NATIVE_DEFAULT);
+            Unsafe.free(dst, capacity, MemoryTag.NATIVE_DEFAULT);
+        }
+    }
+
+    private static byte[] uncompress(long p, long len) {
+        final long hi = p + len;
+        int size = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = Unsafe.getUnsafe().getByte(p++);
+            size |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        final byte[] out = new byte[size];
+        int n = 0;
+        while (p < hi) {
+            final int tag = Unsafe.getUnsafe().getByte(p++) & 0xff;
+            switch (tag & 3) {
+                case 0:
+                    int literalLen = tag >>> 2;
+                    if (literalLen >= 60) {
+                        final int bytes = literalLen - 59;
+                        literalLen = 0;
+                        for (int i = 0; i < bytes; i++) {
+                            literalLen |= (Unsafe.getUnsafe().getByte(p++) & 0xff) << (i * 8);
+                        }
+                    }
+                    for (int i = 0; i <= literalLen; i++) {
+                        out[n++] = Unsafe.getUnsafe().getByte(p++);
+                    }
+                    break;
+                case 2:
+                    final int copyLen = (tag >>> 2) + 1;
+                    final int offset = Unsafe.getUnsafe().getShort(p) & 0xffff;
+                    p += 2;
+                    Assert.assertTrue(offset > 0 && offset <= n);
+                    for (int i = 0; i < copyLen; i++, n++) {
+                        out[n] = out[n - offset];
+                    }
+                    break;
+                default:
+                    Assert.fail("unexpected tag: " + tag);
+            }
+        }
+        Assert.assertEquals(size, n);
+        return out;
+    }
+
+    static {
+        Os.init();
+    }
+}